@@ -12,11 +12,18 @@ create table auditmanager.eventlog (
    userid varchar(128),
    userAgent text,
    groups varchar(512),
-   authSystem varchar(128)
+   authSystem varchar(128),
+   scope varchar(100),                   -- scope parsed from resourceId
+   identifier int8,                      -- identifier parsed from resourceId
+   revision int8,                        -- revision parsed from resourceId
+   entityId varchar(128)                 -- entity identifier of a data entity resourceId
 );
 CREATE INDEX entrytime_idx ON auditmanager.eventlog ( entryTime );
 CREATE INDEX servicemethod_idx ON auditmanager.eventlog ( serviceMethod );
 CREATE INDEX resourceid_idx ON auditmanager.eventlog ( resourceId );
+CREATE INDEX resourceid_pattern_idx ON auditmanager.eventlog ( resourceId varchar_pattern_ops );
+CREATE INDEX packageid_idx ON auditmanager.eventlog ( scope, identifier, revision );
+CREATE INDEX entityid_idx ON auditmanager.eventlog ( entityId );
 CREATE INDEX userid_idx ON auditmanager.eventlog ( userid );
 CREATE INDEX useragent_idx ON auditmanager.eventlog ( userAgent );
 CREATE INDEX statuscode_idx ON auditmanager.eventlog ( statusCode );
@@ -34,4 +41,9 @@ CREATE TABLE auditmanager.resource_reads (
 );
 CREATE INDEX resource_id_idx ON auditmanager.resource_reads ( resource_id );
 CREATE INDEX scope_idx ON auditmanager.resource_reads ( scope );
+-- No row is seeded: on its first start the Audit Manager records the newest
+-- eventlog oid, so that reads already in resource_reads are not added again.
+CREATE TABLE auditmanager.resource_reads_flush (
+   last_oid INT8 NOT NULL                                    -- eventlog oid of the last read flushed to resource_reads
+);
 
@@ -24,9 +24,8 @@
 
 package edu.lternet.pasta.auditmanager;
 
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -36,6 +35,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +64,10 @@ public class AuditManager {
  
   public static final String AUDIT_OPENING_TAG = "<auditReport>\n"; 
   public static final String AUDIT_CLOSING_TAG = "</auditReport>\n";
+  
+  // Number of rows fetched per round trip when streaming audit records
+  private static final int FETCH_SIZE = 1000;
+  
   private static Logger logger = Logger.getLogger(AuditManager.class);
  
  
@@ -77,11 +81,6 @@ public class AuditManager {
   private final String AUDIT_MANAGER_TABLE_QUALIFIED = AUDIT_MANAGER_SCHEMA + "." + AUDIT_MANAGER_TABLE;
   private Properties properties = null;
 
-  /*
-   *  Temporary directory for storing audit query XML results file. 
-   */
-  private String tmpDir;
-  
   private String dbDriver;           // database driver
   private String dbURL;              // database URL
   private String dbUser;             // database user name
@@ -108,14 +107,6 @@ public class AuditManager {
     this.dbURL = ConfigurationListener.getProperty(p, "dbURL");
     this.dbUser = ConfigurationListener.getProperty(p, "dbUser");
     this.dbPassword = ConfigurationListener.getProperty(p, "dbPassword");
-    
-    /* Initialize the tmpDir value and create the directory */
-    String tmpDirValue = ConfigurationListener.getTmpDir();
-    if (tmpDirValue != null && !tmpDirValue.equals("")) {
-    	this.tmpDir = tmpDirValue;
-    	File tmpDirFile = new File(tmpDirValue);
-    	tmpDirFile.mkdirs();
-    }
    
     /*
      * Check for existence of Data Package Registry table. 
@@ -167,7 +158,12 @@ public class AuditManager {
 	  ConfigurationListener.loadPropertiesFile("auditmanager.properties");
 	  Properties properties = ConfigurationListener.getProperties();
 	  AuditManager auditManager = new AuditManager(properties);
-	  auditManager.fixArchiveRecords();
+	  if (args.length > 0 && args[0].equals("upgradeResourceIdColumns")) {
+	    auditManager.upgradeResourceIdColumns();
+	  }
+	  else {
+	    auditManager.fixArchiveRecords();
+	  }
   }
 
   
@@ -201,6 +197,39 @@ public class AuditManager {
   }
 
   
+  /**
+   * Returns the value of the "after" query parameter, the oid of the last
+   * audit record seen in a previous page of results, or null if the
+   * parameter is absent.
+   * 
+   * @param queryParams     a map of query parameters
+   * @return                the oid after which records are to be returned, or null
+   * @throws IllegalStateException if the value is not a non-negative whole number
+   */
+  public static Integer getAfterOid(Map<String, List<String>> queryParams) {
+    Integer afterOid = null;
+    
+    if (queryParams != null) {
+      for (String key : queryParams.keySet()) {
+        if (key.equalsIgnoreCase("after")) {
+          String afterStr = queryParams.get(key).get(0);
+          try {
+            afterOid = new Integer(afterStr);
+          }
+          catch (NumberFormatException e) {
+            afterOid = -1;
+          }
+          if (afterOid < 0) {
+            throw new IllegalStateException("Bad after parameter: " + afterStr);
+          }
+        }
+      }
+    }
+    
+    return afterOid;
+  }
+
+  
   /*
    * Instance methods
    */
@@ -241,8 +270,9 @@ public class AuditManager {
                                               AUDIT_MANAGER_TABLE_QUALIFIED + 
                                               "(");
     insertSQL.append("entrytime, service, category, servicemethod, " + 
-                     "entrytext, resourceid, statuscode, userid, userAgent, groups, authsystem) " + 
-                     "VALUES(?,?,?,?,?,?,?,?,?,?,?)");
+                     "entrytext, resourceid, statuscode, userid, userAgent, groups, authsystem, " + 
+                     "scope, identifier, revision, entityid) " + 
+                     "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)");
     String insertString = insertSQL.toString();
     logger.debug("insertString: " + insertString);
 
@@ -260,6 +290,19 @@ public class AuditManager {
         pstmt.setString(9, userAgent);
         pstmt.setString(10, groups);
         pstmt.setString(11, authSystem);
+        ResourceIdParts resourceIdParts = ResourceIdParts.parse(resourceId);
+        if (resourceIdParts != null) {
+          pstmt.setString(12, resourceIdParts.getScope());
+          pstmt.setLong(13, resourceIdParts.getIdentifier());
+          pstmt.setLong(14, resourceIdParts.getRevision());
+          pstmt.setString(15, resourceIdParts.getEntityId());
+        }
+        else {
+          pstmt.setNull(12, Types.VARCHAR);
+          pstmt.setNull(13, Types.BIGINT);
+          pstmt.setNull(14, Types.BIGINT);
+          pstmt.setNull(15, Types.VARCHAR);
+        }
         pstmt.executeUpdate();
         ResultSet rs = pstmt.getGeneratedKeys();
         while (rs.next()) {
@@ -282,14 +325,14 @@ public class AuditManager {
     
     /*
      * If the service method matches one of the resource read types and the read succeeded with a 200 status,
-     * then register this resource read with the ReadsManager.
+     * then register this resource read with the ReadsManager. The read is counted in memory and written
+     * to the resource_reads table by the next periodic flush.
      */
-    if (statusCode == 200) {
-        ReadsManager rm = new ReadsManager(this.properties);
-        ReadsManager.ResourceType resourceType = rm.resourceTypeFromServiceMethod(serviceMethod);
+    if (statusCode == 200 && serviceMethod != null) {
+        ReadsManager.ResourceType resourceType = ReadsManager.resourceTypeFromServiceMethod(serviceMethod);
         if (resourceType != null) {
-            boolean isNonRobotRead = rm.isNonRobotRead(userId);
-            rm.registerResourceRead(resourceId, resourceType, isNonRobotRead);
+            boolean isNonRobotRead = ReadsManager.isNonRobotRead(userId);
+            ReadsManager.registerResourceRead(resourceId, resourceType, isNonRobotRead, auditId);
         }
     }
     
@@ -308,8 +351,16 @@ public class AuditManager {
       String fieldName = getFieldName(key);
       
       if (fieldName.equals("resourceid")) {
-        stringBuffer.append(String.format("%s like '%%%s%%'", fieldName, value));
+        stringBuffer.append(composeResourceIdCondition(value));
       } 
+      else if (fieldName.equals("identifier") || fieldName.equals("revision")) {
+        try {
+          stringBuffer.append(String.format("%s=%d", fieldName, Long.parseLong(value)));
+        }
+        catch (NumberFormatException e) {
+          throw new IllegalStateException(String.format("Bad %s parameter: %s", key, value));
+        }
+      }
       else {
         stringBuffer.append(String.format("%s='%s'", fieldName, value));
       }
@@ -324,6 +375,46 @@ public class AuditManager {
   }
   
   
+  /*
+   * Composes the condition for a resourceId filter value. A plain value
+   * matches the resourceId exactly; a value ending in '*' matches
+   * resourceIds that begin with the rest of the value. Both can use an
+   * index on the resourceid column. A value that also begins with '*'
+   * matches resourceIds containing the rest of the value anywhere; this
+   * requires a scan of the audit table and should only be used when a
+   * prefix will not do.
+   */
+  private String composeResourceIdCondition(String value) {
+    String condition = null;
+    
+    if (value.length() > 1 && value.startsWith("*") && value.endsWith("*")) {
+      String substring = value.substring(1, value.length() - 1);
+      condition = String.format("resourceid LIKE '%%%s%%'", escapeLikePattern(substring));
+    }
+    else if (value.endsWith("*")) {
+      String prefix = value.substring(0, value.length() - 1);
+      condition = String.format("resourceid LIKE '%s%%'", escapeLikePattern(prefix));
+    }
+    else {
+      condition = String.format("resourceid='%s'", value.replace("'", "''"));
+    }
+    
+    return condition;
+  }
+  
+  
+  /*
+   * Escapes LIKE wildcard characters and quotes so that a value is matched
+   * literally within a LIKE pattern.
+   */
+  private String escapeLikePattern(String value) {
+    return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_")
+                .replace("'", "''");
+  }
+  
+  
 	private String composeWhereClause(Map<String, List<String>> queryParams, boolean orderBy) {
 		String whereClause = null;
 		String limit = null;
@@ -332,7 +423,7 @@ public class AuditManager {
 				" WHERE category IS NOT NULL");
 
 		for (String key : queryParams.keySet()) {
-			if (!key.equalsIgnoreCase("limit")) {
+			if (!key.equalsIgnoreCase("limit") && !key.equalsIgnoreCase("after")) {
 				stringBuffer.append(" AND ");
 				List<String> values = queryParams.get(key);
 
@@ -361,6 +452,15 @@ public class AuditManager {
 			}
 		}
 		
+		/*
+		 * Keyset pagination: only include records after the last oid seen
+		 * in the previous page.
+		 */
+		Integer afterOid = getAfterOid(queryParams);
+		if (afterOid != null) {
+			stringBuffer.append(String.format(" AND oid > %d", afterOid));
+		}
+		
 		/*
 		 * If orderBy is true, the audit records will be ordered by oid (identifier) value in
 		 * ascending order.
@@ -486,7 +586,8 @@ public class AuditManager {
   
   /**
    * Gets a list of audit log records from the audit table (named "eventlog")
-   * matching the provided criteria.
+   * matching the provided criteria. Intended for small result sets, such as
+   * a single audit record; use {@link #writeAuditRecords} for reports.
    * 
    * @param queryParams    a map of query parameters and the values they should be matched to
    * @return               an XML string of audit records
@@ -496,74 +597,126 @@ public class AuditManager {
    */
   public String getAuditRecords(Map<String, List<String>> queryParams)
            throws ClassNotFoundException, SQLException, IllegalArgumentException {
-	StringBuffer stringBuffer = new StringBuffer(AUDIT_OPENING_TAG);
     String xmlString = null;
    
     if (queryParams != null) { 
-      Connection connection = null;
+      StringWriter stringWriter = new StringWriter();
+      try {
+        writeAuditRecords(stringWriter, queryParams, false);
+      }
+      catch (IOException e) {
+        // Not expected when writing to a StringWriter
+        throw new IllegalStateException(e);
+      }
+      xmlString = stringWriter.toString();
+    }
+   
+    return xmlString;
+  }
+  
+  
+  /**
+   * Writes the audit log records from the audit table (named "eventlog")
+   * matching the provided criteria to a writer, either as an XML audit
+   * report or as CSV. Records are streamed from a database cursor in oid
+   * order as they are read, so memory use does not grow with the number of
+   * matching records. A client pages through a long report by passing the
+   * oid of the last record it received as the "after" query parameter,
+   * together with a "limit".
+   * 
+   * @param writer         the writer to which the audit records are written
+   * @param queryParams    a map of query parameters and the values they should be matched to
+   * @param csv            true to write CSV, false to write XML
+   * @return               the number of audit records written
+   * @throws ClassNotFoundException
+   * @throws SQLException
+   * @throws IOException
+   */
+  public int writeAuditRecords(Writer writer, Map<String, List<String>> queryParams, boolean csv)
+           throws ClassNotFoundException, SQLException, IOException {
+    int count = 0;
+    Connection connection = null;
      
-      String selectString = 
-        "SELECT oid, entrytime, service, category, servicemethod, entrytext," +
-        " resourceid, statuscode, userid, userAgent, groups, authsystem " +
-        "FROM " + AUDIT_MANAGER_TABLE_QUALIFIED;
-      boolean orderBy = true;
-      selectString += composeWhereClause(queryParams, orderBy);
-      logger.info("WHERE clause: " + selectString);
+    String selectString = 
+      "SELECT oid, entrytime, service, category, servicemethod, entrytext," +
+      " resourceid, statuscode, userid, userAgent, groups, authsystem " +
+      "FROM " + AUDIT_MANAGER_TABLE_QUALIFIED;
+    boolean orderBy = true;
+    selectString += composeWhereClause(queryParams, orderBy);
+    logger.info("WHERE clause: " + selectString);
       
-      Statement stmt = null;
+    Statement stmt = null;
+    
+    writer.write(csv ? AuditRecord.CSV_HEADER : AUDIT_OPENING_TAG);
      
-      try {
-        connection = getConnection();
-        stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(selectString);
+    try {
+      connection = getConnection();
+      connection.setAutoCommit(false);  // required for the PostgreSQL driver to use a cursor
+      stmt = connection.createStatement();
+      stmt.setFetchSize(FETCH_SIZE);
+      ResultSet rs = stmt.executeQuery(selectString);
        
-        while (rs.next()) {
-          int oid = rs.getInt(1);
-          java.sql.Timestamp sqlTimestamp = rs.getTimestamp(2);
-          String service = rs.getString(3);
-          String category = rs.getString(4);
-          String serviceMethod = rs.getString(5);
-          String entryText = rs.getString(6);
-          String resourceId = rs.getString(7);
-          int statusCode = rs.getInt(8);
-          String userId = rs.getString(9);
-          String userAgent = rs.getString(10);
-          String groups = rs.getString(11);
-          String authSystem = rs.getString(12);
-          AuditRecord auditRecord = new AuditRecord();
-          auditRecord.setOid(oid);
-          java.util.Date entryTime = new java.util.Date(sqlTimestamp.getTime());
-          auditRecord.setEntryTime(entryTime);
-          auditRecord.setService(service);
-          auditRecord.setCategory(category);
-          auditRecord.setServiceMethod(serviceMethod);
-          auditRecord.setEntryText(entryText);
-          auditRecord.setResourceId(resourceId);
-          auditRecord.setResponseStatus(new Integer(statusCode));
-          auditRecord.setUser(userId);
-          auditRecord.setUserAgent(userAgent);
-          auditRecord.setGroups(groups);
-          auditRecord.setAuthSystem(authSystem);
-          stringBuffer.append(auditRecord.toXML());
-        }
-      }
-      catch(ClassNotFoundException e) {
-        logger.error("ClassNotFoundException: " + e.getMessage());
-        throw(e);
-      }
-      catch(SQLException e) {
-        logger.error("SQLException: " + e.getMessage());
-        throw(e);
-      }
-      finally {
-        stringBuffer.append(AUDIT_CLOSING_TAG);
-        xmlString = stringBuffer.toString();
-        if (stmt != null) stmt.close();
-        returnConnection(connection);
+      while (rs.next()) {
+        AuditRecord auditRecord = toAuditRecord(rs);
+        writer.write(csv ? auditRecord.toCSV() : auditRecord.toXML());
+        count++;
       }
+      
+      connection.commit();
     }
+    catch(ClassNotFoundException e) {
+      logger.error("ClassNotFoundException: " + e.getMessage());
+      throw(e);
+    }
+    catch(SQLException e) {
+      logger.error("SQLException: " + e.getMessage());
+      throw(e);
+    }
+    finally {
+      if (stmt != null) stmt.close();
+      returnConnection(connection);
+    }
+    
+    if (!csv) {
+      writer.write(AUDIT_CLOSING_TAG);
+    }
+    writer.flush();
    
-    return xmlString;
+    return count;
+  }
+  
+  
+  /*
+   * Builds an AuditRecord from a row of the audit report query.
+   */
+  private AuditRecord toAuditRecord(ResultSet rs) throws SQLException {
+    int oid = rs.getInt(1);
+    java.sql.Timestamp sqlTimestamp = rs.getTimestamp(2);
+    String service = rs.getString(3);
+    String category = rs.getString(4);
+    String serviceMethod = rs.getString(5);
+    String entryText = rs.getString(6);
+    String resourceId = rs.getString(7);
+    int statusCode = rs.getInt(8);
+    String userId = rs.getString(9);
+    String userAgent = rs.getString(10);
+    String groups = rs.getString(11);
+    String authSystem = rs.getString(12);
+    AuditRecord auditRecord = new AuditRecord();
+    auditRecord.setOid(oid);
+    java.util.Date entryTime = new java.util.Date(sqlTimestamp.getTime());
+    auditRecord.setEntryTime(entryTime);
+    auditRecord.setService(service);
+    auditRecord.setCategory(category);
+    auditRecord.setServiceMethod(serviceMethod);
+    auditRecord.setEntryText(entryText);
+    auditRecord.setResourceId(resourceId);
+    auditRecord.setResponseStatus(new Integer(statusCode));
+    auditRecord.setUser(userId);
+    auditRecord.setUserAgent(userAgent);
+    auditRecord.setGroups(groups);
+    auditRecord.setAuthSystem(authSystem);
+    return auditRecord;
   }
  
 
@@ -648,77 +801,6 @@ public class AuditManager {
   }
  
 
-  /*
-   * Saves an XML list of audit records to the file system for subsequent
-   * processing.
-   */
-	private File saveXmlToFile(File tempFile, StringBuffer xmlBuffer) {
-		boolean append = true;
-
-		try {
-			FileWriter fileWriter = new FileWriter(tempFile, append);
-			writeToWriter(xmlBuffer, fileWriter, true);
-		}
-		catch (IOException e) {
-			logger.error("IOException:\n" + e.getMessage());
-			e.printStackTrace();
-		}
-
-		return tempFile;
-	}
-
-  
-  /**
-   *  Reads character data from the <code>StringBuffer</code> provided, and 
-   *  writes it to the <code>Writer</code> provided, using a buffered write. 
-   *
-   *  @param  buffer              <code>StringBuffer</code> whose contents are 
-   *                              to be written to the <code>Writer</code>
-   *
-   *  @param  writer              <code>java.io.Writer</code> where contents 
-   *                              of StringBuffer are to be written
-   *
-   *  @param  closeWhenFinished   <code>boolean</code> value to indicate 
-   *                              whether Reader should be closed when reading
-   *                              finished
-   *
-   *  @return                     <code>StringBuffer</code> containing  
-   *                              characters read from the <code>Reader</code>
-   *
-   *  @throws IOException if there are problems accessing or using the Writer.
-   */
-  public void writeToWriter(StringBuffer buffer, 
-                            Writer writer,
-                            boolean closeWhenFinished) 
-          throws IOException {
-    if (writer == null) {
-      throw new IOException("writeToWriter(): Writer is null");
-    }
-
-    char[] bufferChars = new char[buffer.length()];
-    buffer.getChars(0, buffer.length(), bufferChars, 0);
-
-    try {
-      writer.write(bufferChars);
-      writer.flush();
-    }
-    catch (IOException ioe) {
-      throw ioe;
-    }
-    finally {
-      if (closeWhenFinished) {
-        try {
-          if (writer != null)
-            writer.close();
-        }
-        catch (IOException ce) {
-          ce.printStackTrace();
-        }
-      }
-    }
-  }
-
-  
   /**
    * Returns a count of the number audit log records from the audit table (named "eventlog")
    * matching the provided criteria.
@@ -773,92 +855,86 @@ public class AuditManager {
  
 
   /**
-   * Gets a list of audit log records from the audit table (named "eventlog")
-   * matching the provided criteria.
-   * 
-   * @param queryParams    a map of query parameters and the values they should be matched to
-   * @return               an XML string of audit records
-   * @throws ClassNotFoundException
-   * @throws SQLException
-   * @throws IllegalArgumentException
+   * Adds the scope, identifier, revision, and entityid columns to an
+   * existing eventlog table, fills them in for existing rows by parsing the
+   * resourceid column, and then creates their indexes. Rows are updated in
+   * oid ranges of BACKFILL_BATCH_SIZE, each in its own transaction, so the
+   * upgrade can run against a live audit table and can be restarted if it
+   * is interrupted. New audit entries have these columns filled in when
+   * they are inserted.
    */
-  public File getAuditRecordsFile(Map<String, List<String>> queryParams)
-           throws ClassNotFoundException, SQLException, IllegalArgumentException {
-	final int STRING_BUFFER_SIZE = 100000;
-	Date now = new Date();
-	Long mili = now.getTime();
-	String auditFileName = String.format("%s/%s-%d.%s", this.tmpDir, "audit-records", mili, "xml");
-	File auditFile = new File(auditFileName);
-	StringBuffer stringBuffer = new StringBuffer(AUDIT_OPENING_TAG);
-   
-    if (queryParams != null) { 
-      Connection connection = null;
-     
-      String selectString = 
-        "SELECT oid, entrytime, service, category, servicemethod," +
-        " entrytext, resourceid, statuscode, userid, groups, authsystem " +
-        "FROM " + AUDIT_MANAGER_TABLE_QUALIFIED;
-        
-      boolean orderBy = true;
-      selectString += composeWhereClause(queryParams, orderBy);
-      logger.info("WHERE clause: " + selectString);
-      
-      Statement stmt = null;
-     
-      try {
-        connection = getConnection();
-        stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(selectString);
-       
-        while (rs.next()) {
-          int oid = rs.getInt(1);
-          java.sql.Timestamp sqlTimestamp = rs.getTimestamp(2);
-          String service = rs.getString(3);
-          String category = rs.getString(4);
-          String serviceMethod = rs.getString(5);
-          String entryText = rs.getString(6);
-          String resourceId = rs.getString(7);
-          int statusCode = rs.getInt(8);
-          String userId = rs.getString(9);
-          String groups = rs.getString(10);
-          String authSystem = rs.getString(11);
-          AuditRecord auditRecord = new AuditRecord();
-          auditRecord.setOid(oid);
-          java.util.Date entryTime = new java.util.Date(sqlTimestamp.getTime());
-          auditRecord.setEntryTime(entryTime);
-          auditRecord.setService(service);
-          auditRecord.setCategory(category);
-          auditRecord.setServiceMethod(serviceMethod);
-          auditRecord.setEntryText(entryText);
-          auditRecord.setResourceId(resourceId);
-          auditRecord.setResponseStatus(new Integer(statusCode));
-          auditRecord.setUser(userId);
-          auditRecord.setGroups(groups);
-          auditRecord.setAuthSystem(authSystem);
-          stringBuffer.append(auditRecord.toXML());
-          if (stringBuffer.toString().length() >= STRING_BUFFER_SIZE) {
-        	  saveXmlToFile(auditFile, stringBuffer);
-        	  stringBuffer = new StringBuffer("");
-          }
-        }
+  public void upgradeResourceIdColumns()
+           throws ClassNotFoundException, SQLException {
+    final int BACKFILL_BATCH_SIZE = 100000;
+    final String[] DDL_STRINGS = {
+      "ALTER TABLE " + AUDIT_MANAGER_TABLE_QUALIFIED + " ADD COLUMN IF NOT EXISTS scope VARCHAR(100)",
+      "ALTER TABLE " + AUDIT_MANAGER_TABLE_QUALIFIED + " ADD COLUMN IF NOT EXISTS identifier INT8",
+      "ALTER TABLE " + AUDIT_MANAGER_TABLE_QUALIFIED + " ADD COLUMN IF NOT EXISTS revision INT8",
+      "ALTER TABLE " + AUDIT_MANAGER_TABLE_QUALIFIED + " ADD COLUMN IF NOT EXISTS entityid VARCHAR(128)"
+    };
+    final String[] INDEX_STRINGS = {
+      "CREATE INDEX IF NOT EXISTS resourceid_pattern_idx ON " + AUDIT_MANAGER_TABLE_QUALIFIED + 
+      " ( resourceId varchar_pattern_ops )",
+      "CREATE INDEX IF NOT EXISTS packageid_idx ON " + AUDIT_MANAGER_TABLE_QUALIFIED + 
+      " ( scope, identifier, revision )",
+      "CREATE INDEX IF NOT EXISTS entityid_idx ON " + AUDIT_MANAGER_TABLE_QUALIFIED + 
+      " ( entityId )"
+    };
+    final String UPDATE_STRING = 
+      "UPDATE " + AUDIT_MANAGER_TABLE_QUALIFIED + " e SET " +
+      "scope=p.m[1], identifier=CAST(p.m[2] AS INT8), revision=CAST(p.m[3] AS INT8), " +
+      "entityid=CASE WHEN p.resourceid LIKE '%" + ResourceIdParts.DATA_RESOURCE_PATH + "%' THEN p.m[4] END " +
+      "FROM (SELECT oid, resourceid, regexp_match(resourceid, ?) AS m FROM " + AUDIT_MANAGER_TABLE_QUALIFIED + 
+      "      WHERE oid >= ? AND oid < ? AND scope IS NULL AND resourceid LIKE '%/eml/%') p " +
+      "WHERE e.oid=p.oid AND p.m IS NOT NULL";
+    Connection connection = null;
+    Statement stmt = null;
+    PreparedStatement pstmt = null;
+    
+    try {
+      connection = getConnection();
+      stmt = connection.createStatement();
+      for (String ddlString : DDL_STRINGS) {
+        stmt.executeUpdate(ddlString);
       }
-      catch(ClassNotFoundException e) {
-        logger.error("ClassNotFoundException: " + e.getMessage());
-        throw(e);
+      
+      long minOid = 0L;
+      long maxOid = -1L;
+      ResultSet rs = stmt.executeQuery("SELECT MIN(oid), MAX(oid) FROM " + AUDIT_MANAGER_TABLE_QUALIFIED);
+      if (rs.next() && rs.getObject(1) != null) {
+        minOid = rs.getLong(1);
+        maxOid = rs.getLong(2);
       }
-      catch(SQLException e) {
-        logger.error("SQLException: " + e.getMessage());
-        throw(e);
+      rs.close();
+      
+      pstmt = connection.prepareStatement(UPDATE_STRING);
+      pstmt.setString(1, ResourceIdParts.RESOURCE_ID_REGEX);
+      long updateCount = 0L;
+      for (long lower = minOid; lower <= maxOid; lower += BACKFILL_BATCH_SIZE) {
+        pstmt.setLong(2, lower);
+        pstmt.setLong(3, lower + BACKFILL_BATCH_SIZE);
+        updateCount += pstmt.executeUpdate();
+        logger.info(String.format("Backfilled resourceId columns through oid %d (%d rows updated)", 
+                                  lower + BACKFILL_BATCH_SIZE - 1, updateCount));
       }
-      finally {
-        stringBuffer.append(AUDIT_CLOSING_TAG);
-  	    saveXmlToFile(auditFile, stringBuffer);
-        if (stmt != null) stmt.close();
-        returnConnection(connection);
+      
+      for (String indexString : INDEX_STRINGS) {
+        stmt.executeUpdate(indexString);
       }
     }
-   
-    return auditFile;
+    catch(ClassNotFoundException e) {
+      logger.error("ClassNotFoundException: " + e.getMessage());
+      throw(e);
+    }
+    catch(SQLException e) {
+      logger.error("SQLException: " + e.getMessage());
+      throw(e);
+    }
+    finally {
+      if (pstmt != null) pstmt.close();
+      if (stmt != null) stmt.close();
+      returnConnection(connection);
+    }
   }
  
 
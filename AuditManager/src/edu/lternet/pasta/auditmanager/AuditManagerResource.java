@@ -24,7 +24,12 @@
 
 package edu.lternet.pasta.auditmanager;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -46,12 +51,12 @@ import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.core.Response.ResponseBuilder;
 
 import com.sun.jersey.api.client.ClientResponse.Status;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import edu.lternet.pasta.common.MethodNameUtility;
@@ -132,14 +137,24 @@ public class AuditManagerResource extends PastaWebService
     // Query parameter for resourceId
     public static final String RESOURCE_ID = "resourceId";
     
+    // Query parameters for the parts of a resourceId
+    public static final String SCOPE = "scope";
+    public static final String IDENTIFIER = "identifier";
+    public static final String REVISION = "revision";
+    public static final String ENTITY_ID = "entityId";
+    
     //Query parameter for record limit
     public static final String LIMIT = "limit";
     
+    //Query parameter for the oid of the last record in the previous page
+    public static final String AFTER = "after";
+    
     private static Logger logger = Logger.getLogger(AuditManagerResource.class);
     // Set of valid query parameters
     public static final Set<String> VALID_QUERY_KEYS;
     public static final Set<String> VALID_RECENT_UPLOADS_KEYS;
     private static final String SERVICE_OWNER = "pasta";
+    private static final String TEXT_CSV = "text/csv";
 
     static {
         Set<String> set = new TreeSet<String>();
@@ -154,7 +169,12 @@ public class AuditManagerResource extends PastaWebService
         set.add(AUTHSYSTEM);
         set.add(STATUS_CODE);
         set.add(RESOURCE_ID);
+        set.add(SCOPE);
+        set.add(IDENTIFIER);
+        set.add(REVISION);
+        set.add(ENTITY_ID);
         set.add(LIMIT);
+        set.add(AFTER);
         VALID_QUERY_KEYS = Collections.unmodifiableSet(set);
     }
     
@@ -479,7 +499,24 @@ public class AuditManagerResource extends PastaWebService
      *   </tr>
      *   <tr>
      *     <td>resourceId</td>
-     *     <td>A PASTA resource identifier, e.g. https://pasta.lternet.edu/package/eml/knb-lter-and/2719/6, or a substring thereof (see below)</td>
+     *     <td>A PASTA resource identifier, e.g. https://pasta.lternet.edu/package/eml/knb-lter-and/2719/6, or a prefix or substring thereof (see below)</td>
+     *   </tr>
+     *   <tr>
+     *     <td>scope</td>
+     *     <td>A data package scope, e.g. knb-lter-and</td>
+     *   </tr>
+     *   <tr>
+     *     <td>identifier</td>
+     *     <td>A data package identifier, e.g. 2719</td>
+     *   </tr>
+     *   <tr>
+     *     <td>revision</td>
+     *     <td>A data package revision, e.g. 6</td>
+     *   </tr>
+     *   <tr>
+     *     <td>entityId</td>
+     *     <td>A data entity identifier</td>
+     *   </tr>
      *   <tr>
      *     <td>fromTime</td>
      *     <td>An ISO8601 timestamp</td>
@@ -492,6 +529,10 @@ public class AuditManagerResource extends PastaWebService
      *     <td>limit</td>
      *     <td>A positive whole number</td>
      *   </tr>
+     *   <tr>
+     *     <td>after</td>
+     *     <td>An audit record oid</td>
+     *   </tr>
      * </table>
      * <br/>
      * The query parameters <code>fromTime</code> and optionally
@@ -503,15 +544,31 @@ public class AuditManagerResource extends PastaWebService
      * The query parameter <code>limit</code> sets an upper limit on the number
      * of audit records returned. For example, "limit=1000".
      * <br/>
+     * Audit records are returned in ascending order of their oid values. The
+     * query parameter <code>after</code> restricts the report to audit records
+     * whose oid is greater than the specified value, so a large report can be
+     * read one page at a time by passing the oid of the last record of the
+     * previous page, e.g. "limit=10000&amp;after=4711".
+     * <br/>
      * The query parameter <code>resourceId</code> will match any audit log entry whose resourceId 
-     * value contains the specified string value. Thus, a query parameter of "resourceId=knb-lter-and" 
-     * will match any audit log entry whose resourceId value contains the substring "knb-lter-and",
-     * while a query parameter of "resourceId=knb-lter-and/2719/6" will match any audit log entry
-     * whose resourceId value contains the substring "knb-lter-and/2719/6". 
+     * value is equal to the specified string value. A value ending in '*' matches by prefix: 
+     * "resourceId=https://pasta.lternet.edu/package/data/eml/knb-lter-and/2719/6/*" will match
+     * the audit log entries of all data entities of knb-lter-and.2719.6. A value that both begins
+     * and ends with '*' matches by substring, e.g. "resourceId=*knb-lter-and/2719*"; substring
+     * matches cannot use an index and are slow on a large audit log.
+     * <br/>
+     * The query parameters <code>scope</code>, <code>identifier</code>, <code>revision</code>,
+     * and <code>entityId</code> match the parts of the resourceId of an audit log entry exactly,
+     * e.g. "scope=knb-lter-and&amp;identifier=2719" matches the audit log entries of all
+     * resources of all revisions of knb-lter-and.2719. These are the preferred way to select
+     * the audit log entries of a data package. 
      *
      * <h4>Responses:</h4>
      *
-     * <p>If the request is successful, the response will contain XML text.</p>
+     * <p>If the request is successful, the response will contain XML text,
+     * or CSV text if the request includes an HTTP Accept header with value
+     * 'text/csv'. The report is streamed as audit records are read from the
+     * database.</p>
      *
      * <table border="1" cellspacing="0" cellpadding="3">
      *   <tr>
@@ -523,12 +580,12 @@ public class AuditManagerResource extends PastaWebService
      *   <tr>
      *     <td>200 OK</td>
      *     <td>If the request was successful.</td>
-     *     <td>The specified subscription's attributes.</td>
-     *     <td><code>application/xml</code></td>
+     *     <td>The audit report.</td>
+     *     <td><code>application/xml</code> or <code>text/csv</code></td>
      *   </tr>
      *   <tr>
      *     <td>400 Bad Request</td>
-     *     <td>If the specified identification number cannot be parsed as an integer.</td>
+     *     <td>If a query parameter, such as <code>after</code>, has an invalid value.</td>
      *     <td>An error message.</td>
      *     <td><code>text/plain</code></td>
      *   </tr>
@@ -550,36 +607,58 @@ public class AuditManagerResource extends PastaWebService
                                     @Context UriInfo uriInfo) {
 		ResponseBuilder responseBuilder = null;
 		Response response = null;
+		boolean produceCSV = false;
+
+		/*
+		 * Determine whether to produce a CSV representation
+		 */
+		List<MediaType> mediaTypes = headers.getAcceptableMediaTypes();
+		for (MediaType mediaType : mediaTypes) {
+			String mediaTypeStr = mediaType.toString();
+			if (mediaTypeStr.equals(TEXT_CSV)) {
+				produceCSV = true;
+			}
+		}
 
 		try {
             Properties properties = ConfigurationListener.getProperties();
             assertAuthorizedToRead(headers, MethodNameUtility.methodName());
-            AuditManager auditManager = new AuditManager(properties);
+            final AuditManager auditManager = new AuditManager(properties);
             QueryString queryString = new QueryString(uriInfo);
             queryString.checkForIllegalKeys(VALID_QUERY_KEYS);
-            Map<String, List<String>> queryParams = queryString.getParams();
-            File xmlFile = auditManager.getAuditRecordsFile(queryParams);
-			if (xmlFile != null && xmlFile.exists()) {
-				Long size = FileUtils.sizeOf(xmlFile);
-				responseBuilder = Response.ok(xmlFile, MediaType.APPLICATION_XML);
-				responseBuilder.header("Content-Length", size.toString());
-				response = responseBuilder.build();
-				String logMessage = String.format("getAuditRecords service method finished processing: returning %d bytes", size);
-				logger.warn(logMessage);
-			}
-			else {
-				ResourceNotFoundException e = new ResourceNotFoundException(
-				    String.format("Unable to process audit query with query parameters: %s", queryParams));
-				throw (e);
-			}
+            final Map<String, List<String>> queryParams = queryString.getParams();
+            AuditManager.getAfterOid(queryParams);  // reject a bad value before streaming starts
+
+            /*
+             * The audit records are written to the response as they are read
+             * from the database, rather than being assembled in memory.
+             */
+            final boolean produceCSVFinal = produceCSV;
+            StreamingOutput streamingOutput = new StreamingOutput() {
+                public void write(OutputStream outputStream) throws IOException {
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+                    try {
+                        int count = auditManager.writeAuditRecords(writer, queryParams, produceCSVFinal);
+                        String logMessage = String.format("getAuditRecords service method finished processing: returned %d records", count);
+                        logger.warn(logMessage);
+                    }
+                    catch (IOException e) {
+                        throw e;
+                    }
+                    catch (Exception e) {
+                        logger.error("Error writing audit report: " + e.getMessage());
+                        throw new IOException(e);
+                    }
+                }
+            };
+            String mediaType = produceCSV ? TEXT_CSV : MediaType.APPLICATION_XML;
+            responseBuilder = Response.ok(streamingOutput, mediaType);
+            response = responseBuilder.build();
             return response;
         }
         catch (ClassNotFoundException e) {
           return WebExceptionFactory.make(Status.INTERNAL_SERVER_ERROR, e, e.getMessage()).getResponse();
         }
-		catch (ResourceNotFoundException e) {
-		  return WebExceptionFactory.makeNotFound(e).getResponse();
-		}
         catch (SQLException e) {
           return WebExceptionFactory.make(Status.INTERNAL_SERVER_ERROR, e, e.getMessage()).getResponse();
         }
@@ -636,7 +715,23 @@ public class AuditManagerResource extends PastaWebService
      *   </tr>
      *   <tr>
      *     <td>resourceId</td>
-     *     <td>A PASTA resource identifier, e.g. https://pasta.lternet.edu/package/eml/knb-lter-and/2719/6, or a substring thereof (see below)</td>
+     *     <td>A PASTA resource identifier, e.g. https://pasta.lternet.edu/package/eml/knb-lter-and/2719/6, or a prefix or substring thereof (see below)</td>
+     *   </tr>
+     *   <tr>
+     *     <td>scope</td>
+     *     <td>A data package scope, e.g. knb-lter-and</td>
+     *   </tr>
+     *   <tr>
+     *     <td>identifier</td>
+     *     <td>A data package identifier, e.g. 2719</td>
+     *   </tr>
+     *   <tr>
+     *     <td>revision</td>
+     *     <td>A data package revision, e.g. 6</td>
+     *   </tr>
+     *   <tr>
+     *     <td>entityId</td>
+     *     <td>A data entity identifier</td>
      *   </tr>
      *   <tr>
      *     <td>fromTime</td>
@@ -650,6 +745,10 @@ public class AuditManagerResource extends PastaWebService
      *     <td>limit</td>
      *     <td>A positive whole number</td>
      *   </tr>
+     *   <tr>
+     *     <td>after</td>
+     *     <td>An audit record oid</td>
+     *   </tr>
      * </table>
      * <br/>
      * The query parameters <code>fromTime</code> and optionally
@@ -661,11 +760,22 @@ public class AuditManagerResource extends PastaWebService
      * The query parameter <code>limit</code> sets an upper limit on the number
      * of audit records returned. For example, "limit=1000".
      * <br/>
+     * The query parameter <code>after</code> restricts the count to audit
+     * records whose oid is greater than the specified value, e.g. to count the
+     * records remaining after a page of the audit report.
+     * <br/>
      * The query parameter <code>resourceId</code> will match any audit log entry whose resourceId 
-     * value contains the specified string value. Thus, a query parameter of "resourceId=knb-lter-and" 
-     * will match any audit log entry whose resourceId value contains the substring "knb-lter-and",
-     * while a query parameter of "resourceId=knb-lter-and/2719/6" will match any audit log entry
-     * whose resourceId value contains the substring "knb-lter-and/2719/6". 
+     * value is equal to the specified string value. A value ending in '*' matches by prefix: 
+     * "resourceId=https://pasta.lternet.edu/package/data/eml/knb-lter-and/2719/6/*" will match
+     * the audit log entries of all data entities of knb-lter-and.2719.6. A value that both begins
+     * and ends with '*' matches by substring, e.g. "resourceId=*knb-lter-and/2719*"; substring
+     * matches cannot use an index and are slow on a large audit log.
+     * <br/>
+     * The query parameters <code>scope</code>, <code>identifier</code>, <code>revision</code>,
+     * and <code>entityId</code> match the parts of the resourceId of an audit log entry exactly,
+     * e.g. "scope=knb-lter-and&amp;identifier=2719" matches the audit log entries of all
+     * resources of all revisions of knb-lter-and.2719. These are the preferred way to select
+     * the audit log entries of a data package. 
      *
      * <h4>Responses:</h4>
      *
@@ -26,6 +26,13 @@ package edu.lternet.pasta.auditmanager;
 
 import java.io.File;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContextEvent;
+
+import org.apache.log4j.Logger;
 
 import edu.lternet.pasta.common.PastaConfigListener;
 
@@ -38,6 +45,11 @@ public class ConfigurationListener extends PastaConfigListener {
     private static String webServiceVersion;
     private static File apiDocument;
     private static String tmpDir;
+    
+    // Default interval, in seconds, between flushes of in-memory read counts
+    private static final int DEFAULT_READS_FLUSH_SECONDS = 60;
+    private static ScheduledExecutorService readsFlushExecutor = null;
+    private static final Logger logger = Logger.getLogger(ConfigurationListener.class);
     private static File tutorialDocument;
     private static File welcomePage;
     private static File demoDirectory;
@@ -119,6 +131,78 @@ public class ConfigurationListener extends PastaConfigListener {
     }
 
     
+    /**
+     * Initializes the configuration, then brings the resource_reads table
+     * up to date with the eventlog and starts the periodic flush of
+     * in-memory read counts.
+     */
+    @Override
+    public void contextInitialized(ServletContextEvent servletContextEvent) {
+        super.contextInitialized(servletContextEvent);
+        startReadsFlush();
+    }
+
+
+    /**
+     * Stops the periodic flush of read counts and flushes any reads that
+     * are still pending.
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent servletContextEvent) {
+        if (readsFlushExecutor != null) {
+            readsFlushExecutor.shutdown();
+            try {
+                readsFlushExecutor.awaitTermination(60, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            readsFlushExecutor = null;
+        }
+        
+        try {
+            new ReadsManager(properties).flushReadCounts();
+        }
+        catch (Exception e) {
+            logger.error("Error flushing read counts at shutdown: " + e.getMessage());
+        }
+        
+        super.contextDestroyed(servletContextEvent);
+    }
+    
+    
+    private void startReadsFlush() {
+        int flushSeconds = DEFAULT_READS_FLUSH_SECONDS;
+        String flushSecondsStr = properties.getProperty("auditmanager.reads.flushSeconds");
+        if (flushSecondsStr != null && !flushSecondsStr.isEmpty()) {
+            flushSeconds = Integer.parseInt(flushSecondsStr.trim());
+        }
+        
+        /*
+         * Recover any reads that were recorded in the eventlog but not
+         * flushed before the last shutdown.
+         */
+        try {
+            new ReadsManager(properties).updateResourceReads();
+        }
+        catch (Exception e) {
+            logger.error("Error updating resource reads from the eventlog: " + e.getMessage());
+        }
+        
+        readsFlushExecutor = Executors.newSingleThreadScheduledExecutor();
+        readsFlushExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    new ReadsManager(properties).flushReadCounts();
+                }
+                catch (Exception e) {
+                    logger.error("Error flushing read counts: " + e.getMessage());
+                }
+            }
+        }, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    
     @Override
     public void setContextSpecificProperties() {
         setPastaServiceAcr();       
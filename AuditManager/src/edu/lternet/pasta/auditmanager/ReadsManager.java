@@ -32,10 +32,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 import org.apache.log4j.Logger;
 
@@ -62,6 +63,57 @@ public class ReadsManager {
   public static final String READS_OPENING_TAG = "<resourceReads>\n"; 
   public static final String READS_CLOSING_TAG = "</resourceReads>\n";
   private static Logger logger = Logger.getLogger(ReadsManager.class);
+  
+  // The service methods whose successful completion counts as a resource read
+  private static final String READ_SERVICE_METHODS =
+      "('readDataEntity', 'readDataPackage', 'readDataPackageArchive', " +
+      "'readDataPackageReport', 'readMetadata')";
+  
+  // Number of eventlog oids aggregated per transaction by updateResourceReads()
+  private static final long REBUILD_BATCH_SIZE = 1000000L;
+  
+  /*
+   * Reads registered since the last flush, keyed by resource_id. Audit
+   * entries add to these counters in memory; flushReadCounts() writes them
+   * to the resource_reads table in a single batched upsert.
+   */
+  private static final ConcurrentHashMap<String, ReadCount> pendingReads = 
+      new ConcurrentHashMap<String, ReadCount>();
+  
+  
+  /*
+   * The pending read counts of a single resource. Once a counter has been
+   * taken for flushing it is marked as flushed and accepts no further
+   * reads; a registering thread that finds a flushed counter replaces it
+   * with a new one, so no read is lost between the flush reading the
+   * counts and removing the counter.
+   */
+  private static class ReadCount {
+      private final ResourceType resourceType;
+      private final ResourceIdParts resourceIdParts;
+      private long totalReads = 0L;
+      private long nonRobotReads = 0L;
+      private long maxOid = 0L;
+      private boolean flushed = false;
+      
+      ReadCount(ResourceType resourceType, ResourceIdParts resourceIdParts) {
+          this.resourceType = resourceType;
+          this.resourceIdParts = resourceIdParts;
+      }
+      
+      synchronized boolean add(long totalReads, long nonRobotReads, long oid) {
+          if (flushed) return false;
+          this.totalReads += totalReads;
+          this.nonRobotReads += nonRobotReads;
+          this.maxOid = Math.max(this.maxOid, oid);
+          return true;
+      }
+      
+      synchronized void markFlushed() {
+          flushed = true;
+      }
+  }
+
  
   
   /*
@@ -78,9 +130,14 @@ readDataEntity' OR " +
        Properties properties = ConfigurationListener.getProperties();
        ReadsManager readsManager = new ReadsManager(properties);
        
-       // First, drop all rows in the table
-       readsManager.deleteAllRows();
-       readsManager.initializeResourceReads();
+       if (args.length > 0 && args[0].equals("incremental")) {
+           readsManager.updateResourceReads();
+       }
+       else {
+           // First, drop all rows in the table
+           readsManager.deleteAllRows();
+           readsManager.initializeResourceReads();
+       }
    }
 
    
@@ -92,6 +149,7 @@ readDataEntity' OR " +
   private final String READS_MANAGER_SCHEMA = "auditmanager";
   private final String READS_MANAGER_TABLE = "RESOURCE_READS";
   private final String READS_MANAGER_TABLE_QUALIFIED = READS_MANAGER_SCHEMA + "." + READS_MANAGER_TABLE;
+  private final String READS_FLUSH_TABLE_QUALIFIED = READS_MANAGER_SCHEMA + ".RESOURCE_READS_FLUSH";
 
   private String dbDriver;           // database driver
   private String dbURL;              // database URL
@@ -137,49 +195,6 @@ readDataEntity' OR " +
    * Instance methods
    */
   
-    /*
-     * Parses a resourceId value to derive its scope, identifier, and revision values.
-     * The derived values are returned as a list of three strings, or null if the
-     * resourceId value did not match any of the expected patterns.
-     */
-    private ArrayList<String> derivePackageIdParts(String resourceId) {
-        ArrayList<String> packageIdParts = null;
-
-        if (resourceId != null && resourceId.contains("/eml/")) {
-            // Try to match resources other than data resources
-            final String patternString = "^.*/eml/(\\S+)/(\\d+)/(\\d+)";
-            Pattern pattern = Pattern.compile(patternString);
-            Matcher matcher = pattern.matcher(resourceId);
-            if (matcher.matches()) {
-                packageIdParts = new ArrayList<String>();
-                String scope = matcher.group(1);
-                String identifier = matcher.group(2);
-                String revision = matcher.group(3);
-                packageIdParts.add(scope);
-                packageIdParts.add(identifier);
-                packageIdParts.add(revision);
-            }
-            else {
-                // Try to match data resources
-                final String dataPatternString = "^.*/eml/(\\S+)/(\\d+)/(\\d+)/.+";
-                Pattern dataResourcePattern = Pattern.compile(dataPatternString);
-                Matcher dataResourceMatcher = dataResourcePattern.matcher(resourceId);
-                if (dataResourceMatcher.matches()) {
-                    packageIdParts = new ArrayList<String>();
-                    String scope = dataResourceMatcher.group(1);
-                    String identifier = dataResourceMatcher.group(2);
-                    String revision = dataResourceMatcher.group(3);
-                    packageIdParts.add(scope);
-                    packageIdParts.add(identifier);
-                    packageIdParts.add(revision);
-                }
-            }
-        }
-
-        return packageIdParts;
-    }
-    
-   
   /*
    * Drop all records from the resource_reads table prior to re-initializing it.
    */
@@ -212,7 +227,7 @@ readDataEntity' OR " +
   }
   
   
-  public ResourceType resourceTypeFromServiceMethod(String serviceMethod) {
+  public static ResourceType resourceTypeFromServiceMethod(String serviceMethod) {
       ResourceType resourceType = null;
 
       switch (serviceMethod) {
@@ -238,34 +253,332 @@ readDataEntity' OR " +
 
   
     /**
-     * Register a resource read. It will involve either incrementing an existing resource record
-     * or adding a new one.
+     * Register a resource read. The read is added to an in-memory counter
+     * for the resource; counters are written to the resource_reads table by
+     * flushReadCounts().
      * 
      * @param    resourceId  the resource identifier
      * @param    resourceType  the resource type
      * @param    isNonRobotRead  true if this read was not from a robot, else false
+     * @param    oid  the oid of the audit entry recording the read
      */
-    public void registerResourceRead(String resourceId, ResourceType resourceType, boolean isNonRobotRead)
-            throws ClassNotFoundException, SQLException {
-        ArrayList<String> packageIdParts = derivePackageIdParts(resourceId);
-
-        if (packageIdParts != null) {
-            String scope = packageIdParts.get(0);
-            Integer identifier = Integer.parseInt(packageIdParts.get(1));
-            Integer revision = Integer.parseInt(packageIdParts.get(2));
+    public static void registerResourceRead(String resourceId, ResourceType resourceType, 
+                                            boolean isNonRobotRead, long oid) {
+        ResourceIdParts resourceIdParts = ResourceIdParts.parse(resourceId);
 
-            if (hasResource(resourceId)) {
-                incrementResourceRecord(resourceId, isNonRobotRead);
-            } 
-            else {
-                addResourceRecord(resourceId, resourceType, scope, identifier, revision, isNonRobotRead);
+        if (resourceIdParts != null) {
+            addPendingReads(resourceId, resourceType, resourceIdParts, 
+                            1L, isNonRobotRead ? 1L : 0L, oid);
+        }
+    }
+    
+    
+    /*
+     * Adds read counts to the pending counter for a resource, replacing
+     * the counter if it has already been taken by a flush.
+     */
+    private static void addPendingReads(String resourceId, ResourceType resourceType, 
+                                        ResourceIdParts resourceIdParts,
+                                        long totalReads, long nonRobotReads, long oid) {
+        while (true) {
+            ReadCount readCount = pendingReads.get(resourceId);
+            if (readCount == null) {
+                ReadCount newReadCount = new ReadCount(resourceType, resourceIdParts);
+                readCount = pendingReads.putIfAbsent(resourceId, newReadCount);
+                if (readCount == null) readCount = newReadCount;
+            }
+            if (readCount.add(totalReads, nonRobotReads, oid)) {
+                return;
+            }
+            pendingReads.remove(resourceId, readCount);
+        }
+    }
+    
+    
+    /**
+     * Writes the pending in-memory read counts to the resource_reads table
+     * as a single batched upsert, and records the highest audit entry oid
+     * included in the flush. If the write fails, the counts are returned to
+     * the pending counters to be retried by the next flush.
+     * 
+     * @return the number of resources whose read counts were written
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    public int flushReadCounts() 
+            throws ClassNotFoundException, SQLException {
+        HashMap<String, ReadCount> batch = new HashMap<String, ReadCount>();
+        long flushOid = 0L;
+        
+        for (String resourceId : pendingReads.keySet()) {
+            ReadCount readCount = pendingReads.remove(resourceId);
+            if (readCount != null) {
+                readCount.markFlushed();
+                batch.put(resourceId, readCount);
+                flushOid = Math.max(flushOid, readCount.maxOid);
+            }
+        }
+        
+        if (batch.isEmpty()) return 0;
+        
+        Connection connection = null;
+        
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+            upsertReadCounts(connection, batch);
+            setLastFlushedOid(connection, flushOid);
+            connection.commit();
+            logger.debug(String.format("Flushed read counts of %d resources through oid %d", 
+                                       batch.size(), flushOid));
+        }
+        catch (SQLException e) {
+            logger.error("Error flushing read counts; they will be retried: " + e.getMessage());
+            if (connection != null) connection.rollback();
+            for (Map.Entry<String, ReadCount> entry : batch.entrySet()) {
+                ReadCount readCount = entry.getValue();
+                addPendingReads(entry.getKey(), readCount.resourceType, readCount.resourceIdParts,
+                                readCount.totalReads, readCount.nonRobotReads, readCount.maxOid);
+            }
+            throw(e);
+        }
+        finally {
+            returnConnection(connection);
+        }
+        
+        return batch.size();
+    }
+    
+    
+    /*
+     * Adds a batch of read counts to the resource_reads table, inserting a
+     * row for any resource that does not yet have one.
+     */
+    private void upsertReadCounts(Connection connection, Map<String, ReadCount> batch) 
+            throws SQLException {
+        String upsertString = 
+            "INSERT INTO " + READS_MANAGER_TABLE_QUALIFIED + " AS r " +
+            "(resource_id, resource_type, scope, identifier, revision, total_reads, non_robot_reads) " +
+            "VALUES(?,?,?,?,?,?,?) " +
+            "ON CONFLICT (resource_id) DO UPDATE SET " +
+            "total_reads = r.total_reads + EXCLUDED.total_reads, " +
+            "non_robot_reads = r.non_robot_reads + EXCLUDED.non_robot_reads";
+        PreparedStatement pstmt = connection.prepareStatement(upsertString);
+        
+        try {
+            for (Map.Entry<String, ReadCount> entry : batch.entrySet()) {
+                ReadCount readCount = entry.getValue();
+                pstmt.setString(1, entry.getKey());
+                pstmt.setObject(2, readCount.resourceType, java.sql.Types.OTHER);
+                pstmt.setString(3, readCount.resourceIdParts.getScope());
+                pstmt.setInt(4, readCount.resourceIdParts.getIdentifier());
+                pstmt.setInt(5, readCount.resourceIdParts.getRevision());
+                pstmt.setLong(6, readCount.totalReads);
+                pstmt.setLong(7, readCount.nonRobotReads);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+        finally {
+            pstmt.close();
+        }
+    }
+    
+    
+    /*
+     * Creates the table recording the last flushed oid, if it does not
+     * already exist.
+     */
+    private void createFlushTable(Connection connection) throws SQLException {
+        Statement stmt = connection.createStatement();
+        
+        try {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + READS_FLUSH_TABLE_QUALIFIED + 
+                               " (last_oid INT8 NOT NULL)");
+        }
+        finally {
+            stmt.close();
+        }
+    }
+    
+    
+    /*
+     * Returns the oid of the last audit entry whose read has been written
+     * to the resource_reads table, or null if none has been recorded.
+     */
+    private Long getLastFlushedOid(Connection connection) throws SQLException {
+        Long lastOid = null;
+        Statement stmt = connection.createStatement();
+        
+        try {
+            ResultSet rs = stmt.executeQuery("SELECT last_oid FROM " + READS_FLUSH_TABLE_QUALIFIED);
+            if (rs.next()) {
+                lastOid = rs.getLong(1);
             }
         }
+        finally {
+            stmt.close();
+        }
+        
+        return lastOid;
+    }
+    
+    
+    /*
+     * Records the oid of the last audit entry whose read has been written
+     * to the resource_reads table. The recorded value never decreases
+     * unless reset is true.
+     */
+    private void setLastFlushedOid(Connection connection, long oid, boolean reset) 
+            throws SQLException {
+        String updateString = reset ?
+            "UPDATE " + READS_FLUSH_TABLE_QUALIFIED + " SET last_oid=?" :
+            "UPDATE " + READS_FLUSH_TABLE_QUALIFIED + " SET last_oid=GREATEST(last_oid, ?)";
+        PreparedStatement pstmt = connection.prepareStatement(updateString);
+        
+        try {
+            pstmt.setLong(1, oid);
+            if (pstmt.executeUpdate() == 0) {
+                PreparedStatement insertStmt = connection.prepareStatement(
+                    "INSERT INTO " + READS_FLUSH_TABLE_QUALIFIED + " (last_oid) VALUES(?)");
+                insertStmt.setLong(1, oid);
+                insertStmt.executeUpdate();
+                insertStmt.close();
+            }
+        }
+        finally {
+            pstmt.close();
+        }
+    }
+    
+    
+    private void setLastFlushedOid(Connection connection, long oid) throws SQLException {
+        setLastFlushedOid(connection, oid, false);
+    }
+    
+    
+    /**
+     * Incrementally rebuilds the resource_reads table by aggregating the
+     * resource reads of all eventlog rows newer than the last flushed oid.
+     * This recovers reads that were counted in memory but not flushed,
+     * e.g. after an unclean shutdown, and is run when the Audit Manager
+     * starts, before any new reads are registered. It should not be run
+     * while the Audit Manager is accepting audit entries, since reads
+     * pending in memory would then be counted twice.
+     * 
+     * If no last flushed oid has been recorded, as when the flush table has
+     * just been created on an existing database, the resource_reads table
+     * is assumed to be current and the newest eventlog oid is recorded.
+     * Use initializeResourceReads() to rebuild the table from the eventlog.
+     * 
+     * @return the number of eventlog reads that were added
+     * @throws ClassNotFoundException
+     * @throws SQLException
+     */
+    public long updateResourceReads() 
+            throws ClassNotFoundException, SQLException {
+        Connection connection = null;
+        Statement stmt = null;
+        long readCount = 0L;
+        
+        try {
+            connection = getConnection();
+            createFlushTable(connection);
+            stmt = connection.createStatement();
+            
+            long maxOid = 0L;
+            ResultSet rs = stmt.executeQuery("SELECT MAX(oid) FROM auditmanager.eventlog");
+            if (rs.next()) maxOid = rs.getLong(1);
+            rs.close();
+            
+            Long lastOid = getLastFlushedOid(connection);
+            if (lastOid == null) {
+                setLastFlushedOid(connection, maxOid);
+                logger.info(String.format("Recorded eventlog oid %d as the last flushed oid", maxOid));
+                return 0L;
+            }
+            
+            connection.setAutoCommit(false);
+            for (long lower = lastOid; lower < maxOid; lower += REBUILD_BATCH_SIZE) {
+                long upper = Math.min(lower + REBUILD_BATCH_SIZE, maxOid);
+                readCount += aggregateResourceReads(connection, lower, upper);
+                setLastFlushedOid(connection, upper);
+                connection.commit();
+            }
+            
+            logger.info(String.format("Added %d eventlog reads through oid %d to resource_reads", 
+                                      readCount, maxOid));
+        }
+        catch(ClassNotFoundException e) {
+            logger.error("ClassNotFoundException: " + e.getMessage());
+            throw(e);
+        }
+        catch(SQLException e) {
+            logger.error("SQLException: " + e.getMessage());
+            if (connection != null && !connection.getAutoCommit()) connection.rollback();
+            throw(e);
+        }
+        finally {
+            if (stmt != null) stmt.close();
+            returnConnection(connection);
+        }
+        
+        return readCount;
+    }
+    
+    
+    /*
+     * Aggregates the resource reads of eventlog rows with lower < oid <= upper
+     * and adds them to the resource_reads table.
+     */
+    private long aggregateResourceReads(Connection connection, long lower, long upper) 
+            throws SQLException {
+        HashMap<String, ReadCount> batch = new HashMap<String, ReadCount>();
+        long readCount = 0L;
+        String selectString =
+            "SELECT resourceid, servicemethod, COUNT(*), " +
+            "COUNT(*) FILTER (WHERE userid IS NULL OR userid NOT LIKE 'robot:%') " +
+            "FROM auditmanager.eventlog " +
+            "WHERE oid > ? AND oid <= ? AND statuscode=200 " +
+            "AND servicemethod IN " + READ_SERVICE_METHODS + " " +
+            "GROUP BY resourceid, servicemethod";
+        PreparedStatement pstmt = connection.prepareStatement(selectString);
+        
+        try {
+            pstmt.setLong(1, lower);
+            pstmt.setLong(2, upper);
+            ResultSet rs = pstmt.executeQuery();
+            
+            while (rs.next()) {
+                String resourceId = rs.getString(1);
+                ResourceType resourceType = resourceTypeFromServiceMethod(rs.getString(2));
+                ResourceIdParts resourceIdParts = ResourceIdParts.parse(resourceId);
+                if (resourceIdParts != null && resourceType != null) {
+                    ReadCount readCountEntry = batch.get(resourceId);
+                    if (readCountEntry == null) {
+                        readCountEntry = new ReadCount(resourceType, resourceIdParts);
+                        batch.put(resourceId, readCountEntry);
+                    }
+                    readCountEntry.add(rs.getLong(3), rs.getLong(4), upper);
+                    readCount += rs.getLong(3);
+                }
+            }
+        }
+        finally {
+            pstmt.close();
+        }
+        
+        if (!batch.isEmpty()) {
+            upsertReadCounts(connection, batch);
+        }
+        
+        return readCount;
     }
   
     
   /**
-   * Initialize (or re-initialize) the contents of the resource_reads table.
+   * Initialize (or re-initialize) the contents of the resource_reads table
+   * from a full scan of the eventlog table.
    * 
    * @throws ClassNotFoundException
    * @throws SQLException
@@ -273,98 +586,21 @@ readDataEntity' OR " +
   public void initializeResourceReads() 
           throws ClassNotFoundException, SQLException {
       Connection connection = null;
-      ArrayList<String> resourceIds = new ArrayList<String>();
-           
-      final String SQL_STRING =
-          "SELECT DISTINCT resourceId " +
-          "FROM auditmanager.eventlog " +
-          "WHERE (servicemethod='readDataEntity' OR " +
-          "       servicemethod='readDataPackage' OR " +
-          "       servicemethod='readDataPackageArchive' OR " +
-          "       servicemethod='readDataPackageReport' OR " +
-          "       servicemethod='readMetadata') " +
-          "      AND statuscode=200 " +
-          "      AND resourceId like 'http%' " +
-          "ORDER BY resourceId ASC";   
-      Statement stmt = null;
       
       try {
           connection = getConnection();
-          stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(SQL_STRING);
-         
-          while (rs.next()) {
-            String resourceId = rs.getString("resourceId");
-            resourceIds.add(resourceId);
-          }
-          
-          System.err.println(String.format("Processing %d resourceIds", resourceIds.size()));
-        }
-        catch(ClassNotFoundException e) {
-          System.err.println("ClassNotFoundException: " + e.getMessage());
-          throw(e);
-        }
-        catch(SQLException e) {
-          System.err.println("SQLException: " + e.getMessage());
-          throw(e);
-        }
-        finally {
-          if (stmt != null) stmt.close();
-          returnConnection(connection);
-      }
-      
-      try {
-          connection = getConnection();
-          int i = 0;
-          
-          for (String resourceId : resourceIds) {
-              i++;
-              System.err.println(String.format("(%d) Processing resourceId: %s", i, resourceId));
-          
-              String SQL_STRING_RESOURCE = String.format(
-              "SELECT servicemethod, userid " +
-              "FROM auditmanager.eventlog " +
-              "WHERE resourceid='%s' AND " +
-              " (servicemethod='readDataEntity' OR " +
-              "  servicemethod='readDataPackage' OR " +
-              "  servicemethod='readDataPackageArchive' OR " +
-              "  servicemethod='readDataPackageReport' OR " +
-              "  servicemethod='readMetadata') AND " +
-              " statuscode=200 ",
-              resourceId);
-
-              try {
-                  stmt = connection.createStatement();
-                  ResultSet rs = stmt.executeQuery(SQL_STRING_RESOURCE);
-       
-                  while (rs.next()) {
-                      String serviceMethod = rs.getString("servicemethod");
-                      String userId = rs.getString("userid");
-                      ReadsManager.ResourceType resourceType = resourceTypeFromServiceMethod(serviceMethod);
-                      boolean isNonRobotRead = isNonRobotRead(userId);
-                      registerResourceRead(resourceId, resourceType, isNonRobotRead);
-                  }
-              }
-              catch(ClassNotFoundException e) {
-                  System.err.println("ClassNotFoundException: " + e.getMessage());
-                  throw(e);
-              }
-              catch(SQLException e) {
-                  System.err.println("SQLException: " + e.getMessage());
-                  throw(e);
-              }
-              finally {
-                  if (stmt != null) stmt.close();
-              }
-          }
+          createFlushTable(connection);
+          setLastFlushedOid(connection, 0L, true);
       }
       finally {
           returnConnection(connection);
       }
+      
+      updateResourceReads();
   }
   
   
-  public boolean isNonRobotRead(String userId) {
+  public static boolean isNonRobotRead(String userId) {
       boolean isNonRobotRead = true;
       
       if (userId != null && userId.startsWith("robot:")) {
@@ -375,116 +611,6 @@ readDataEntity' OR " +
   }
   
   
-  /**
-   * Adds a new resource_id entry to the resource_reads table
-   * 
-   * @param oid   
-   * @param service 
-   * @param category 
-   * @param serviceMethod     
-   * @param entryText  
-   * @param resourceId  
-   * @param statusCode   
-   * @param userId 
-   * @param groups 
-   * @param authSystem 
-   */
-  public void addResourceRecord (
-     String resourceId,
-     ReadsManager.ResourceType resourceType,
-     String scope,
-     Integer identifier,
-     Integer revision,
-     boolean isNonRobotRead
-     )
-          throws ClassNotFoundException, SQLException {
-    int totalReads = 1;
-    int nonRobotReads = isNonRobotRead ? 1 : 0;
-    Connection connection = null;
-    
-    StringBuffer insertSQL = new StringBuffer("INSERT INTO " + 
-                                              READS_MANAGER_TABLE_QUALIFIED + 
-                                              "(");
-    insertSQL.append("resource_id, resource_type, scope, identifier, " + 
-                     "revision, total_reads, non_robot_reads) " + 
-                     "VALUES(?,?,?,?,?,?,?)");
-    String insertString = insertSQL.toString();
-    logger.debug("insertString: " + insertString);
-
-    try {
-        connection = getConnection();
-        PreparedStatement pstmt = connection.prepareStatement(insertString, Statement.RETURN_GENERATED_KEYS);
-        pstmt.setString(1, resourceId);
-        pstmt.setObject(2, resourceType, java.sql.Types.OTHER);        
-        pstmt.setString(3, scope);
-        pstmt.setInt(4, identifier);
-        pstmt.setInt(5, revision);
-        pstmt.setInt(6, totalReads);
-        pstmt.setInt(7, nonRobotReads);
-        pstmt.executeUpdate();
-        if (pstmt != null) {
-          pstmt.close();
-        }
-      }
-    catch (SQLException e) {
-        logger.error("Error inserting record for resource " + resourceId
-            + " into the Audit Manager (" + READS_MANAGER_TABLE_QUALIFIED + ")");
-        logger.error("SQLException: " + e.getMessage());
-        throw (e);
-      }
-    finally {
-        returnConnection(connection);
-    }
-    
-  }
-  
-  
-  /**
-   * Increments the total_reads (and possibly the non_robot_reads) value(s) for the specified resource_id.
-   * 
-   * @param resourceId              The resource whose value is to be incremented.
-   * @param isNonRobotRead          If true, the non_robot_reads field is also incrmemented.
-   * @throws ClassNotFoundException
-   * @throws SQLException
-   */
-  public void incrementResourceRecord (String resourceId, boolean isNonRobotRead)
-               throws ClassNotFoundException, SQLException {
-         Connection connection = null;
-         String updateSQL = null;
-         Statement stmt = null;
-         
-         if (isNonRobotRead) {
-             updateSQL = String.format(
-            "UPDATE %s SET total_reads = total_reads + 1, non_robot_reads = non_robot_reads + 1 WHERE resource_id='%s'", 
-            READS_MANAGER_TABLE_QUALIFIED, resourceId);
-         }
-         else {
-             updateSQL = String.format("UPDATE %s SET total_reads = total_reads + 1 WHERE resource_id='%s'", 
-                                       READS_MANAGER_TABLE_QUALIFIED, resourceId);
-         }
-         
-        try {
-            connection = getConnection();
-            stmt = connection.createStatement();
-            int rowCount = stmt.executeUpdate(updateSQL);
-        } 
-        catch (ClassNotFoundException e) {
-            logger.error("ClassNotFoundException: " + e.getMessage());
-            throw (e);
-        } 
-        catch (SQLException e) {
-            logger.error("SQLException: " + e.getMessage());
-            throw (e);
-        } 
-        finally {
-            if (stmt != null)
-                stmt.close();
-            returnConnection(connection);
-        }
-
-       }
-       
-       
   /*
    * Formats a resource record from the resource_reads table as XML
    */
@@ -727,51 +853,6 @@ readDataEntity' OR " +
   }
   
   
-  /**
-   * Boolean to determine whether the specified audit record is in the
-   * audit database based on a specified audit id value
-   * 
-   * @param auditEntryId   the audit entry identifier
-   * @return  true if the audit record is present, else false
-   */
-  public boolean hasResource(String resourceId)
-          throws ClassNotFoundException, SQLException {
-    boolean hasResource = false;
-    Connection connection = null;
-    String selectString = 
-      "SELECT count(*) FROM " + READS_MANAGER_TABLE_QUALIFIED +
-      "  WHERE resource_id='" + resourceId + "'";
-  
-    Statement stmt = null;
-  
-    try {
-      connection = getConnection();
-      stmt = connection.createStatement();             
-      ResultSet rs = stmt.executeQuery(selectString);
-    
-      while (rs.next()) {
-        int count = rs.getInt("count");
-        hasResource = (count > 0);
-      }
-
-      if (stmt != null) stmt.close();
-    }
-    catch(ClassNotFoundException e) {
-      logger.error("ClassNotFoundException: " + e.getMessage());
-      throw(e);
-    }
-    catch(SQLException e) {
-      logger.error("SQLException: " + e.getMessage());
-      throw(e);
-    }
-    finally {
-      returnConnection(connection);
-    }
-    
-    return hasResource;
-  }
-  
-
   /**
    * Boolean to determine whether the audit table already exists. 
    * If it isn't present, it will need to be created.
@@ -0,0 +1,138 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.auditmanager;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The scope, identifier, revision, and (for data entities) entity
+ * identifier parsed from a PASTA resource identifier, e.g.
+ * "https://pasta.lternet.edu/package/data/eml/knb-lter-and/2719/6/entity".
+ * The audit manager stores these values in their own columns of the
+ * eventlog table so that audit queries on a data package or entity can
+ * use an index.
+ *
+ * @author dcosta
+ *
+ */
+public class ResourceIdParts {
+
+	/*
+	 * Class variables
+	 */
+
+	/*
+	 * Matches ".../eml/scope/identifier/revision" with an optional trailing
+	 * path. The same pattern is used by the SQL backfill of existing
+	 * eventlog rows (see AuditManager.upgradeResourceIdColumns), so the two
+	 * must be kept in agreement.
+	 */
+	public static final String RESOURCE_ID_REGEX = "/eml/([^/]+)/(\\d+)/(\\d+)(?:/(.+))?$";
+	private static final Pattern RESOURCE_ID_PATTERN = Pattern.compile(RESOURCE_ID_REGEX);
+	public static final String DATA_RESOURCE_PATH = "/data/eml/";
+
+
+	/*
+	 * Instance variables
+	 */
+
+	private final String scope;
+	private final Integer identifier;
+	private final Integer revision;
+	private final String entityId;
+
+
+	/*
+	 * Constructors
+	 */
+
+	private ResourceIdParts(String scope, Integer identifier, Integer revision, String entityId) {
+		this.scope = scope;
+		this.identifier = identifier;
+		this.revision = revision;
+		this.entityId = entityId;
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Parses a resource identifier.
+	 *
+	 * @param resourceId  the resource identifier
+	 * @return the parsed parts, or null if the resource identifier does not
+	 *         name a data package resource
+	 */
+	public static ResourceIdParts parse(String resourceId) {
+		ResourceIdParts resourceIdParts = null;
+
+		if (resourceId != null && resourceId.contains("/eml/")) {
+			Matcher matcher = RESOURCE_ID_PATTERN.matcher(resourceId);
+			if (matcher.find()) {
+				try {
+					String scope = matcher.group(1);
+					Integer identifier = new Integer(matcher.group(2));
+					Integer revision = new Integer(matcher.group(3));
+					String entityId = resourceId.contains(DATA_RESOURCE_PATH) ? matcher.group(4) : null;
+					resourceIdParts = new ResourceIdParts(scope, identifier, revision, entityId);
+				}
+				catch (NumberFormatException e) {
+					// Not a valid identifier or revision; treat as unmatched
+				}
+			}
+		}
+
+		return resourceIdParts;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public String getScope() {
+		return scope;
+	}
+
+
+	public Integer getIdentifier() {
+		return identifier;
+	}
+
+
+	public Integer getRevision() {
+		return revision;
+	}
+
+
+	/**
+	 * @return the entity identifier of a data entity resource, or null
+	 *         for other resource types
+	 */
+	public String getEntityId() {
+		return entityId;
+	}
+
+}
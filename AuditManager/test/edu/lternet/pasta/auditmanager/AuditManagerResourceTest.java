@@ -26,6 +26,7 @@ package edu.lternet.pasta.auditmanager;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
@@ -37,6 +38,7 @@ import java.util.Properties;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.io.FileUtils;
@@ -122,6 +124,17 @@ public class AuditManagerResourceTest {
 	}
 
 
+	/*
+	 * Writes a streamed response entity to a string.
+	 */
+	private String readStreamingEntity(Response response) throws IOException {
+		StreamingOutput streamingOutput = (StreamingOutput) response.getEntity();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		streamingOutput.write(outputStream);
+		return outputStream.toString("UTF-8");
+	}
+
+
 	private String readTestAuditEntry() throws IOException {
 		String auditEntry = null;
 		String auditEntryPath = "test/data/auditRecord.xml";
@@ -223,9 +236,8 @@ public class AuditManagerResourceTest {
 		assertEquals(200, statusCode);
 
 		// Check the message body
-		File entityFile = (File) response.getEntity();
 		try {
-			String entityString = FileUtils.readFileToString(entityFile);
+			String entityString = readStreamingEntity(response);
 			String auditReport = entityString.trim();
 			assertTrue(auditReport.length() > 1);
 			assertTrue(auditReport.startsWith("<auditReport>"));
@@ -233,7 +245,7 @@ public class AuditManagerResourceTest {
 			assertTrue(auditReport.endsWith("</auditReport>"));
 		}
 		catch (IOException e) {
-			fail("Error reading audit XML file");
+			fail("Error reading audit XML report");
 		}
 	}
 
@@ -275,9 +287,8 @@ public class AuditManagerResourceTest {
 		assertEquals(200, statusCode);
 
 		// Check the message body
-		File entityFile = (File) response.getEntity();
 		try {
-			String entityString = FileUtils.readFileToString(entityFile);
+			String entityString = readStreamingEntity(response);
 			String auditReport = entityString.trim();
 			assertTrue(auditReport.length() > 1);
 			assertTrue(auditReport.startsWith("<auditReport>"));
@@ -286,7 +297,7 @@ public class AuditManagerResourceTest {
 			assertTrue(auditReport.endsWith("</auditReport>"));
 		}
 		catch (IOException e) {
-			fail("Error reading audit XML file");
+			fail("Error reading audit XML report");
 		}
 	}
 
@@ -24,6 +24,7 @@
 
 package edu.lternet.pasta.auditmanager;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -90,11 +91,11 @@ public class DummyCookieHttpHeaders implements HttpHeaders {
     }
 
     /**
-     * Throws {@linkplain UnsupportedOperationException}.
+     * Returns the wildcard media type, as if no Accept header were present.
      */
     @Override
     public List<MediaType> getAcceptableMediaTypes() {
-        throw new UnsupportedOperationException();
+        return Collections.singletonList(MediaType.WILDCARD_TYPE);
     }
 
     /**
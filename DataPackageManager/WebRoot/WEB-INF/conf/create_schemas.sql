@@ -41,6 +41,8 @@ CREATE TABLE datapackagemanager.access_matrix (
 );
 CREATE INDEX resource_id_idx ON datapackagemanager.access_matrix ( resource_id );
 CREATE INDEX principal_idx ON datapackagemanager.access_matrix ( principal );
+CREATE INDEX access_matrix_public_idx ON datapackagemanager.access_matrix ( resource_id )
+   WHERE lower(principal) = 'public' AND access_type = 'allow';  -- public read visibility for the changes feed
 
 CREATE SEQUENCE datapackagemanager.subscription_id_seq;
 CREATE TABLE datapackagemanager.emlsubscription (
@@ -95,3 +97,71 @@ CREATE TABLE datapackagemanager.reservation (
    date_uploaded      timestamp,                          -- date that the data package was uploaded
    CONSTRAINT PK_RESERVATION PRIMARY KEY (SCOPE, IDENTIFIER)  -- two-column primary key
 );
+
+CREATE TABLE datapackagemanager.solr_pending_index (
+   solr_id            VARCHAR(200) NOT NULL,              -- the Solr document id, i.e. scope.identifier
+   package_id         VARCHAR(100) NOT NULL,              -- the packageId of the revision to be indexed
+   action             VARCHAR(16)  NOT NULL,              -- 'index' or 'delete'
+   date_queued        TIMESTAMP    NOT NULL,              -- date/time the operation was requested
+   attempts           INT          DEFAULT 0,             -- number of failed attempts to send the operation to Solr
+   last_error         TEXT,                               -- the error message from the last failed attempt
+   dead_letter        BOOLEAN      DEFAULT false,         -- true once solr.maxAttempts attempts have failed; no longer retried
+   CONSTRAINT solr_pending_index_pk PRIMARY KEY (solr_id)
+);
+
+CREATE TABLE datapackagemanager.doi_pending (
+   resource_id        VARCHAR(350) NOT NULL,              -- the dataPackage resource id awaiting DOI registration
+   package_id         VARCHAR(100) NOT NULL,              -- the packageId of the data package
+   date_queued        TIMESTAMP    NOT NULL,              -- date/time the registration was requested
+   next_attempt       TIMESTAMP    NOT NULL,              -- earliest date/time of the next registration attempt
+   attempts           INT          DEFAULT 0,             -- number of failed registration attempts
+   last_error         TEXT,                               -- the error message from the last failed attempt
+   CONSTRAINT doi_pending_pk PRIMARY KEY (resource_id)
+);
+CREATE INDEX doi_pending_next_attempt_idx ON datapackagemanager.doi_pending ( next_attempt );
+CREATE INDEX resource_registry_doiless_idx ON datapackagemanager.resource_registry ( date_created )
+   WHERE resource_type = 'dataPackage' AND doi IS NULL AND date_deactivated IS NULL;
+CREATE INDEX resource_registry_sha1_idx ON datapackagemanager.resource_registry ( sha1_checksum, resource_location, date_created )
+   WHERE resource_type = 'data';                          -- duplicate entity lookup for storage optimization
+CREATE INDEX resource_registry_package_created_idx ON datapackagemanager.resource_registry ( date_created, scope, identifier, revision )
+   WHERE resource_type = 'dataPackage';                   -- inserts and updates in the changes feed
+CREATE INDEX resource_registry_package_deactivated_idx ON datapackagemanager.resource_registry ( date_deactivated, scope, identifier, revision )
+   WHERE resource_type = 'dataPackage' AND date_deactivated IS NOT NULL;  -- deletes in the changes feed
+CREATE INDEX resource_registry_package_revision_idx ON datapackagemanager.resource_registry ( scope, identifier, revision )
+   WHERE resource_type = 'dataPackage';                   -- first-revision test in the changes feed
+CREATE INDEX resource_registry_scope_identifier_revision_idx ON datapackagemanager.resource_registry ( scope, identifier, revision );  -- package summary
+CREATE INDEX prov_matrix_derived_id_idx ON datapackagemanager.prov_matrix ( derived_id );  -- data sources of a package
+CREATE INDEX prov_matrix_source_id_idx ON datapackagemanager.prov_matrix ( source_id );    -- data descendants of a package
+
+CREATE TABLE datapackagemanager.checksum_checkpoint (
+   job_name           VARCHAR(32)  NOT NULL,              -- the job, e.g. 'validate', 'backfill', or 'optimizeStorage'
+   last_resource_id   VARCHAR(350),                       -- the last resource id completed; the scan resumes after it
+   resources_done     INT8         DEFAULT 0,             -- number of resources processed so far in this pass
+   errors             INT8         DEFAULT 0,             -- number of resources with errors so far in this pass
+   date_started       TIMESTAMP    NOT NULL,              -- date/time this pass was started
+   date_updated       TIMESTAMP    NOT NULL,              -- date/time of the last checkpoint
+   CONSTRAINT checksum_checkpoint_pk PRIMARY KEY (job_name)
+);
+
+CREATE TABLE datapackagemanager.checksum_mismatch (
+   resource_id        VARCHAR(350) NOT NULL,              -- the resource whose checksum could not be validated
+   date_checked       TIMESTAMP    NOT NULL,              -- date/time of the failed validation
+   stored_md5         CHAR(32),                           -- MD5 checksum stored in the resource registry
+   calculated_md5     CHAR(32),                           -- MD5 checksum calculated from the resource
+   stored_sha1        CHAR(40),                           -- SHA-1 checksum stored in the resource registry
+   calculated_sha1    CHAR(40),                           -- SHA-1 checksum calculated from the resource
+   error              TEXT,                               -- description of the problem
+   CONSTRAINT checksum_mismatch_pk PRIMARY KEY (resource_id)
+);
+
+CREATE TABLE datapackagemanager.growth_summary (
+   period             DATE         NOT NULL,              -- first day of the month in which the uploads occurred
+   contributed        BOOLEAN      NOT NULL,              -- false for EcoTrends and Landsat data packages
+   packages           INT8         DEFAULT 0,             -- number of active data packages first uploaded in the month
+   revisions          INT8         DEFAULT 0,             -- number of active data package revisions uploaded in the month
+   CONSTRAINT growth_summary_pk PRIMARY KEY (period, contributed)
+);
+
+CREATE TABLE datapackagemanager.growth_summary_rebuild (
+   date_rebuilt       TIMESTAMP    NOT NULL               -- date/time growth_summary was last rebuilt from resource_registry
+);
@@ -0,0 +1,60 @@
+package edu.lternet.pasta.datamanager;
+
+
+/**
+ * A data entity whose SHA-1 checksum matches that of an earlier data entity
+ * stored in the same resource location, paired with that earlier (canonical)
+ * entity. The StorageManager replaces the duplicate's file with a hard link
+ * to the canonical entity's file.
+ *
+ * @author dcosta
+ *
+ */
+public class DuplicateEntity {
+
+	/*
+	 * Instance fields
+	 */
+
+	private final String resourceId;
+	private final EMLFileSystemEntity entity;
+	private final EMLFileSystemEntity canonicalEntity;
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * @param resourceId        the resource id of the duplicate data entity
+	 * @param entity            the duplicate data entity
+	 * @param canonicalEntity   the earliest data entity with the same checksum
+	 *                          in the same resource location
+	 */
+	public DuplicateEntity(String resourceId, EMLFileSystemEntity entity,
+			               EMLFileSystemEntity canonicalEntity) {
+		this.resourceId = resourceId;
+		this.entity = entity;
+		this.canonicalEntity = canonicalEntity;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public String getResourceId() {
+		return resourceId;
+	}
+
+
+	public EMLFileSystemEntity getEntity() {
+		return entity;
+	}
+
+
+	public EMLFileSystemEntity getCanonicalEntity() {
+		return canonicalEntity;
+	}
+
+}
@@ -30,10 +30,13 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -47,6 +50,7 @@ import edu.lternet.pasta.dml.download.DataStorageInterface;
 import edu.lternet.pasta.dml.download.EcogridEndPointInterface;
 import edu.lternet.pasta.dml.parser.DataPackage;
 import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.QualityCheck;
 import edu.lternet.pasta.dml.sample.EcogridEndPoint;
 
 import edu.ucsb.nceas.utilities.Options;
@@ -258,13 +262,16 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
 	 * @param evaluateMode boolean to determine whether the create
 	 *                 operation should be run in evaluate mode.
 	 * @param transaction  the transaction identifier
+	 * @param emlDigest    the digest of the EML document (see EvaluateCache), or
+	 *                     null if evaluate results should not be cached or reused
 	 * @return         a map of entityIds mapped to their associated entityURLs
 	 */
 	public Map<String, String> createDataEntities(DataPackageRegistry dataPackageRegistry,
 			                                    DataPackage dataPackage,
 	                                            boolean evaluateMode,
 	                                            String transaction,
-	                                            boolean useChecksum) 
+	                                            boolean useChecksum,
+	                                            String emlDigest) 
 	        throws IOException, 
 	               MalformedURLException, 
 	               ResourceExistsException, 
@@ -284,6 +291,18 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
       Entity[] entityArray = dataPackage.getEntityList();
       EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
       EmlPackageId emlPackageId = emlPackageIdFormat.parse(packageId);
+      Map<String, Entity> evaluatedEntities = new LinkedHashMap<String, Entity>();
+      Map<String, String> entityValidators = new HashMap<String, String>();
+      boolean cacheEvaluate = evaluateMode && emlDigest != null && EvaluateCache.isEnabled();
+
+      /*
+       * An upload of a data package that was just evaluated can reuse the
+       * evaluated entity files and their quality checks.
+       */
+      EvaluateCache evaluateCache = null;
+      if (!evaluateMode && emlDigest != null && EvaluateCache.isEnabled()) {
+        evaluateCache = EvaluateCache.take(emlDigest, packageId);
+      }
 
       try {
 		    if (entityArray != null) {
@@ -312,8 +331,24 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
 							String url = emlEntity.getUrl();
 							emlDataLoader.putUrlMapEntries(url, emlPackageId, entityId);
 
+							if (evaluateCache != null && 
+							    reuseEvaluatedEntity(dataPackageRegistry, emlPackageId, emlEntity, 
+							                         evaluateCache, useChecksum)) {
+								continue;
+							}
+
+							/*
+							 * Record the URL's validators before the download,
+							 * so that an upload can tell whether the data has
+							 * changed since it was evaluated
+							 */
+							if (cacheEvaluate) {
+								entityValidators.put(entityId, EvaluateCache.getValidator(url));
+							}
+
 							// Download the entity
 							downloadEntity(dataPackageRegistry, emlPackageId, emlEntity, evaluateMode, useChecksum);
+							evaluatedEntities.put(entityId, entity);
 
 							/*
 							 * Load entity into a database unless it's an image
@@ -333,7 +368,7 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
            * We don't need the relational database tables to persist, only the
            * file system entities.
            */
-          if (dataManager != null) {
+          if (dataManager != null && DataManager.isRelationalLoad()) {
             try {
               dataManager.dropTables(packageId);
             }
@@ -345,6 +380,10 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
               throw(e);
             }
           }
+
+          if (cacheEvaluate && !dataPackage.hasQualityError()) {
+            EvaluateCache.put(emlDigest, emlPackageId, evaluatedEntities, entityValidators);
+          }
 		    }
 		  }
       catch (SQLException e) {
@@ -354,6 +393,9 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
         throw(e);
       }
       finally {
+        if (evaluateCache != null) {
+          evaluateCache.release();
+        }
         EMLDataPackage emlDataPackage = new EMLDataPackage(dataPackage);
         EMLQualityReport emlQualityReport = new EMLQualityReport(emlPackageId, emlDataPackage);
         emlQualityReport.storeQualityReport(evaluateMode, transaction);
@@ -464,6 +506,93 @@ public class EMLDataManager implements DatabaseConnectionPoolInterface {
 	}
 	
 	
+	/**
+	 * Stores a data entity from the results of an earlier evaluate of the
+	 * same EML document instead of downloading and loading it again. The
+	 * cached entity file is hard linked (or copied) into the data package,
+	 * and the entity's digests, size, and entity-level quality checks are
+	 * restored from the evaluated entity.
+	 *
+	 * @return true if the evaluated entity was reused, or false if the
+	 *         entity needs to be downloaded and loaded
+	 */
+	private boolean reuseEvaluatedEntity(DataPackageRegistry dataPackageRegistry,
+	                                     EmlPackageId emlPackageId,
+	                                     EMLEntity emlEntity,
+	                                     EvaluateCache evaluateCache,
+	                                     boolean useChecksum)
+	        throws ClassNotFoundException, SQLException {
+	  String entityId = emlEntity.getEntityId();
+	  Entity evaluatedEntity = evaluateCache.getEntity(entityId);
+	  
+	  if (evaluatedEntity == null) {
+	    return false;
+	  }
+	  
+	  if (!evaluateCache.isCurrent(entityId, emlEntity.getEntity(), emlEntity.getUrl())) {
+	    logger.info(String.format("The data of entity %s of %s may have changed since it was evaluated; " +
+	                              "downloading it again", entityId, emlPackageId.toString()));
+	    return false;
+	  }
+	  
+	  File cachedFile = evaluateCache.getEntityFile(entityId);
+	  
+	  if (cachedFile == null) {
+	    return false;
+	  }
+	  
+	  EMLFileSystemEntity efse = new EMLFileSystemEntity(entityDir, emlPackageId, entityId);
+	  File entityFile = efse.getEntityFile();
+	  boolean wasLinked = useChecksum && useChecksum(dataPackageRegistry, emlPackageId, emlEntity, false);
+	  
+	  if (!wasLinked) {
+	    try {
+	      Files.deleteIfExists(entityFile.toPath());
+	      try {
+	        Files.createLink(entityFile.toPath(), cachedFile.toPath());
+	      }
+	      catch (IOException | UnsupportedOperationException e) {
+	        Files.copy(cachedFile.toPath(), entityFile.toPath());
+	      }
+	    }
+	    catch (IOException e) {
+	      logger.warn(String.format("Unable to reuse evaluated entity %s: %s", 
+	                                cachedFile.getAbsolutePath(), e.getMessage()));
+	      return false;
+	    }
+	  }
+	  
+	  emlEntity.setFileUrl(efse.getEntityFileURL(false));
+	  
+	  Entity entity = emlEntity.getEntity();
+	  entity.setMd5HashValue(evaluatedEntity.getMd5HashValue());
+	  entity.setSha1HashValue(evaluatedEntity.getSha1HashValue());
+	  if (evaluatedEntity.getFileSize() != null) {
+	    entity.setFileSize(evaluatedEntity.getFileSize());
+	  }
+	  if (evaluatedEntity.getUrlContentType() != null) {
+	    entity.setUrlContentType(evaluatedEntity.getUrlContentType());
+	  }
+	  if (evaluatedEntity.getFirstKilobyte() != null) {
+	    entity.setFirstKilobyte(evaluatedEntity.getFirstKilobyte());
+	  }
+	  
+	  /*
+	   * The EML is unchanged, so the evaluated entity-level quality checks
+	   * (including those added by the setters above) replace the new ones.
+	   */
+	  if (entity.getEntityReport() != null && evaluatedEntity.getEntityReport() != null) {
+	    ArrayList<QualityCheck> qualityChecks = entity.getEntityReport().getQualityChecks();
+	    qualityChecks.clear();
+	    qualityChecks.addAll(evaluatedEntity.getEntityReport().getQualityChecks());
+	  }
+	  
+	  logger.info(String.format("Reused evaluated entity %s for %s", entityId, emlPackageId.toString()));
+	  
+	  return true;
+	}
+
+	
 	/**
 	 * Downloads and stores a data entity, or hard links to an existing data entity if
 	 * useChecksum is enabled and a matching entity from a previous revision can be
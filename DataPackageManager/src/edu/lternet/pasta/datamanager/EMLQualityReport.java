@@ -25,18 +25,17 @@
 package edu.lternet.pasta.datamanager;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
 import org.apache.log4j.Logger;
 import edu.lternet.pasta.dml.parser.DataPackage;
 import edu.lternet.pasta.dml.quality.QualityReport;
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
 
 import edu.lternet.pasta.common.EmlPackageId;
 import edu.lternet.pasta.datapackagemanager.DataPackageManager;
 import edu.lternet.pasta.datapackagemanager.EMLDataPackage;
 import edu.lternet.pasta.datapackagemanager.FileSystemResource;
-import edu.ucsb.nceas.utilities.IOUtil;
 
 /**
  * Class that stores and retrieves quality reports.
@@ -123,29 +122,26 @@ public class EMLQualityReport {
         String qualityReportFilename = 
         		composeQualityReportFilename(evaluateMode, transaction);
 	    File qualityReportFile = new File(dirPath, qualityReportFilename);
-	    FileWriter fileWriter;
 	    if (emlDataPackage != null) {
         DataPackage dataPackage = emlDataPackage.getDataPackage();
         if (dataPackage != null) {
           QualityReport qualityReport = dataPackage.getQualityReport();
           if (qualityReport != null) {
-            String qualityReportXML = qualityReport.toXML();
-            if (qualityReportXML != null) {
-              StringBuffer stringBuffer = new StringBuffer(qualityReportXML);
-  	          try {
-	              fileWriter = new FileWriter(qualityReportFile);
-	              IOUtil.writeToWriter(stringBuffer, fileWriter, true);
-	            }
-	            catch (IOException e) {
-	              logger.error("IOException storing quality report:\n" + 
-	                           e.getMessage());
-	              e.printStackTrace();
-	              throw(e);
-	            }
-	            finally {
-	              success = (qualityReportFile != null) && 
-	                        (qualityReportFile.exists());
-	            }
+            try {
+              success = qualityReport.storeQualityReport(qualityReportFile);
+              logger.info(String.format(
+                  "Stored quality report for %s: %d valid, %d info, %d warn, %d error",
+                  emlPackageId.toString(),
+                  qualityReport.getStatusCount(Status.valid),
+                  qualityReport.getStatusCount(Status.info),
+                  qualityReport.getStatusCount(Status.warn),
+                  qualityReport.getStatusCount(Status.error)));
+            }
+            catch (IOException e) {
+              logger.error("IOException storing quality report:\n" + 
+                           e.getMessage());
+              e.printStackTrace();
+              throw(e);
             }
           }
 	      }
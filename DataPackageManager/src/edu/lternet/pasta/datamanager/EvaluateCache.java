@@ -0,0 +1,479 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datamanager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
+import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.EntityReport;
+import edu.ucsb.nceas.utilities.Options;
+
+
+/**
+ * Holds the results of recent evaluate operations so that an upload of
+ * the same EML document can reuse them. The typical submitter workflow is
+ * to evaluate a data package and then upload it unchanged; without the
+ * cache, the upload repeats every entity download, table load, and
+ * quality check.
+ *
+ * A cache entry is keyed by the SHA-256 digest of the EML document and
+ * holds the evaluated data entity files, moved out of the evaluate
+ * directory into a cache directory under the entity directory, together
+ * with the evaluated Entity objects (their digests and entity-level
+ * quality checks). An entry is used at most once and expires after
+ * datapackagemanager.evaluateCache.minutes; a value of 0 disables the
+ * cache.
+ *
+ * The EML digest does not cover the entity data, which may change at its
+ * URL between the evaluate and the upload. An evaluated entity is therefore
+ * only reused if the EML declares a digest (physical/authentication) that
+ * matches the evaluated file, or if the validators of its URL (ETag,
+ * Last-Modified, and Content-Length, or the modification time and length
+ * of a local file) recorded before the evaluate download are unchanged.
+ * Evaluations that reported quality errors are not cached, since the
+ * submitter is expected to fix the data before uploading.
+ *
+ * @author dcosta
+ *
+ */
+public class EvaluateCache {
+
+	/*
+	 * Class fields
+	 */
+
+	private static final Logger logger = Logger.getLogger(EvaluateCache.class);
+
+	private static final String CACHE_DIR_NAME = ".evaluate-cache";
+	private static final int DEFAULT_MINUTES = 30;
+	private static final int DEFAULT_MAX_ENTRIES = 50;
+	private static final int VALIDATOR_TIMEOUT = 10000;           // milliseconds
+
+	// Access-ordered, so the least recently used entry is evicted first
+	private static final LinkedHashMap<String, EvaluateCache> cache =
+			new LinkedHashMap<String, EvaluateCache>(16, 0.75f, true);
+
+
+	/*
+	 * Instance fields
+	 */
+
+	private final String emlDigest;
+	private final String packageId;
+	private final long created;
+	private final File cacheDir;
+	private final LinkedHashMap<String, Entity> entities = new LinkedHashMap<String, Entity>();
+	private final LinkedHashMap<String, String> validators = new LinkedHashMap<String, String>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	private EvaluateCache(String emlDigest, String packageId, File cacheDir) {
+		this.emlDigest = emlDigest;
+		this.packageId = packageId;
+		this.created = System.currentTimeMillis();
+		this.cacheDir = cacheDir;
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Computes the cache key of an EML document.
+	 *
+	 * @param emlFile   the EML document file
+	 * @return the SHA-256 digest of the file, as a hex string
+	 * @throws IOException
+	 */
+	public static String digestEml(File emlFile) throws IOException {
+		FileInputStream fileInputStream = new FileInputStream(emlFile);
+		try {
+			return DigestUtils.sha256Hex(fileInputStream);
+		}
+		finally {
+			fileInputStream.close();
+		}
+	}
+
+
+	/**
+	 * @return true if evaluate results are cached, i.e. the configured
+	 *         cache window is greater than zero
+	 */
+	public static boolean isEnabled() {
+		return getMinutes() > 0;
+	}
+
+
+	/**
+	 * Gets the validators of a data entity URL, used to tell whether the
+	 * data at the URL has changed since it was evaluated. For an HTTP URL
+	 * these are the ETag, Last-Modified, and Content-Length headers of a
+	 * HEAD request; for a file URL, the file's modification time and
+	 * length.
+	 *
+	 * @param url   the entity URL
+	 * @return the validators as a string, or null if the URL has no
+	 *         validators (e.g. an HTTP response with neither an ETag nor a
+	 *         Last-Modified header, or an FTP URL) or cannot be reached
+	 */
+	public static String getValidator(String url) {
+		String validator = null;
+
+		if (url == null) {
+			return null;
+		}
+
+		try {
+			if (url.startsWith("http://") || url.startsWith("https://")) {
+				HttpURLConnection httpURLConnection = (HttpURLConnection) new URL(url).openConnection();
+				try {
+					httpURLConnection.setRequestMethod("HEAD");
+					httpURLConnection.setConnectTimeout(VALIDATOR_TIMEOUT);
+					httpURLConnection.setReadTimeout(VALIDATOR_TIMEOUT);
+					int responseCode = httpURLConnection.getResponseCode();
+					String eTag = httpURLConnection.getHeaderField("ETag");
+					String lastModified = httpURLConnection.getHeaderField("Last-Modified");
+					String contentLength = httpURLConnection.getHeaderField("Content-Length");
+
+					if (responseCode == HttpURLConnection.HTTP_OK &&
+					    (eTag != null || lastModified != null)) {
+						validator = String.format("etag=%s; lastModified=%s; length=%s",
+								                  eTag, lastModified, contentLength);
+					}
+				}
+				finally {
+					httpURLConnection.disconnect();
+				}
+			}
+			else if (url.startsWith("file://")) {
+				File file = new File(new URI(url));
+				if (file.exists()) {
+					validator = String.format("lastModified=%d; length=%d",
+							                  file.lastModified(), file.length());
+				}
+			}
+		}
+		catch (Exception e) {
+			logger.warn(String.format("Unable to read the validators of %s: %s", url, e.getMessage()));
+		}
+
+		return validator;
+	}
+
+
+	/**
+	 * Determines whether the results of an evaluate may be cached: an
+	 * evaluate that found entity-level quality errors is not cached.
+	 *
+	 * @param entities   the evaluated entities, keyed by entity id
+	 * @return true if none of the entities has a quality error
+	 */
+	public static boolean isCacheable(Map<String, Entity> entities) {
+		for (Entity entity : entities.values()) {
+			EntityReport entityReport = entity.getEntityReport();
+			if (entityReport != null && entityReport.hasEntityQualityError()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * Determines whether an evaluated entity still describes the data that
+	 * an upload would download. This is the case if the uploaded EML
+	 * declares an MD5 or SHA-1 digest equal to that of the evaluated file,
+	 * or else if the URL's validators were recorded for the evaluate and
+	 * are unchanged.
+	 *
+	 * @param evaluatedEntity     the evaluated entity
+	 * @param evaluatedValidator  the URL validators recorded before the
+	 *                            evaluate download, possibly null
+	 * @param entity              the entity being uploaded
+	 * @param url                 the entity URL
+	 * @return true if the evaluated entity may be reused
+	 */
+	public static boolean isUnchanged(Entity evaluatedEntity, String evaluatedValidator,
+			                          Entity entity, String url) {
+		String declaredMd5 = entity.getPhysicalAuthentication("MD5");
+		String declaredSha1 = entity.getPhysicalAuthentication("SHA-1");
+
+		if (declaredMd5 != null || declaredSha1 != null) {
+			return (declaredMd5 == null || declaredMd5.equalsIgnoreCase(evaluatedEntity.getMd5HashValue())) &&
+			       (declaredSha1 == null || declaredSha1.equalsIgnoreCase(evaluatedEntity.getSha1HashValue()));
+		}
+
+		return (evaluatedValidator != null) && evaluatedValidator.equals(getValidator(url));
+	}
+
+
+	/**
+	 * Caches the results of an evaluate operation. The evaluated entity
+	 * files are moved from the evaluate directory of the data package into
+	 * the cache; if any of them cannot be moved, or if the evaluate found
+	 * entity-level quality errors, nothing is cached.
+	 *
+	 * @param emlDigest     the digest of the evaluated EML document
+	 * @param emlPackageId  the packageId of the evaluated data package
+	 * @param entities      the evaluated entities, keyed by entity id
+	 * @param validators    the URL validators of the entities recorded
+	 *                      before they were downloaded (see getValidator()),
+	 *                      keyed by entity id
+	 */
+	public static synchronized void put(String emlDigest, EmlPackageId emlPackageId,
+			                            Map<String, Entity> entities, Map<String, String> validators) {
+		purge();
+		discard(cache.remove(emlDigest));
+
+		if (!isCacheable(entities)) {
+			logger.info(String.format("Not caching evaluate results for %s: quality errors were found",
+					                  emlPackageId.toString()));
+			return;
+		}
+
+		File cacheDir = new File(getCacheRoot(), emlDigest);
+		EvaluateCache evaluateCache = new EvaluateCache(emlDigest, emlPackageId.toString(), cacheDir);
+
+		try {
+			FileUtils.deleteQuietly(cacheDir);
+			cacheDir.mkdirs();
+
+			for (String entityId : entities.keySet()) {
+				EMLFileSystemEntity emlFileSystemEntity = new EMLFileSystemEntity(emlPackageId, entityId);
+				emlFileSystemEntity.setEvaluateMode(true);
+				File entityFile = emlFileSystemEntity.getEntityFile();
+				Files.move(entityFile.toPath(), new File(cacheDir, entityId).toPath(),
+						   StandardCopyOption.REPLACE_EXISTING);
+				evaluateCache.entities.put(entityId, entities.get(entityId));
+				evaluateCache.validators.put(entityId, validators.get(entityId));
+			}
+		}
+		catch (IOException e) {
+			logger.warn(String.format("Unable to cache evaluate results for %s: %s",
+					                  emlPackageId.toString(), e.getMessage()));
+			discard(evaluateCache);
+			return;
+		}
+
+		cache.put(emlDigest, evaluateCache);
+		logger.info(String.format("Cached evaluate results for %s (%d entities)",
+				                  evaluateCache.packageId, entities.size()));
+
+		int maxEntries = getIntOption("datapackagemanager.evaluateCache.maxEntries", DEFAULT_MAX_ENTRIES);
+		Iterator<EvaluateCache> iterator = cache.values().iterator();
+		while (cache.size() > maxEntries && iterator.hasNext()) {
+			EvaluateCache eldest = iterator.next();
+			iterator.remove();
+			discard(eldest);
+		}
+	}
+
+
+	/**
+	 * Removes and returns the cached evaluate results for an EML document.
+	 * The caller owns the returned results and must call release() when it
+	 * is finished with them.
+	 *
+	 * @param emlDigest   the digest of the EML document being uploaded
+	 * @param packageId   the packageId of the data package being uploaded
+	 * @return the cached results, or null if there are none
+	 */
+	public static synchronized EvaluateCache take(String emlDigest, String packageId) {
+		purge();
+		EvaluateCache evaluateCache = cache.remove(emlDigest);
+
+		if (evaluateCache != null && !evaluateCache.packageId.equals(packageId)) {
+			discard(evaluateCache);
+			evaluateCache = null;
+		}
+
+		return evaluateCache;
+	}
+
+
+	/*
+	 * Removes expired entries, and any cache directories left over from
+	 * entries that no longer exist (e.g. from before a restart).
+	 */
+	private static void purge() {
+		long expiry = System.currentTimeMillis() - (getMinutes() * 60000L);
+
+		Iterator<EvaluateCache> iterator = cache.values().iterator();
+		while (iterator.hasNext()) {
+			EvaluateCache evaluateCache = iterator.next();
+			if (evaluateCache.created < expiry) {
+				iterator.remove();
+				discard(evaluateCache);
+			}
+		}
+
+		File[] cacheDirs = getCacheRoot().listFiles();
+		if (cacheDirs != null) {
+			for (File cacheDir : cacheDirs) {
+				if (!cache.containsKey(cacheDir.getName()) && cacheDir.lastModified() < expiry) {
+					FileUtils.deleteQuietly(cacheDir);
+				}
+			}
+		}
+	}
+
+
+	private static void discard(EvaluateCache evaluateCache) {
+		if (evaluateCache != null) {
+			FileUtils.deleteQuietly(evaluateCache.cacheDir);
+		}
+	}
+
+
+	private static File getCacheRoot() {
+		return new File(EMLDataManager.getEntityDir(), CACHE_DIR_NAME);
+	}
+
+
+	private static int getMinutes() {
+		return getIntOption("datapackagemanager.evaluateCache.minutes", DEFAULT_MINUTES);
+	}
+
+
+	private static int getIntOption(String name, int defaultValue) {
+		int value = defaultValue;
+		Options options = ConfigurationListener.getOptions();
+		String str = (options == null) ? null : options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using %d", name, str, defaultValue));
+			}
+		}
+
+		return value;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Gets the evaluated Entity object for an entity id.
+	 *
+	 * @param entityId   the entity id
+	 * @return the evaluated Entity, or null if the entity was not evaluated
+	 */
+	public Entity getEntity(String entityId) {
+		return entities.get(entityId);
+	}
+
+
+	/**
+	 * Determines whether the evaluated entity may be reused for an upload,
+	 * i.e. whether the data it was evaluated from is unchanged (see
+	 * isUnchanged()).
+	 *
+	 * @param entityId   the entity id
+	 * @param entity     the entity being uploaded
+	 * @param url        the entity URL
+	 * @return true if the evaluated entity may be reused
+	 */
+	public boolean isCurrent(String entityId, Entity entity, String url) {
+		Entity evaluatedEntity = entities.get(entityId);
+		return (evaluatedEntity != null) &&
+		       isUnchanged(evaluatedEntity, validators.get(entityId), entity, url);
+	}
+
+
+	/**
+	 * Gets the cached copy of an evaluated entity file. The file is only
+	 * returned if its MD5 digest still matches the digest recorded when
+	 * the entity was evaluated.
+	 *
+	 * @param entityId   the entity id
+	 * @return the cached entity file, or null if it is missing or has changed
+	 */
+	public File getEntityFile(String entityId) {
+		File entityFile = null;
+		Entity entity = entities.get(entityId);
+
+		if (entity != null && entity.getMd5HashValue() != null) {
+			File file = new File(cacheDir, entityId);
+			if (file.exists()) {
+				try {
+					FileInputStream fileInputStream = new FileInputStream(file);
+					try {
+						if (entity.getMd5HashValue().equals(DigestUtils.md5Hex(fileInputStream))) {
+							entityFile = file;
+						}
+						else {
+							logger.warn(String.format("Cached evaluate entity %s has changed; not reusing it",
+									                  file.getAbsolutePath()));
+						}
+					}
+					finally {
+						fileInputStream.close();
+					}
+				}
+				catch (IOException e) {
+					logger.warn(String.format("Unable to read cached evaluate entity %s: %s",
+							                  file.getAbsolutePath(), e.getMessage()));
+				}
+			}
+		}
+
+		return entityFile;
+	}
+
+
+	/**
+	 * Deletes the cached entity files. Entities that were reused have been
+	 * hard linked (or copied) into the data package, so only the cache's
+	 * directory entries are removed.
+	 */
+	public void release() {
+		discard(this);
+		logger.debug(String.format("Released cached evaluate results %s", emlDigest));
+	}
+
+}
@@ -33,6 +33,12 @@ import java.nio.file.Path;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.log4j.Logger;
 
@@ -40,17 +46,24 @@ import edu.lternet.pasta.common.EmlPackageId;
 import edu.lternet.pasta.common.EmlPackageIdFormat;
 import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
 import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
+import edu.lternet.pasta.datapackagemanager.checksum.ChecksumProgress;
 import edu.lternet.pasta.datapackagemanager.checksum.DigestUtilsWrapper;
 import edu.lternet.pasta.doi.ConfigurationException;
-import edu.lternet.pasta.doi.Resource;
 import edu.ucsb.nceas.utilities.Options;
 
 
 /**
- * Class to optimize the data storage for a given revision of
- * a given data package. For each data entity in this revision
- * it will try to find a duplicate data entity from a previous
- * revision that it can link to. 
+ * Class to optimize the data storage of PASTA data entities. A data
+ * entity whose SHA-1 checksum matches that of an earlier data entity in
+ * the same resource location is replaced by a hard link to the earlier
+ * (canonical) entity's file. Duplicates and their canonical entities are
+ * found with an indexed lookup on the resource registry rather than by
+ * comparing the entities of every prior revision.
+ * 
+ * Storage can be optimized for a single data package revision (as is done
+ * after each upload) or, from the main program, for the whole repository.
+ * The whole-repository pass links entities in parallel, can be throttled,
+ * and is checkpointed so that an interrupted pass resumes where it left off.
  * 
  * @author dcosta
  *
@@ -63,6 +76,11 @@ public class StorageManager {
 	private static final String dirPath = "WebRoot/WEB-INF/conf";
 	private static Logger logger = Logger.getLogger(StorageManager.class);
 
+	private static final String JOB_NAME = "optimizeStorage";
+	private static final int DEFAULT_WORKERS = 2;
+	private static final int DEFAULT_PAGE_SIZE = 1000;
+	private static final int DEFAULT_PAGE_DELAY = 0;       // milliseconds
+
 	/*
 	 * Instance variables
 	 */
@@ -74,42 +92,6 @@ public class StorageManager {
 	 * Class methods
 	 */
 	
-	/*
-	 * Get all data package revisions known to exist in PASTA (including deleted).
-	 */
-	private static List<EmlPackageId> getAllDataPackageRevisions(DataPackageRegistry dataPackageRegistry) 
-			throws ClassNotFoundException, SQLException {
-			List<EmlPackageId> allDataPackageRevisions = new ArrayList<EmlPackageId>();
-			boolean includeInactive = true;
-			
-			ArrayList<String> packageIdList = dataPackageRegistry.listAllDataPackageRevisions(includeInactive);
-
-			for (String packageId : packageIdList) {
-				if (packageId != null && packageId.contains(".")) {
-					String[] elements = packageId.split("\\.");
-				    if (elements.length != 3) {
-				        String msg = 
-				        	String.format(
-				        		"The packageId '%s' does not conform to the " +
-				        	    "standard format <scope>.<identifier>.<revision>", 
-				        	    packageId);	
-				        throw new IllegalArgumentException(msg);
-				    }
-				    else {
-				        String scope = elements[0];
-				        Integer identifier = new Integer(elements[1]);
-				        Integer revision = new Integer(elements[2]);
-				        EmlPackageId emlPackageId = 
-				        	new EmlPackageId(scope, identifier, revision);
-				        allDataPackageRevisions.add(emlPackageId);
-					}
-				}
-			}
-			
-			return allDataPackageRevisions;
-		}
-
-	
 	/**
 	 * Loads Data Manager options from a configuration file.
 	 * 
@@ -136,11 +118,29 @@ public class StorageManager {
 	}
 	
 	
+	private static int getIntOption(Options options, String name, int defaultValue) {
+		int value = defaultValue;
+		String str = options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using %d", name, str, defaultValue));
+			}
+		}
+
+		return value;
+	}
+	
+	
 	/**
 	 * The main program has two modes of operation. If 3 arguments are passed, it
 	 * operates on a single data package of the specified scope, identifier, and
-	 * revision. Or, if zero arguments are passed, it operates on all the data
-	 * package in PASTA.
+	 * revision. Or, if zero arguments (or the single argument "-restart") are
+	 * passed, it operates on all the data package in PASTA, resuming an
+	 * interrupted pass unless "-restart" is specified.
 	 * 
 	 * @param args
 	 */
@@ -176,17 +176,18 @@ public class StorageManager {
 		 * If the program is passed 0 arguments, then optimize data storage
 		 * for all data packages in PASTA, active and deleted.
 		 */
-		else if (args.length == 0) {
+		else if (args.length == 0 || (args.length == 1 && args[0].equals("-restart"))) {
 			try {
 				DataPackageRegistry dataPackageRegistry = loadOptions(options);
-				optimizeAllPastaData(dataPackageRegistry);
+				boolean restart = (args.length == 1);
+				optimizeAllPastaData(options, dataPackageRegistry, restart);
 			}
 			catch (Exception e) {
 				logger.error("main method failed with error: " + e.getMessage());
 			}
 		}
 		else {
-			logger.error("Specify the scope, identifier, and revision arguments");
+			logger.error("Specify the scope, identifier, and revision arguments, or -restart");
 		}
 		
 	}
@@ -196,35 +197,254 @@ public class StorageManager {
 	 * Static method to optimize storage for all data entities of all
 	 * data packages, whether active or deleted, in PASTA.
 	 * 
+	 * Duplicate entities are read from the resource registry a page at a
+	 * time in resource id order and linked by a pool of worker threads
+	 * (datapackagemanager.storage.workers). After each page a checkpoint is
+	 * saved and the pass pauses for datapackagemanager.storage.pageDelay
+	 * milliseconds, which limits the load placed on the storage volumes.
+	 * 
+	 * @param options
+	 *     the DataPackageManager options
 	 * @param dataPackageRegistry
 	 *     a DataPackageRegistry object for reading from the resource registry
+	 * @param restart
+	 *     if true, discard any checkpoint and start from the beginning
 	 */
-	public static void optimizeAllPastaData(DataPackageRegistry dataPackageRegistry) {		
+	public static void optimizeAllPastaData(Options options, DataPackageRegistry dataPackageRegistry,
+			                                boolean restart) {
+		int workers = getIntOption(options, "datapackagemanager.storage.workers", DEFAULT_WORKERS);
+		int pageSize = getIntOption(options, "datapackagemanager.storage.pageSize", DEFAULT_PAGE_SIZE);
+		int pageDelay = getIntOption(options, "datapackagemanager.storage.pageDelay", DEFAULT_PAGE_DELAY);
+		ChecksumProgress checksumProgress = new ChecksumProgress(options.getOption("dbDriver"),
+				options.getOption("dbURL"), options.getOption("dbUser"), options.getOption("dbPassword"));
+		final ConcurrentHashMap<String, Boolean> verifiedFiles = new ConcurrentHashMap<String, Boolean>();
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+		String lastResourceId = null;
+		long entitiesDone = 0L;
+		long errors = 0L;
+
 		try {
-			List<EmlPackageId> emlPackageIds = getAllDataPackageRevisions(dataPackageRegistry);
+			if (restart) {
+				checksumProgress.deleteCheckpoint(JOB_NAME);
+			}
+			else {
+				ChecksumProgress.Checkpoint checkpoint = checksumProgress.getCheckpoint(JOB_NAME);
+				if (checkpoint != null) {
+					lastResourceId = checkpoint.lastResourceId;
+					entitiesDone = checkpoint.resourcesDone;
+					errors = checkpoint.errors;
+					logger.info(String.format("Resuming storage optimization after resource %s",
+							                  lastResourceId));
+				}
+			}
+
+			ArrayList<DuplicateEntity> page = 
+					dataPackageRegistry.listDuplicateDataEntities(null, lastResourceId, pageSize);
+
+			while (!page.isEmpty()) {
+				List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+				for (final DuplicateEntity duplicateEntity : page) {
+					futures.add(executorService.submit(new Callable<Boolean>() {
+						public Boolean call() throws Exception {
+							linkToCanonical(duplicateEntity, verifiedFiles);
+							return Boolean.TRUE;
+						}
+					}));
+				}
+
+				for (int i = 0; i < futures.size(); i++) {
+					try {
+						futures.get(i).get();
+					}
+					catch (ExecutionException e) {
+						errors++;
+						logger.error(
+								String.format("Exception optimizing data storage for resource %s: %s",
+										      page.get(i).getResourceId(),
+										      e.getCause().getMessage()
+										     )
+									);
+					}
+				}
+
+				entitiesDone += page.size();
+				lastResourceId = page.get(page.size() - 1).getResourceId();
+				checksumProgress.saveCheckpoint(JOB_NAME, lastResourceId, entitiesDone, errors);
+				logger.info(String.format("Checkpoint: %d duplicate entities done, %d errors, last resource %s",
+						                  entitiesDone, errors, lastResourceId));
+
+				if (pageDelay > 0) {
+					Thread.sleep(pageDelay);
+				}
+
+				page = dataPackageRegistry.listDuplicateDataEntities(null, lastResourceId, pageSize);
+			}
+
+			checksumProgress.deleteCheckpoint(JOB_NAME);
+			logger.info(String.format("Finished storage optimization: %d duplicate entities, %d errors",
+					                  entitiesDone, errors));
+		}
+		catch (InterruptedException e) {
+			logger.warn("Storage optimization was interrupted; it will resume from the last checkpoint.");
+			Thread.currentThread().interrupt();
+		}
+		catch (Exception e) {
+			logger.error(String.format("Error optimizing data storage: %s", e.getMessage()));
+			e.printStackTrace();
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+	}
+	
+	
+	/*
+	 * Replaces a duplicate entity's file with a hard link to its canonical
+	 * entity's file. Returns true if a link was created. The canonical file's
+	 * checksum is verified before it is first linked to; verifiedFiles
+	 * remembers the outcome so that each canonical file is read at most once
+	 * per pass, however many duplicates it has.
+	 */
+	private static boolean linkToCanonical(DuplicateEntity duplicateEntity, 
+			                               ConcurrentHashMap<String, Boolean> verifiedFiles) 
+			throws Exception {
+		boolean linked = false;
+		EMLFileSystemEntity fse = duplicateEntity.getEntity();
+		EMLFileSystemEntity pfse = duplicateEntity.getCanonicalEntity();
+		File entityFile = fse.getEntityFile();
+		File previousEntityFile = pfse.getEntityFile();
+
+		// Already sharing storage, or nothing to link to
+		if (fse.isHardLinked() || !entityFile.exists() || !previousEntityFile.exists()) {
+			return linked;
+		}
+
+		// A cheap test before any file is read
+		if (entityFile.length() != previousEntityFile.length()) {
+			logger.warn(String.format("Entity %s has the checksum of %s but a different size",
+					                  entityFile.getAbsolutePath(), previousEntityFile.getAbsolutePath()));
+			return linked;
+		}
+
+		String checksum = pfse.getChecksum();
+		String previousFilePathStr = previousEntityFile.getAbsolutePath();
+		Boolean verified = verifiedFiles.get(previousFilePathStr);
+		if (verified == null) {
+			verified = verifyChecksum(pfse, checksum);
+			verifiedFiles.put(previousFilePathStr, verified);
+		}
+
+		if (verified) {
+			String entityId = fse.getEntityId();
+			String msg = 
+					String.format(
+							"Performing storage optimization on entity: %s %s",
+							fse.getEmlPackageId(), entityId);
+			logger.info(msg);
+			
+			/*
+			 * Rename the data entity to a temporary file name. If
+			 * the hard link is successfully created, we will delete
+			 * the temporary file, else we will rename it back to the
+			 * original file name.
+			 */
+			boolean wasRenamed = fse.renameEntityToTmp();
+			
+			/*
+			 * If the rename succeeded, proceed with optimization
+			 */
+			if (wasRenamed) {
+
+				/*
+				 * Create a hard link from the path of the data entity to
+				 * the path of the canonical data entity.
+				 */
+				FileSystem fileSystem = FileSystems.getDefault();
+
+				String filePathStr = entityFile.getAbsolutePath();
+				Path path = fileSystem.getPath(filePathStr);
+				Path previousPath = fileSystem.getPath(previousFilePathStr);
+
+				String createLinkMsg = 
+					String.format("Creating hard link from %s to %s",
+									filePathStr,previousFilePathStr);
+				logger.info(createLinkMsg);
 
-			for (EmlPackageId emlPackageId : emlPackageIds) {
-				EmlPackageIdFormat epif = new EmlPackageIdFormat();
-				String packageId = epif.format(emlPackageId);
-				
 				try {
-					StorageManager storageManager = new StorageManager(dataPackageRegistry, emlPackageId);
-					storageManager.optimizeStorage();
+					Path returnPath = Files.createLink(path, previousPath);
+					if (returnPath != null) {
+						// This is where we reduce the amount of data stored on disk.
+						boolean tmpWasDeleted = fse.deleteTmpEntity();
+						if (tmpWasDeleted) {
+							// We are done optimizing this data entity
+							fse.setOptimized(true);
+							linked = true;
+						}
+					}
+				}
+				catch (FileAlreadyExistsException e) {
+					// this is okay, just issue a warning
+					msg = String.format(
+							"Failed to create hard link from %s to %s: %s",
+							filePathStr, previousFilePathStr, e.getMessage());
+					logger.warn(msg);
 				}
 				catch (Exception e) {
-					logger.error(
-							String.format("Exception optimizing data storage for data package %s: %s",
-									      packageId,
-									      e.getMessage()
-									     )
-								);
+					msg = String.format(
+							"Error creating hard link from %s to %s: %s",
+							filePathStr, previousFilePathStr, e.getMessage());
+					logger.error(msg);
+					/*
+					 * The hard link failed and the data file does not exist because
+					 * we renamed it, so we need to recover the data file by renaming
+					 * the temporary data file back to its original name.
+					 */
+					try {
+						msg = String.format(
+								"Recovering data file by renaming from %s.tmp to %s",
+								filePathStr, filePathStr);
+						logger.warn(msg);
+						boolean wasRestored = fse.renameTmpToEntity();
+						if (!wasRestored) {
+							throw new Exception("Error occurred: " + msg);
+						}
+					}
+					catch (FileAlreadyExistsException ex) {
+						// this is okay, we have the data file so no action needed
+					}
+					catch (Exception ex) {
+						logger.error(e.getMessage());
+						throw(e);
+					}
 				}
 			}
 		}
+
+		return linked;
+	}
+	
+	
+	/*
+	 * Boolean to determine whether the checksum stored in the resource registry for
+	 * a data entity matches the calculated checksum value of the file on disk.
+	 */
+	private static boolean verifyChecksum(EMLFileSystemEntity emlFileSystemEntity, String checksum) {
+		boolean verified = false;				
+		File entityFile = emlFileSystemEntity.getEntityFile();
+
+		try {
+			String sha1Checksum = DigestUtilsWrapper.getSHA1Checksum(entityFile);
+
+			if (checksum.equals(sha1Checksum)) {
+				verified = true;
+			}
+		}
 		catch (Exception e) {
-			logger.error(String.format("Error optimizing data storage: %s", e.getMessage()));
 			e.printStackTrace();
+			logger.error(e.getMessage());
 		}
+
+		return verified;
 	}
 	
 	
@@ -257,249 +477,27 @@ public class StorageManager {
 	 * Optimizes data storage for the data entities of a specific 
 	 * revision of a data package. The data package revision was determined 
 	 * when the StorageManager object was constructed, so no arguments
-	 * need to be passed.
+	 * need to be passed. Each data entity that duplicates an earlier
+	 * entity, in this or any other data package stored in the same
+	 * resource location, is linked to that earlier entity. The duplicates
+	 * are read a page at a time, following the last resource id of each
+	 * page, until no more are found.
 	 * 
 	 * @throws Exception
 	 */
 	public void optimizeStorage() throws Exception {
-		String scope = emlPackageId.getScope();
-		Integer identifier = emlPackageId.getIdentifier();
-		Integer revision = emlPackageId.getRevision();
-		
-		// Get all prior revisions of this revision, ordered from lowest to highest
-		ArrayList<Integer> priorRevisions = getPriorRevisions(emlPackageId);
-		
-		// If there is at least one prior revision
-		if (priorRevisions != null && priorRevisions.size() > 0) {
-
-			// Get all data entities for this revision
-			ArrayList<EMLFileSystemEntity> fileSystemEntities = getFileSystemEntities(emlPackageId);
-			
-			// For each prior revision, ordered from lowest to highest
-			for (Integer priorRevision : priorRevisions) {
-				
-				// For each data entity for this revision
-				for (EMLFileSystemEntity fse : fileSystemEntities) {
-					EmlPackageId priorEmlPackageId = new EmlPackageId(scope, identifier, priorRevision);
-					String resourceLocation = fse.getResourceLocation();
+		ConcurrentHashMap<String, Boolean> verifiedFiles = new ConcurrentHashMap<String, Boolean>();
+		ArrayList<DuplicateEntity> page = 
+				dataPackageRegistry.listDuplicateDataEntities(packageId, null, DEFAULT_PAGE_SIZE);
 
-					/*
-					 * If we haven't yet optimized this data entity by linking 
-					 * it to a prior revision's data entity
-					 */
-					if (!fse.isOptimized() && !fse.isHardLinked()) {
-						ArrayList<EMLFileSystemEntity> priorFileSystemEntities = getFileSystemEntities(priorEmlPackageId);
-
-						/*
-						 * For each data entity for the prior revision
-						 */
-						for (EMLFileSystemEntity pfse : priorFileSystemEntities) {
-							
-							/*
-							 * If we haven't yet optimized this data entity by
-							 * linking it to one of this prior revision's data
-							 * entities
-							 */
-							if (!fse.isOptimized()) {
-								String checksum = fse.getChecksum();
-								String priorChecksum = pfse.getChecksum();
-
-								/*
-								 * If the sha1_checksum of the data entity for
-								 * this revision EQUALS the sha1_checksum of the
-								 * data entity for the prior revision, and if
-								 * the data entity file for the prior revision
-								 * can be verified to exist on disk with the
-								 * given checksum value
-								 */
-								if (checksum != null && 
-									checksum.equals(priorChecksum) && 
-									(verifyChecksum(pfse, priorChecksum))
-								   ) {
-
-									/*
-									 * If the resource_location value of the
-									 * data entity for this revision EQUALS the
-									 * resource_location value of the data
-									 * entity for the prior revision (i.e. the
-									 * data entities reside on the same disk)
-									 */
-									String priorResourceLocation = pfse.getResourceLocation();
-
-									if (resourceLocation != null && 
-										resourceLocation.equals(priorResourceLocation)
-									   ) {
-
-										String entityId = fse.getEntityId();
-										String msg = 
-												String.format(
-														"Performing storage optimization on entity: %s %s",
-														packageId, entityId);
-										logger.info(msg);
-										
-										/*
-										 * Rename the data entity to a temporary file name. If
-										 * the hard link is successfully created, we will delete
-										 * the temporary file, else we will rename it back to the
-										 * original file name.
-										 */
-										boolean wasRenamed = fse.renameEntityToTmp();
-										
-										/*
-										 * If the rename succeeded, proceed with optimization
-										 */
-										if (wasRenamed) {
-
-											/*
-											 * Create a hard link from the path of the data entity for 
-											 * this revision to the path of the data entity for the
-											 * prior revision.
-											 */
-											FileSystem fileSystem = FileSystems.getDefault();
-
-											File entityFile = fse.getEntityFile();
-											String filePathStr = entityFile.getAbsolutePath();
-											Path path = fileSystem.getPath(filePathStr);
-
-											File previousEntityFile = pfse.getEntityFile();
-											String previousFilePathStr = previousEntityFile.getAbsolutePath();
-											Path previousPath = fileSystem.getPath(previousFilePathStr);
-
-											String createLinkMsg = 
-												String.format("Creating hard link from %s to %s",
-																filePathStr,previousFilePathStr);
-											logger.info(createLinkMsg);
-
-											try {
-												Path returnPath = Files.createLink(path, previousPath);
-												if (returnPath != null) {
-													// This is where we reduce the amount of data stored on disk.
-													boolean tmpWasDeleted = fse.deleteTmpEntity();
-													if (tmpWasDeleted) {
-														// We are done optimizing this data entity
-														fse.setOptimized(true);
-													}
-												}
-											}
-											catch (FileAlreadyExistsException e) {
-												// this is okay, just issue a warning
-												msg = String.format(
-														"Failed to create hard link from %s to %s: %s",
-														filePathStr, previousFilePathStr, e.getMessage());
-												logger.warn(msg);
-											}
-											catch (Exception e) {
-												msg = String.format(
-														"Error creating hard link from %s to %s: %s",
-														filePathStr, previousFilePathStr, e.getMessage());
-												logger.error(msg);
-												/*
-												 * The hard link failed and the data file does not exist because
-												 * we renamed it, so we need to recover the data file by renaming
-												 * the temporary data file back to its original name.
-												 */
-												try {
-													msg = String.format(
-															"Recovering data file by renaming from %s.tmp to %s",
-															filePathStr, filePathStr);
-													logger.warn(msg);
-													boolean wasRestored = fse.renameTmpToEntity();
-													if (!wasRestored) {
-														throw new Exception("Error occurred: " + msg);
-													}
-												}
-												catch (FileAlreadyExistsException ex) {
-													// this is okay, we have the data file so no action needed
-												}
-												catch (Exception ex) {
-													logger.error(e.getMessage());
-													throw(e);
-												}
-											}
-										}
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		}
-	}
-	
-	
-	/*
-	 * Return an array list of EMLFileSystemEntity objects for the specified data package revision.
-	 */
-	private ArrayList<EMLFileSystemEntity> getFileSystemEntities(EmlPackageId emlPackageId) {
-		ArrayList<EMLFileSystemEntity> fileSystemEntities = new ArrayList<EMLFileSystemEntity>();
-		EmlPackageIdFormat epif = new EmlPackageIdFormat();
-		String packageId = epif.format(emlPackageId);
-		
-		try {
-			boolean publicOnly = false;
-			ArrayList<Resource> dataPackageResources = 
-					dataPackageRegistry.listDataPackageResources(packageId, publicOnly);
-			for (Resource resource : dataPackageResources) {
-				String resourceType = resource.getResourceType();
-				if (resourceType != null && resourceType.equals("data")) {
-					String resourceLocation = resource.getResourceLocation();
-					String entityId = resource.getEntityId();
-					EMLFileSystemEntity efse = new EMLFileSystemEntity(resourceLocation, emlPackageId, entityId);
-					String checksum = resource.getSha1Checksum();
-					efse.setChecksum(checksum);
-					fileSystemEntities.add(efse);
-				}
+		while (!page.isEmpty()) {
+			for (DuplicateEntity duplicateEntity : page) {
+				linkToCanonical(duplicateEntity, verifiedFiles);
 			}
-		}
-		catch (Exception e) {
-			logger.error(String.format("Unable to determine entity ids for data package %s: %s",
-					                   packageId, e.getMessage()));
-		}
-		
-		return fileSystemEntities;
-	}
-	
-	
-	/*
-	 * Return an array of prior revisions, ordered from lowest to highest
-	 */
-	private ArrayList<Integer> getPriorRevisions(EmlPackageId emlPackageId) {
-		ArrayList<Integer> priorRevisions = null;
-		
-		try {
-			priorRevisions = dataPackageRegistry.listPriorRevisions(emlPackageId);
-		}
-		catch (Exception e) {
-			logger.error(String.format("Unable to determine prior revisions for data package %s: %s",
-					                   packageId, e.getMessage()));
-		}
-		
-		return priorRevisions;
-	}
-	
-	
-	/*
-	 * Boolean to determine whether the checksum stored in the resource registry for
-	 * a data entity matches the calculated checksum value of the file on disk.
-	 */
-	private boolean verifyChecksum(EMLFileSystemEntity emlFileSystemEntity, String checksum) {
-		boolean verified = false;				
-		File entityFile = emlFileSystemEntity.getEntityFile();
-
-		try {
-			String sha1Checksum = DigestUtilsWrapper.getSHA1Checksum(entityFile);
 
-			if (checksum.equals(sha1Checksum)) {
-				verified = true;
-			}
+			String lastResourceId = page.get(page.size() - 1).getResourceId();
+			page = dataPackageRegistry.listDuplicateDataEntities(packageId, lastResourceId, DEFAULT_PAGE_SIZE);
 		}
-		catch (Exception e) {
-			e.printStackTrace();
-			logger.error(e.getMessage());
-		}
-
-		return verified;
 	}
 
 }
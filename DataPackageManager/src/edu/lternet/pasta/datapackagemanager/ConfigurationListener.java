@@ -115,6 +115,18 @@ public class ConfigurationListener implements ServletContextListener {
     String CONFIG_DIR = servletContext.getInitParameter("CONFIG_DIR");
     String dirPath = servletContext.getRealPath(CONFIG_DIR);
     initialize(dirPath);
+
+    /*
+     * Backfill the growth summary with the data packages uploaded before
+     * it was maintained. A failure does not prevent start-up; the
+     * statistics are then incomplete until the next start-up.
+     */
+    try {
+      DataPackageManager.initializeGrowthSummary();
+    }
+    catch (Exception e) {
+      logger.error("Error initializing the growth summary: " + e.getMessage());
+    }
   }
   
   
@@ -85,19 +85,22 @@ public class DataManagerClient {
 	 * @param dataPackage  the DataPackage object describing the data entities
 	 *                     to be created
 	 * @param transaction  the transaction identifier
+	 * @param emlDigest    the digest of the EML document, used to reuse the
+	 *                     results of an earlier evaluate; may be null
    * @return             A Map of entityId / entityName pairs
 	 */
 	public Map<String, String> createDataEntities(DataPackageRegistry dataPackageRegistry, 
 			                                      DataPackage dataPackage, 
 			                                      String transaction, 
-			                                      boolean useChecksum) 
+			                                      boolean useChecksum,
+			                                      String emlDigest) 
 	        throws IOException,
 	               MalformedURLException,
 	               Exception {
     boolean evaluateMode = false;    
     EMLDataManager emlDataManager = new EMLDataManager();
     Map<String, String> entityPairs = 
-    		emlDataManager.createDataEntities(dataPackageRegistry, dataPackage, evaluateMode, transaction, useChecksum);
+    		emlDataManager.createDataEntities(dataPackageRegistry, dataPackage, evaluateMode, transaction, useChecksum, emlDigest);
       
     return entityPairs;
 	}
@@ -109,17 +112,20 @@ public class DataManagerClient {
    * @param dataPackage  the DataPackage object describing the data entities
    *                     to be created
    * @param transaction  the transaction identifier
+   * @param emlDigest    the digest of the EML document, used to cache the
+   *                     evaluate results; may be null
    * @return             A Map of entityId / entityName pairs
    */
   public Map<String, String> evaluateDataEntities(DataPackageRegistry dataPackageRegistry, 
                                                   DataPackage dataPackage, 
                                                   String transaction, 
-                                                  boolean useChecksum)
+                                                  boolean useChecksum,
+                                                  String emlDigest)
       throws IOException, Exception {
     boolean evaluateMode = true;
     EMLDataManager emlDataManager = new EMLDataManager();
     Map<String, String> entityIdNamePairs = 
-    		emlDataManager.createDataEntities(dataPackageRegistry, dataPackage, evaluateMode, transaction, useChecksum);
+    		emlDataManager.createDataEntities(dataPackageRegistry, dataPackage, evaluateMode, transaction, useChecksum, emlDigest);
 
     return entityIdNamePairs;
   }
@@ -30,13 +30,14 @@ import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -60,8 +61,11 @@ import org.xml.sax.SAXException;
 import edu.lternet.pasta.dml.DataManager;
 import edu.lternet.pasta.dml.database.ConnectionNotAvailableException;
 import edu.lternet.pasta.dml.database.DatabaseConnectionPoolInterface;
+import edu.lternet.pasta.dml.database.ParallelValidator;
+import edu.lternet.pasta.dml.database.TableMonitor;
 import edu.lternet.pasta.dml.download.DownloadHandler;
 import edu.lternet.pasta.dml.parser.DataPackage;
+import edu.lternet.pasta.dml.quality.ErrorBudget;
 import edu.lternet.pasta.dml.quality.QualityReport;
 
 import edu.lternet.pasta.common.DataPackageUpload;
@@ -75,16 +79,17 @@ import edu.lternet.pasta.common.XmlUtility;
 import edu.lternet.pasta.common.eml.DataPackage.DataDescendant;
 import edu.lternet.pasta.common.eml.DataPackage.DataSource;
 import edu.lternet.pasta.common.eml.EMLParser;
+import edu.lternet.pasta.common.eml.EmlObject;
 import edu.lternet.pasta.common.security.access.UnauthorizedException;
 import edu.lternet.pasta.common.security.authorization.AccessMatrix;
 import edu.lternet.pasta.common.security.authorization.Rule;
 import edu.lternet.pasta.common.security.token.AuthToken;
 import edu.lternet.pasta.datamanager.EMLDataManager;
+import edu.lternet.pasta.datamanager.EvaluateCache;
 import edu.lternet.pasta.datamanager.StorageManager;
 import edu.lternet.pasta.datapackagemanager.checksum.DigestUtilsWrapper;
 import edu.lternet.pasta.datapackagemanager.dc.DublinCore;
 import edu.lternet.pasta.datapackagemanager.ore.ResourceMap;
-import edu.lternet.pasta.doi.DOIException;
 import edu.lternet.pasta.doi.DOIScanner;
 import edu.lternet.pasta.doi.Resource;
 import edu.lternet.pasta.metadatamanager.MetadataCatalog;
@@ -254,6 +259,7 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 	private static String pastaUser = null;
 	private static String solrUrl = null;
 	private static String xslDir = null;
+	private static int lineageMaxDepth = 10;
 
 	
 	private static Logger logger = Logger.getLogger(DataPackageManager.class);
@@ -716,6 +722,39 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 	}
 
 
+	/**
+	 * Adds a newly registered DOI to the stored Level-1 EML of a data package
+	 * as an alternate identifier, then regenerates the Dublin Core and updates
+	 * the metadata checksum to match the enhanced EML.
+	 * 
+	 * @param emlPackageId   the data package
+	 * @param doi            the DOI registered for the data package
+	 */
+	public void addDoiToLevelOneMetadata(EmlPackageId emlPackageId, String doi)
+			throws Exception {
+		String packageId = emlPackageId.toString();
+		String metadataChildDir = packageIdToMetadataPath(packageId);
+		File levelOneEMLFile = new File(metadataChildDir, LEVEL_ONE_FILE_NAME);
+
+		if (levelOneEMLFile.exists()) {
+			String enhancedXML = toLevelOneEnhanced(levelOneEMLFile, doi, DOI_SYSTEM_VALUE);
+			boolean isLevelZero = false;
+			levelOneEMLFile = storeMetadata(emlPackageId, enhancedXML, isLevelZero);
+
+			DublinCore dublinCore = new DublinCore();
+			dublinCore.transformMetadata(xslDir, metadataChildDir);
+
+			String metadataURI = composeResourceId(ResourceType.metadata, emlPackageId.getScope(),
+					emlPackageId.getIdentifier(), emlPackageId.getRevision(), null);
+			storeChecksums(metadataURI, levelOneEMLFile);
+		}
+		else {
+			logger.error(String.format("Level-1 EML not found for %s; DOI %s was not added to it",
+					                   packageId, doi));
+		}
+	}
+
+
     /**
 	 * Stores a local copy of EML metadata on the file system.
 	 * 
@@ -792,6 +831,7 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 		WorkingOn workingOn = dataPackageRegistry.makeWorkingOn();
 		File levelOneEMLFile = null;
 		String levelZeroXML = null;
+		String levelOneXML = null;
 		
         String serviceMethod = "createDataPackage";
         if (isEvaluate) {
@@ -831,12 +871,13 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 				 */
 				Map<String, String> entityIdNamePairs = null;
 				DataPackage dataPackage = levelZeroDataPackage.getDataPackage();
+				String emlDigest = EvaluateCache.isEnabled() ? EvaluateCache.digestEml(emlFile) : null;
 				if (isEvaluate) {
 					entityIdNamePairs = dataManagerClient.evaluateDataEntities(
-							dataPackageRegistry, dataPackage, transaction, useChecksum);
+							dataPackageRegistry, dataPackage, transaction, useChecksum, emlDigest);
 				} else {
 					entityIdNamePairs = dataManagerClient.createDataEntities(dataPackageRegistry, dataPackage,
-					    transaction, useChecksum);
+					    transaction, useChecksum, emlDigest);
 				}
 
 				if (entityIdNamePairs != null) {
@@ -865,7 +906,7 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 		 */
 		if (isDataPackageValid && !isEvaluate) {
 			MetadataCatalog solrCatalog = new SolrMetadataCatalog(solrUrl);
-			String levelOneXML = toLevelOne(emlFile, entityURIHashMap);
+			levelOneXML = toLevelOne(emlFile, entityURIHashMap);
 
 		    try {
 		        Document levelZeroEMLDocument = XmlUtility.xmlFileToDocument(emlFile);
@@ -1024,8 +1065,15 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 			    .storeAccessMatrix(reportURI, datasetAccessMatrix, mayOverwrite);
 		}
 
-		qualityReportXML = levelZeroDataPackage.getDataPackage().getQualityReport()
-		    .toXML();
+		/*
+		 * The quality report has already been stored; its XML is only
+		 * generated again when it is returned to the caller, for an evaluate
+		 * or a failed upload.
+		 */
+		if (isEvaluate || !isDataPackageValid) {
+			qualityReportXML = levelZeroDataPackage.getDataPackage().getQualityReport()
+			    .toXML();
+		}
 
 		/*
 		 * Generate the resource map for the newly created data package
@@ -1079,56 +1127,33 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 					}
 				}
 
-				/*
-				 * Register a DOI for the data package
-				 */
-				if (doiScanner != null) {
-					// DOIs should be created only for publicly accessible resources
-					boolean publicOnly = true;
-					ArrayList<Resource> resourceList = 
-							dataPackageRegistry.listDataPackageResources(packageId, publicOnly);
-					if (resourceList != null) {
-						for (Resource resource : resourceList) {
-							if (resource.getResourceType().equals("dataPackage") &&
-								resource.getDoi() == null
-							   ) {
-								try {
-									String doi = doiScanner.processOneResource(resource);
-									if (doi != null) {
-										SolrMetadataCatalog solrCatalog = new SolrMetadataCatalog(solrUrl);
-										solrCatalog.indexDoi(emlPackageId, doi);
-										
-										/*
-										 * Insert the DOI into the EML as an alternate identifier
-										 */
-										if (levelOneEMLFile != null) {
-											String enhancedXML =  toLevelOneEnhanced(levelOneEMLFile, doi, DOI_SYSTEM_VALUE);
-									        boolean isLevelZero = false;
-									        storeMetadata(emlPackageId, enhancedXML, isLevelZero);
-
-									        /*
-									         * Now that the Level-1 EML is stored on disk, we can use it to
-									         * generate Dublin Core and store that as well.
-									         */
-									        String metadataChildDir = packageIdToMetadataPath(packageId);
-									        DublinCore dublinCore = new DublinCore();
-									        dublinCore.transformMetadata(xslDir, metadataChildDir);
-										}
-									}
-								}
-								catch (DOIException e) {
-									logger.error(e.getMessage());
-									e.printStackTrace();
-								}
-							}
-						}
-					}
-				}
-				
 				// Store the checksum of the metadata resource
 				File file = getMetadataFile(scope, identifier, revision.toString(),
 						user, authToken);
 				storeChecksums(metadataURI, file);
+
+				/*
+				 * Queue DOI registration for the data package. DOIs are created
+				 * only for publicly accessible resources. The registrar is
+				 * contacted by the DOI registration queue, which also adds the DOI
+				 * to the Level-1 EML once it has been registered.
+				 */
+				if (doiScanner != null && isPublic) {
+					try {
+						Resource resource = new Resource();
+						resource.setResourceId(dataPackageURI);
+						resource.setResourceType(ResourceType.dataPackage.toString());
+						resource.setPackageId(packageId);
+						resource.setDateCreated(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+						EmlObject emlObject = new EmlObject(levelOneXML);
+						doiScanner.queueRegistration(resource, emlObject);
+					}
+					catch (Exception e) {
+						logger.error(String.format("Error queuing DOI registration for %s: %s",
+								                   packageId, e.getMessage()));
+						e.printStackTrace();
+					}
+				}
 				
 				/*
 				 * Optimize data storage for the data package
@@ -1881,6 +1906,63 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 	}
 
 
+	/**
+	 * Reads the provenance lineage of the specified data package, that is,
+	 * the graph of the data packages it is derived from and the data
+	 * packages derived from it, followed transitively in both directions.
+	 * The whole graph is computed by the data package registry in one
+	 * recursive query, so that clients need not walk it one listDataSources
+	 * or listDataDescendants call at a time.
+	 * 
+	 * @param scope
+	 *          the scope value of the data package
+	 * @param identifier
+	 *          the identifier value of the data package
+	 * @param revision
+	 *          the revision value of the data package
+	 * @param depth
+	 *          the maximum number of provenance steps to follow in each
+	 *          direction, or null for the configured maximum. Larger values
+	 *          are reduced to the configured maximum.
+	 * @param authToken
+	 *          the user authentication token
+	 * @return the lineage graph XML string
+	 */
+	public String readProvenanceLineage(String scope, Integer identifier, Integer revision,
+	                                    Integer depth, AuthToken authToken)
+			throws Exception {
+		if (depth != null && depth < 1) {
+			throw new IllegalArgumentException("The lineage depth must be at least 1: " + depth);
+		}
+
+		int maxDepth = (depth == null) ? lineageMaxDepth : Math.min(depth, lineageMaxDepth);
+		EmlPackageId epi = new EmlPackageId(scope, identifier, revision);
+		EmlPackageIdFormat epif = new EmlPackageIdFormat();
+		String packageId = epif.format(epi);
+
+		DataPackageRegistry dataPackageRegistry = new DataPackageRegistry(dbDriver,
+			    dbURL, dbUser, dbPassword);
+		ProvenanceLineage lineage = dataPackageRegistry.getProvenanceLineage(packageId, maxDepth);
+
+		if (!lineage.isRegistered(packageId)) {
+			String message = "Attempting to read the lineage of a data package that does not exist in PASTA: "
+			    + packageId;
+			throw new ResourceNotFoundException(message);
+		}
+
+		if (!lineage.isReadable(authToken, packageId)) {
+			String dataPackageId = composeResourceId(ResourceType.dataPackage, scope,
+			    identifier, revision, null);
+			String message = "User " + authToken.getUserId()
+			    + " does not have permission to read this data package: "
+			    + dataPackageId;
+			throw new UnauthorizedException(message);
+		}
+
+		return lineage.toXML(authToken);
+	}
+
+
 	/**
 	 * Generates an XML string listing data package changes, supporting the
 	 * listDataPackageChanges web service method.
@@ -1902,34 +1984,100 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 	 */
 	public String listDataPackageChanges(String fromDate, String toDate, String scope) 
 		throws Exception {
-		final int limit = 0;
-		String xml = null;
-		StringBuilder sb = new StringBuilder("");
-		ArrayList<DataPackageUpload> recentChanges = new ArrayList<DataPackageUpload>();
-		
+		StringWriter stringWriter = new StringWriter();
+		writeDataPackageChanges(stringWriter, fromDate, toDate, scope, null, null, 0);
+		return stringWriter.toString();
+	}
+
+
+	/**
+	 * Writes the XML document listing data package changes to a writer,
+	 * supporting the listDataPackageChanges web service method. Changes are
+	 * streamed from the resource registry as they are read, oldest first.
+	 * 
+	 * @param  writer          the writer to which the XML document is written
+	 * @param  fromDate        if non-null, include only changes on or after this date-time
+	 * @param  toDate          if non-null, include only changes on or before this date-time
+	 * @param  scope           if non-null, include only changes with this scope value
+	 * @param  after           if non-null, include only changes after this
+	 *                         date-time (typically the date of the last change
+	 *                         in the previous page)
+	 * @param  afterPackageId  if non-null, the packageId of the last change in
+	 *                         the previous page; changes at exactly the
+	 *                         <code>after</code> date-time are included only
+	 *                         if they sort after this packageId
+	 * @param  limit           the maximum number of changes to list, or 0 for no limit
+	 * @throws Exception
+	 */
+	public void writeDataPackageChanges(Writer writer, String fromDate, String toDate, String scope,
+			                            String after, EmlPackageId afterPackageId, int limit) 
+		throws Exception {
+		DataPackageRegistry dpr = new DataPackageRegistry(dbDriver,
+			    dbURL, dbUser, dbPassword);
 		
+		writer.write("<dataPackageChanges>\n");
+		dpr.writeChanges(writer, fromDate, toDate, scope, after, afterPackageId, limit);
+		writer.write("</dataPackageChanges>\n");
+		writer.flush();
+	}
+
+
+	/**
+	 * Builds the growth summary from the resource registry if it has not
+	 * been built yet, i.e. on the first start-up after the growth summary
+	 * table was added.
+	 * 
+	 * @throws Exception
+	 */
+	public static void initializeGrowthSummary() throws Exception {
+		DataPackageRegistry dpr = new DataPackageRegistry(dbDriver,
+			    dbURL, dbUser, dbPassword);
+		if (dpr.initializeGrowthSummary()) {
+			logger.info("Built the growth summary from the resource registry");
+		}
+	}
+	
+	
+	/**
+	 * Generates an XML string of repository statistics, supporting the
+	 * readDataPackageStatistics web service method. The totals are counted
+	 * with an aggregate query on the resource registry; the monthly growth
+	 * is read from the growth summary, which is maintained as data packages
+	 * are uploaded and deleted.
+	 * 
+	 * @return the XML string of data package statistics
+	 * @throws Exception
+	 */
+	public String readDataPackageStatistics() throws Exception {
 		DataPackageRegistry dpr = new DataPackageRegistry(dbDriver,
 			    dbURL, dbUser, dbPassword);
-		boolean excludeDeleted = false;
-		boolean excludeDuplicateUpdates = false;
-		ArrayList<DataPackageUpload> inserts = dpr.getChanges("createDataPackage", fromDate, toDate, scope, limit, excludeDeleted, excludeDuplicateUpdates);
-		ArrayList<DataPackageUpload> updates = dpr.getChanges("updateDataPackage", fromDate, toDate, scope, limit, excludeDeleted, excludeDuplicateUpdates);
-		ArrayList<DataPackageUpload> deletes = dpr.getChanges("deleteDataPackage", fromDate, toDate, scope, limit, excludeDeleted, excludeDuplicateUpdates);
+		long[] counts = dpr.countDataPackages();
+		ArrayList<DataPackageRegistry.GrowthPeriod> growthPeriods = dpr.getGrowthSummary();
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM");
+		StringBuilder sb = new StringBuilder("<dataPackageStatistics>\n");
 		
-		recentChanges.addAll(inserts);
-		recentChanges.addAll(updates);
-		recentChanges.addAll(deletes);
-		Collections.sort(recentChanges);
+		sb.append("  <contributed>\n");
+		sb.append(String.format("    <dataPackages>%d</dataPackages>\n", counts[0]));
+		sb.append(String.format("    <revisions>%d</revisions>\n", counts[1]));
+		sb.append("  </contributed>\n");
+		sb.append("  <total>\n");
+		sb.append(String.format("    <dataPackages>%d</dataPackages>\n", counts[0] + counts[2]));
+		sb.append(String.format("    <revisions>%d</revisions>\n", counts[1] + counts[3]));
+		sb.append("  </total>\n");
 		
-		sb.append("<dataPackageChanges>\n");
-		for (DataPackageUpload dpu : recentChanges) {
-			sb.append(dpu.toXML());
+		sb.append("  <growth>\n");
+		for (DataPackageRegistry.GrowthPeriod growthPeriod : growthPeriods) {
+			sb.append("    <period>\n");
+			sb.append(String.format("      <month>%s</month>\n", sdf.format(growthPeriod.period)));
+			sb.append(String.format("      <contributed>%b</contributed>\n", growthPeriod.contributed));
+			sb.append(String.format("      <dataPackages>%d</dataPackages>\n", growthPeriod.packages));
+			sb.append(String.format("      <revisions>%d</revisions>\n", growthPeriod.revisions));
+			sb.append("    </period>\n");
 		}
-		sb.append("</dataPackageChanges>\n");
-		
-		xml = sb.toString();
+		sb.append("  </growth>\n");
 		
-		return xml;
+		sb.append("</dataPackageStatistics>\n");
+		return sb.toString();
 	}
 
 
@@ -2145,6 +2293,23 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 					QualityReport.setQualityReporting(false, null);
 				}
 			}
+			ErrorBudget.setLimits(getIntegerOption(options, "dml.errorBudget.maxCheckFailures"),
+			                      getIntegerOption(options, "dml.errorBudget.maxEntityErrors"),
+			                      getIntegerOption(options, "dml.errorBudget.maxErrorPercent"),
+			                      getIntegerOption(options, "dml.errorBudget.rateRows"));
+			String relationalLoadStr = options.getOption("dml.relationalLoad");
+			if (relationalLoadStr != null && relationalLoadStr.trim().equalsIgnoreCase("false")) {
+				DataManager.setRelationalLoad(false);
+			}
+			int parallelThreads = getIntegerOption(options, "dml.parallelValidation.threads");
+			int parallelMinMegabytes = getIntegerOption(options, "dml.parallelValidation.minMegabytes");
+			ParallelValidator.setParallelism(parallelThreads, parallelMinMegabytes * 1024L * 1024L);
+			TableMonitor.setDatabaseQuota(getIntegerOption(options, "dml.tableQuotaMegabytes"));
+
+			int maxDepth = getIntegerOption(options, "datapackagemanager.lineage.maxDepth");
+			if (maxDepth > 0) {
+				lineageMaxDepth = maxDepth;
+			}
 		} catch (Exception e) {
 			logger.error("Error loading options: " + e.getMessage());
 			e.printStackTrace();
@@ -2153,6 +2318,27 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 	}
 
 	
+	/*
+	 * Reads an integer DML option; an unset or invalid value is read as 0,
+	 * which disables the corresponding limit or feature.
+	 */
+	private static int getIntegerOption(Options options, String name) {
+		int value = 0;
+		String str = options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using 0", name, str));
+			}
+		}
+
+		return value;
+	}
+
+	
 	/**
 	 * Parse an EML document using the Data Manager Library method
 	 * DataManager.parseMetadata().
@@ -2648,7 +2834,54 @@ public class DataPackageManager implements DatabaseConnectionPoolInterface {
 		return resourceMapStr;
 	}
 
-	
+
+	/**
+	 * Reads a summary of a data package revision containing the information
+	 * needed by a data package landing page: its revisions, deletion status,
+	 * DOI, upload date, resources, the names and sizes of the data entities
+	 * the user may read, and its provenance sources and descendants. The
+	 * summary is built from a single pass over the data package registry.
+	 *
+	 * @param scope
+	 *          The scope of the data package.
+	 * @param identifier
+	 *          The identifier of the data package.
+	 * @param revisionStr
+	 *          The revision of the data package, or "newest" or "oldest".
+	 * @param authToken
+	 *          The AuthToken object
+	 * @return the data package summary XML string
+	 */
+	public String readDataPackageSummary(String scope, Integer identifier,
+	                                     String revisionStr, AuthToken authToken)
+	        throws Exception {
+		DataPackageRegistry dataPackageRegistry = new DataPackageRegistry(dbDriver,
+		    dbURL, dbUser, dbPassword);
+		DataPackageSummary summary = dataPackageRegistry.getDataPackageSummary(scope,
+		    identifier, revisionStr);
+		Integer revision = summary.getRevision();
+
+		if (revision == null) {
+			String packageId = EMLDataPackage.composePackageId(scope, identifier,
+			    revisionStr);
+			String message = "Attempting to read a data package that does not exist in PASTA: "
+			    + packageId;
+			throw new ResourceNotFoundException(message);
+		}
+
+		String dataPackageId = composeResourceId(ResourceType.dataPackage, scope,
+		    identifier, revision, null);
+		if (!summary.isAuthorized(authToken, dataPackageId, Rule.Permission.read)) {
+			String message = "User " + authToken.getUserId()
+			    + " does not have permission to read this data package: "
+			    + dataPackageId;
+			throw new UnauthorizedException(message);
+		}
+
+		return summary.toXML(authToken);
+	}
+
+
 	/**
 	 * Reads the data package error message from the system.
 	 * 
@@ -24,12 +24,16 @@
 
 package edu.lternet.pasta.datapackagemanager;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.NotActiveException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.file.FileAlreadyExistsException;
@@ -72,6 +76,7 @@ import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.TransformerConfigurationException;
@@ -2821,6 +2826,225 @@ public class DataPackageManagerResource extends PastaWebService {
 	}
 
 
+	/**
+	 * <strong>Read Provenance Lineage</strong> operation, specifying the
+	 * scope, identifier, and revision of the data package in the URI,
+	 * returning in a single response the graph of the data packages it is
+	 * derived from and the data packages derived from it, followed
+	 * transitively in both directions. This replaces walking the lineage one
+	 * <strong>List Data Sources</strong> or <strong>List Data
+	 * Descendants</strong> call at a time.
+	 * 
+	 * <p>
+	 * Revision may be specified as "newest" or "oldest". The optional
+	 * <code>depth</code> query parameter limits the number of provenance steps
+	 * followed in each direction; it is reduced to the maximum configured for
+	 * the service. Each node has an <code>id</code> referred to by the edges,
+	 * its <code>relation</code> to the data package (<code>self</code>,
+	 * <code>source</code>, or <code>derived</code>), and the number of steps
+	 * from the data package. The title of a data package the user is not
+	 * authorized to read is omitted and the node is marked
+	 * <code>readable="false"</code>.
+	 * </p>
+	 * 
+	 * <h4>Requests:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Request</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>none</td>
+	 * <td align=center>none</td>
+	 * <td align=center>
+	 * <code>curl -i -X GET https://pasta.lternet.edu/package/lineage/eml/knb-lter-nwk/1424/1?depth=5</code>
+	 * </td>
+	 * </tr>
+	 * </table>
+	 * 
+	 * <h4>Responses:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Status</b></th>
+	 * <th><b>Reason</b></th>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Message Body</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>200 OK</td>
+	 * <td align=center>The request to read the lineage was successful</td>
+	 * <td align=center>An XML document describing the lineage graph</td>
+	 * <td align=center><code>application/xml</code></td>
+	 * <td>
+	 * <pre>
+     * &lt;?xml version="1.0" encoding="UTF-8"?&gt;
+     * &lt;lineage packageId="knb-lter-nwk.1424.1" maxDepth="5"&gt;
+     *     &lt;nodes&gt;
+     *         &lt;node id="0" relation="self" depth="0" packageId="knb-lter-nwk.1424.1" title="Derived product" url="https://pasta.lternet.edu/package/metadata/eml/knb-lter-nwk/1424/1"/&gt;
+     *         &lt;node id="1" relation="source" depth="1" packageId="knb-lter-nwk.1423.2" title="Source data" url="https://pasta.lternet.edu/package/metadata/eml/knb-lter-nwk/1423/2"/&gt;
+     *         &lt;node id="2" relation="derived" depth="1" packageId="knb-lter-nwk.1425.1" readable="false" url="https://pasta.lternet.edu/package/metadata/eml/knb-lter-nwk/1425/1"/&gt;
+     *     &lt;/nodes&gt;
+     *     &lt;edges&gt;
+     *         &lt;edge source="1" derived="0"/&gt;
+     *         &lt;edge source="0" derived="2"/&gt;
+     *     &lt;/edges&gt;
+     * &lt;/lineage&gt;
+     * </pre>
+	 * </td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>400 Bad Request</td>
+	 * <td align=center>The request contains an error, such as an illegal
+	 * identifier, revision, or depth value</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>401 Unauthorized</td>
+	 * <td align=center>The requesting user is not authorized to read the data
+	 * package</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>404 Not Found</td>
+	 * <td align=center>No data package associated with the specified packageId
+	 * is found</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>405 Method Not Allowed</td>
+	 * <td align=center>The specified HTTP method is not allowed for the
+	 * requested resource</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>500 Internal Server Error</td>
+	 * <td align=center>The server encountered an unexpected condition which
+	 * prevented it from fulfilling the request</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * </table>
+	 * 
+	 * @param scope
+	 *            The scope of the data package
+	 * @param identifier
+	 *            The identifier of the data package
+	 * @param revision
+	 *            The revision of the data package. A string that represents a
+	 *            whole number, or, the symbolic values "oldest" or "newest".
+	 * @param depth
+	 *            The maximum number of provenance steps to follow in each
+	 *            direction, or empty for the configured maximum
+	 * @return a Response, containing the XML-formatted lineage graph
+	 */
+	@GET
+	@Path("/lineage/eml/{scope}/{identifier}/{revision}")
+	@Produces("application/xml")
+	public Response readProvenanceLineage(@Context HttpHeaders headers,
+			@PathParam("scope") String scope,
+			@PathParam("identifier") Integer identifier,
+			@PathParam("revision") String revision,
+			@QueryParam("depth") @DefaultValue("") String depth) {
+		ResponseBuilder responseBuilder = null;
+		Response response = null;
+		final String serviceMethodName = "readProvenanceLineage";
+		Rule.Permission permission = Rule.Permission.read;
+		AuthToken authToken = null;
+
+		try {
+			authToken = getAuthToken(headers);
+			String userId = authToken.getUserId();
+
+			// Is user authorized to run the service method?
+			boolean serviceMethodAuthorized = isServiceMethodAuthorized(
+					serviceMethodName, permission, authToken);
+			if (!serviceMethodAuthorized) {
+				throw new UnauthorizedException("User " + userId
+						+ " is not authorized to execute service method "
+						+ serviceMethodName);
+			}
+
+			Integer depthInt = null;
+			if (!depth.trim().isEmpty()) {
+				try {
+					depthInt = new Integer(depth.trim());
+				}
+				catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Illegal depth value: " + depth);
+				}
+			}
+
+			DataPackageManager dataPackageManager = new DataPackageManager();
+
+			/*
+			 * Handle symbolic revisions such as "newest" and "oldest".
+			 */
+			if (revision != null) {
+				if (revision.equals("newest")) {
+					Integer newest = dataPackageManager.getNewestRevision(
+							scope, identifier);
+					if (newest != null) {
+						revision = newest.toString();
+					}
+				}
+				else
+					if (revision.equals("oldest")) {
+						Integer oldest = dataPackageManager.getOldestRevision(
+								scope, identifier);
+						if (oldest != null) {
+							revision = oldest.toString();
+						}
+					}
+			}
+
+			Integer revisionInt = new Integer(revision);
+			String lineageXML = dataPackageManager.readProvenanceLineage(scope,
+					identifier, revisionInt, depthInt, authToken);
+
+			if (lineageXML != null) {
+				responseBuilder = Response.ok(lineageXML, MediaType.APPLICATION_XML);
+				response = responseBuilder.build();
+			}
+			else {
+				String message = "An unknown error occurred";
+				throw new Exception(message);
+			}
+		}
+		catch (IllegalArgumentException e) {
+			response = WebExceptionFactory.makeBadRequest(e).getResponse();
+		}
+		catch (ResourceNotFoundException e) {
+			response = WebExceptionFactory.makeNotFound(e).getResponse();
+		}
+		catch (UnauthorizedException e) {
+			response = WebExceptionFactory.makeUnauthorized(e).getResponse();
+		}
+		catch (UserErrorException e) {
+			response = WebResponseFactory.makeBadRequest(e);
+		}
+		catch (Exception e) {
+			WebApplicationException webApplicationException = WebExceptionFactory
+					.make(Response.Status.INTERNAL_SERVER_ERROR, e,
+							e.getMessage());
+			response = webApplicationException.getResponse();
+		}
+
+		response = stampHeader(response);
+		return response;
+	}
+
+
 	/**
 	 * <strong>List Data Package Identifiers</strong> operation, specifying the
 	 * scope value to match in the URI.
@@ -5586,6 +5810,217 @@ public class DataPackageManagerResource extends PastaWebService {
 	}
 
 
+	/**
+	 * <strong>Read Data Package Summary</strong> operation, specifying the
+	 * scope, identifier, and revision of the data package in the URI,
+	 * returning in a single response the information needed to display the
+	 * data package's landing page: its revisions, whether it has been deleted,
+	 * its DOI and upload date, its resources, the names and sizes of the data
+	 * entities that the user is authorized to read, and the data packages it
+	 * is derived from or is a source for.
+	 *
+	 * <p>
+	 * Revision may be specified as "newest" or "oldest" to summarize the newest
+	 * or oldest revision, respectively.
+	 * </p>
+	 *
+	 * <h4>Requests:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Request</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>none</td>
+	 * <td align=center>none</td>
+	 * <td align=center>
+	 * <code>curl -i -X GET https://pasta.lternet.edu/package/summary/eml/knb-lter-lno/1/1</code>
+	 * </td>
+	 * </tr>
+	 * </table>
+	 *
+	 * <h4>Responses:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Status</b></th>
+	 * <th><b>Reason</b></th>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Message Body</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>200 OK</td>
+	 * <td align=center>The request to read the data package summary was successful</td>
+	 * <td align=center>An XML document summarizing the data package</td>
+	 * <td align=center><code>application/xml</code></td>
+	 * <td><code><pre>
+     &lt;dataPackageSummary&gt;
+         &lt;packageId&gt;knb-lter-lno.1.1&lt;/packageId&gt;
+         &lt;deleted&gt;false&lt;/deleted&gt;
+         &lt;dateCreated&gt;2013-01-10T15:56:22.264&lt;/dateCreated&gt;
+         &lt;doi&gt;doi:10.6073/pasta/0675d3602ff57f24838ca8d14d7f3961&lt;/doi&gt;
+         &lt;revisions&gt;
+             &lt;revision&gt;1&lt;/revision&gt;
+         &lt;/revisions&gt;
+         &lt;resources&gt;
+             &lt;resource&gt;https://pasta.lternet.edu/package/metadata/eml/knb-lter-lno/1/1&lt;/resource&gt;
+             &lt;resource&gt;https://pasta.lternet.edu/package/data/eml/knb-lter-lno/1/1/67e99349d1666e6f4955e9dda42c3cc2&lt;/resource&gt;
+             &lt;resource&gt;https://pasta.lternet.edu/package/report/eml/knb-lter-lno/1/1&lt;/resource&gt;
+             &lt;resource&gt;https://pasta.lternet.edu/package/eml/knb-lter-lno/1/1&lt;/resource&gt;
+         &lt;/resources&gt;
+         &lt;entities&gt;
+             &lt;entity&gt;
+                 &lt;entityId&gt;67e99349d1666e6f4955e9dda42c3cc2&lt;/entityId&gt;
+                 &lt;entityName&gt;Daily Water Temperature&lt;/entityName&gt;
+                 &lt;entitySize&gt;4096&lt;/entitySize&gt;
+             &lt;/entity&gt;
+         &lt;/entities&gt;
+         &lt;dataSources&gt;
+         &lt;/dataSources&gt;
+         &lt;dataDescendants&gt;
+         &lt;/dataDescendants&gt;
+     &lt;/dataPackageSummary&gt;
+	 * </pre></code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>400 Bad Request</td>
+	 * <td align=center>The request contains an error, such as an illegal
+	 * identifier or revision value</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>401 Unauthorized</td>
+	 * <td align=center>The requesting user is not authorized to read the data
+	 * package</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>404 Not Found</td>
+	 * <td align=center>No data package associated with the specified packageId
+	 * is found</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>405 Method Not Allowed</td>
+	 * <td align=center>The specified HTTP method is not allowed for the
+	 * requested resource</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>500 Internal Server Error</td>
+	 * <td align=center>The server encountered an unexpected condition which
+	 * prevented it from fulfilling the request</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * </table>
+	 *
+	 * @param scope
+	 *            The scope of the data package
+	 * @param identifier
+	 *            The identifier of the data package
+	 * @param revision
+	 *            The revision of the data package
+	 * @return a Response object containing the data package summary if
+	 *         found, else returns a 404 Not Found response
+	 */
+	@GET
+	@Path("/summary/eml/{scope}/{identifier}/{revision}")
+	@Produces("application/xml")
+	public Response readDataPackageSummary(@Context HttpHeaders headers,
+			@PathParam("scope") String scope,
+			@PathParam("identifier") Integer identifier,
+			@PathParam("revision") String revision) {
+		AuthToken authToken = null;
+		String summaryXML = null;
+		String entryText = null;
+		String resourceId = null;
+		ResponseBuilder responseBuilder = null;
+		Response response = null;
+		final String serviceMethodName = "readDataPackageSummary";
+		Rule.Permission permission = Rule.Permission.read;
+		String robot = null;
+		String userAgent = null;
+
+		try {
+			authToken = getAuthToken(headers);
+			String userId = authToken.getUserId();
+			robot = getRobot(headers);
+			userAgent = getUserAgent(headers);
+
+			// Is user authorized to run the service method?
+			boolean serviceMethodAuthorized = isServiceMethodAuthorized(
+					serviceMethodName, permission, authToken);
+			if (!serviceMethodAuthorized) {
+				throw new UnauthorizedException("User " + userId
+						+ " is not authorized to execute service method "
+						+ serviceMethodName);
+			}
+
+			DataPackageManager dataPackageManager = new DataPackageManager();
+			if (revision != null && revision.matches("\\d+")) {
+				resourceId = DataPackageManager.composeResourceId(ResourceType.dataPackage,
+						scope, identifier, new Integer(revision), null);
+			}
+			summaryXML = dataPackageManager.readDataPackageSummary(scope, identifier,
+					revision, authToken);
+
+			if (summaryXML != null) {
+				responseBuilder = Response.ok(summaryXML, MediaType.APPLICATION_XML);
+				response = responseBuilder.build();
+			}
+			else {
+				Exception e = new Exception(
+						"Read data package summary operation failed for unknown reason");
+				throw (e);
+			}
+		}
+		catch (IllegalArgumentException e) {
+			entryText = e.getMessage();
+			response = WebExceptionFactory.makeBadRequest(e).getResponse();
+		}
+		catch (UnauthorizedException e) {
+			entryText = e.getMessage();
+			response = WebExceptionFactory.makeUnauthorized(e).getResponse();
+		}
+		catch (ResourceNotFoundException e) {
+			entryText = e.getMessage();
+			response = WebExceptionFactory.makeNotFound(e).getResponse();
+		}
+		catch (ResourceDeletedException e) {
+			entryText = e.getMessage();
+			response = WebExceptionFactory.makeConflict(e).getResponse();
+		}
+		catch (UserErrorException e) {
+			entryText = e.getMessage();
+			response = WebResponseFactory.makeBadRequest(e);
+		}
+		catch (Exception e) {
+			entryText = e.getMessage();
+			WebApplicationException webApplicationException = WebExceptionFactory
+					.make(Response.Status.INTERNAL_SERVER_ERROR, e,
+							e.getMessage());
+			response = webApplicationException.getResponse();
+		}
+
+		audit(serviceMethodName, authToken, response, resourceId, entryText,
+				robot, userAgent);
+
+		response = stampHeader(response);
+		return response;
+	}
+
+
 	/**
 	 * 
 	 * <strong>Read Data Package ACL</strong> operation, specifying the scope,
@@ -9714,6 +10149,139 @@ public class DataPackageManagerResource extends PastaWebService {
 	}
 
 
+	/**
+	 * <strong>Read Data Package Statistics</strong> operation, returning the
+	 * number of active data packages and data package revisions in PASTA, and
+	 * the number uploaded in each month. Counts are reported separately for
+	 * data packages contributed by sites (i.e., excluding EcoTrends and
+	 * Landsat data packages). The monthly growth is read from a summary 
+	 * that is updated as data packages are uploaded and deleted, so the
+	 * repository is not scanned to produce it.
+	 * 
+	 * <h4>Requests:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Request</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>None</td>
+	 * <td align=center></td>
+	 * <td><code>curl -i -X GET "https://pasta.lternet.edu/package/statistics/eml"
+	 * </td>
+	 * </tr>
+	 * </table>
+	 * 
+	 * <h4>Responses:</h4>
+	 * <table border="1" cellspacing="0" cellpadding="3">
+	 * <tr>
+	 * <th><b>Status</b></th>
+	 * <th><b>Reason</b></th>
+	 * <th><b>Message Body</b></th>
+	 * <th><b>MIME type</b></th>
+	 * <th><b>Sample Message Body</b></th>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>200 OK</td>
+	 * <td align=center>The statistics were read successfully</td>
+	 * <td align=center>An XML document of data package statistics</td>
+	 * <td align=center><code>application/xml</code></td>
+	 * <td>
+	 * <pre>
+         &lt;dataPackageStatistics&gt;
+           &lt;contributed&gt;
+             &lt;dataPackages&gt;5120&lt;/dataPackages&gt;
+             &lt;revisions&gt;14381&lt;/revisions&gt;
+           &lt;/contributed&gt;
+           &lt;total&gt;
+             &lt;dataPackages&gt;32017&lt;/dataPackages&gt;
+             &lt;revisions&gt;41290&lt;/revisions&gt;
+           &lt;/total&gt;
+           &lt;growth&gt;
+             &lt;period&gt;
+               &lt;month&gt;2013-01&lt;/month&gt;
+               &lt;contributed&gt;true&lt;/contributed&gt;
+               &lt;dataPackages&gt;312&lt;/dataPackages&gt;
+               &lt;revisions&gt;340&lt;/revisions&gt;
+             &lt;/period&gt;
+             .
+             .
+             .
+           &lt;/growth&gt;
+         &lt;/dataPackageStatistics&gt;
+	 * </pre>
+	 * </td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>401 Unauthorized</td>
+	 * <td align=center>The requesting user is not authorized to execute the
+	 * Read Data Package Statistics service method</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * <tr>
+	 * <td align=center>500 Internal Server Error</td>
+	 * <td align=center>The server encountered an unexpected condition which
+	 * prevented it from fulfilling the request</td>
+	 * <td align=center>An error message</td>
+	 * <td align=center><code>text/plain</code></td>
+	 * <td align=center><code>Error message</code></td>
+	 * </tr>
+	 * </table>
+	 * 
+	 * @return a Response, which if successful, contains a data package
+	 *         statistics XML document
+	 */
+	@GET
+	@Path("/statistics/eml")
+	@Produces("application/xml")
+	public Response readDataPackageStatistics(@Context HttpHeaders headers) {
+		AuthToken authToken = null;
+		String resourceId = null;
+		String entryText = null;
+		ResponseBuilder responseBuilder = null;
+		Response response = null;
+		final String serviceMethodName = "readDataPackageStatistics";
+		Rule.Permission permission = Rule.Permission.read;
+
+		try {
+			authToken = getAuthToken(headers);
+			String userId = authToken.getUserId();
+
+			// Is user authorized to run the service method?
+			boolean serviceMethodAuthorized = isServiceMethodAuthorized(
+					serviceMethodName, permission, authToken);
+			if (!serviceMethodAuthorized) {
+				throw new UnauthorizedException("User " + userId
+						+ " is not authorized to execute service method "
+						+ serviceMethodName);
+			}
+
+			DataPackageManager dataPackageManager = new DataPackageManager();
+			String xml = dataPackageManager.readDataPackageStatistics();
+			responseBuilder = Response.ok(xml);
+			response = responseBuilder.build();
+		}
+		catch (UnauthorizedException e) {
+			entryText = e.getMessage();
+			response = WebExceptionFactory.makeUnauthorized(e).getResponse();
+		}
+		catch (Exception e) {
+			entryText = e.getMessage();
+			WebApplicationException webApplicationException = WebExceptionFactory
+					.make(Response.Status.INTERNAL_SERVER_ERROR, e,
+							e.getMessage());
+			response = webApplicationException.getResponse();
+		}
+
+		audit(serviceMethodName, authToken, response, resourceId, entryText);
+		response = stampHeader(response);
+		return response;
+	}
+
+
 	/**
 	 * <strong>List Recent Changes</strong> operation, listing data package
 	 * changes (insert, update, and delete operations) recorded in PASTA's resource
@@ -9737,6 +10305,9 @@ public class DataPackageManagerResource extends PastaWebService {
 	 * <li><code>fromDate</code></li>
 	 * <li><code>toDate</code></li>
 	 * <li><code>scope</code></li>
+	 * <li><code>limit</code></li>
+	 * <li><code>after</code></li>
+	 * <li><code>afterPackageId</code></li>
 	 * </ul>
 	 * 
 	 * <p>
@@ -9753,6 +10324,18 @@ public class DataPackageManagerResource extends PastaWebService {
 	 * </ul>
 	 * </p>
 	 * 
+	 * <p>
+	 * Changes are listed oldest first. A long list can be retrieved in pages
+	 * by specifying <code>limit</code>, the maximum number of changes to
+	 * return, and then passing the <code>date</code> and <code>packageId</code>
+	 * of the last change in each page as the <code>after</code> and
+	 * <code>afterPackageId</code> values of the request for the next page.
+	 * An empty list indicates that there are no further changes. For example:
+ 	 * <ul>
+	 * <li><code>limit=1000&after=2017-02-02T15:16:28.374&afterPackageId=knb-lter-nwk.1211.2</code></li>
+	 * </ul>
+	 * </p>
+	 * 
 	 * 
 	 * <h4>Requests:</h4>
 	 * <table border="1" cellspacing="0" cellpadding="3">
@@ -9898,7 +10481,9 @@ public class DataPackageManagerResource extends PastaWebService {
             String fromDate = null;
             String toDate = null;
             String scope = null;
-            String xml = "";
+            String after = null;
+            EmlPackageId afterPackageId = null;
+            int limit = 0;
             
 			if (queryParams != null) {
 				for (String key : queryParams.keySet()) {
@@ -9941,12 +10526,76 @@ public class DataPackageManagerResource extends PastaWebService {
 							}
 						}
 					}
+					else if (key.equals("after")) {
+						List<String> values = queryParams.get(key);
+						String afterParam = values.get(0);
+						if (afterParam != null) {				
+							if (afterParam.startsWith("1") || (afterParam.startsWith("2"))) {
+								after = afterParam;
+							}
+							else {
+								throw new IllegalArgumentException("Bad date parameter: " + afterParam);
+							}
+						}
+					}
+					else if (key.equals("afterPackageId")) {
+						List<String> values = queryParams.get(key);
+						String afterPackageIdParam = values.get(0);
+						if (afterPackageIdParam != null) {
+							afterPackageId = new EmlPackageIdFormat().parse(afterPackageIdParam);
+							if (!afterPackageId.allElementsHaveValues()) {
+								throw new IllegalArgumentException("Bad packageId parameter: " + afterPackageIdParam);
+							}
+						}
+					}
+					else if (key.equals("limit")) {
+						List<String> values = queryParams.get(key);
+						String limitParam = values.get(0);
+						try {
+							limit = Integer.parseInt(limitParam);
+						}
+						catch (NumberFormatException e) {
+							limit = -1;
+						}
+						if (limit < 1) {
+							throw new IllegalArgumentException("Bad limit parameter: " + limitParam);
+						}
+					}
 				}
 			}
+			
+			if (afterPackageId != null && after == null) {
+				throw new IllegalArgumentException("The afterPackageId parameter requires the after parameter");
+			}
 
-			DataPackageManager dataPackageManager = new DataPackageManager();
-			xml = dataPackageManager.listDataPackageChanges(fromDate, toDate, scope);
-			responseBuilder = Response.ok(xml);
+			/*
+			 * The changes are written to the response as they are read from
+			 * the resource registry, rather than being assembled in memory.
+			 */
+			final String fromDateFinal = fromDate;
+			final String toDateFinal = toDate;
+			final String scopeFinal = scope;
+			final String afterFinal = after;
+			final EmlPackageId afterPackageIdFinal = afterPackageId;
+			final int limitFinal = limit;
+			final DataPackageManager dataPackageManager = new DataPackageManager();
+			StreamingOutput streamingOutput = new StreamingOutput() {
+				public void write(OutputStream outputStream) throws IOException {
+					Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+					try {
+						dataPackageManager.writeDataPackageChanges(writer, fromDateFinal, toDateFinal, 
+								scopeFinal, afterFinal, afterPackageIdFinal, limitFinal);
+					}
+					catch (IOException e) {
+						throw e;
+					}
+					catch (Exception e) {
+						logger.error("Error listing data package changes: " + e.getMessage());
+						throw new IOException(e);
+					}
+				}
+			};
+			responseBuilder = Response.ok(streamingOutput, "application/xml");
 			response = responseBuilder.build();
 		}
 		catch (IllegalArgumentException e) {
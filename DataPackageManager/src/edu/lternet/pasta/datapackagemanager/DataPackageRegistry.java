@@ -24,6 +24,8 @@
 
 package edu.lternet.pasta.datapackagemanager;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
@@ -31,6 +33,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
+import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
@@ -38,7 +41,6 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.TreeSet;
 
 import edu.lternet.pasta.common.EmlPackageIdFormat;
 import edu.lternet.pasta.common.PastaResource;
@@ -61,6 +63,7 @@ import edu.lternet.pasta.common.security.authorization.Rule;
 import edu.lternet.pasta.common.security.token.AuthToken;
 import edu.lternet.pasta.common.security.token.AuthTokenFactory;
 import edu.lternet.pasta.common.security.token.BasicAuthToken;
+import edu.lternet.pasta.datamanager.DuplicateEntity;
 import edu.lternet.pasta.datamanager.EMLFileSystemEntity;
 import edu.ucsb.nceas.utilities.Options;
 
@@ -85,6 +88,26 @@ public class DataPackageRegistry {
   private static final String DEFAULT_EML_VERSION = "2.2.0";
   private static final String DEFAULT_EML_NAMESPACE_PREFIX = "https://eml.";
   
+  
+  /**
+   * The number of data packages and revisions uploaded in one month by
+   * either contributing sites or EcoTrends and Landsat, as recorded in the
+   * growth summary table.
+   */
+  public static class GrowthPeriod {
+    public final java.sql.Date period;   // first day of the month
+    public final boolean contributed;    // false for EcoTrends and Landsat data packages
+    public final long packages;          // data packages first uploaded in the month
+    public final long revisions;         // data package revisions uploaded in the month
+
+    public GrowthPeriod(java.sql.Date period, boolean contributed, long packages, long revisions) {
+      this.period = period;
+      this.contributed = contributed;
+      this.packages = packages;
+      this.revisions = revisions;
+    }
+  }
+  
 
   /*
    * Instance variables
@@ -100,6 +123,31 @@ public class DataPackageRegistry {
   private final String RESOURCE_REGISTRY = "datapackagemanager.RESOURCE_REGISTRY";
   private final String RESOURCE_REGISTRY_TABLE = "RESOURCE_REGISTRY";
   private final String DATA_CACHE_REGISTRY = "datapackagemanager.DATA_CACHE_REGISTRY";
+  private final String GROWTH_SUMMARY = "datapackagemanager.GROWTH_SUMMARY";
+  private final String GROWTH_SUMMARY_REBUILD = "datapackagemanager.GROWTH_SUMMARY_REBUILD";
+
+  // True when the resource aliased "r" is readable by the public user. Only an
+  // allow rule for "public" can grant public read access; deny rules and the
+  // allowFirst/denyFirst order never revoke it (see AccessMatrix.isAuthorized).
+  private final String PUBLIC_READ_CONDITION =
+      "EXISTS (SELECT 1 FROM " + ACCESS_MATRIX + " a WHERE a.resource_id=r.resource_id" +
+      " AND lower(a.principal)='" + PUBLIC + "' AND a.access_type='allow')";
+
+  // True when the dataPackage resource aliased "r" is the lowest revision of
+  // its document identifier, i.e. an insert rather than an update
+  private final String FIRST_REVISION_CONDITION =
+      "NOT EXISTS (SELECT 1 FROM " + RESOURCE_REGISTRY + " p WHERE p.resource_type='dataPackage'" +
+      " AND p.scope=r.scope AND p.identifier=r.identifier AND p.revision<r.revision)";
+
+  // True when the resource aliased "r" was contributed by a site rather than
+  // harvested from EcoTrends or Landsat
+  private final String CONTRIBUTED_CONDITION =
+      "(r.scope != 'ecotrends' AND r.scope NOT LIKE 'lter-landsat%')";
+
+  // Adds the counts being inserted to those already recorded for the month
+  private final String GROWTH_SUMMARY_CONFLICT =
+      " ON CONFLICT (period, contributed) DO UPDATE SET" +
+      " packages=g.packages+EXCLUDED.packages, revisions=g.revisions+EXCLUDED.revisions";
  
   private String dbDriver;           // database driver
   private String dbURL;              // database URL
@@ -467,6 +515,13 @@ public class DataPackageRegistry {
 
       try {
         connection = getConnection();
+        /*
+         * The growth summary is updated in the same transaction, so that a
+         * concurrent rebuild of the summary either sees the committed 
+         * resource and discards the increment, or waits for the rebuild and
+         * adds the increment to it.
+         */
+        connection.setAutoCommit(false);
         PreparedStatement pstmt = connection.prepareStatement(insertString);
         pstmt.setString(1, resourceId);
         pstmt.setObject(2, resourceType, java.sql.Types.OTHER);
@@ -498,11 +553,19 @@ public class DataPackageRegistry {
         if (pstmt != null) {
           pstmt.close();
         }
+        
+        if (resourceType == ResourceType.dataPackage) {
+          recordGrowthUpload(connection, resourceId);
+        }
+        connection.commit();
       }
       catch (SQLException e) {
         logger.error("Error inserting record for resource " + resourceId
             + " into the resource registry (" + RESOURCE_REGISTRY + ")");
         logger.error("SQLException: " + e.getMessage());
+        if (connection != null) {
+          connection.rollback();
+        }
         throw (e);
       }
       finally {
@@ -581,12 +644,19 @@ public class DataPackageRegistry {
       logger.debug("updateSQL: " + updateSQL);
       
       try {
+        /*
+         * The growth summary is updated in the same transaction, while the
+         * revisions being deleted are still active.
+         */
+        conn.setAutoCommit(false);
+        recordGrowthDelete(conn, scope, identifier);
         PreparedStatement pstmt = conn.prepareStatement(updateSQL);
         pstmt.setTimestamp(1, timestamp);
         pstmt.setString(2, scope);             // Set WHERE scope value
         pstmt.setInt(3, identifier);           // Set WHERE identifier value
         int nRecords = pstmt.executeUpdate();
         pstmt.close();
+        conn.commit();
         
         // Should update one or more records in the resource registry
         if (nRecords >= 1) { 
@@ -596,6 +666,7 @@ public class DataPackageRegistry {
       }
       catch(SQLException e) {
         logger.error("SQLException: " + e.getMessage());
+        conn.rollback();
         throw(e);
       }
       finally {
@@ -1049,10 +1120,211 @@ public class DataPackageRegistry {
     }
     
     return doi;
-    
+
   }
 
-  
+
+	/**
+	 * Gathers the registry information needed by a data package landing page
+	 * in one pass: one query reads the data package resource of every
+	 * revision (for the revision list and deletion status) together with all
+	 * resources of the requested revision, and a second reads the access
+	 * rules of those resources. The provenance relationships of the revision
+	 * are read on the same connection.
+	 *
+	 * @param scope        the scope value, e.g. "knb-lter-lno"
+	 * @param identifier   the identifier integer value, e.g. 1
+	 * @param revisionStr  the revision value, or "newest" or "oldest"
+	 * @return the data package summary; its revision is null if the
+	 *         requested revision is not in the registry
+	 */
+	public DataPackageSummary getDataPackageSummary(String scope, Integer identifier, String revisionStr)
+			throws ClassNotFoundException, SQLException {
+		DataPackageSummary summary = new DataPackageSummary(scope, identifier);
+		Integer revision = null;
+		String targetQuery = "SELECT CAST(? AS INT8) AS revision";
+
+		if ("newest".equals(revisionStr) || "oldest".equals(revisionStr)) {
+			String aggregate = "newest".equals(revisionStr) ? "max" : "min";
+			targetQuery = String.format(
+					"SELECT %s(revision) AS revision FROM %s" +
+					"  WHERE scope=? AND identifier=? AND resource_type='dataPackage'",
+					aggregate, RESOURCE_REGISTRY);
+		}
+		else {
+			try {
+				revision = new Integer(revisionStr);
+			}
+			catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid revision value: " + revisionStr);
+			}
+		}
+
+		/*
+		 * The data package resource of every revision, plus every resource
+		 * of the requested revision, flagged by the "requested" column.
+		 */
+		String resourceQuery = String.format(
+				"WITH target AS (%s)" +
+				" SELECT r.resource_id, r.resource_type, r.revision, r.entity_id, r.entity_name," +
+				"        r.resource_size, r.doi, r.date_created, r.date_deactivated, r.principal_owner," +
+				"        (r.revision=t.revision) AS requested" +
+				"  FROM %s r, target t" +
+				"  WHERE r.scope=? AND r.identifier=?" +
+				"  AND (r.resource_type='dataPackage' OR r.revision=t.revision)" +
+				"  ORDER BY r.revision, r.date_created",
+				targetQuery, RESOURCE_REGISTRY);
+
+		String ruleQuery = String.format(
+				"SELECT a.resource_id, a.principal, a.access_type, a.access_order, a.permission" +
+				"  FROM %s a JOIN %s r ON a.resource_id=r.resource_id" +
+				"  WHERE r.scope=? AND r.identifier=? AND r.revision=?",
+				ACCESS_MATRIX, RESOURCE_REGISTRY);
+
+		Connection connection = null;
+		PreparedStatement pstmt = null;
+
+		try {
+			connection = getConnection();
+			pstmt = connection.prepareStatement(resourceQuery);
+			int i = 1;
+			if (revision != null) {
+				pstmt.setInt(i++, revision);
+			}
+			else {
+				pstmt.setString(i++, scope);
+				pstmt.setInt(i++, identifier);
+			}
+			pstmt.setString(i++, scope);
+			pstmt.setInt(i++, identifier);
+
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				String resourceId = rs.getString("resource_id");
+				String resourceType = rs.getString("resource_type");
+				boolean isDataPackage = ResourceType.dataPackage.toString().equals(resourceType);
+
+				if (isDataPackage) {
+					summary.addRevision(rs.getInt("revision"));
+					if (rs.getTimestamp("date_deactivated") != null) {
+						summary.setDeleted(true);
+					}
+				}
+
+				if (!rs.getBoolean("requested") || isEvaluateResource(resourceId)) {
+					continue;
+				}
+
+				summary.setRevision(rs.getInt("revision"));
+				summary.addResource(resourceId, rs.getString("principal_owner"));
+
+				if (isDataPackage) {
+					Timestamp dateCreated = rs.getTimestamp("date_created");
+					summary.setDoi(rs.getString("doi"));
+					if (dateCreated != null) {
+						summary.setDateCreated(dateCreated.toString().replace(' ', 'T'));
+					}
+				}
+				else if (ResourceType.data.toString().equals(resourceType)) {
+					Long entitySize = rs.getLong("resource_size");
+					if (rs.wasNull()) {
+						entitySize = null;
+					}
+					summary.addEntity(rs.getString("entity_id"), resourceId,
+							          rs.getString("entity_name"), entitySize);
+				}
+			}
+
+			pstmt.close();
+			pstmt = null;
+			revision = summary.getRevision();
+
+			if (revision != null) {
+				pstmt = connection.prepareStatement(ruleQuery);
+				pstmt.setString(1, scope);
+				pstmt.setInt(2, identifier);
+				pstmt.setInt(3, revision);
+				rs = pstmt.executeQuery();
+
+				while (rs.next()) {
+					Rule rule = new Rule();
+					rule.setPrincipal(rs.getString("principal"));
+					rule.setAccessType(rs.getString("access_type"));
+					rule.setOrder(rs.getString("access_order"));
+					rule.setPermission(Rule.Permission.valueOf(rs.getString("permission")));
+					summary.addAccessRule(rs.getString("resource_id"), rule);
+				}
+
+				pstmt.close();
+				pstmt = null;
+
+				String packageId = summary.getPackageId();
+				summary.setDataSources(listDataSources(connection, packageId));
+				summary.setDataDescendants(listDataDescendants(connection, packageId));
+			}
+		}
+		catch (ClassNotFoundException e) {
+			logger.error("ClassNotFoundException: " + e.getMessage());
+			throw (e);
+		}
+		catch (SQLException e) {
+			logger.error("SQLException: " + e.getMessage());
+			throw (e);
+		}
+		finally {
+			if (pstmt != null) pstmt.close();
+			returnConnection(connection);
+		}
+
+		return summary;
+	}
+
+
+	/**
+	 * Gets the doi value of the data package resource for the specified
+	 * data package revision.
+	 *
+	 * @param scope        the scope value, e.g. "knb-lter-lno"
+	 * @param identifier   the identifier integer value, e.g. 1
+	 * @param revision     the revision value, e.g. 2
+	 * @return the DOI of the data package resource, or null if it has none
+	 */
+	public String getDataPackageDoi(String scope, Integer identifier, Integer revision)
+			throws ClassNotFoundException, SQLException {
+		String doi = null;
+		Connection connection = null;
+		String selectString =
+				"SELECT doi FROM " + RESOURCE_REGISTRY +
+				"  WHERE scope=? AND identifier=? AND revision=?" +
+				"  AND resource_type='dataPackage'";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(selectString);
+			pstmt.setString(1, scope);
+			pstmt.setInt(2, identifier);
+			pstmt.setInt(3, revision);
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				doi = rs.getString(1);
+			}
+
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error("SQLException: " + e.getMessage());
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return doi;
+	}
+
+
 	/**
 	 * Gets the package ID from the DOI value.
 	 * 
@@ -1904,8 +2176,242 @@ public class DataPackageRegistry {
 	}
 
   
+	/**
+	 * Counts the active data packages and data package revisions with a
+	 * single aggregate query.
+	 * 
+	 * @return a four-element array: data packages and revisions contributed
+	 *         by sites, followed by data packages and revisions from 
+	 *         EcoTrends and Landsat
+	 */
+	public long[] countDataPackages() 
+			throws ClassNotFoundException, SQLException {
+		long[] counts = new long[4];
+		Connection conn = null;
+		String selectString = 
+			"SELECT " + CONTRIBUTED_CONDITION + " AS contributed," +
+			" COUNT(DISTINCT (r.scope, r.identifier)), COUNT(*)" +
+			" FROM " + RESOURCE_REGISTRY + " r" +
+			" WHERE r.resource_type='dataPackage' AND r.date_deactivated IS NULL" +
+			" GROUP BY 1";
+
+		try {
+			conn = getConnection();
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery(selectString);
+			while (rs.next()) {
+				int offset = rs.getBoolean(1) ? 0 : 2;
+				counts[offset] = rs.getLong(2);
+				counts[offset + 1] = rs.getLong(3);
+			}
+			stmt.close();
+		}
+		finally {
+			returnConnection(conn);
+		}
+
+		return counts;
+	}
+	
+	
+	/**
+	 * Gets the growth summary: the number of data packages and revisions
+	 * uploaded in each month, oldest month first. The summary is maintained
+	 * as data packages are uploaded and deleted, after being built from the
+	 * resource registry once (see initializeGrowthSummary()).
+	 * 
+	 * @return the list of growth periods
+	 */
+	public ArrayList<GrowthPeriod> getGrowthSummary() 
+			throws ClassNotFoundException, SQLException {
+		ArrayList<GrowthPeriod> growthPeriods = new ArrayList<GrowthPeriod>();
+		Connection conn = null;
+		String selectString = 
+			"SELECT period, contributed, packages, revisions FROM " + GROWTH_SUMMARY +
+			" WHERE packages <> 0 OR revisions <> 0" +
+			" ORDER BY period, contributed";
+
+		try {
+			conn = getConnection();
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery(selectString);
+			while (rs.next()) {
+				growthPeriods.add(new GrowthPeriod(rs.getDate(1), rs.getBoolean(2), 
+						                           rs.getLong(3), rs.getLong(4)));
+			}
+			stmt.close();
+		}
+		finally {
+			returnConnection(conn);
+		}
+
+		return growthPeriods;
+	}
+	
+	
+	/**
+	 * Builds the growth summary from the resource registry unless it has
+	 * already been built, as recorded in the growth summary rebuild table.
+	 * This is the one-time migration of the data packages uploaded before
+	 * the growth summary was maintained; it is run at start-up, since the
+	 * uploads recorded since the table was created make the summary
+	 * non-empty without it being complete.
+	 * 
+	 * @return true if the growth summary was built, false if it had already
+	 *         been built
+	 */
+	public boolean initializeGrowthSummary() 
+			throws ClassNotFoundException, SQLException {
+		boolean isBuilt = false;
+		Connection conn = null;
+		String selectString = "SELECT date_rebuilt FROM " + GROWTH_SUMMARY_REBUILD;
+
+		try {
+			conn = getConnection();
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery(selectString);
+			isBuilt = rs.next();
+			stmt.close();
+		}
+		finally {
+			returnConnection(conn);
+		}
+
+		if (isBuilt) {
+			return false;
+		}
+
+		rebuildGrowthSummary();
+		return true;
+	}
+	
+	
+	/**
+	 * Rebuilds the growth summary from the active data packages in the 
+	 * resource registry, and records the date of the rebuild. A data 
+	 * package counts in the month its oldest active revision was uploaded;
+	 * each revision counts in the month it was uploaded. The summary is
+	 * locked for the rebuild. Uploads and deletes update the summary in the
+	 * same transaction as the resource registry, so each one either commits
+	 * before the lock is granted and is read from the registry, or waits for
+	 * the rebuild to commit and is applied to the rebuilt summary; none is
+	 * lost or counted twice.
+	 */
+	public void rebuildGrowthSummary() 
+			throws ClassNotFoundException, SQLException {
+		Connection conn = null;
+		String lockString = "LOCK TABLE " + GROWTH_SUMMARY + " IN EXCLUSIVE MODE";
+		String deleteString = "DELETE FROM " + GROWTH_SUMMARY;
+		String insertString = 
+			"INSERT INTO " + GROWTH_SUMMARY + " (period, contributed, packages, revisions)" +
+			" SELECT period, contributed, SUM(first_revision), COUNT(*) FROM" +
+			" (SELECT CAST(date_trunc('month', r.date_created) AS DATE) AS period," +
+			" " + CONTRIBUTED_CONDITION + " AS contributed," +
+			" CASE WHEN ROW_NUMBER() OVER (PARTITION BY r.scope, r.identifier" +
+			" ORDER BY r.date_created, r.revision) = 1 THEN 1 ELSE 0 END AS first_revision" +
+			" FROM " + RESOURCE_REGISTRY + " r" +
+			" WHERE r.resource_type='dataPackage' AND r.date_deactivated IS NULL) d" +
+			" GROUP BY period, contributed";
+
+		try {
+			conn = getConnection();
+			conn.setAutoCommit(false);
+			Statement stmt = conn.createStatement();
+			stmt.execute(lockString);
+			stmt.executeUpdate(deleteString);
+			int nPeriods = stmt.executeUpdate(insertString);
+			stmt.executeUpdate("DELETE FROM " + GROWTH_SUMMARY_REBUILD);
+			stmt.executeUpdate("INSERT INTO " + GROWTH_SUMMARY_REBUILD + " (date_rebuilt) VALUES (now())");
+			stmt.close();
+			conn.commit();
+			logger.info(String.format("Rebuilt the growth summary: %d periods", nPeriods));
+		}
+		catch (SQLException e) {
+			logger.error("Error rebuilding the growth summary: " + e.getMessage());
+			if (conn != null) { conn.rollback(); }
+			throw (e);
+		}
+		finally {
+			returnConnection(conn);
+		}
+	}
+	
+	
+	/*
+	 * Adds a newly registered dataPackage resource to the growth summary.
+	 * It counts as a new data package if no other revision of it is active.
+	 * Must be called within the registering transaction. A failure rolls
+	 * back only the summary update, so that the upload can proceed; the 
+	 * summary can be corrected with rebuildGrowthSummary().
+	 */
+	private void recordGrowthUpload(Connection conn, String resourceId) 
+			throws SQLException {
+		String insertString = 
+			"INSERT INTO " + GROWTH_SUMMARY + " AS g (period, contributed, packages, revisions)" +
+			" SELECT CAST(date_trunc('month', r.date_created) AS DATE), " + CONTRIBUTED_CONDITION + "," +
+			" CASE WHEN EXISTS (SELECT 1 FROM " + RESOURCE_REGISTRY + " p WHERE p.resource_type='dataPackage'" +
+			" AND p.scope=r.scope AND p.identifier=r.identifier AND p.revision<>r.revision" +
+			" AND p.date_deactivated IS NULL) THEN 0 ELSE 1 END, 1" +
+			" FROM " + RESOURCE_REGISTRY + " r WHERE r.resource_id=?" +
+			GROWTH_SUMMARY_CONFLICT;
+		Savepoint savepoint = conn.setSavepoint();
+
+		try {
+			PreparedStatement pstmt = conn.prepareStatement(insertString);
+			pstmt.setString(1, resourceId);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error adding %s to the growth summary: %s", 
+					                   resourceId, e.getMessage()));
+			conn.rollback(savepoint);
+		}
+	}
+	
+	
+	/*
+	 * Subtracts the active revisions of a data package that is about to be
+	 * deleted from the growth summary. Must be called within the deleting 
+	 * transaction and before the revisions are deactivated. A failure rolls
+	 * back only the summary update, so that the delete can proceed.
+	 */
+	private void recordGrowthDelete(Connection conn, String scope, Integer identifier) 
+			throws SQLException {
+		String insertString = 
+			"INSERT INTO " + GROWTH_SUMMARY + " AS g (period, contributed, packages, revisions)" +
+			" SELECT period, contributed, -SUM(first_revision), -COUNT(*) FROM" +
+			" (SELECT CAST(date_trunc('month', r.date_created) AS DATE) AS period," +
+			" " + CONTRIBUTED_CONDITION + " AS contributed," +
+			" CASE WHEN ROW_NUMBER() OVER (ORDER BY r.date_created, r.revision) = 1" +
+			" THEN 1 ELSE 0 END AS first_revision" +
+			" FROM " + RESOURCE_REGISTRY + " r" +
+			" WHERE r.resource_type='dataPackage' AND r.scope=? AND r.identifier=?" +
+			" AND r.date_deactivated IS NULL) d" +
+			" GROUP BY period, contributed" +
+			GROWTH_SUMMARY_CONFLICT;
+		Savepoint savepoint = conn.setSavepoint();
+
+		try {
+			PreparedStatement pstmt = conn.prepareStatement(insertString);
+			pstmt.setString(1, scope);
+			pstmt.setInt(2, identifier);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error removing %s.%d from the growth summary: %s", 
+					                   scope, identifier, e.getMessage()));
+			conn.rollback(savepoint);
+		}
+	}
+	
+	
 	/**
 	 * Gets a list of recent data package changes (inserts or updates or deletes.)
+	 * The list is computed by a single query: public readability and whether
+	 * a revision is the first revision of its data package are both
+	 * evaluated in SQL rather than with additional queries for each row.
 	 * 
 	 * @param serviceMethod  one of "createDataPackage", "updateDataPackage", or
 	 *                       "deleteDataPackage"
@@ -1936,114 +2442,201 @@ public class DataPackageRegistry {
 			                                       boolean excludeDuplicateUpdates)
 			throws Exception {
 		Connection conn = null;
-		boolean hasFromTime = fromTime != null;
-		boolean hasToTime = toTime != null;
-		boolean hasScope = scope != null;
+		boolean isDelete = serviceMethod.equals("deleteDataPackage");
+		boolean isUpdate = serviceMethod.equals("updateDataPackage");
+		String dateColumn = isDelete ? "date_deactivated" : "date_created";
 		ArrayList<DataPackageUpload> changeList = new ArrayList<DataPackageUpload>();
+		ArrayList<String> params = new ArrayList<String>();
 		StringBuilder sb = new StringBuilder();
-		TreeSet<String> docids = new TreeSet<String>();
 		
-		if (serviceMethod.equals("deleteDataPackage")) {
-			sb.append("SELECT scope, identifier, revision, principal_owner, doi, date_deactivated FROM ");
-			sb.append(RESOURCE_REGISTRY);
-			sb.append(" WHERE resource_type='dataPackage' ");
-			sb.append("   AND date_deactivated IS NOT NULL ");
-			if (hasFromTime) {
-				sb.append("   AND date_deactivated >= '" + fromTime + "'\n");
-			}
-			if (hasToTime) {
-				sb.append("   AND date_deactivated <= '" + toTime + "'\n");
-			}
-			if (hasScope) {
-				sb.append("   AND scope= '" + scope + "'\n");
-			}
-			sb.append("ORDER BY date_deactivated DESC;");
+		sb.append("SELECT r.scope, r.identifier, r.revision, r.principal_owner, r.doi, r." + dateColumn);
+		if (isUpdate && excludeDuplicateUpdates) {
+			// Rank each update within its document identifier, most recent first
+			sb.append(", ROW_NUMBER() OVER (PARTITION BY r.scope, r.identifier ORDER BY r.date_created DESC) AS docid_rank");
+		}
+		sb.append(" FROM " + RESOURCE_REGISTRY + " r");
+		sb.append(" WHERE r.resource_type='dataPackage'");
+		sb.append(" AND " + PUBLIC_READ_CONDITION);
+		if (isDelete) {
+			sb.append(" AND r.date_deactivated IS NOT NULL");
 		}
 		else {
-			sb.append("SELECT scope, identifier, revision, principal_owner, doi, date_created FROM ");
-			sb.append(RESOURCE_REGISTRY);
-			sb.append(" WHERE resource_type='dataPackage' ");
 			if (excludeDeleted) {
-				sb.append("   AND date_deactivated IS NULL ");
+				sb.append(" AND r.date_deactivated IS NULL");
 			}
-			if (hasFromTime) {
-				sb.append("   AND date_created >= '" + fromTime + "'\n");
-			}
-			if (hasToTime) {
-				sb.append("   AND date_created <= '" + toTime + "'\n");
+			sb.append(isUpdate ? " AND NOT " : " AND ").append(FIRST_REVISION_CONDITION);
+		}
+		appendChangeFilters(sb, params, "r." + dateColumn, fromTime, toTime, scope);
+
+		String sqlQuery = sb.toString();
+		if (isUpdate && excludeDuplicateUpdates) {
+			sqlQuery = "SELECT * FROM (" + sqlQuery + ") u WHERE docid_rank=1";
+		}
+		sqlQuery += " ORDER BY " + dateColumn + " DESC";
+		if (limit != null && limit > 0) {
+			sqlQuery += " LIMIT " + limit;
+		}
+
+		try {
+			conn = getConnection();
+			PreparedStatement pstmt = conn.prepareStatement(sqlQuery);
+			for (int i = 0; i < params.size(); i++) {
+				pstmt.setString(i + 1, params.get(i));
 			}
-			if (hasScope) {
-				sb.append("   AND scope= '" + scope + "'\n");
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				changeList.add(toDataPackageUpload(rs, serviceMethod));
 			}
-			sb.append("ORDER BY date_created DESC;");
+
+			pstmt.close();
 		}
+		finally {
+			returnConnection(conn);
+		}
+
+		return changeList;
+	}
+	
+	
+	/**
+	 * Writes data package changes (inserts, updates, and deletes) of
+	 * publicly-accessible data packages to a writer as a series of XML
+	 * elements, oldest first. The changes are read with a single query and
+	 * streamed from a database cursor, so the size of the list is not limited
+	 * by available memory.
+	 * 
+	 * Changes are ordered by date and then by packageId, which allows a client
+	 * to page through a long list: each page starts after the date and
+	 * packageId of the last change in the previous page.
+	 * 
+	 * @param writer          the writer to which the XML elements are written
+	 * @param fromTime        if non-null, include only changes on or after this date/time
+	 * @param toTime          if non-null, include only changes on or before this date/time
+	 * @param scope           if non-null, include only changes with this scope value
+	 * @param afterTime       if non-null, include only changes after this
+	 *                        date/time (or at this date/time but after afterPackageId)
+	 * @param afterPackageId  if non-null, the packageId of the last change
+	 *                        seen at afterTime
+	 * @param limit           the maximum number of changes to write, or 0 for no limit
+	 * @return the number of changes written
+	 */
+	public int writeChanges(Writer writer, String fromTime, String toTime, String scope,
+			                String afterTime, EmlPackageId afterPackageId, int limit)
+			throws ClassNotFoundException, SQLException, IOException {
+		Connection conn = null;
+		ArrayList<String> params = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		int count = 0;
 		
-		
-		String sqlQuery = sb.toString();
+		sb.append("SELECT r.scope, r.identifier, r.revision, r.principal_owner, r.doi, r.date_created AS change_date,");
+		sb.append(" CASE WHEN " + FIRST_REVISION_CONDITION);
+		sb.append(" THEN 'createDataPackage' ELSE 'updateDataPackage' END AS service_method");
+		sb.append(" FROM " + RESOURCE_REGISTRY + " r");
+		sb.append(" WHERE r.resource_type='dataPackage' AND " + PUBLIC_READ_CONDITION);
+		appendChangeFilters(sb, params, "r.date_created", fromTime, toTime, scope);
+		appendKeysetFilter(sb, params, "r.date_created", afterTime, afterPackageId);
+		sb.append(" UNION ALL");
+		sb.append(" SELECT r.scope, r.identifier, r.revision, r.principal_owner, r.doi, r.date_deactivated AS change_date,");
+		sb.append(" 'deleteDataPackage' AS service_method");
+		sb.append(" FROM " + RESOURCE_REGISTRY + " r");
+		sb.append(" WHERE r.resource_type='dataPackage' AND r.date_deactivated IS NOT NULL AND " + PUBLIC_READ_CONDITION);
+		appendChangeFilters(sb, params, "r.date_deactivated", fromTime, toTime, scope);
+		appendKeysetFilter(sb, params, "r.date_deactivated", afterTime, afterPackageId);
+		sb.append(" ORDER BY change_date, scope, identifier, revision");
+		if (limit > 0) {
+			sb.append(" LIMIT " + limit);
+		}
 
 		try {
 			conn = getConnection();
+			conn.setAutoCommit(false);  // required for the PostgreSQL driver to use a cursor
+			PreparedStatement pstmt = conn.prepareStatement(sb.toString());
+			pstmt.setFetchSize(500);
+			for (int i = 0; i < params.size(); i++) {
+				pstmt.setString(i + 1, params.get(i));
+			}
+			ResultSet rs = pstmt.executeQuery();
 
-			if (conn != null) {
-				Statement stmnt = conn.createStatement();
-				ResultSet rs = stmnt.executeQuery(sqlQuery);
-
-				while (rs.next()) {
-					scope = rs.getString(1);
-					Integer identifier = rs.getInt(2);
-					Integer revision = rs.getInt(3);
-					String principal = rs.getString(4);
-					String doi = rs.getString(5);
-					String doiStr = 
-					    ((doi == null) || doi.equalsIgnoreCase("NULL")) ? null : doi;
-					java.sql.Timestamp changeDate = rs.getTimestamp(6);
-					String changeDateStr = changeDate.toString();
-					changeDateStr = changeDateStr.replace(" ", "T");
-					String resourceId = DataPackageManager.composeResourceId(
-							ResourceType.dataPackage, scope, identifier, revision, null);
-					boolean isPublic = isPublicAccessible(resourceId);
-					
-					// Include only publicly-accessible data packages
-					if (isPublic) {
-						if (serviceMethod.equals("deleteDataPackage")) {
-							DataPackageUpload deletedPackage = new DataPackageUpload(changeDateStr, serviceMethod,
-									scope, identifier, revision, principal, doiStr);
-							changeList.add(deletedPackage);
-						} 
-						else {
-							ArrayList<String> revisions = listDataPackageRevisions(scope, identifier);
-							if (revisions != null) {
-								Integer lowestRevision = lowestRevision(revisions);
-								boolean isLowestRevision = revision.equals(lowestRevision);
-								if (isLowestRevision && (serviceMethod.equals("createDataPackage"))) {
-									DataPackageUpload upload = new DataPackageUpload(changeDateStr, serviceMethod,
-											scope, identifier, revision, principal, doiStr);
-									changeList.add(upload);
-								} 
-								else if (!isLowestRevision && serviceMethod.equals("updateDataPackage")) {
-									String docid = String.format("%s.%d", scope, identifier);
-									if (!excludeDuplicateUpdates || !docids.contains(docid)) {
-										DataPackageUpload upload = new DataPackageUpload(changeDateStr, serviceMethod,
-												scope, identifier, revision, principal, doiStr);
-										changeList.add(upload);
-										docids.add(docid);
-									}
-								}
-							}
-						}
-					}
-					
-					if ((limit > 0) && (changeList.size() >= limit)) {
-						break;
-					}
-				}
+			while (rs.next()) {
+				DataPackageUpload dpu = toDataPackageUpload(rs, rs.getString("service_method"));
+				writer.write(dpu.toXML());
+				count++;
 			}
+
+			pstmt.close();
+			conn.commit();
 		}
 		finally {
 			returnConnection(conn);
 		}
 
-		return changeList;
+		return count;
+	}
+	
+	
+	/*
+	 * Appends the date range and scope filters of a changes query.
+	 */
+	private void appendChangeFilters(StringBuilder sb, ArrayList<String> params, String dateColumn,
+			                         String fromTime, String toTime, String scope) {
+		if (fromTime != null) {
+			sb.append(" AND " + dateColumn + " >= CAST(? AS TIMESTAMP)");
+			params.add(fromTime);
+		}
+		if (toTime != null) {
+			sb.append(" AND " + dateColumn + " <= CAST(? AS TIMESTAMP)");
+			params.add(toTime);
+		}
+		if (scope != null) {
+			sb.append(" AND r.scope=?");
+			params.add(scope);
+		}
+	}
+	
+	
+	/*
+	 * Appends the keyset pagination filter of a changes query.
+	 */
+	private void appendKeysetFilter(StringBuilder sb, ArrayList<String> params, String dateColumn,
+			                        String afterTime, EmlPackageId afterPackageId) {
+		if (afterTime != null) {
+			if (afterPackageId != null) {
+				sb.append(" AND (" + dateColumn + ", r.scope, r.identifier, r.revision)");
+				sb.append(" > (CAST(? AS TIMESTAMP), ?, CAST(? AS INT8), CAST(? AS INT8))");
+				params.add(afterTime);
+				params.add(afterPackageId.getScope());
+				params.add(afterPackageId.getIdentifier().toString());
+				params.add(afterPackageId.getRevision().toString());
+			}
+			else {
+				sb.append(" AND " + dateColumn + " > CAST(? AS TIMESTAMP)");
+				params.add(afterTime);
+			}
+		}
+	}
+	
+	
+	/*
+	 * Builds a DataPackageUpload from the first six columns of a changes
+	 * query: scope, identifier, revision, principal_owner, doi, and the
+	 * date of the change.
+	 */
+	private DataPackageUpload toDataPackageUpload(ResultSet rs, String serviceMethod) 
+			throws SQLException {
+		String scope = rs.getString(1);
+		Integer identifier = rs.getInt(2);
+		Integer revision = rs.getInt(3);
+		String principal = rs.getString(4);
+		String doi = rs.getString(5);
+		String doiStr = 
+		    ((doi == null) || doi.equalsIgnoreCase("NULL")) ? null : doi;
+		java.sql.Timestamp changeDate = rs.getTimestamp(6);
+		String changeDateStr = changeDate.toString();
+		changeDateStr = changeDateStr.replace(" ", "T");
+		
+		return new DataPackageUpload(changeDateStr, serviceMethod,
+				scope, identifier, revision, principal, doiStr);
 	}
 	
 	
@@ -2697,19 +3290,39 @@ public class DataPackageRegistry {
 	   */
 	  public ArrayList<DataDescendant> listDataDescendants(String sourceId)
 	      throws ClassNotFoundException, SQLException, IllegalArgumentException {
-	    ArrayList<DataDescendant> dataDescendants = new ArrayList<DataDescendant>();
-
 	    Connection connection = null;
+
+	    try {
+	      connection = getConnection();
+	      return listDataDescendants(connection, sourceId);
+	    }
+	    catch (ClassNotFoundException e) {
+	      logger.error("ClassNotFoundException: " + e.getMessage());
+	      throw (e);
+	    }
+	    finally {
+	      returnConnection(connection);
+	    }
+	  }
+
+
+	  /*
+	   * Lists the data descendants of a source data package using an
+	   * existing connection.
+	   */
+	  private ArrayList<DataDescendant> listDataDescendants(Connection connection, String sourceId)
+	      throws SQLException {
+	    ArrayList<DataDescendant> dataDescendants = new ArrayList<DataDescendant>();
 	    String selectString = 
 	    		String.format("SELECT DISTINCT derived_id, derived_title FROM %s" +
-	                          "  WHERE source_id='%s' ORDER BY derived_id", 
-	                          PROV_MATRIX, sourceId);
-	    Statement stmt = null;
+	                          "  WHERE source_id=? ORDER BY derived_id", 
+	                          PROV_MATRIX);
+	    PreparedStatement pstmt = null;
 
         try {
-	      connection = getConnection();
-	      stmt = connection.createStatement();
-	      ResultSet rs = stmt.executeQuery(selectString);
+	      pstmt = connection.prepareStatement(selectString);
+	      pstmt.setString(1, sourceId);
+	      ResultSet rs = pstmt.executeQuery();
 	      edu.lternet.pasta.common.eml.DataPackage dataPackage = new DataPackage(); 
 
 	      while (rs.next()) {
@@ -2720,17 +3333,12 @@ public class DataPackageRegistry {
 	        dataDescendants.add(dataDescendant);
 	      }
 	    }
-	    catch (ClassNotFoundException e) {
-	      logger.error("ClassNotFoundException: " + e.getMessage());
-	      throw (e);
-	    }
 	    catch (SQLException e) {
 	      logger.error("SQLException: " + e.getMessage());
 	      throw (e);
 	    }
 	    finally {
-	      if (stmt != null) stmt.close();
-	      returnConnection(connection);
+	      if (pstmt != null) pstmt.close();
 	    }
 
 	    return dataDescendants;
@@ -2754,19 +3362,39 @@ public class DataPackageRegistry {
 	   */
 	  public ArrayList<DataSource> listDataSources(String derivedId)
 	      throws ClassNotFoundException, SQLException, IllegalArgumentException {
-	    ArrayList<DataSource> dataSources = new ArrayList<DataSource>();
-
 	    Connection connection = null;
+
+	    try {
+	      connection = getConnection();
+	      return listDataSources(connection, derivedId);
+	    }
+	    catch (ClassNotFoundException e) {
+	      logger.error("ClassNotFoundException: " + e.getMessage());
+	      throw (e);
+	    }
+	    finally {
+	      returnConnection(connection);
+	    }
+	  }
+
+
+	  /*
+	   * Lists the data sources of a derived data package using an existing
+	   * connection.
+	   */
+	  private ArrayList<DataSource> listDataSources(Connection connection, String derivedId)
+	      throws SQLException {
+	    ArrayList<DataSource> dataSources = new ArrayList<DataSource>();
 	    String selectString = 
 	    		String.format("SELECT DISTINCT source_id, source_title, source_url FROM %s" +
-	                          "  WHERE derived_id='%s' ORDER BY source_title", 
-	                          PROV_MATRIX, derivedId);
-	    Statement stmt = null;
+	                          "  WHERE derived_id=? ORDER BY source_title", 
+	                          PROV_MATRIX);
+	    PreparedStatement pstmt = null;
 
         try {
-	      connection = getConnection();
-	      stmt = connection.createStatement();
-	      ResultSet rs = stmt.executeQuery(selectString);
+	      pstmt = connection.prepareStatement(selectString);
+	      pstmt.setString(1, derivedId);
+	      ResultSet rs = pstmt.executeQuery();
 	      edu.lternet.pasta.common.eml.DataPackage dataPackage = new DataPackage(); 
 
 	      while (rs.next()) {
@@ -2777,6 +3405,130 @@ public class DataPackageRegistry {
 	        dataSources.add(dataSource);
 	      }
 	    }
+	    catch (SQLException e) {
+	      logger.error("SQLException: " + e.getMessage());
+	      throw (e);
+	    }
+	    finally {
+	      if (pstmt != null) pstmt.close();
+	    }
+
+	    return dataSources;
+	  }
+	  
+	  
+	  /**
+	   * Gets the provenance lineage of a data package: the data packages it
+	   * is derived from and the data packages derived from it, transitively,
+	   * up to the specified number of steps in each direction. Both
+	   * directions are walked by a single recursive query; a path is not
+	   * followed past a package that already appears on it, so cycles in the
+	   * provenance matrix end the walk rather than repeat it. The access
+	   * rules of every registered data package in the lineage are then read
+	   * with one further query.
+	   * 
+	   * @param  packageId  the packageId of the data package
+	   * @param  maxDepth   the maximum number of steps followed in each
+	   *                    direction
+	   * @return the lineage of the data package
+	   * @throws ClassNotFoundException
+	   * @throws SQLException
+	   */
+	  public ProvenanceLineage getProvenanceLineage(String packageId, int maxDepth)
+	      throws ClassNotFoundException, SQLException {
+	    String url = DataPackageManager.packageIdToMetadataResourceId(packageId);
+	    ProvenanceLineage lineage = new ProvenanceLineage(packageId, url, maxDepth);
+
+	    /*
+	     * Each path carries the packages already on it; a row whose far end
+	     * is already on the path is returned, since it is a real edge, but is
+	     * flagged so that the walk does not continue from it.
+	     */
+	    String lineageQuery = String.format(
+	        "WITH RECURSIVE" +
+	        " ancestors(derived_id, derived_title, source_id, source_title, source_url, depth, path, is_cycle) AS (" +
+	        "   SELECT p.derived_id, p.derived_title, p.source_id, p.source_title, p.source_url, 1," +
+	        "          ARRAY[p.derived_id], COALESCE(p.source_id=p.derived_id, false)" +
+	        "   FROM %1$s p WHERE p.derived_id=?" +
+	        "   UNION ALL" +
+	        "   SELECT p.derived_id, p.derived_title, p.source_id, p.source_title, p.source_url, a.depth+1," +
+	        "          a.path || p.derived_id, COALESCE(p.source_id=ANY(a.path || p.derived_id), false)" +
+	        "   FROM %1$s p JOIN ancestors a ON p.derived_id=a.source_id" +
+	        "   WHERE a.depth < ? AND NOT a.is_cycle)," +
+	        " descendants(derived_id, derived_title, source_id, source_title, source_url, depth, path, is_cycle) AS (" +
+	        "   SELECT p.derived_id, p.derived_title, p.source_id, p.source_title, p.source_url, 1," +
+	        "          ARRAY[p.source_id], p.derived_id=p.source_id" +
+	        "   FROM %1$s p WHERE p.source_id=?" +
+	        "   UNION ALL" +
+	        "   SELECT p.derived_id, p.derived_title, p.source_id, p.source_title, p.source_url, d.depth+1," +
+	        "          d.path || p.source_id, p.derived_id=ANY(d.path || p.source_id)" +
+	        "   FROM %1$s p JOIN descendants d ON p.source_id=d.derived_id" +
+	        "   WHERE d.depth < ? AND NOT d.is_cycle)" +
+	        " SELECT relation, derived_id, derived_title, source_id, source_title, source_url," +
+	        "        MIN(depth) AS depth" +
+	        " FROM (SELECT '%2$s' AS relation, derived_id, derived_title, source_id, source_title," +
+	        "              source_url, depth FROM ancestors" +
+	        "       UNION ALL" +
+	        "       SELECT '%3$s' AS relation, derived_id, derived_title, source_id, source_title," +
+	        "              source_url, depth FROM descendants) AS lineage" +
+	        " GROUP BY relation, derived_id, derived_title, source_id, source_title, source_url" +
+	        " ORDER BY depth, relation, derived_id, source_id",
+	        PROV_MATRIX, ProvenanceLineage.SOURCE, ProvenanceLineage.DERIVED);
+
+	    String ruleQuery = String.format(
+	        "SELECT r.package_id, r.principal_owner, a.principal, a.access_type, a.access_order, a.permission" +
+	        "  FROM %s r LEFT JOIN %s a ON a.resource_id=r.resource_id" +
+	        "  WHERE r.resource_type='dataPackage' AND r.package_id=ANY(?)",
+	        RESOURCE_REGISTRY, ACCESS_MATRIX);
+
+	    Connection connection = null;
+	    PreparedStatement pstmt = null;
+
+	    try {
+	      connection = getConnection();
+	      pstmt = connection.prepareStatement(lineageQuery);
+	      pstmt.setString(1, packageId);
+	      pstmt.setInt(2, maxDepth);
+	      pstmt.setString(3, packageId);
+	      pstmt.setInt(4, maxDepth);
+	      ResultSet rs = pstmt.executeQuery();
+
+	      while (rs.next()) {
+	        String derivedId = rs.getString("derived_id");
+	        String derivedURL = DataPackageManager.packageIdToMetadataResourceId(derivedId);
+	        String sourceId = rs.getString("source_id");
+	        String sourceURL = rs.getString("source_url");
+	        if (sourceURL == null && sourceId != null) {
+	          sourceURL = DataPackageManager.packageIdToMetadataResourceId(sourceId);
+	        }
+	        lineage.addEdge(rs.getString("relation"), rs.getInt("depth"),
+	                        derivedId, rs.getString("derived_title"), derivedURL,
+	                        sourceId, rs.getString("source_title"), sourceURL);
+	      }
+
+	      pstmt.close();
+	      pstmt = null;
+
+	      ArrayList<String> packageIds = lineage.getPackageIds();
+	      pstmt = connection.prepareStatement(ruleQuery);
+	      pstmt.setArray(1, connection.createArrayOf("varchar", packageIds.toArray()));
+	      rs = pstmt.executeQuery();
+
+	      while (rs.next()) {
+	        String nodePackageId = rs.getString("package_id");
+	        lineage.addDataPackage(nodePackageId, rs.getString("principal_owner"));
+	        String principal = rs.getString("principal");
+
+	        if (principal != null) {
+	          Rule rule = new Rule();
+	          rule.setPrincipal(principal);
+	          rule.setAccessType(rs.getString("access_type"));
+	          rule.setOrder(rs.getString("access_order"));
+	          rule.setPermission(Rule.Permission.valueOf(rs.getString("permission")));
+	          lineage.addAccessRule(nodePackageId, rule);
+	        }
+	      }
+	    }
 	    catch (ClassNotFoundException e) {
 	      logger.error("ClassNotFoundException: " + e.getMessage());
 	      throw (e);
@@ -2786,11 +3538,11 @@ public class DataPackageRegistry {
 	      throw (e);
 	    }
 	    finally {
-	      if (stmt != null) stmt.close();
+	      if (pstmt != null) pstmt.close();
 	      returnConnection(connection);
 	    }
 
-	    return dataSources;
+	    return lineage;
 	  }
 	  
 	  
@@ -3320,6 +4072,214 @@ public class DataPackageRegistry {
 	}
 
 	
+	/**
+	 * Returns one page of the resources that can be assigned a checksum,
+	 * ordered by resource id. Pages are selected by keyset (resource ids
+	 * greater than afterResourceId), so a scan can be resumed from the last
+	 * resource id that it completed.
+	 * 
+	 * @param afterResourceId   the last resource id of the previous page, or
+	 *                          null to start from the beginning
+	 * @param limit             the maximum number of resources to return
+	 * @return Array list of resources
+	 * @throws SQLException
+	 */
+	public ArrayList<Resource> listChecksumableResources(String afterResourceId, int limit) 
+			throws ClassNotFoundException, SQLException {
+		String whereClause = "resource_type != 'dataPackage' AND date_deactivated IS NULL";
+		return listChecksumResourcesPage(whereClause, afterResourceId, limit);
+	}
+
+	
+	/**
+	 * Returns one page of the resources that are lacking an MD5 or SHA-1
+	 * checksum in the resource registry, ordered by resource id.
+	 * 
+	 * @param afterResourceId   the last resource id of the previous page, or
+	 *                          null to start from the beginning
+	 * @param limit             the maximum number of resources to return
+	 * @return Array list of resources
+	 * @throws SQLException
+	 */
+	public ArrayList<Resource> listChecksumlessResources(String afterResourceId, int limit) 
+			throws ClassNotFoundException, SQLException {
+		String whereClause = "resource_type != 'dataPackage' AND (md5_checksum IS NULL OR sha1_checksum IS NULL)";
+		return listChecksumResourcesPage(whereClause, afterResourceId, limit);
+	}
+
+	
+	/*
+	 * Shared implementation of the paged checksum resource lists.
+	 */
+	private ArrayList<Resource> listChecksumResourcesPage(String whereClause, String afterResourceId, int limit) 
+			throws ClassNotFoundException, SQLException {
+		ArrayList<Resource> resourceList = new ArrayList<Resource>();
+		Connection conn = null;
+
+		String queryString = "SELECT resource_id, resource_type, resource_location, scope, identifier, revision,"
+		    + " entity_id, md5_checksum, sha1_checksum FROM datapackagemanager.resource_registry"
+		    + " WHERE " + whereClause + " AND resource_id > ? ORDER BY resource_id LIMIT ?";
+
+		try {
+			conn = this.getConnection();
+			PreparedStatement pstmt = conn.prepareStatement(queryString);
+			pstmt.setString(1, (afterResourceId == null) ? "" : afterResourceId);
+			pstmt.setInt(2, limit);
+			ResultSet result = pstmt.executeQuery();
+
+			while (result.next()) {
+				Resource resource = new Resource();
+				String scope = result.getString("scope");
+				Integer identifier = new Integer(result.getInt("identifier"));
+				Integer revision = new Integer(result.getInt("revision"));
+				resource.setResourceId(result.getString("resource_id"));
+				resource.setResourceType(result.getString("resource_type"));
+				resource.setResourceLocation(result.getString("resource_location"));
+				resource.setScope(scope);
+				resource.setIdentifier(identifier);
+				resource.setRevision(revision);
+				resource.setPackageId(scope + "." + identifier + "." + revision);
+				resource.setEntityId(result.getString("entity_id"));
+				resource.setMd5Checksum(result.getString("md5_checksum"));
+				resource.setSha1Checksum(result.getString("sha1_checksum"));
+				resourceList.add(resource);
+			}
+
+			pstmt.close();
+		} 
+		catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			throw(e);
+		} 
+		finally {
+			returnConnection(conn);
+		}
+
+		return resourceList;
+	}
+
+	
+	/**
+	 * Stores missing checksums for a batch of resources in a single database
+	 * round trip. Only checksums that are currently NULL in the resource
+	 * registry are set; existing values are never overwritten.
+	 * 
+	 * @param resources   resources whose md5Checksum and sha1Checksum fields
+	 *                    hold the calculated values
+	 * @throws SQLException
+	 */
+	public void updateChecksums(ArrayList<Resource> resources) 
+			throws ClassNotFoundException, SQLException {
+		if (resources == null || resources.isEmpty()) return;
+
+		Connection conn = null;
+		String updateString = "UPDATE datapackagemanager.resource_registry"
+		    + " SET md5_checksum=COALESCE(md5_checksum, ?), sha1_checksum=COALESCE(sha1_checksum, ?)"
+		    + " WHERE resource_id=?";
+
+		try {
+			conn = this.getConnection();
+			PreparedStatement pstmt = conn.prepareStatement(updateString);
+			for (Resource resource : resources) {
+				pstmt.setString(1, resource.getMd5Checksum());
+				pstmt.setString(2, resource.getSha1Checksum());
+				pstmt.setString(3, resource.getResourceId());
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
+			pstmt.close();
+		} 
+		catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			throw(e);
+		} 
+		finally {
+			returnConnection(conn);
+		}
+	}
+
+	
+	/**
+	 * Returns data entities that duplicate an earlier data entity, paired
+	 * with that earlier (canonical) entity. Two entities are duplicates when
+	 * they have the same SHA-1 checksum and the same resource location; the
+	 * canonical entity is the earliest-created of them. Each candidate is
+	 * found with a lookup on the resource_registry_sha1_idx index, so no
+	 * data files need to be read.
+	 * 
+	 * @param packageId         the data package revision whose entities are
+	 *                          to be checked, or null for all data entities
+	 * @param afterResourceId   return only entities whose resource id is
+	 *                          greater than this value, or null for all
+	 * @param limit             the maximum number of entities to return
+	 * @return Array list of duplicate entities, ordered by resource id
+	 * @throws SQLException
+	 */
+	public ArrayList<DuplicateEntity> listDuplicateDataEntities(String packageId, 
+			String afterResourceId, int limit) 
+			throws ClassNotFoundException, SQLException {
+		ArrayList<DuplicateEntity> duplicateEntities = new ArrayList<DuplicateEntity>();
+		Connection conn = null;
+
+		String queryString = "SELECT r.resource_id, r.resource_location, r.scope, r.identifier, r.revision,"
+		    + " r.entity_id, r.sha1_checksum, c.scope AS c_scope, c.identifier AS c_identifier,"
+		    + " c.revision AS c_revision, c.entity_id AS c_entity_id"
+		    + " FROM datapackagemanager.resource_registry r CROSS JOIN LATERAL"
+		    + " (SELECT resource_id, scope, identifier, revision, entity_id"
+		    + " FROM datapackagemanager.resource_registry"
+		    + " WHERE resource_type='data' AND sha1_checksum=r.sha1_checksum"
+		    + " AND resource_location=r.resource_location"
+		    + " ORDER BY date_created, resource_id LIMIT 1) c"
+		    + " WHERE r.resource_type='data' AND r.sha1_checksum IS NOT NULL"
+		    + " AND r.resource_location IS NOT NULL AND c.resource_id <> r.resource_id"
+		    + (packageId != null ? " AND r.package_id=?" : "")
+		    + " AND r.resource_id > ? ORDER BY r.resource_id LIMIT ?";
+
+		try {
+			conn = this.getConnection();
+			PreparedStatement pstmt = conn.prepareStatement(queryString);
+			int i = 1;
+			if (packageId != null) {
+				pstmt.setString(i++, packageId);
+			}
+			pstmt.setString(i++, (afterResourceId == null) ? "" : afterResourceId);
+			pstmt.setInt(i++, limit);
+			ResultSet result = pstmt.executeQuery();
+
+			while (result.next()) {
+				String resourceLocation = result.getString("resource_location");
+				String sha1Checksum = result.getString("sha1_checksum");
+				EmlPackageId emlPackageId = new EmlPackageId(result.getString("scope"),
+						result.getInt("identifier"), result.getInt("revision"));
+				EMLFileSystemEntity entity = new EMLFileSystemEntity(resourceLocation,
+						emlPackageId, result.getString("entity_id"));
+				entity.setChecksum(sha1Checksum);
+				EmlPackageId canonicalEmlPackageId = new EmlPackageId(result.getString("c_scope"),
+						result.getInt("c_identifier"), result.getInt("c_revision"));
+				EMLFileSystemEntity canonicalEntity = new EMLFileSystemEntity(resourceLocation,
+						canonicalEmlPackageId, result.getString("c_entity_id"));
+				canonicalEntity.setChecksum(sha1Checksum);
+				duplicateEntities.add(
+						new DuplicateEntity(result.getString("resource_id"), entity, canonicalEntity));
+			}
+
+			pstmt.close();
+		} 
+		catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			throw(e);
+		} 
+		finally {
+			returnConnection(conn);
+		}
+
+		return duplicateEntities;
+	}
+
+	
 	/**
 	 * Returns an array list of resources that are lacking data_format
 	 * values in the resource registry.
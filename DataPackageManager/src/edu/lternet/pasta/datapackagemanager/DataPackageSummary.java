@@ -0,0 +1,343 @@
+/**
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.owasp.encoder.Encode;
+
+import edu.lternet.pasta.common.eml.DataPackage.DataDescendant;
+import edu.lternet.pasta.common.eml.DataPackage.DataSource;
+import edu.lternet.pasta.common.security.authorization.AccessMatrix;
+import edu.lternet.pasta.common.security.authorization.Rule;
+import edu.lternet.pasta.common.security.token.AuthToken;
+
+
+/**
+ * The DataPackageSummary class holds the registry information that a data
+ * package landing page needs: the package's revisions, whether it has been
+ * deleted, its DOI and upload date, its resources and data entities, and its
+ * provenance relationships. It is filled from a single pass over the
+ * resource registry (see DataPackageRegistry.getDataPackageSummary()) and
+ * carries the access rules for each resource of the revision, so that
+ * authorization can be decided in memory rather than with further queries.
+ *
+ * @author dcosta
+ *
+ */
+public class DataPackageSummary {
+
+	/*
+	 * Instance fields
+	 */
+
+	private final String scope;
+	private final Integer identifier;
+	private Integer revision = null;
+	private boolean deleted = false;
+	private String doi = null;
+	private String dateCreated = null;
+	private final ArrayList<Integer> revisions = new ArrayList<Integer>();
+	private final ArrayList<String> resourceIds = new ArrayList<String>();
+	private final ArrayList<SummaryEntity> entities = new ArrayList<SummaryEntity>();
+	private final Map<String, String> principalOwners = new HashMap<String, String>();
+	private final Map<String, ArrayList<Rule>> accessRules = new HashMap<String, ArrayList<Rule>>();
+	private ArrayList<DataSource> dataSources = new ArrayList<DataSource>();
+	private ArrayList<DataDescendant> dataDescendants = new ArrayList<DataDescendant>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	public DataPackageSummary(String scope, Integer identifier) {
+		this.scope = scope;
+		this.identifier = identifier;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public String getScope() {
+		return scope;
+	}
+
+
+	public Integer getIdentifier() {
+		return identifier;
+	}
+
+
+	/**
+	 * @return the revision being summarized, or null if no such revision
+	 *         of the data package was found in the registry
+	 */
+	public Integer getRevision() {
+		return revision;
+	}
+
+
+	public void setRevision(Integer revision) {
+		this.revision = revision;
+	}
+
+
+	/**
+	 * @return the package identifier of the summarized revision,
+	 *         e.g. "knb-lter-nin.1.1"
+	 */
+	public String getPackageId() {
+		return String.format("%s.%d.%d", scope, identifier, revision);
+	}
+
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+
+	public void setDeleted(boolean deleted) {
+		this.deleted = deleted;
+	}
+
+
+	public String getDoi() {
+		return doi;
+	}
+
+
+	public void setDoi(String doi) {
+		this.doi = doi;
+	}
+
+
+	public String getDateCreated() {
+		return dateCreated;
+	}
+
+
+	public void setDateCreated(String dateCreated) {
+		this.dateCreated = dateCreated;
+	}
+
+
+	public ArrayList<Integer> getRevisions() {
+		return revisions;
+	}
+
+
+	public void addRevision(Integer revision) {
+		revisions.add(revision);
+	}
+
+
+	public ArrayList<String> getResourceIds() {
+		return resourceIds;
+	}
+
+
+	/**
+	 * Adds a resource of the summarized revision.
+	 *
+	 * @param resourceId       the resource identifier
+	 * @param principalOwner   the principal owner of the resource
+	 */
+	public void addResource(String resourceId, String principalOwner) {
+		resourceIds.add(resourceId);
+		if (principalOwner != null) {
+			principalOwners.put(resourceId, principalOwner);
+		}
+	}
+
+
+	public ArrayList<SummaryEntity> getEntities() {
+		return entities;
+	}
+
+
+	public void addEntity(String entityId, String resourceId, String entityName, Long entitySize) {
+		entities.add(new SummaryEntity(entityId, resourceId, entityName, entitySize));
+	}
+
+
+	/**
+	 * Adds an access rule for one of the resources of the summarized revision.
+	 *
+	 * @param resourceId   the resource identifier
+	 * @param rule         the access rule
+	 */
+	public void addAccessRule(String resourceId, Rule rule) {
+		ArrayList<Rule> ruleList = accessRules.get(resourceId);
+		if (ruleList == null) {
+			ruleList = new ArrayList<Rule>();
+			accessRules.put(resourceId, ruleList);
+		}
+		ruleList.add(rule);
+	}
+
+
+	public void setDataSources(ArrayList<DataSource> dataSources) {
+		this.dataSources = dataSources;
+	}
+
+
+	public void setDataDescendants(ArrayList<DataDescendant> dataDescendants) {
+		this.dataDescendants = dataDescendants;
+	}
+
+
+	/**
+	 * Determines whether the user is authorized with the specified permission
+	 * on one of the resources of the summarized revision, using the same
+	 * rules as the Authorizer class but without querying the registry.
+	 *
+	 * @param authToken    the user's authentication token
+	 * @param resourceId   the resource identifier
+	 * @param permission   the permission being requested
+	 * @return true if the user is authorized, else false
+	 */
+	public boolean isAuthorized(AuthToken authToken, String resourceId, Rule.Permission permission) {
+		boolean isAuthorized = false;
+		String principalOwner = principalOwners.get(resourceId);
+
+		if (principalOwner != null) {
+			ArrayList<Rule> ruleList = accessRules.get(resourceId);
+			if (ruleList == null) {
+				ruleList = new ArrayList<Rule>();
+			}
+			AccessMatrix accessMatrix = new AccessMatrix(ruleList);
+			isAuthorized = accessMatrix.isAuthorized(authToken, principalOwner, permission);
+		}
+
+		return isAuthorized;
+	}
+
+
+	/**
+	 * Composes the XML representation of the summary for the specified user.
+	 * The names and sizes of data entities are included only for entities
+	 * the user is authorized to read, matching the behavior of the
+	 * readDataEntityNames and readDataEntitySizes service methods.
+	 *
+	 * @param authToken   the user's authentication token
+	 * @return the summary XML string
+	 */
+	public String toXML(AuthToken authToken) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<dataPackageSummary>\n");
+		sb.append(String.format("    <packageId>%s</packageId>\n", Encode.forXml(getPackageId())));
+		sb.append(String.format("    <deleted>%b</deleted>\n", deleted));
+
+		if (dateCreated != null)
+			{ sb.append(String.format("    <dateCreated>%s</dateCreated>\n", dateCreated)); }
+
+		if (doi != null && !doi.isEmpty())
+			{ sb.append(String.format("    <doi>%s</doi>\n", Encode.forXml(doi))); }
+
+		sb.append("    <revisions>\n");
+		for (Integer rev : revisions) {
+			sb.append(String.format("        <revision>%d</revision>\n", rev));
+		}
+		sb.append("    </revisions>\n");
+
+		sb.append("    <resources>\n");
+		for (String resourceId : resourceIds) {
+			sb.append(String.format("        <resource>%s</resource>\n", Encode.forXml(resourceId)));
+		}
+		sb.append("    </resources>\n");
+
+		sb.append("    <entities>\n");
+		for (SummaryEntity entity : entities) {
+			if (isAuthorized(authToken, entity.getResourceId(), Rule.Permission.read)) {
+				sb.append("        <entity>\n");
+				sb.append(String.format("            <entityId>%s</entityId>\n",
+						                Encode.forXml(entity.getEntityId())));
+				if (entity.getEntityName() != null)
+					{ sb.append(String.format("            <entityName>%s</entityName>\n",
+							                  Encode.forXml(entity.getEntityName()))); }
+				if (entity.getEntitySize() != null)
+					{ sb.append(String.format("            <entitySize>%d</entitySize>\n",
+							                  entity.getEntitySize())); }
+				sb.append("        </entity>\n");
+			}
+		}
+		sb.append("    </entities>\n");
+
+		sb.append("    <dataSources>\n");
+		for (DataSource dataSource : dataSources) {
+			sb.append(dataSource.toXML());
+		}
+		sb.append("    </dataSources>\n");
+
+		sb.append("    <dataDescendants>\n");
+		for (DataDescendant dataDescendant : dataDescendants) {
+			sb.append(dataDescendant.toXML());
+		}
+		sb.append("    </dataDescendants>\n");
+
+		sb.append("</dataPackageSummary>\n");
+		return sb.toString();
+	}
+
+
+	/*
+	 * A data entity of the summarized revision.
+	 */
+	public static class SummaryEntity {
+
+		private final String entityId;
+		private final String resourceId;
+		private final String entityName;
+		private final Long entitySize;
+
+		SummaryEntity(String entityId, String resourceId, String entityName, Long entitySize) {
+			this.entityId = entityId;
+			this.resourceId = resourceId;
+			this.entityName = entityName;
+			this.entitySize = entitySize;
+		}
+
+		public String getEntityId() {
+			return entityId;
+		}
+
+		public String getResourceId() {
+			return resourceId;
+		}
+
+		public String getEntityName() {
+			return entityName;
+		}
+
+		public Long getEntitySize() {
+			return entitySize;
+		}
+	}
+
+}
@@ -3,6 +3,7 @@ package edu.lternet.pasta.datapackagemanager;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
@@ -10,6 +11,19 @@ import edu.lternet.pasta.common.DataPackageUpload;
 import edu.ucsb.nceas.utilities.Options;
 
 
+/**
+ * Provides the feed of recent data package inserts and updates that is
+ * served by the /uploads/eml resource.
+ * 
+ * The feed is read from the resource registry, with an indexed query on
+ * date_created, so it survives restarts and includes uploads made by other
+ * DataPackageManager instances. The most recent uploads are held as a
+ * pre-rendered snapshot which is replaced as a whole, so reads are cheap
+ * and never see a partially updated list. The snapshot is refreshed after
+ * each local upload, and by the first read after it is older than
+ * datapackagemanager.recentUploads.refreshSeconds; other reads meanwhile
+ * keep being served from the previous snapshot.
+ */
 public class DataPackageUploadManager {
 	
 	/*
@@ -23,9 +37,10 @@ public class DataPackageUploadManager {
 	private static String dbURL = null;
 	private static String dbUser = null;
 	private static String dbPassword = null;
+	private static int refreshSeconds = 60;
 
-	private static ArrayList<DataPackageUpload> recentInserts = null;
-	private static ArrayList<DataPackageUpload> recentUpdates = null;
+	private static volatile Snapshot snapshot = null;
+	private static final AtomicBoolean refreshing = new AtomicBoolean(false);
 	public static final int ARRAY_LIMIT = 5;
 	
 	
@@ -52,6 +67,11 @@ public class DataPackageUploadManager {
 			dbURL = options.getOption("dbURL");
 			dbUser = options.getOption("dbUser");
 			dbPassword = options.getOption("dbPassword");
+
+			String refreshStr = options.getOption("datapackagemanager.recentUploads.refreshSeconds");
+			if (refreshStr != null && !refreshStr.trim().isEmpty()) {
+				refreshSeconds = Integer.parseInt(refreshStr.trim());
+			}
 		} 
 		catch (Exception e) {
 			logger.error("Error loading options: " + e.getMessage());
@@ -62,10 +82,12 @@ public class DataPackageUploadManager {
 
 	
 	/*
-	 * Initializes the database properties and the data structures
+	 * Reads the recent uploads from the resource registry and replaces the
+	 * snapshot. Refreshes are serialized, so that a refresh that started
+	 * earlier never replaces the result of one that started later.
 	 */
-	private static void initializeUploads() throws Exception {
-		loadOptions();
+	private static synchronized void refresh() throws Exception {
+		if (dbDriver == null) { loadOptions(); }
 		DataPackageRegistry dpr = new DataPackageRegistry(dbDriver, dbURL, dbUser, dbPassword);
 		final int DELTA_DAYS = 60;
 		
@@ -81,23 +103,57 @@ public class DataPackageUploadManager {
 		boolean excludeDeleted = true;
 		boolean excludeDuplicateUpdates = true;
 
-		if (recentInserts == null) {
-			logger.warn("Initializing recent inserts.");
-			recentInserts = new ArrayList<DataPackageUpload>();
-			ArrayList<DataPackageUpload> inserts = dpr.getChanges("createDataPackage", fromDate, toDate, scope, ARRAY_LIMIT, excludeDeleted, excludeDuplicateUpdates);
-			for (int i = inserts.size() - 1; i >= 0; i--) {
-				recentInserts.add(inserts.get(i));
+		ArrayList<DataPackageUpload> inserts = dpr.getChanges("createDataPackage", fromDate, toDate, scope, ARRAY_LIMIT, excludeDeleted, excludeDuplicateUpdates);
+		ArrayList<DataPackageUpload> updates = dpr.getChanges("updateDataPackage", fromDate, toDate, scope, ARRAY_LIMIT, excludeDeleted, excludeDuplicateUpdates);
+		snapshot = new Snapshot(inserts, updates);
+		logger.debug(String.format("Refreshed recent uploads: %d inserts, %d updates",
+				                   inserts.size(), updates.size()));
+	}
+	
+	
+	/*
+	 * Refreshes the snapshot after a local upload. A failure only delays the
+	 * upload's appearance in the feed until the next refresh, so it is
+	 * logged rather than failing the upload.
+	 */
+	private static void refreshAfterUpload(DataPackageUpload dataPackageUpload) {
+		try {
+			refresh();
+		}
+		catch (Exception e) {
+			logger.warn(String.format("Unable to refresh recent uploads after %s: %s",
+					                  dataPackageUpload.getPackageId(), e.getMessage()));
+		}
+	}
+	
+	
+	/*
+	 * Gets the current snapshot, refreshing it first if there is none. If it
+	 * is stale, one caller refreshes it while the others use it as it is.
+	 */
+	private static Snapshot getSnapshot() throws Exception {
+		Snapshot current = snapshot;
+		
+		if (current == null) {
+			synchronized (DataPackageUploadManager.class) {
+				if (snapshot == null) { refresh(); }
+				return snapshot;
 			}
 		}
 		
-		if (recentUpdates == null)  {
-			logger.warn("Initializing recent updates.");
-			recentUpdates = new ArrayList<DataPackageUpload>();
-			ArrayList<DataPackageUpload> updates = dpr.getChanges("updateDataPackage", fromDate, toDate, scope, ARRAY_LIMIT, excludeDeleted, excludeDuplicateUpdates);
-			for (int i = updates.size() - 1; i >= 0; i--) {
-				recentUpdates.add(updates.get(i));
+		if (current.isStale() && refreshing.compareAndSet(false, true)) {
+			try {
+				refresh();
+			}
+			catch (Exception e) {
+				logger.warn("Unable to refresh recent uploads: " + e.getMessage());
+			}
+			finally {
+				refreshing.set(false);
 			}
 		}
+		
+		return snapshot;
 	}
 	
 
@@ -109,26 +165,8 @@ public class DataPackageUploadManager {
 	 * @throws Exception
 	 */
 	public static String getRecentInserts(int limit) throws Exception {
-		StringBuilder xmlStringBuilder = new StringBuilder("<dataPackageUploads>\n");
-
-		if (recentInserts == null) { initializeUploads(); }
-		
-		int nUploads = recentInserts.size();
-		int count = 0;
-
-		for (int i = nUploads - 1; i >= 0; i--) {
-			if (count < limit) {
-				DataPackageUpload dpu = recentInserts.get(i);
-				xmlStringBuilder.append(dpu.toXML());
-				count++;
-			}
-			else {
-				break;
-			}
-		}
-
-		xmlStringBuilder.append("</dataPackageUploads>\n");
-		return xmlStringBuilder.toString();
+		Snapshot current = getSnapshot();
+		return Snapshot.toXML(current.insertElements, current.insertsXML, limit);
 	}
 	
 	
@@ -140,84 +178,32 @@ public class DataPackageUploadManager {
 	 * @throws Exception
 	 */
 	public static String getRecentUpdates(int limit)  throws Exception {
-		StringBuilder xmlStringBuilder = new StringBuilder("<dataPackageUploads>\n");
-		
-		if (recentUpdates == null) { initializeUploads(); }
-		
-		int nUploads = recentUpdates.size();
-		int count = 0;
-
-		for (int i = nUploads - 1; i >= 0; i--) {
-			if (count < limit) {
-				DataPackageUpload dpu = recentUpdates.get(i);
-				xmlStringBuilder.append(dpu.toXML());
-				count++;
-			}
-			else {
-				break;
-			}
-		}
-
-		xmlStringBuilder.append("</dataPackageUploads>\n");
-		return xmlStringBuilder.toString();
+		Snapshot current = getSnapshot();
+		return Snapshot.toXML(current.updateElements, current.updatesXML, limit);
 	}
 	
 	
 	/**
-	 * Adds a DataPackageUpload object to the list of recent inserts.
+	 * Records a new data package insert. The insert has already been added
+	 * to the resource registry, so the feed is refreshed from there.
 	 * 
-	 * @param dataPackageUpload   the data package to be added
+	 * @param dataPackageUpload   the data package that was inserted
 	 * @throws Exception
 	 */
 	public static void addRecentInsert(DataPackageUpload dataPackageUpload) throws Exception {
-		if (recentInserts == null) { initializeUploads(); }
-		
-		System.out.println("Old recent inserts list:");
-		printUploads(ARRAY_LIMIT, true);
-		recentInserts.add(dataPackageUpload);
-		
-		if (recentInserts.size() > ARRAY_LIMIT) {
-			ArrayList<DataPackageUpload> newRecentInserts = new ArrayList<DataPackageUpload>();
-			
-			// bypass index 0 so we can replace it with the new data package update
-			for (int i = 1; i < recentInserts.size(); i++) {
-				DataPackageUpload dpu = recentInserts.get(i);
-				newRecentInserts.add(dpu);
-			}
-			recentInserts = newRecentInserts;
-		}
-
-		System.out.println("New recent inserts list:");
-		printUploads(ARRAY_LIMIT, true);
+		refreshAfterUpload(dataPackageUpload);
 	}
 	
 	
 	/**
-	 * Adds a DataPackageUpload object to the list of recent updates.
+	 * Records a new data package update. The update has already been added
+	 * to the resource registry, so the feed is refreshed from there.
 	 * 
-	 * @param dataPackageUpload   the data package to be added
+	 * @param dataPackageUpload   the data package that was updated
 	 * @throws Exception
 	 */
 	public static void addRecentUpdate(DataPackageUpload dataPackageUpload) throws Exception {
-		if (recentUpdates == null) { initializeUploads(); }
-			
-		System.out.println("Old recent updates list:");
-		printUploads(ARRAY_LIMIT, false);
-		recentUpdates.add(dataPackageUpload);
-		
-		if (recentUpdates.size() > ARRAY_LIMIT) {
-			ArrayList<DataPackageUpload> newRecentUpdates = new ArrayList<DataPackageUpload>();
-			
-			// bypass index 0 so we can replace it with the new data package update
-			for (int i = 1; i < recentUpdates.size(); i++) {
-				DataPackageUpload dpu = recentUpdates.get(i);
-				newRecentUpdates.add(dpu);
-			}
-			recentUpdates = newRecentUpdates;
-		}
-
-		System.out.println("New recent updates list:");
-		printUploads(ARRAY_LIMIT, false);
+		refreshAfterUpload(dataPackageUpload);
 	}
 	
 	
@@ -250,4 +236,57 @@ public class DataPackageUploadManager {
 		}
 	}
 
+	
+	/*
+	 * An immutable, pre-rendered copy of the recent uploads feed.
+	 */
+	private static class Snapshot {
+		
+		private final long created = System.currentTimeMillis();
+		private final ArrayList<String> insertElements;   // most recent first
+		private final ArrayList<String> updateElements;
+		private final String insertsXML;                  // the full lists
+		private final String updatesXML;
+		
+		
+		Snapshot(ArrayList<DataPackageUpload> inserts, ArrayList<DataPackageUpload> updates) {
+			insertElements = toElements(inserts);
+			updateElements = toElements(updates);
+			insertsXML = toXML(insertElements, null, insertElements.size());
+			updatesXML = toXML(updateElements, null, updateElements.size());
+		}
+		
+		
+		private static ArrayList<String> toElements(ArrayList<DataPackageUpload> uploads) {
+			ArrayList<String> elements = new ArrayList<String>();
+			for (DataPackageUpload dpu : uploads) {
+				elements.add(dpu.toXML());
+			}
+			return elements;
+		}
+		
+		
+		/*
+		 * Renders the first limit elements, or returns the pre-rendered full
+		 * list if it has no more than limit elements.
+		 */
+		private static String toXML(ArrayList<String> elements, String fullXML, int limit) {
+			if (fullXML != null && limit >= elements.size()) {
+				return fullXML;
+			}
+			
+			StringBuilder xmlStringBuilder = new StringBuilder("<dataPackageUploads>\n");
+			for (int i = 0; i < elements.size() && i < limit; i++) {
+				xmlStringBuilder.append(elements.get(i));
+			}
+			xmlStringBuilder.append("</dataPackageUploads>\n");
+			return xmlStringBuilder.toString();
+		}
+		
+		
+		private boolean isStale() {
+			return (System.currentTimeMillis() - created) > (refreshSeconds * 1000L);
+		}
+	}
+
 }
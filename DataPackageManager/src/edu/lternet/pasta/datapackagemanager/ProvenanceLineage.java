@@ -0,0 +1,348 @@
+/**
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.owasp.encoder.Encode;
+
+import edu.lternet.pasta.common.security.authorization.AccessMatrix;
+import edu.lternet.pasta.common.security.authorization.Rule;
+import edu.lternet.pasta.common.security.token.AuthToken;
+
+
+/**
+ * The ProvenanceLineage class holds the provenance graph of a data package:
+ * the data packages it is derived from, transitively, and the data packages
+ * derived from it, transitively, up to a maximum depth. It is filled from a
+ * single recursive query over the provenance matrix (see
+ * DataPackageRegistry.getProvenanceLineage()) and carries the access rules
+ * of every data package in the graph, so that authorization can be decided
+ * in memory rather than with a query per package.
+ *
+ * Each node is added at the smallest depth at which it was reached. Sources
+ * that are not PASTA data packages have no package identifier and are
+ * identified by their URL, or by their title when they have no URL.
+ *
+ * @author dcosta
+ *
+ */
+public class ProvenanceLineage {
+
+	/*
+	 * Class fields
+	 */
+
+	public static final String SELF = "self";
+	public static final String SOURCE = "source";
+	public static final String DERIVED = "derived";
+
+
+	/*
+	 * Instance fields
+	 */
+
+	private final String packageId;
+	private final int maxDepth;
+	private final Map<String, LineageNode> nodes = new LinkedHashMap<String, LineageNode>();
+	private final Set<String> edges = new LinkedHashSet<String>();
+	private final Map<String, String> principalOwners = new HashMap<String, String>();
+	private final Map<String, ArrayList<Rule>> accessRules = new HashMap<String, ArrayList<Rule>>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * @param packageId  the package identifier of the data package whose
+	 *                   lineage is held, e.g. "knb-lter-nin.1.1"
+	 * @param url        the URL of the data package's metadata
+	 * @param maxDepth   the maximum number of provenance steps followed
+	 *                   in each direction
+	 */
+	public ProvenanceLineage(String packageId, String url, int maxDepth) {
+		this.packageId = packageId;
+		this.maxDepth = maxDepth;
+		addNode(packageId, packageId, null, url, SELF, 0);
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public String getPackageId() {
+		return packageId;
+	}
+
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+
+	/**
+	 * @return the number of nodes in the graph, including the data package
+	 *         itself
+	 */
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+
+	/**
+	 * @return the number of distinct source-to-derived edges in the graph
+	 */
+	public int getEdgeCount() {
+		return edges.size();
+	}
+
+
+	/**
+	 * @return the package identifiers of the PASTA data packages in the
+	 *         graph, including the data package itself
+	 */
+	public ArrayList<String> getPackageIds() {
+		ArrayList<String> packageIds = new ArrayList<String>();
+		for (LineageNode node : nodes.values()) {
+			if (node.packageId != null) {
+				packageIds.add(node.packageId);
+			}
+		}
+		return packageIds;
+	}
+
+
+	/**
+	 * Adds a provenance matrix row reached while walking the lineage.
+	 *
+	 * @param relation      SOURCE if the row was reached walking towards the
+	 *                      sources of the data package, DERIVED if walking
+	 *                      towards its descendants
+	 * @param depth         the number of steps from the data package to the
+	 *                      far end of the row (the source end for SOURCE,
+	 *                      the derived end for DERIVED)
+	 * @param derivedId     the package identifier of the derived package
+	 * @param derivedTitle  the title of the derived package
+	 * @param derivedURL    the URL of the derived package's metadata
+	 * @param sourceId      the package identifier of the source package,
+	 *                      or null if the source is not a PASTA package
+	 * @param sourceTitle   the title of the source package
+	 * @param sourceURL     the URL of the source package, possibly null
+	 */
+	public void addEdge(String relation, int depth,
+	                    String derivedId, String derivedTitle, String derivedURL,
+	                    String sourceId, String sourceTitle, String sourceURL) {
+		String sourceKey = (sourceId != null) ? sourceId :
+		                   (sourceURL != null) ? sourceURL : sourceTitle;
+
+		if (SOURCE.equals(relation)) {
+			addNode(derivedId, derivedId, derivedTitle, derivedURL, relation, depth - 1);
+			addNode(sourceKey, sourceId, sourceTitle, sourceURL, relation, depth);
+		}
+		else {
+			addNode(sourceKey, sourceId, sourceTitle, sourceURL, relation, depth - 1);
+			addNode(derivedId, derivedId, derivedTitle, derivedURL, relation, depth);
+		}
+
+		edges.add(sourceKey + "\n" + derivedId);
+	}
+
+
+	/*
+	 * Adds a node, or fills in the title and URL of an existing node
+	 * if they were not known when it was added.
+	 */
+	private void addNode(String key, String nodePackageId, String title, String url,
+	                     String relation, int depth) {
+		LineageNode node = nodes.get(key);
+
+		if (node == null) {
+			node = new LineageNode(nodes.size(), nodePackageId, relation, depth);
+			nodes.put(key, node);
+		}
+
+		if (node.title == null) {
+			node.title = title;
+		}
+
+		if (node.url == null) {
+			node.url = url;
+		}
+	}
+
+
+	/**
+	 * Adds the principal owner of the data package resource of a data
+	 * package in the graph.
+	 *
+	 * @param nodePackageId   the package identifier
+	 * @param principalOwner  the principal owner of its data package resource
+	 */
+	public void addDataPackage(String nodePackageId, String principalOwner) {
+		principalOwners.put(nodePackageId, principalOwner);
+	}
+
+
+	/**
+	 * Adds an access rule of the data package resource of a data package
+	 * in the graph.
+	 *
+	 * @param nodePackageId  the package identifier
+	 * @param rule           the access rule
+	 */
+	public void addAccessRule(String nodePackageId, Rule rule) {
+		ArrayList<Rule> ruleList = accessRules.get(nodePackageId);
+		if (ruleList == null) {
+			ruleList = new ArrayList<Rule>();
+			accessRules.put(nodePackageId, ruleList);
+		}
+		ruleList.add(rule);
+	}
+
+
+	/**
+	 * @param nodePackageId  a package identifier
+	 * @return true if the data package is registered in this repository,
+	 *         as determined by the principal owners that were added
+	 */
+	public boolean isRegistered(String nodePackageId) {
+		return principalOwners.containsKey(nodePackageId);
+	}
+
+
+	/**
+	 * Determines whether the user may read a data package in the graph,
+	 * using the same rules as the Authorizer class but without querying the
+	 * registry. Packages that are not registered in this repository are
+	 * only known by the provenance metadata of the packages that cite them,
+	 * so they are readable.
+	 *
+	 * @param authToken      the user's authentication token
+	 * @param nodePackageId  the package identifier
+	 * @return true if the user is authorized to read the data package
+	 */
+	public boolean isReadable(AuthToken authToken, String nodePackageId) {
+		String principalOwner = principalOwners.get(nodePackageId);
+
+		if (principalOwner == null) {
+			return true;
+		}
+
+		ArrayList<Rule> ruleList = accessRules.get(nodePackageId);
+		if (ruleList == null) {
+			ruleList = new ArrayList<Rule>();
+		}
+		AccessMatrix accessMatrix = new AccessMatrix(ruleList);
+		return accessMatrix.isAuthorized(authToken, principalOwner, Rule.Permission.read);
+	}
+
+
+	/**
+	 * Composes the XML representation of the lineage graph for the specified
+	 * user. Nodes are numbered in the order in which they were reached and
+	 * edges refer to them by number. The title of a data package that the
+	 * user may not read is omitted, but the package remains in the graph so
+	 * that the lineage passing through it stays connected.
+	 *
+	 * @param authToken   the user's authentication token
+	 * @return the lineage XML string
+	 */
+	public String toXML(AuthToken authToken) {
+		StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append(String.format("<lineage packageId=\"%s\" maxDepth=\"%d\">\n",
+				                Encode.forXmlAttribute(packageId), maxDepth));
+
+		sb.append("    <nodes>\n");
+		for (LineageNode node : nodes.values()) {
+			sb.append(String.format("        <node id=\"%d\" relation=\"%s\" depth=\"%d\"",
+					                node.id, node.relation, node.depth));
+
+			boolean readable = true;
+			if (node.packageId != null) {
+				sb.append(String.format(" packageId=\"%s\"", Encode.forXmlAttribute(node.packageId)));
+				readable = isReadable(authToken, node.packageId);
+				if (!readable) {
+					sb.append(" readable=\"false\"");
+				}
+			}
+
+			if (readable && node.title != null) {
+				sb.append(String.format(" title=\"%s\"", Encode.forXmlAttribute(node.title)));
+			}
+
+			if (node.url != null) {
+				sb.append(String.format(" url=\"%s\"", Encode.forXmlAttribute(node.url)));
+			}
+
+			sb.append("/>\n");
+		}
+		sb.append("    </nodes>\n");
+
+		sb.append("    <edges>\n");
+		for (String edge : edges) {
+			int i = edge.indexOf('\n');
+			LineageNode source = nodes.get(edge.substring(0, i));
+			LineageNode derived = nodes.get(edge.substring(i + 1));
+			sb.append(String.format("        <edge source=\"%d\" derived=\"%d\"/>\n",
+					                source.id, derived.id));
+		}
+		sb.append("    </edges>\n");
+
+		sb.append("</lineage>\n");
+		return sb.toString();
+	}
+
+
+	/*
+	 * Inner classes
+	 */
+
+	/*
+	 * A data package, or a non-PASTA source, in the lineage graph.
+	 */
+	private static class LineageNode {
+		private final int id;
+		private final String packageId;
+		private final String relation;
+		private final int depth;
+		private String title = null;
+		private String url = null;
+
+		private LineageNode(int id, String packageId, String relation, int depth) {
+			this.id = id;
+			this.packageId = packageId;
+			this.relation = relation;
+			this.depth = depth;
+		}
+	}
+
+}
@@ -24,22 +24,16 @@
 
 package edu.lternet.pasta.datapackagemanager.checksum;
 
-import java.io.File;
-import java.util.ArrayList;
-
-import edu.lternet.pasta.common.EmlPackageId;
-import edu.lternet.pasta.common.EmlPackageIdFormat;
 import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
-import edu.lternet.pasta.datapackagemanager.DataManagerClient;
 import edu.lternet.pasta.datapackagemanager.DataPackageManager;
-import edu.lternet.pasta.datapackagemanager.DataPackageMetadata;
 import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
-import edu.lternet.pasta.datapackagemanager.DataPackageReport;
-import edu.lternet.pasta.doi.Resource;
+import edu.ucsb.nceas.utilities.Options;
 
 /**
  * Class used to backfill checksum values for data packages that preceded the
- * checksum enhancement.
+ * checksum enhancement. MD5 and SHA-1 checksums are calculated together, in
+ * parallel, by a ChecksumScanner and stored in batches; an interrupted run
+ * resumes from its last checkpoint.
  * 
  * @author dcosta
  * 
@@ -50,147 +44,28 @@ public class ChecksumBackfiller {
 
 
 	/**
-	 * Main program. No command arguments. Should be run in the
-	 * DataPackageManager top-level directory.
+	 * Main program. Should be run in the DataPackageManager top-level
+	 * directory.
 	 * 
-	 * @param args
+	 * @param args   optionally, "-restart" to discard the checkpoint of an
+	 *               interrupted run and start a new pass
 	 */
 	public static void main(String[] args) {
-		int checksumCount = 0;
+		boolean restart = (args != null && args.length > 0 && args[0].equals("-restart"));
 
 		try {
 			ConfigurationListener configurationListener = new ConfigurationListener();
 			configurationListener.initialize(dirPath);
-			DataPackageManager dpm = new DataPackageManager();
+			Options options = ConfigurationListener.getOptions();
 			DataPackageRegistry dpr = DataPackageManager
 					.makeDataPackageRegistry();
-
-			ArrayList<Resource> resources = dpr.listSha1ChecksumlessResources();
-			for (Resource resource : resources) {
-				String resourceId = resource.getResourceId();
-				String resourceType = resource.getResourceType();
-				String scope = resource.getScope();
-				Integer identifier = resource.getIdentifier();
-				Integer revision = resource.getRevision();
-				EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
-				EmlPackageId emlPackageId = emlPackageIdFormat.parse(scope,
-						identifier.toString(), revision.toString());
-
-				if (resourceType != null) {
-					if (resourceType.equals("data")) {
-						// Store the checksum of the data entity resource
-						String entityId = resource.getEntityId();
-						DataManagerClient dataManagerClient = new DataManagerClient();
-						String resourceLocation = dpr
-								.getResourceLocation(resourceId);
-						File file = dataManagerClient.getDataEntityFile(
-								resourceLocation, scope, identifier,
-								revision.toString(), entityId);
-						dpm.storeSHA1Checksum(resourceId, file);
-						checksumCount++;
-					}
-					else {
-						if (resourceType.equals("metadata")) {
-							DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(
-									emlPackageId);
-							if (dataPackageMetadata != null) {
-								boolean evaluateMode = false;
-								File file = dataPackageMetadata
-										.getMetadata(evaluateMode);
-								dpm.storeSHA1Checksum(resourceId, file);
-								checksumCount++;
-							}
-						}
-						else {
-							if (resourceType.equals("report")) {
-								DataPackageReport dataPackageReport = new DataPackageReport(
-										emlPackageId);
-								boolean evaluate = false;
-								String transaction = null;
-								if (dataPackageReport != null) {
-									File file = dataPackageReport.getReport(
-											evaluate, transaction);
-									dpm.storeSHA1Checksum(resourceId, file);
-									checksumCount++;
-								}
-							}
-							else {
-								System.err.println("Unknown resource type: "
-										+ resourceType);
-							}
-						}
-					}
-				}
-			}
-			System.err.println(String.format(
-					"Finished SHA-1 backfill processing. SHA-1 checksums generated and stored for %d resource(s).",
-					checksumCount));
-			
-			checksumCount = 0;			
-			resources = dpr.listMd5ChecksumlessResources();
-			for (Resource resource : resources) {
-				String resourceId = resource.getResourceId();
-				String resourceType = resource.getResourceType();
-				String scope = resource.getScope();
-				Integer identifier = resource.getIdentifier();
-				Integer revision = resource.getRevision();
-				EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
-				EmlPackageId emlPackageId = emlPackageIdFormat.parse(scope,
-						identifier.toString(), revision.toString());
-
-				if (resourceType != null) {
-					if (resourceType.equals("data")) {
-						// Store the checksum of the data entity resource
-						String entityId = resource.getEntityId();
-						DataManagerClient dataManagerClient = new DataManagerClient();
-						String resourceLocation = dpr
-								.getResourceLocation(resourceId);
-						File file = dataManagerClient.getDataEntityFile(
-								resourceLocation, scope, identifier,
-								revision.toString(), entityId);
-						dpm.storeMD5Checksum(resourceId, file);
-						checksumCount++;
-					}
-					else {
-						if (resourceType.equals("metadata")) {
-							DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(
-									emlPackageId);
-							if (dataPackageMetadata != null) {
-								boolean evaluateMode = false;
-								File file = dataPackageMetadata
-										.getMetadata(evaluateMode);
-								dpm.storeMD5Checksum(resourceId, file);
-								checksumCount++;
-							}
-						}
-						else {
-							if (resourceType.equals("report")) {
-								DataPackageReport dataPackageReport = new DataPackageReport(
-										emlPackageId);
-								boolean evaluate = false;
-								String transaction = null;
-								if (dataPackageReport != null) {
-									File file = dataPackageReport.getReport(
-											evaluate, transaction);
-									dpm.storeMD5Checksum(resourceId, file);
-									checksumCount++;
-								}
-							}
-							else {
-								System.err.println("Unknown resource type: "
-										+ resourceType);
-							}
-						}
-					}
-				}
-			}
-			System.err.println(String.format(
-					"Finished MD5 backfill processing. MD5 checksums generated and stored for %d resource(s).",
-					checksumCount));
+			ChecksumScanner checksumScanner = 
+					new ChecksumScanner(options, dpr, ChecksumScanner.Mode.backfill);
+			checksumScanner.scan(restart);
 		}
 		catch (Exception e) {
 			System.err
-					.println("Exception constructing DataPackageManager object: "
+					.println("Exception backfilling checksums: "
 							+ e.getMessage());
 		}
 	}
@@ -0,0 +1,319 @@
+/**
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager.checksum;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.doi.Resource;
+
+
+/**
+ * @author dcosta
+ *
+ * The ChecksumProgress class records the progress of the checksum
+ * validation and backfill jobs so that an interrupted pass can resume where
+ * it left off, and records resources that failed validation in the
+ * CHECKSUM_MISMATCH table where they can be queried.
+ */
+public class ChecksumProgress {
+
+  /*
+   * Class variables
+   */
+
+  private static Logger logger = Logger.getLogger(ChecksumProgress.class);
+
+
+  /**
+   * The progress of a job as of its last checkpoint.
+   */
+  public static class Checkpoint {
+    public final String lastResourceId;   // null if no resource has been completed
+    public final long resourcesDone;
+    public final long errors;
+
+    public Checkpoint(String lastResourceId, long resourcesDone, long errors) {
+      this.lastResourceId = lastResourceId;
+      this.resourcesDone = resourcesDone;
+      this.errors = errors;
+    }
+  }
+
+
+  /*
+   * Instance variables
+   */
+
+  private final String CHECKSUM_CHECKPOINT = "datapackagemanager.CHECKSUM_CHECKPOINT";
+  private final String CHECKSUM_MISMATCH = "datapackagemanager.CHECKSUM_MISMATCH";
+
+  private String dbDriver;           // database driver
+  private String dbURL;              // database URL
+  private String dbUser;             // database user name
+  private String dbPassword;         // database user password
+
+
+  /*
+   * Constructors
+   */
+
+	/**
+	 * Constructs a new ChecksumProgress object.
+	 *
+	 * @param dbDriver
+	 *            the database driver
+	 * @param dbURL
+	 *            the database URL
+	 * @paramm dbUser
+	 *            the database user name
+	 * @param dbPassword
+	 *            the database user password
+	 */
+	public ChecksumProgress(String dbDriver, String dbURL, String dbUser, String dbPassword) {
+		this.dbDriver = dbDriver;
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPassword = dbPassword;
+	}
+
+
+  /*
+   * Instance methods
+   */
+
+	/**
+	 * Gets the checkpoint of a job.
+	 *
+	 * @param jobName   the job name, e.g. "validate"
+	 * @return the checkpoint, or null if the job has no checkpoint
+	 */
+	public Checkpoint getCheckpoint(String jobName)
+			throws ClassNotFoundException, SQLException {
+		Checkpoint checkpoint = null;
+		Connection connection = null;
+		String selectString =
+				"SELECT last_resource_id, resources_done, errors FROM " + CHECKSUM_CHECKPOINT +
+				" WHERE job_name=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(selectString);
+			pstmt.setString(1, jobName);
+			ResultSet rs = pstmt.executeQuery();
+			if (rs.next()) {
+				checkpoint = new Checkpoint(rs.getString(1), rs.getLong(2), rs.getLong(3));
+			}
+			pstmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return checkpoint;
+	}
+
+
+	/**
+	 * Records the checkpoint of a job, creating it if it does not exist.
+	 *
+	 * @param jobName          the job name
+	 * @param lastResourceId   the last resource id completed
+	 * @param resourcesDone    the number of resources processed in this pass
+	 * @param errors           the number of resources with errors in this pass
+	 */
+	public void saveCheckpoint(String jobName, String lastResourceId, long resourcesDone, long errors)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String upsertString =
+				"INSERT INTO " + CHECKSUM_CHECKPOINT +
+				"(job_name, last_resource_id, resources_done, errors, date_started, date_updated)" +
+				" VALUES(?,?,?,?,now(),now()) ON CONFLICT (job_name) DO UPDATE SET" +
+				" last_resource_id=EXCLUDED.last_resource_id, resources_done=EXCLUDED.resources_done," +
+				" errors=EXCLUDED.errors, date_updated=now()";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(upsertString);
+			pstmt.setString(1, jobName);
+			pstmt.setString(2, lastResourceId);
+			pstmt.setLong(3, resourcesDone);
+			pstmt.setLong(4, errors);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error saving checkpoint for job %s: %s", jobName, e.getMessage()));
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Removes the checkpoint of a job, so that its next run starts a new pass.
+	 *
+	 * @param jobName   the job name
+	 */
+	public void deleteCheckpoint(String jobName)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String deleteString = "DELETE FROM " + CHECKSUM_CHECKPOINT + " WHERE job_name=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(deleteString);
+			pstmt.setString(1, jobName);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Records the results of one page of validation. Resources with errors
+	 * are added to (or updated in) the mismatch table; resources that
+	 * validated successfully are removed from it.
+	 *
+	 * @param results   the validation results
+	 */
+	public void recordResults(List<ChecksumResult> results)
+			throws ClassNotFoundException, SQLException {
+		if (results == null || results.isEmpty()) return;
+
+		Connection connection = null;
+		String upsertString =
+				"INSERT INTO " + CHECKSUM_MISMATCH +
+				"(resource_id, date_checked, stored_md5, calculated_md5, stored_sha1, calculated_sha1, error)" +
+				" VALUES(?,now(),?,?,?,?,?) ON CONFLICT (resource_id) DO UPDATE SET" +
+				" date_checked=EXCLUDED.date_checked, stored_md5=EXCLUDED.stored_md5," +
+				" calculated_md5=EXCLUDED.calculated_md5, stored_sha1=EXCLUDED.stored_sha1," +
+				" calculated_sha1=EXCLUDED.calculated_sha1, error=EXCLUDED.error";
+		String deleteString = "DELETE FROM " + CHECKSUM_MISMATCH + " WHERE resource_id=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement upsert = connection.prepareStatement(upsertString);
+			PreparedStatement delete = connection.prepareStatement(deleteString);
+
+			for (ChecksumResult result : results) {
+				Resource resource = result.getResource();
+				if (result.hasError()) {
+					upsert.setString(1, resource.getResourceId());
+					upsert.setString(2, resource.getMd5Checksum());
+					upsert.setString(3, result.getMd5Checksum());
+					upsert.setString(4, resource.getSha1Checksum());
+					upsert.setString(5, result.getSha1Checksum());
+					upsert.setString(6, result.getError());
+					upsert.addBatch();
+				}
+				else {
+					delete.setString(1, resource.getResourceId());
+					delete.addBatch();
+				}
+			}
+
+			upsert.executeBatch();
+			delete.executeBatch();
+			upsert.close();
+			delete.close();
+		}
+		catch (SQLException e) {
+			logger.error("Error recording checksum mismatches: " + e.getMessage());
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+  /**
+   * Returns a connection to the database.
+   *
+   * @return  conn  the database Connection object
+   */
+  public Connection getConnection()
+          throws ClassNotFoundException, SQLException {
+    Connection conn = null;
+    SQLWarning warn;
+
+    // Load the jdbc driver
+    try {
+      Class.forName(dbDriver);
+    }
+    catch (ClassNotFoundException e) {
+      logger.error("Can't load driver " + e.getMessage());
+      throw(e);
+    }
+
+    // Make the database connection
+    conn = DriverManager.getConnection(dbURL, dbUser, dbPassword);
+
+    // If a SQLWarning object is available, print its warning(s).
+    // There may be multiple warnings chained.
+    warn = conn.getWarnings();
+
+    while (warn != null) {
+      logger.warn("SQLState: " + warn.getSQLState());
+      logger.warn("Message:  " + warn.getMessage());
+      logger.warn("Vendor: " + warn.getErrorCode());
+      warn = warn.getNextWarning();
+    }
+
+    return conn;
+  }
+
+
+	/**
+	 * Closes the connection to the database.
+	 */
+	public void returnConnection(Connection conn) {
+		try {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+		// We won't worry about throwing an exception if the connection return
+		// fails. Just issue a log error.
+		catch (SQLException e) {
+			logger.error("Failed to close connection. Database access failed " +
+		                 e.getMessage());
+		}
+	}
+
+}
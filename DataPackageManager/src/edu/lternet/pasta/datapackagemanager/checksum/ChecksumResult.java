@@ -0,0 +1,83 @@
+package edu.lternet.pasta.datapackagemanager.checksum;
+
+import edu.lternet.pasta.doi.Resource;
+
+
+/**
+ * The outcome of calculating the checksums of one PASTA resource: the
+ * calculated values, and an error message if the resource could not be
+ * read or its checksums do not match those stored in the resource registry.
+ *
+ * @author dcosta
+ *
+ */
+public class ChecksumResult {
+
+	/*
+	 * Instance fields
+	 */
+
+	private final Resource resource;
+	private String md5Checksum = null;
+	private String sha1Checksum = null;
+	private String error = null;
+
+
+	/*
+	 * Constructors
+	 */
+
+	public ChecksumResult(Resource resource) {
+		this.resource = resource;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public Resource getResource() {
+		return resource;
+	}
+
+
+	public String getResourceId() {
+		return resource.getResourceId();
+	}
+
+
+	public String getMd5Checksum() {
+		return md5Checksum;
+	}
+
+
+	public void setMd5Checksum(String md5Checksum) {
+		this.md5Checksum = md5Checksum;
+	}
+
+
+	public String getSha1Checksum() {
+		return sha1Checksum;
+	}
+
+
+	public void setSha1Checksum(String sha1Checksum) {
+		this.sha1Checksum = sha1Checksum;
+	}
+
+
+	public String getError() {
+		return error;
+	}
+
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+
+	public boolean hasError() {
+		return (error != null);
+	}
+
+}
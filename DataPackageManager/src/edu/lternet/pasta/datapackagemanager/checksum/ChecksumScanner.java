@@ -0,0 +1,340 @@
+package edu.lternet.pasta.datapackagemanager.checksum;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.common.EmlPackageIdFormat;
+import edu.lternet.pasta.datapackagemanager.DataManagerClient;
+import edu.lternet.pasta.datapackagemanager.DataPackageMetadata;
+import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
+import edu.lternet.pasta.datapackagemanager.DataPackageReport;
+import edu.lternet.pasta.doi.Resource;
+import edu.ucsb.nceas.utilities.Options;
+
+
+/**
+ * Calculates checksums for PASTA resources in parallel, either to validate
+ * them against the values stored in the resource registry or to backfill
+ * missing values. Shared by the ChecksumValidator and ChecksumBackfiller
+ * programs.
+ *
+ * Resources are read from the registry a page at a time in resource id
+ * order. The resources in a page are checksummed by a pool of worker
+ * threads; at most workersPerLocation of them read from the same storage
+ * location (resource_location) at once, and all of them together are held
+ * to maxReadRate bytes per second. MD5 and SHA-1 are calculated in a single
+ * read of each file. When a page is complete, its registry updates or
+ * validation results are written in one batch and a checkpoint is saved,
+ * so an interrupted pass resumes from the last completed page.
+ *
+ * @author dcosta
+ *
+ */
+public class ChecksumScanner {
+
+	/*
+	 * Class fields
+	 */
+
+	private static final Logger logger = Logger.getLogger(ChecksumScanner.class);
+
+	public enum Mode { validate, backfill };
+
+	private static final int DEFAULT_WORKERS = 4;
+	private static final int DEFAULT_WORKERS_PER_LOCATION = 2;
+	private static final int DEFAULT_PAGE_SIZE = 1000;
+	private static final long DEFAULT_MAX_READ_RATE = 0L;   // bytes per second; 0 is unlimited
+
+
+	/*
+	 * Instance fields
+	 */
+
+	private final Mode mode;
+	private final DataPackageRegistry dpr;
+	private final ChecksumProgress checksumProgress;
+	private final int workers;
+	private final int workersPerLocation;
+	private final int pageSize;
+	private final ReadRateLimiter readRateLimiter;
+	private final ConcurrentHashMap<String, Semaphore> locationPermits =
+			new ConcurrentHashMap<String, Semaphore>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * @param options   the DataPackageManager options
+	 * @param dpr       the data package registry
+	 * @param mode      validate stored checksums, or backfill missing ones
+	 */
+	public ChecksumScanner(Options options, DataPackageRegistry dpr, Mode mode) {
+		this.mode = mode;
+		this.dpr = dpr;
+		this.checksumProgress = new ChecksumProgress(options.getOption("dbDriver"),
+				options.getOption("dbURL"), options.getOption("dbUser"), options.getOption("dbPassword"));
+		this.workers = (int) getLongOption(options, "datapackagemanager.checksum.workers", DEFAULT_WORKERS);
+		this.workersPerLocation = (int) getLongOption(options,
+				"datapackagemanager.checksum.workersPerLocation", DEFAULT_WORKERS_PER_LOCATION);
+		this.pageSize = (int) getLongOption(options, "datapackagemanager.checksum.pageSize", DEFAULT_PAGE_SIZE);
+		long maxReadRate = getLongOption(options, "datapackagemanager.checksum.maxReadRate", DEFAULT_MAX_READ_RATE);
+		this.readRateLimiter = new ReadRateLimiter(maxReadRate);
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	private static long getLongOption(Options options, String name, long defaultValue) {
+		long value = defaultValue;
+		String str = options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Long.parseLong(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using %d", name, str, defaultValue));
+			}
+		}
+
+		return value;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Runs (or resumes) a pass over the resources. On completion the
+	 * checkpoint is removed, so the next run starts a new pass.
+	 *
+	 * @param restart   if true, discard any checkpoint and start from the beginning
+	 * @return the number of resources with errors in this pass
+	 */
+	public long scan(boolean restart)
+			throws ClassNotFoundException, SQLException, InterruptedException {
+		String jobName = mode.toString();
+		String lastResourceId = null;
+		long resourcesDone = 0L;
+		long errors = 0L;
+
+		if (restart) {
+			checksumProgress.deleteCheckpoint(jobName);
+		}
+		else {
+			ChecksumProgress.Checkpoint checkpoint = checksumProgress.getCheckpoint(jobName);
+			if (checkpoint != null) {
+				lastResourceId = checkpoint.lastResourceId;
+				resourcesDone = checkpoint.resourcesDone;
+				errors = checkpoint.errors;
+				System.err.println(String.format("Resuming %s pass after resource %s (%d done, %d errors)",
+						jobName, lastResourceId, resourcesDone, errors));
+			}
+		}
+
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+
+		try {
+			ArrayList<Resource> page = listPage(lastResourceId);
+
+			while (!page.isEmpty()) {
+				List<ChecksumResult> results = checksumPage(executorService, page);
+				ArrayList<Resource> updates = new ArrayList<Resource>();
+
+				for (ChecksumResult result : results) {
+					if (result.hasError()) {
+						errors++;
+						System.err.println(String.format("%s: %s", result.getResourceId(), result.getError()));
+					}
+					else if (mode == Mode.backfill) {
+						Resource resource = result.getResource();
+						resource.setMd5Checksum(result.getMd5Checksum());
+						resource.setSha1Checksum(result.getSha1Checksum());
+						updates.add(resource);
+					}
+				}
+
+				if (mode == Mode.backfill) {
+					dpr.updateChecksums(updates);
+				}
+				else {
+					checksumProgress.recordResults(results);
+				}
+
+				resourcesDone += page.size();
+				lastResourceId = page.get(page.size() - 1).getResourceId();
+				checksumProgress.saveCheckpoint(jobName, lastResourceId, resourcesDone, errors);
+				System.err.println(String.format("Checkpoint: %d resources done, %d errors, last resource %s",
+						resourcesDone, errors, lastResourceId));
+
+				page = listPage(lastResourceId);
+			}
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+
+		checksumProgress.deleteCheckpoint(jobName);
+		System.err.println(String.format("Finished %s pass: %d resources processed, %d resource(s) had errors.",
+				jobName, resourcesDone, errors));
+
+		return errors;
+	}
+
+
+	private ArrayList<Resource> listPage(String afterResourceId)
+			throws ClassNotFoundException, SQLException {
+		if (mode == Mode.backfill) {
+			return dpr.listChecksumlessResources(afterResourceId, pageSize);
+		}
+		else {
+			return dpr.listChecksumableResources(afterResourceId, pageSize);
+		}
+	}
+
+
+	/*
+	 * Checksums every resource in a page, returning the results in page order.
+	 */
+	private List<ChecksumResult> checksumPage(ExecutorService executorService, ArrayList<Resource> page)
+			throws InterruptedException {
+		List<Future<ChecksumResult>> futures = new ArrayList<Future<ChecksumResult>>();
+		for (final Resource resource : page) {
+			futures.add(executorService.submit(new Callable<ChecksumResult>() {
+				public ChecksumResult call() throws Exception {
+					return checksumResource(resource);
+				}
+			}));
+		}
+
+		List<ChecksumResult> results = new ArrayList<ChecksumResult>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			}
+			catch (ExecutionException e) {
+				ChecksumResult result = new ChecksumResult(page.get(i));
+				result.setError("Exception while calculating checksum: " + e.getCause().getMessage());
+				results.add(result);
+			}
+		}
+
+		return results;
+	}
+
+
+	private ChecksumResult checksumResource(Resource resource) throws InterruptedException {
+		ChecksumResult result = new ChecksumResult(resource);
+		String location = (resource.getResourceLocation() == null) ? "" : resource.getResourceLocation();
+		Semaphore permits = locationPermits.get(location);
+		if (permits == null) {
+			locationPermits.putIfAbsent(location, new Semaphore(workersPerLocation));
+			permits = locationPermits.get(location);
+		}
+
+		permits.acquire();
+		try {
+			File file = getResourceFile(resource);
+			if (file == null || !file.exists()) {
+				result.setError("Resource file not found");
+			}
+			else {
+				String[] checksums = DigestUtilsWrapper.getMD5AndSHA1Checksums(file, readRateLimiter);
+				result.setMd5Checksum(checksums[0]);
+				result.setSha1Checksum(checksums[1]);
+				if (mode == Mode.validate) {
+					validate(result);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			throw (e);
+		}
+		catch (Exception e) {
+			result.setError("Exception while calculating checksum: " + e.getMessage());
+		}
+		finally {
+			permits.release();
+		}
+
+		return result;
+	}
+
+
+	/*
+	 * Compares the calculated checksums with the stored ones. The SHA-1
+	 * checksum must be present; the MD5 checksum is compared when stored.
+	 */
+	private void validate(ChecksumResult result) {
+		Resource resource = result.getResource();
+		String storedSha1 = resource.getSha1Checksum();
+		String storedMd5 = resource.getMd5Checksum();
+
+		if (storedSha1 == null) {
+			result.setError("Stored checksum is null");
+		}
+		else if (!storedSha1.equals(result.getSha1Checksum())) {
+			result.setError(String.format("SHA-1 checksums do not match. Stored: %s Calculated: %s",
+					storedSha1, result.getSha1Checksum()));
+		}
+		else if (storedMd5 != null && !storedMd5.equals(result.getMd5Checksum())) {
+			result.setError(String.format("MD5 checksums do not match. Stored: %s Calculated: %s",
+					storedMd5, result.getMd5Checksum()));
+		}
+	}
+
+
+	private File getResourceFile(Resource resource) throws Exception {
+		File file = null;
+		String resourceType = resource.getResourceType();
+		String scope = resource.getScope();
+		Integer identifier = resource.getIdentifier();
+		Integer revision = resource.getRevision();
+		EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
+		EmlPackageId emlPackageId = emlPackageIdFormat.parse(scope,
+				identifier.toString(), revision.toString());
+
+		if (resourceType == null) {
+			throw new ChecksumException("Resource type is null");
+		}
+		else if (resourceType.equals("data")) {
+			DataManagerClient dataManagerClient = new DataManagerClient();
+			file = dataManagerClient.getDataEntityFile(resource.getResourceLocation(),
+					scope, identifier, revision.toString(), resource.getEntityId());
+		}
+		else if (resourceType.equals("metadata")) {
+			DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(emlPackageId);
+			boolean evaluateMode = false;
+			file = dataPackageMetadata.getMetadata(evaluateMode);
+		}
+		else if (resourceType.equals("report")) {
+			DataPackageReport dataPackageReport = new DataPackageReport(emlPackageId);
+			boolean evaluate = false;
+			String transaction = null;
+			file = dataPackageReport.getReport(evaluate, transaction);
+		}
+		else {
+			throw new ChecksumException(String.format("Unknown resourceType '%s'", resourceType));
+		}
+
+		return file;
+	}
+
+}
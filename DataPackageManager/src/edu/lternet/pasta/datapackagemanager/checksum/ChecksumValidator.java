@@ -24,23 +24,17 @@
 
 package edu.lternet.pasta.datapackagemanager.checksum;
 
-import java.io.File;
-import java.util.ArrayList;
-
-import edu.lternet.pasta.common.EmlPackageId;
-import edu.lternet.pasta.common.EmlPackageIdFormat;
 import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
-import edu.lternet.pasta.datapackagemanager.DataManagerClient;
 import edu.lternet.pasta.datapackagemanager.DataPackageManager;
-import edu.lternet.pasta.datapackagemanager.DataPackageMetadata;
 import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
-import edu.lternet.pasta.datapackagemanager.DataPackageReport;
-import edu.lternet.pasta.doi.Resource;
+import edu.ucsb.nceas.utilities.Options;
 
 /**
  * Class used to validate checksum values for PASTA resources by comparing
  * the value stored in the resource registry with the dynamically calculated
- * value.
+ * value. Resources that fail validation are recorded in the
+ * checksum_mismatch table. The work is done in parallel by a
+ * ChecksumScanner, and an interrupted run resumes from its last checkpoint.
  * 
  * @author dcosta
  * 
@@ -51,102 +45,35 @@ public class ChecksumValidator {
 
 
 	/**
-	 * Main program. No command arguments. Should be run in the
-	 * DataPackageManager top-level directory. Exits with a 0
-	 * exit status if no errors discovered, else exits with a
-	 * non-zero error status if at least one error was discovered.
+	 * Main program. Should be run in the DataPackageManager top-level
+	 * directory. Exits with a 0 exit status if no errors discovered, else
+	 * exits with a non-zero error status if at least one error was discovered.
+	 * 
+	 * The number of workers and the read rate cap are set by the
+	 * datapackagemanager.checksum.* properties.
 	 * 
-	 * @param args
+	 * @param args   optionally, "-restart" to discard the checkpoint of an
+	 *               interrupted run and start a new pass
 	 */
 	public static void main(String[] args) {
-		int errorCount = 0;
-		int resourceCount = 0;
+		long errorCount = 0;
+		boolean restart = (args != null && args.length > 0 && args[0].equals("-restart"));
+
 		try {
 			ConfigurationListener configurationListener = new ConfigurationListener();
 			configurationListener.initialize(dirPath);
-			DataPackageManager dpm = new DataPackageManager();
+			Options options = ConfigurationListener.getOptions();
 			DataPackageRegistry dpr = DataPackageManager
 					.makeDataPackageRegistry();
-			ArrayList<Resource> resources = dpr.listChecksumableResources();
-
-			for (Resource resource : resources) {
-				resourceCount++;
-				String resourceId = resource.getResourceId();
-				String resourceType = resource.getResourceType();
-				String scope = resource.getScope();
-				Integer identifier = resource.getIdentifier();
-				Integer revision = resource.getRevision();
-				EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
-				EmlPackageId emlPackageId = emlPackageIdFormat.parse(scope,
-						identifier.toString(), revision.toString());
-				String storedChecksum = resource.getSha1Checksum();
-				String calculatedChecksum = null;
-
-				if (resourceType != null) {
-					try {
-						if (resourceType.equals("data")) {
-							String entityId = resource.getEntityId();
-							DataManagerClient dataManagerClient = new DataManagerClient();
-							String resourceLocation = resource.getResourceLocation();
-							File file = dataManagerClient.getDataEntityFile(
-								resourceLocation, scope, identifier,
-								revision.toString(), entityId);
-							calculatedChecksum = dpm.calculateChecksum(resourceId, file);
-						}
-						else if (resourceType.equals("metadata")) {
-							DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(emlPackageId);
-							if (dataPackageMetadata != null) {
-								boolean evaluateMode = false;
-								File file = dataPackageMetadata.getMetadata(evaluateMode);
-								calculatedChecksum = dpm.calculateChecksum(resourceId, file);
-							}
-						}
-						else if (resourceType.equals("report")) {
-							DataPackageReport dataPackageReport = new DataPackageReport(emlPackageId);
-							boolean evaluate = false;
-							String transaction = null;
-							if (dataPackageReport != null) {
-								File file = dataPackageReport.getReport(evaluate, transaction);
-								calculatedChecksum = dpm.calculateChecksum(resourceId, file);
-							}
-						}
-						else {
-							System.err.println(String.format("Unknown resourceType '%s' for resource %s", resourceType, resourceId));
-						}
-					
-						if (storedChecksum == null) {
-							System.err.println(String.format("Stored checksum for resource %s is null", resourceId));
-							errorCount++;
-						}
-						else if (calculatedChecksum == null) {
-							System.err.println(String.format("Failed to calculate checksum for resource %s", resourceId));
-							errorCount++;
-						}
-						else if (!storedChecksum.equals(calculatedChecksum)) {
-							System.err.println(String.format("Checksums do not match for resource %s\n  Stored checksum:     %s\n  Calculated checksum: %s", 
-																resourceId, storedChecksum, calculatedChecksum));
-							errorCount++;
-						}
-					}
-					catch (Exception e) {
-						System.err.println(
-								String.format("Exception while calculating checksum for resource %s: %s", 
-										      resourceId, e.getMessage()));
-						errorCount++;
-					}
-				}
-				else {
-					System.err.println(String.format("Resource type is null for resource %s", resourceId));
-					errorCount++;
-				}
-			}
+			ChecksumScanner checksumScanner = 
+					new ChecksumScanner(options, dpr, ChecksumScanner.Mode.validate);
+			errorCount = checksumScanner.scan(restart);
 		}
 		catch (Exception e) {
-			System.err.println("Exception constructing DataPackageManager object: "+ e.getMessage());
+			System.err.println("Exception validating checksums: "+ e.getMessage());
+			errorCount++;
 		}
 
-		System.err.println(String.format("Finished processing %d resources. %d resource(s) had errors.", 
-				                         resourceCount, errorCount));
 		int errorStatus = (errorCount == 0) ? 0 : 1;
 		System.exit(errorStatus);
 	}
@@ -27,7 +27,9 @@ package edu.lternet.pasta.datapackagemanager.checksum;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.security.MessageDigest;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 /**
@@ -70,6 +72,40 @@ public class DigestUtilsWrapper {
 	}
 
 
+	/**
+	 * Gets both the MD5 and the SHA-1 checksums of a file object in a single
+	 * read of the file, optionally throttled by a read rate limiter.
+	 * 
+	 * @param file      the file object whose checksums are being calculated
+	 * @param limiter   the read rate limiter, or null for no limit
+	 * @return a two-element array holding the MD5 checksum and the SHA-1 checksum
+	 * @throws Exception
+	 */
+	public static String[] getMD5AndSHA1Checksums(File file, ReadRateLimiter limiter) 
+			throws Exception {
+		MessageDigest md5Digest = MessageDigest.getInstance("MD5");
+		MessageDigest sha1Digest = MessageDigest.getInstance("SHA-1");
+		byte[] buffer = new byte[65536];
+		InputStream fis = new FileInputStream(file);
+
+		try {
+			int n;
+			while ((n = fis.read(buffer)) != -1) {
+				if (limiter != null) limiter.acquire(n);
+				md5Digest.update(buffer, 0, n);
+				sha1Digest.update(buffer, 0, n);
+			}
+		}
+		finally {
+			fis.close();
+		}
+
+		String md5Hex = new String(Hex.encodeHex(md5Digest.digest()));
+		String shaHex = new String(Hex.encodeHex(sha1Digest.digest()));
+		return new String[] { md5Hex, shaHex };
+	}
+
+
 	/**
 	 * Gets the SHA-1 checksum of a file object based on its filename
 	 * 
@@ -0,0 +1,74 @@
+package edu.lternet.pasta.datapackagemanager.checksum;
+
+
+/**
+ * A token bucket that caps the combined rate at which checksum workers read
+ * from storage, so that a validation pass does not starve the data server
+ * of I/O bandwidth. A rate of zero or less disables the cap.
+ *
+ * @author dcosta
+ *
+ */
+public class ReadRateLimiter {
+
+	/*
+	 * Instance fields
+	 */
+
+	private final long bytesPerSecond;
+	private double available;
+	private long lastRefill;
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * @param bytesPerSecond   the maximum read rate, in bytes per second;
+	 *                         zero or less for no limit
+	 */
+	public ReadRateLimiter(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+		this.available = bytesPerSecond;
+		this.lastRefill = System.nanoTime();
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Blocks until the specified number of bytes may be read.
+	 *
+	 * @param bytes   the number of bytes about to be read
+	 */
+	public void acquire(int bytes) throws InterruptedException {
+		if (bytesPerSecond <= 0) return;
+
+		long waitMillis = 0L;
+
+		synchronized (this) {
+			long now = System.nanoTime();
+			double refill = (now - lastRefill) / 1.0e9 * bytesPerSecond;
+			available = Math.min(bytesPerSecond, available + refill);
+			lastRefill = now;
+			available -= bytes;   // may go negative; the debt is paid by sleeping
+
+			if (available < 0) {
+				waitMillis = (long) Math.ceil(-available * 1000.0 / bytesPerSecond);
+			}
+		}
+
+		if (waitMillis > 0L) {
+			Thread.sleep(waitMillis);
+		}
+	}
+
+
+	public boolean isUnlimited() {
+		return bytesPerSecond <= 0;
+	}
+
+}
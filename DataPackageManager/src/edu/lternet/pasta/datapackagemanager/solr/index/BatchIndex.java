@@ -5,10 +5,16 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
-import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
 
 import edu.lternet.pasta.common.EmlPackageId;
 import edu.lternet.pasta.common.ResourceNotFoundException;
@@ -41,7 +47,9 @@ public class BatchIndex {
 	private static String dbUser = null;
 	private static String dbPassword = null;
 
-	private static final int COMMIT_FREQUENCY = 100;
+	private static final int BATCH_SIZE = 100;
+	private static final int COMMIT_WITHIN = 60000;   // milliseconds
+	private static final int DEFAULT_THREADS = 4;
 	private static final String dirPath = "WebRoot/WEB-INF/conf";
 
 
@@ -57,88 +65,122 @@ public class BatchIndex {
     }
 
 
+    /**
+     * Re-indexes a list of data packages. The Level-1 EML documents are read
+     * and parsed into Solr documents by a pool of worker threads, while this
+     * thread posts the finished documents to Solr in batches of
+     * BATCH_SIZE using commitWithin. A single hard commit is issued at the end.
+     *
+     * @param options         the DataPackageManager options
+     * @param emlPackageIds   the data packages to be indexed
+     */
     public static void indexPastaMetadata(Options options, List<EmlPackageId> emlPackageIds) {
         dbDriver = options.getOption("dbDriver");
         dbURL = options.getOption("dbURL");
         dbUser = options.getOption("dbUser");
         dbPassword = options.getOption("dbPassword");
         String solrUrl = options.getOption("datapackagemanager.metadatacatalog.solrUrl");
-        SolrIndex solrIndex = new SolrIndex(solrUrl);
+        int threads = DEFAULT_THREADS;
+        String threadsStr = options.getOption("datapackagemanager.solr.reindexThreads");
+        if (threadsStr != null && !threadsStr.trim().isEmpty()) {
+            threads = Integer.parseInt(threadsStr.trim());
+        }
+        final SolrIndex solrIndex = new SolrIndex(solrUrl, COMMIT_WITHIN);
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
 
         try {
-            DataPackageRegistry dpr = new DataPackageRegistry(dbDriver, dbURL, dbUser, dbPassword);
-
-            int i = 1;
-            for (EmlPackageId emlPackageId : emlPackageIds) {
-                String emlDocument = null;
-                DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(
-                        emlPackageId);
-                if (dataPackageMetadata != null) {
-                    boolean evaluateMode = false;
-                    File levelOneEMLFile = dataPackageMetadata.getMetadata(evaluateMode);
-                    emlDocument = FileUtils.readFileToString(levelOneEMLFile);
+            final DataPackageRegistry dpr = new DataPackageRegistry(dbDriver, dbURL, dbUser, dbPassword);
+            CompletionService<SolrInputDocument> completionService =
+                    new ExecutorCompletionService<SolrInputDocument>(executorService);
+
+            List<SolrInputDocument> batch = new ArrayList<SolrInputDocument>();
+            int total = emlPackageIds.size();
+            int maxOutstanding = threads * 4;  // bounds the number of parsed documents held in memory
+            int submitted = 0;
+            int indexed = 0;
+
+            for (int i = 1; i <= total; i++) {
+                while (submitted < total && submitted - i < maxOutstanding) {
+                    final EmlPackageId emlPackageId = emlPackageIds.get(submitted++);
+                    completionService.submit(new Callable<SolrInputDocument>() {
+                        public SolrInputDocument call() throws Exception {
+                            SolrInputDocument document = createSolrInputDocument(solrIndex, dpr, emlPackageId);
+                            if (document == null) {
+                                logger.error(String.format("Error indexing datapackage %s", emlPackageId.toString()));
+                            }
+                            return document;
+                        }
+                    });
                 }
 
                 try {
-                    solrIndex.indexEmlDocument(emlPackageId, emlDocument);
-                    
-                    String resourceId = getResourceId(dpr, emlPackageId);
-                    String doi = dpr.getDoi(resourceId);
-                    if (doi != null && !doi.equals("")) {
-                        solrIndex.indexDoi(emlPackageId, doi);
+                    SolrInputDocument document = completionService.take().get();
+                    if (document != null) {
+                        batch.add(document);
                     }
-                    
-                    boolean commit = (i % COMMIT_FREQUENCY == 0);
-                    
-                    if (commit) {
-                        System.err.println(String.format("Executing Solr commit after document %d: %s",
-                                                         i, emlPackageId));
-                        solrIndex.commit();
-                    }
-                    
-                    i++;
                 }
-                catch (Exception e) {
-                    logger.error(String.format("Error indexing datapackage %s: %s", emlPackageId.toString(), e.getMessage()));
-                    e.printStackTrace();
-                    return;
+                catch (ExecutionException e) {
+                    logger.error("Error building Solr document: " + e.getCause().getMessage());
+                }
+
+                if (batch.size() >= BATCH_SIZE || (i == total && !batch.isEmpty())) {
+                    solrIndex.addDocuments(batch);
+                    indexed += batch.size();
+                    System.err.println(String.format("Posted %d of %d documents to Solr", indexed, total));
+                    batch.clear();
                 }
             }
-            
-            System.err.println(String.format("Executing Solr commit after final document in batch (%d)", i-1));
+
+            System.err.println(String.format("Executing Solr commit after final document (%d)", indexed));
             solrIndex.commit();
         }
         catch (Exception e) {
             logger.error("Exception getting all latest data packages: " + e.getMessage());
             e.printStackTrace();
         }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Builds the Solr input document for a data package from its stored
+     * Level-1 EML, including the data package DOI if one has been registered.
+     *
+     * @param solrIndex      the SolrIndex used to build the document
+     * @param dpr            the data package registry
+     * @param emlPackageId   the data package to be indexed
+     * @return the Solr input document, or null if the EML could not be read or parsed
+     */
+    public static SolrInputDocument createSolrInputDocument(SolrIndex solrIndex,
+                                                            DataPackageRegistry dpr,
+                                                            EmlPackageId emlPackageId) {
+        SolrInputDocument solrInputDocument = null;
+
+        try {
+            DataPackageMetadata dataPackageMetadata = new DataPackageMetadata(emlPackageId);
+            boolean evaluateMode = false;
+            File levelOneEMLFile = dataPackageMetadata.getMetadata(evaluateMode);
+            String emlDocument = FileUtils.readFileToString(levelOneEMLFile, "UTF-8");
+            solrInputDocument = solrIndex.createSolrInputDocument(emlPackageId, emlDocument);
+
+            if (solrInputDocument != null) {
+                String doi = dpr.getDataPackageDoi(emlPackageId.getScope(),
+                                                   emlPackageId.getIdentifier(),
+                                                   emlPackageId.getRevision());
+                if (doi != null && !doi.equals("")) {
+                    solrInputDocument.setField("doi", doi);
+                }
+            }
+        }
+        catch (IOException | ClassNotFoundException | SQLException e) {
+            logger.error(String.format("Error reading metadata for %s: %s",
+                                       emlPackageId.toString(), e.getMessage()));
+        }
+
+        return solrInputDocument;
     }
-    
-    
-	private static String getResourceId(DataPackageRegistry dpr, EmlPackageId epid) {
-		String resourceId = null;
-		
-		if (dpr != null && epid != null) {
-			String scope = epid.getScope();
-			Integer identifier = epid.getIdentifier();
-			Integer revision = epid.getRevision();
-			
-			try {
-				ArrayList<String> resourceIds = dpr.getDataPackageResources(scope, identifier, revision);
-				for (String rid : resourceIds) {
-					if (rid.contains("/package/eml/")) {
-						// This is the dataPackage resource, which holds the DOI value for the data package
-						resourceId = rid;
-					}
-				}
-			}
-			catch (Exception e) {
-				;
-			}		
-		}
-		
-		return resourceId;
-	}
 	
 	
 	private static List<EmlPackageId> getAllLatestEML(DataPackageManager dpm) 
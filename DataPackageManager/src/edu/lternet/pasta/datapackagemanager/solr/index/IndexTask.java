@@ -0,0 +1,106 @@
+package edu.lternet.pasta.datapackagemanager.solr.index;
+
+import org.apache.solr.common.SolrInputDocument;
+
+import edu.lternet.pasta.common.EmlPackageId;
+
+
+/**
+ * An IndexTask represents a single request to add (or re-add) a data
+ * package to the Solr index, or to delete it from the index.
+ *
+ * @author dcosta
+ *
+ */
+public class IndexTask {
+
+	/*
+	 * Instance fields
+	 */
+
+	private final EmlPackageId emlPackageId;
+	private final String action;        // PendingIndex.ACTION_INDEX or ACTION_DELETE
+	private final long dateQueued;      // milliseconds since the epoch
+	private SolrInputDocument solrInputDocument = null;  // null means build from stored EML
+	private int attempts = 0;           // number of failed attempts to send the task to Solr
+
+
+	/*
+	 * Constructors
+	 */
+
+	public IndexTask(EmlPackageId emlPackageId, String action) {
+		this(emlPackageId, action, System.currentTimeMillis());
+	}
+
+
+	public IndexTask(EmlPackageId emlPackageId, String action, long dateQueued) {
+		this.emlPackageId = emlPackageId;
+		this.action = action;
+		this.dateQueued = dateQueued;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	public EmlPackageId getEmlPackageId() {
+		return emlPackageId;
+	}
+
+
+	public String getAction() {
+		return action;
+	}
+
+
+	public long getDateQueued() {
+		return dateQueued;
+	}
+
+
+	public SolrInputDocument getSolrInputDocument() {
+		return solrInputDocument;
+	}
+
+
+	public void setSolrInputDocument(SolrInputDocument solrInputDocument) {
+		this.solrInputDocument = solrInputDocument;
+	}
+
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+
+	public void setAttempts(int attempts) {
+		this.attempts = attempts;
+	}
+
+
+	public String getPackageId() {
+		return emlPackageId.toString();
+	}
+
+
+	/**
+	 * @return the Solr document id, e.g. "knb-lter-nwk.1424"
+	 */
+	public String getSolrId() {
+		return SolrIndex.composeId(emlPackageId);
+	}
+
+
+	public boolean isDelete() {
+		return PendingIndex.ACTION_DELETE.equals(action);
+	}
+
+
+	@Override
+	public String toString() {
+		return String.format("%s %s", action, getPackageId());
+	}
+
+}
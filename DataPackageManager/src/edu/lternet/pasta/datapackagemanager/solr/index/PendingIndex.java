@@ -0,0 +1,343 @@
+/**
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager.solr.index;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.common.EmlPackageIdFormat;
+
+
+/**
+ * @author dcosta
+ *
+ * The PendingIndex class maintains the durable record of Solr index
+ * operations that have been requested but not yet acknowledged by Solr.
+ * There is at most one pending record per Solr document id (scope.identifier);
+ * a newer request for the same document replaces the older one. Records are
+ * removed only after Solr has accepted the update, so an index operation
+ * survives a Solr outage or a server restart. A record whose document Solr
+ * has rejected too many times is kept as a dead letter, with its last
+ * error, but is no longer listed for processing.
+ */
+public class PendingIndex {
+
+  /*
+   * Class variables
+   */
+
+  private static Logger logger = Logger.getLogger(PendingIndex.class);
+
+  public static final String ACTION_INDEX = "index";
+  public static final String ACTION_DELETE = "delete";
+
+
+  /*
+   * Instance variables
+   */
+
+  private final String PENDING_INDEX = "datapackagemanager.SOLR_PENDING_INDEX";
+
+  private String dbDriver;           // database driver
+  private String dbURL;              // database URL
+  private String dbUser;             // database user name
+  private String dbPassword;         // database user password
+
+
+  /*
+   * Constructors
+   */
+
+	/**
+	 * Constructs a new PendingIndex object.
+	 *
+	 * @param dbDriver
+	 *            the database driver
+	 * @param dbURL
+	 *            the database URL
+	 * @paramm dbUser
+	 *            the database user name
+	 * @param dbPassword
+	 *            the database user password
+	 */
+	public PendingIndex(String dbDriver, String dbURL, String dbUser, String dbPassword) {
+		this.dbDriver = dbDriver;
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPassword = dbPassword;
+	}
+
+
+  /*
+   * Instance methods
+   */
+
+	/**
+	 * Records a pending index operation. If an operation is already pending
+	 * for the same Solr document, it is replaced by this one.
+	 *
+	 * @param task   the index task to be recorded
+	 */
+	public void addTask(IndexTask task)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String upsertString =
+				"INSERT INTO " + PENDING_INDEX +
+				"(solr_id, package_id, action, date_queued, attempts) VALUES(?,?,?,?,0) " +
+				"ON CONFLICT (solr_id) DO UPDATE SET " +
+				"package_id=EXCLUDED.package_id, action=EXCLUDED.action, " +
+				"date_queued=EXCLUDED.date_queued, attempts=0, last_error=NULL, dead_letter=false";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(upsertString);
+			pstmt.setString(1, task.getSolrId());
+			pstmt.setString(2, task.getPackageId());
+			pstmt.setString(3, task.getAction());
+			pstmt.setTimestamp(4, new Timestamp(task.getDateQueued()));
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error recording pending index operation for %s: %s",
+					                   task.getPackageId(), e.getMessage()));
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Removes pending records for tasks that Solr has accepted. A record is
+	 * removed only if it has not been replaced by a newer request since the
+	 * task was queued.
+	 *
+	 * @param tasks   the completed tasks
+	 */
+	public void removeTasks(List<IndexTask> tasks)
+			throws ClassNotFoundException, SQLException {
+		if (tasks == null || tasks.isEmpty()) return;
+
+		Connection connection = null;
+		String deleteString =
+				"DELETE FROM " + PENDING_INDEX + " WHERE solr_id=? AND date_queued<=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(deleteString);
+			for (IndexTask task : tasks) {
+				pstmt.setString(1, task.getSolrId());
+				pstmt.setTimestamp(2, new Timestamp(task.getDateQueued()));
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error("Error removing completed pending index records: " + e.getMessage());
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Records a failed attempt for a task. The record is left unchanged if
+	 * it has been replaced by a newer request since the task was queued.
+	 *
+	 * @param task           the task that failed
+	 * @param errorMessage   the error message to be recorded
+	 * @param deadLetter     true if the task is not to be retried
+	 */
+	public void recordFailure(IndexTask task, String errorMessage, boolean deadLetter)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String updateString =
+				"UPDATE " + PENDING_INDEX +
+				" SET attempts=attempts+1, last_error=?, dead_letter=?" +
+				" WHERE solr_id=? AND date_queued<=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(updateString);
+			pstmt.setString(1, errorMessage);
+			pstmt.setBoolean(2, deadLetter);
+			pstmt.setString(3, task.getSolrId());
+			pstmt.setTimestamp(4, new Timestamp(task.getDateQueued()));
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Counts the dead letters: tasks that are no longer retried because
+	 * Solr rejected them too many times.
+	 *
+	 * @return the number of dead letters
+	 */
+	public int countDeadLetters()
+			throws ClassNotFoundException, SQLException {
+		int count = 0;
+		Connection connection = null;
+		String selectString =
+				"SELECT COUNT(*) FROM " + PENDING_INDEX + " WHERE dead_letter";
+
+		try {
+			connection = getConnection();
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery(selectString);
+			if (rs.next()) {
+				count = rs.getInt(1);
+			}
+			stmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Lists all pending index tasks, oldest first, excluding dead letters.
+	 * Called at start-up to recover operations that were not completed
+	 * before the last shutdown.
+	 *
+	 * @return a list of pending IndexTask objects
+	 */
+	public ArrayList<IndexTask> listPendingTasks()
+			throws ClassNotFoundException, SQLException {
+		ArrayList<IndexTask> tasks = new ArrayList<IndexTask>();
+		Connection connection = null;
+		String selectString =
+				"SELECT package_id, action, date_queued, attempts FROM " + PENDING_INDEX +
+				" WHERE NOT dead_letter ORDER BY date_queued ASC";
+		EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
+
+		try {
+			connection = getConnection();
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery(selectString);
+
+			while (rs.next()) {
+				String packageId = rs.getString(1);
+				String action = rs.getString(2);
+				Timestamp dateQueued = rs.getTimestamp(3);
+				try {
+					EmlPackageId epid = emlPackageIdFormat.parse(packageId);
+					IndexTask task = new IndexTask(epid, action, dateQueued.getTime());
+					task.setAttempts(rs.getInt(4));
+					tasks.add(task);
+				}
+				catch (IllegalArgumentException e) {
+					logger.warn(String.format("Skipping malformed pending index record: %s", packageId));
+				}
+			}
+
+			stmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return tasks;
+	}
+
+
+  /**
+   * Returns a connection to the database.
+   *
+   * @return  conn  the database Connection object
+   */
+  public Connection getConnection()
+          throws ClassNotFoundException, SQLException {
+    Connection conn = null;
+    SQLWarning warn;
+
+    // Load the jdbc driver
+    try {
+      Class.forName(dbDriver);
+    }
+    catch (ClassNotFoundException e) {
+      logger.error("Can't load driver " + e.getMessage());
+      throw(e);
+    }
+
+    // Make the database connection
+    conn = DriverManager.getConnection(dbURL, dbUser, dbPassword);
+
+    // If a SQLWarning object is available, print its warning(s).
+    // There may be multiple warnings chained.
+    warn = conn.getWarnings();
+
+    while (warn != null) {
+      logger.warn("SQLState: " + warn.getSQLState());
+      logger.warn("Message:  " + warn.getMessage());
+      logger.warn("Vendor: " + warn.getErrorCode());
+      warn = warn.getNextWarning();
+    }
+
+    return conn;
+  }
+
+
+	/**
+	 * Closes the connection to the database.
+	 */
+	public void returnConnection(Connection conn) {
+		try {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+		// We won't worry about throwing an exception if the connection return
+		// fails. Just issue a log error.
+		catch (SQLException e) {
+			logger.error("Failed to close connection. Database access failed " +
+		                 e.getMessage());
+		}
+	}
+
+}
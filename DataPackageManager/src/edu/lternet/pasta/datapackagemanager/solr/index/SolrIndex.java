@@ -19,6 +19,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class SolrIndex {
@@ -31,6 +32,14 @@ public class SolrIndex {
 
 	private static final Logger logger = Logger.getLogger(SolrIndex.class);
 	
+	/*
+	 * One long-lived, thread-safe client per Solr URL. HttpSolrClient keeps
+	 * its own pooled HTTP connections, so there is no reason to pay for a
+	 * new client (and new connections) on every index operation.
+	 */
+	private static final Map<String, SolrClient> solrClients = 
+			new ConcurrentHashMap<String, SolrClient>();
+	
 	
 	/*
 	 * Instance fields
@@ -38,6 +47,7 @@ public class SolrIndex {
   
 	private final String DATE_GRANULARITY = "DAY";
 	private SolrClient solrClient = null;
+	private int commitWithin = -1;  // milliseconds; -1 means no commitWithin
 	
 	
 	/*
@@ -45,7 +55,81 @@ public class SolrIndex {
 	 */
 	
 	public SolrIndex(String serverURL) {
-		this.solrClient = new HttpSolrClient.Builder(serverURL).build();
+		this.solrClient = getSolrClient(serverURL);
+	}
+	
+	
+	/**
+	 * Constructs a SolrIndex whose add and delete operations ask Solr to
+	 * make the changes visible within the specified number of milliseconds,
+	 * so that callers need not issue an explicit (hard) commit.
+	 * 
+	 * @param serverURL      the Solr core URL
+	 * @param commitWithin   the commitWithin value in milliseconds, or -1
+	 */
+	public SolrIndex(String serverURL, int commitWithin) {
+		this(serverURL);
+		this.commitWithin = commitWithin;
+	}
+	
+	
+	/*
+	 * Class methods
+	 */
+	
+	/**
+	 * Returns the shared SolrClient for the specified Solr URL, creating
+	 * it on first use.
+	 * 
+	 * @param serverURL   the Solr core URL
+	 * @return the shared SolrClient object
+	 */
+	public static SolrClient getSolrClient(String serverURL) {
+		SolrClient client = solrClients.get(serverURL);
+		
+		if (client == null) {
+			synchronized (solrClients) {
+				client = solrClients.get(serverURL);
+				if (client == null) {
+					client = new HttpSolrClient.Builder(serverURL).build();
+					solrClients.put(serverURL, client);
+				}
+			}
+		}
+		
+		return client;
+	}
+	
+	
+	/**
+	 * Closes all shared Solr clients. Called when the web application
+	 * shuts down.
+	 */
+	public static void closeSolrClients() {
+		synchronized (solrClients) {
+			for (SolrClient client : solrClients.values()) {
+				try {
+					client.close();
+				}
+				catch (IOException e) {
+					logger.warn("Error closing Solr client: " + e.getMessage());
+				}
+			}
+			solrClients.clear();
+		}
+	}
+	
+	
+	/**
+	 * Composes the Solr document id for a data package. All revisions of 
+	 * a data package share the same Solr document, so the id is the 
+	 * scope and identifier only, e.g. "knb-lter-nwk.1424".
+	 * 
+	 * @param epid   the EML package id object
+	 * @return the Solr document id
+	 */
+	public static String composeId(EmlPackageId epid) {
+		return String.format("%s.%d", epid.getScope(), epid.getIdentifier());
 	}
 	
 	
@@ -65,6 +149,21 @@ public class SolrIndex {
 	}
 
 
+	/**
+	 * Executes a soft commit on the Solr repository, making recent changes
+	 * visible to searchers without flushing the index to stable storage.
+	 * 
+	 * @throws IOException
+	 * @throws SolrServerException
+	 */
+	public void softCommit() throws IOException, SolrServerException {
+		boolean waitFlush = false;
+		boolean waitSearcher = true;
+		boolean softCommit = true;
+		solrClient.commit(waitFlush, waitSearcher, softCommit);
+	}
+
+
 	/**
 	 * Deletes an EML document from the Solr repository.
 	 * 
@@ -74,13 +173,52 @@ public class SolrIndex {
 	 */
 	public void deleteEmlDocument(EmlPackageId epid) 
 			throws IOException, SolrServerException {
-    	String id = String.format("%s.%d", epid.getScope(), epid.getIdentifier());
+    	String id = composeId(epid);
 		List<String> ids = new ArrayList<String>();		
 		ids.add(id);
+		deleteDocuments(ids);
+	}
 
-		UpdateResponse updateResponse = solrClient.deleteById(ids);
-		int status = updateResponse.getStatus(); // Non-zero indicates failure
-		logger.info(String.format("Delete of document id %s; delete status %d", id, status));
+
+	/**
+	 * Deletes a batch of documents from the Solr repository in a single
+	 * update request.
+	 * 
+	 * @param  ids     The Solr document ids to be deleted.
+	 * @throws IOException
+	 * @throws SolrServerException
+	 */
+	public void deleteDocuments(List<String> ids) 
+			throws IOException, SolrServerException {
+		if (ids != null && !ids.isEmpty()) {
+			UpdateResponse updateResponse = solrClient.deleteById(ids, commitWithin);
+			int status = updateResponse.getStatus(); // Non-zero indicates failure
+			logger.info(String.format("Delete of document ids %s; delete status %d", ids, status));
+		}
+	}
+
+
+	/**
+	 * Adds a batch of documents to the Solr repository in a single
+	 * update request.
+	 * 
+	 * @param  solrInputDocuments   the documents to be added
+	 * @return the update status; non-zero indicates failure
+	 * @throws IOException
+	 * @throws SolrServerException
+	 */
+	public int addDocuments(Collection<SolrInputDocument> solrInputDocuments) 
+			throws IOException, SolrServerException {
+		int status = 0;
+		
+		if (solrInputDocuments != null && !solrInputDocuments.isEmpty()) {
+			UpdateResponse updateResponse = solrClient.add(solrInputDocuments, commitWithin);
+			status = updateResponse.getStatus(); // Non-zero indicates failure
+			logger.info(String.format("Add of %d documents; update status %d", 
+					                  solrInputDocuments.size(), status));
+		}
+		
+		return status;
 	}
 
 	
@@ -130,6 +268,34 @@ public class SolrIndex {
     public String indexEmlDocument(EmlPackageId epid, String emlDocument)  
     		throws IOException, SolrServerException {
     	String result = null;
+    	String id = composeId(epid);
+    	SolrInputDocument solrInputDocument = createSolrInputDocument(epid, emlDocument);
+    	
+		if (solrInputDocument != null) {
+			UpdateResponse updateResponse = solrClient.add(solrInputDocument, commitWithin);
+			int status = updateResponse.getStatus(); // Non-zero indicates failure
+			logger.info(String.format(
+					"Add of id %s; update status %d", id, status));
+		}
+		else {
+			result = String.format("Solr indexing failed with error while parsing docid %s", id);
+		}
+    	
+    	return result;
+    }
+    
+    
+	/**
+	 * Parses an EML document and builds the Solr input document for it,
+	 * without sending anything to Solr. This allows documents to be built
+	 * in parallel and then posted to Solr in batches.
+	 * 
+	 * @param epid          the EML package id object
+	 * @param emlDocument   the EML document object
+	 * @return the Solr input document, or null if the EML could not be parsed
+	 */
+    public SolrInputDocument createSolrInputDocument(EmlPackageId epid, String emlDocument) {
+    	SolrInputDocument solrInputDocument = null;
     	String scope = epid.getScope();
     	
     	String id = String.format("%s.%d", scope, epid.getIdentifier());
@@ -169,7 +335,7 @@ public class SolrIndex {
 			
 			List<DataPackage.BoundingCoordinates> coordinatesList = dataPackage.getCoordinatesList();
 			
-			SolrInputDocument solrInputDocument = new SolrInputDocument();
+			solrInputDocument = new SolrInputDocument();
 			solrInputDocument.setField("id", id);
 			solrInputDocument.setField("packageid", packageId);
 			solrInputDocument.setField("scope", scope);
@@ -396,16 +562,9 @@ public class SolrIndex {
 				}
 			}
 
-			UpdateResponse updateResponse = solrClient.add(solrInputDocument);
-			int status = updateResponse.getStatus(); // Non-zero indicates failure
-			logger.info(String.format(
-					"Add of id %s; update status %d", id, status));
-		}
-		else {
-			result = String.format("Solr indexing failed with error while parsing docid %s", id);
 		}
     	
-    	return result;
+    	return solrInputDocument;
     }
     
     
@@ -500,7 +659,7 @@ public class SolrIndex {
 			solrInputDocument.setField("id", id);
 			solrInputDocument.setField("doi", doiMap);
 
-			UpdateResponse updateResponse = solrClient.add(solrInputDocument);
+			UpdateResponse updateResponse = solrClient.add(solrInputDocument, commitWithin);
 			int status = updateResponse.getStatus(); // Non-zero indicates failure
 			logger.info(String.format(
 					"Update of doi for id %s; update status %d", id, status));
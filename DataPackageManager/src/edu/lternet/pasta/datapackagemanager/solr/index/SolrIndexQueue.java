@@ -0,0 +1,451 @@
+package edu.lternet.pasta.datapackagemanager.solr.index;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
+import edu.ucsb.nceas.utilities.Options;
+
+
+/**
+ * The SolrIndexQueue class takes Solr indexing off the upload path. Callers
+ * submit index and delete requests, which are recorded in the durable
+ * SOLR_PENDING_INDEX table and placed on an in-memory queue. A single
+ * background thread drains the queue in batches, builds any Solr documents
+ * that were not supplied by the caller from the stored Level-1 EML, and sends
+ * each batch to Solr in one update request using commitWithin rather than an
+ * explicit commit.
+ *
+ * If Solr is unavailable, the batch is retried after a delay and the
+ * pending records remain in the database, so they are recovered when the
+ * web application next starts. If Solr rejects the batch, its tasks are
+ * retried one at a time so that a document Solr cannot accept does not
+ * hold back the rest of the batch. A task that Solr has rejected
+ * datapackagemanager.solr.maxAttempts times is set aside as a dead letter:
+ * it is logged and kept, with its last error, in the pending index table,
+ * but is no longer retried.
+ *
+ * @author dcosta
+ *
+ */
+public class SolrIndexQueue implements Runnable {
+
+	/*
+	 * Class fields
+	 */
+
+	private static final Logger logger = Logger.getLogger(SolrIndexQueue.class);
+
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final int DEFAULT_BATCH_WAIT = 2000;         // milliseconds
+	private static final int DEFAULT_COMMIT_WITHIN = 10000;     // milliseconds
+	private static final int DEFAULT_RETRY_INTERVAL = 60000;    // milliseconds
+	private static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+	private static SolrIndexQueue instance = null;
+
+
+	/*
+	 * Instance fields
+	 */
+
+	private final BlockingQueue<IndexTask> queue = new LinkedBlockingQueue<IndexTask>();
+	private final SolrIndex solrIndex;
+	private final PendingIndex pendingIndex;
+	private final String dbDriver;
+	private final String dbURL;
+	private final String dbUser;
+	private final String dbPassword;
+	private final int batchSize;
+	private final int batchWait;
+	private final int retryInterval;
+	private final int maxAttempts;
+	private volatile boolean running = true;
+	private Thread worker = null;
+
+
+	/*
+	 * Constructors
+	 */
+
+	private SolrIndexQueue(Options options) {
+		this.dbDriver = options.getOption("dbDriver");
+		this.dbURL = options.getOption("dbURL");
+		this.dbUser = options.getOption("dbUser");
+		this.dbPassword = options.getOption("dbPassword");
+		String solrUrl = options.getOption("datapackagemanager.metadatacatalog.solrUrl");
+		int commitWithin = getIntOption(options, "datapackagemanager.solr.commitWithin", DEFAULT_COMMIT_WITHIN);
+		this.batchSize = getIntOption(options, "datapackagemanager.solr.batchSize", DEFAULT_BATCH_SIZE);
+		this.batchWait = getIntOption(options, "datapackagemanager.solr.batchWait", DEFAULT_BATCH_WAIT);
+		this.retryInterval = getIntOption(options, "datapackagemanager.solr.retryInterval", DEFAULT_RETRY_INTERVAL);
+		this.maxAttempts = getIntOption(options, "datapackagemanager.solr.maxAttempts", DEFAULT_MAX_ATTEMPTS);
+		this.solrIndex = new SolrIndex(solrUrl, commitWithin);
+		this.pendingIndex = new PendingIndex(dbDriver, dbURL, dbUser, dbPassword);
+	}
+
+
+	/*
+	 * Constructs a queue with no worker thread, for use in tests. Tasks
+	 * must carry their Solr documents, since there is no resource registry
+	 * to build them from.
+	 */
+	SolrIndexQueue(SolrIndex solrIndex, PendingIndex pendingIndex,
+			       int batchSize, int retryInterval, int maxAttempts) {
+		this.dbDriver = null;
+		this.dbURL = null;
+		this.dbUser = null;
+		this.dbPassword = null;
+		this.batchSize = batchSize;
+		this.batchWait = 0;
+		this.retryInterval = retryInterval;
+		this.maxAttempts = maxAttempts;
+		this.solrIndex = solrIndex;
+		this.pendingIndex = pendingIndex;
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Starts the index queue and its worker thread, re-queuing any
+	 * operations that were still pending at the time of the last shutdown.
+	 *
+	 * @param options   the DataPackageManager options
+	 */
+	public static synchronized void start(Options options) {
+		if (instance == null) {
+			SolrIndexQueue solrIndexQueue = new SolrIndexQueue(options);
+			solrIndexQueue.recover();
+			solrIndexQueue.worker = new Thread(solrIndexQueue, "SolrIndexQueue");
+			solrIndexQueue.worker.setDaemon(true);
+			solrIndexQueue.worker.start();
+			instance = solrIndexQueue;
+			logger.info("Solr index queue has started.");
+		}
+	}
+
+
+	/**
+	 * Stops the worker thread. Tasks that have not been sent to Solr remain
+	 * in the pending index table and are recovered on the next start.
+	 */
+	public static synchronized void stop() {
+		if (instance != null) {
+			instance.running = false;
+			instance.worker.interrupt();
+			try {
+				instance.worker.join(10000L);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			instance = null;
+			logger.info("Solr index queue has stopped.");
+		}
+	}
+
+
+	/**
+	 * @return the running SolrIndexQueue, or null if it has not been started
+	 */
+	public static synchronized SolrIndexQueue getInstance() {
+		return instance;
+	}
+
+
+	/*
+	 * Determines whether a failure was caused by Solr or the database being
+	 * unavailable, as opposed to Solr rejecting the documents sent to it.
+	 * Outages are retried without counting against the tasks' attempts.
+	 */
+	static boolean isOutage(Exception e) {
+		return (e instanceof SolrServerException) ||
+		       (e instanceof IOException) ||
+		       (e instanceof SQLException) ||
+		       (e instanceof ClassNotFoundException);
+	}
+
+
+	private static int getIntOption(Options options, String name, int defaultValue) {
+		int value = defaultValue;
+		String str = options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using %d", name, str, defaultValue));
+			}
+		}
+
+		return value;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Submits a request to index the specified data package revision. The
+	 * Solr document is built from the stored Level-1 EML and the resource
+	 * registry when the task is processed.
+	 *
+	 * @param epid   the EML package id object
+	 */
+	public void submitIndex(EmlPackageId epid) {
+		submit(new IndexTask(epid, PendingIndex.ACTION_INDEX));
+	}
+
+
+	/**
+	 * Submits an already-built Solr document for the specified data package
+	 * revision. This is used on the upload path, where the document is built
+	 * before the data package has been added to the resource registry.
+	 *
+	 * @param epid                the EML package id object
+	 * @param solrInputDocument   the Solr document to be added
+	 */
+	public void submitIndex(EmlPackageId epid, SolrInputDocument solrInputDocument) {
+		IndexTask task = new IndexTask(epid, PendingIndex.ACTION_INDEX);
+		task.setSolrInputDocument(solrInputDocument);
+		submit(task);
+	}
+
+
+	/**
+	 * Submits a request to delete the specified data package from the index.
+	 *
+	 * @param epid   the EML package id object
+	 */
+	public void submitDelete(EmlPackageId epid) {
+		submit(new IndexTask(epid, PendingIndex.ACTION_DELETE));
+	}
+
+
+	/**
+	 * @return the number of tasks waiting to be sent to Solr
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+
+	private void submit(IndexTask task) {
+		try {
+			pendingIndex.addTask(task);
+		}
+		catch (ClassNotFoundException | SQLException e) {
+			// The task is still queued in memory; it just won't survive a restart
+			logger.error(String.format("Unable to record pending index task '%s': %s",
+					                   task, e.getMessage()));
+		}
+
+		queue.add(task);
+	}
+
+
+	/*
+	 * Re-queues tasks left in the pending index table by a previous run.
+	 */
+	private void recover() {
+		try {
+			ArrayList<IndexTask> pendingTasks = pendingIndex.listPendingTasks();
+			queue.addAll(pendingTasks);
+			if (pendingTasks.size() > 0) {
+				logger.warn(String.format(
+						"%d Solr index operations were pending at the time of last shutdown.",
+						pendingTasks.size()));
+			}
+
+			int deadLetters = pendingIndex.countDeadLetters();
+			if (deadLetters > 0) {
+				logger.warn(String.format(
+						"%d Solr index operations were rejected %d times and are no longer retried; " +
+						"see the dead_letter records of the solr_pending_index table.",
+						deadLetters, maxAttempts));
+			}
+		}
+		catch (ClassNotFoundException | SQLException e) {
+			logger.error("Unable to recover pending Solr index operations: " + e.getMessage());
+		}
+	}
+
+
+	public void run() {
+		while (running) {
+			try {
+				process(takeBatch());
+			}
+			catch (InterruptedException e) {
+				if (!running) break;
+			}
+		}
+	}
+
+
+	/*
+	 * Waits for a task and returns it in a batch with any others that are
+	 * queued within batchWait milliseconds, up to batchSize tasks.
+	 */
+	List<IndexTask> takeBatch() throws InterruptedException {
+		List<IndexTask> batch = new ArrayList<IndexTask>();
+		batch.add(queue.take());
+
+		// Give concurrent uploads a short window to join this batch
+		long deadline = System.currentTimeMillis() + batchWait;
+		while (batch.size() < batchSize) {
+			long remaining = deadline - System.currentTimeMillis();
+			IndexTask next = queue.poll(Math.max(remaining, 0L), TimeUnit.MILLISECONDS);
+			if (next == null) break;
+			batch.add(next);
+		}
+
+		return batch;
+	}
+
+
+	/*
+	 * Sends a batch of tasks to Solr. If the batch fails because Solr or the
+	 * database is unavailable, the whole batch is retried after a delay. If
+	 * Solr rejects it, each task is sent on its own; a task that still fails
+	 * is retried with the next batch until it has failed maxAttempts times,
+	 * and is then set aside as a dead letter.
+	 */
+	void process(List<IndexTask> batch) throws InterruptedException {
+		List<IndexTask> retryTasks = new ArrayList<IndexTask>();
+
+		try {
+			processBatch(batch);
+			return;
+		}
+		catch (Exception e) {
+			logger.error(String.format("Solr index batch of %d tasks failed: %s",
+					                   batch.size(), e.getMessage()));
+
+			boolean outage = isOutage(e);
+			for (IndexTask task : batch) {
+				Exception failure = e;
+
+				if (!outage && batch.size() > 1) {
+					try {
+						processBatch(Collections.singletonList(task));
+						continue;
+					}
+					catch (Exception e2) {
+						failure = e2;
+						outage = isOutage(e2);
+					}
+				}
+
+				if (!outage && !recordFailure(task, failure)) {
+					continue;
+				}
+
+				retryTasks.add(task);
+			}
+		}
+
+		if (!retryTasks.isEmpty()) {
+			Thread.sleep(retryInterval);
+			queue.addAll(retryTasks);
+		}
+	}
+
+
+	/*
+	 * Counts a failed attempt against a task that Solr rejected, setting
+	 * it aside as a dead letter once it has failed maxAttempts times.
+	 * Returns true if the task is to be retried.
+	 */
+	private boolean recordFailure(IndexTask task, Exception failure) {
+		task.setAttempts(task.getAttempts() + 1);
+		boolean deadLetter = (task.getAttempts() >= maxAttempts);
+
+		if (deadLetter) {
+			logger.error(String.format(
+					"Solr index task '%s' failed %d times and will not be retried: %s",
+					task, task.getAttempts(), failure.getMessage()));
+		}
+
+		try {
+			pendingIndex.recordFailure(task, failure.getMessage(), deadLetter);
+		}
+		catch (Exception e) {
+			logger.error("Unable to record Solr index failure: " + e.getMessage());
+		}
+
+		return !deadLetter;
+	}
+
+
+	/*
+	 * Sends one batch of tasks to Solr. Only the newest task for each Solr
+	 * document is acted on, so a package that was uploaded and then updated
+	 * (or given a DOI) within the same batch is indexed only once.
+	 */
+	private void processBatch(List<IndexTask> batch)
+			throws ClassNotFoundException, SQLException, IOException, SolrServerException {
+		Map<String, IndexTask> newest = new LinkedHashMap<String, IndexTask>();
+		for (IndexTask task : batch) {
+			IndexTask current = newest.get(task.getSolrId());
+			if (current == null || current.getDateQueued() <= task.getDateQueued()) {
+				newest.put(task.getSolrId(), task);
+			}
+		}
+
+		List<String> deleteIds = new ArrayList<String>();
+		List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+		DataPackageRegistry dpr = null;
+
+		for (IndexTask task : newest.values()) {
+			if (task.isDelete()) {
+				deleteIds.add(task.getSolrId());
+			}
+			else {
+				SolrInputDocument document = task.getSolrInputDocument();
+				if (document == null) {
+					if (dpr == null) {
+						dpr = new DataPackageRegistry(dbDriver, dbURL, dbUser, dbPassword);
+					}
+					document = BatchIndex.createSolrInputDocument(solrIndex, dpr, task.getEmlPackageId());
+				}
+				if (document != null) {
+					documents.add(document);
+				}
+				else {
+					// Retrying cannot help if the Level-1 EML is missing or unparsable
+					logger.error(String.format("Unable to build Solr document for %s; skipping.",
+							                   task.getPackageId()));
+				}
+			}
+		}
+
+		solrIndex.deleteDocuments(deleteIds);
+		int status = solrIndex.addDocuments(documents);
+		if (status != 0) {
+			throw new SolrException(SolrException.ErrorCode.SERVER_ERROR,
+					                String.format("Solr update returned status %d", status));
+		}
+
+		pendingIndex.removeTasks(batch);
+	}
+
+}
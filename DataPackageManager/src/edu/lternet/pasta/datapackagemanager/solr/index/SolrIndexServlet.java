@@ -0,0 +1,56 @@
+package edu.lternet.pasta.datapackagemanager.solr.index;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
+import edu.ucsb.nceas.utilities.Options;
+
+/**
+ * The SolrIndexServlet starts the Solr index queue when the server starts up,
+ * recovering any index operations that were still pending at the last
+ * shutdown, and stops it (and closes the shared Solr clients) when the
+ * server shuts down.
+ */
+public class SolrIndexServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+	private static final Logger logger = Logger.getLogger(SolrIndexServlet.class);
+
+
+	/**
+	 * @see HttpServlet#HttpServlet()
+	 */
+	public SolrIndexServlet() {
+		super();
+	}
+
+
+	/**
+	 * @see Servlet#init(ServletConfig)
+	 */
+	public void init(ServletConfig config) throws ServletException {
+		Options options = ConfigurationListener.getOptions();
+
+		try {
+			SolrIndexQueue.start(options);
+		}
+		catch (Exception e) {
+			logger.error("Unable to start the Solr index queue: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * @see Servlet#destroy()
+	 */
+	public void destroy() {
+		SolrIndexQueue.stop();
+		SolrIndex.closeSolrClients();
+	}
+
+}
@@ -139,6 +139,16 @@ public class SimpleSolrSearch {
 	}
 	
 	
+	/*
+	 * Adds a facet query. The number of matching documents for each facet
+	 * query is returned in a "facetQueries" element of the search results,
+	 * which lets a client count matches for many queries in one request.
+	 */
+	public void addFacetQuery(String facetQueryText) {
+		this.solrQuery.addFacetQuery(facetQueryText);
+	}
+	
+	
 	public void addSort(String field, String orderStr) {
 		SolrQuery.ORDER order = SolrQuery.ORDER.desc;
 		if (orderStr.equals("asc")) {
@@ -209,7 +219,8 @@ public class SimpleSolrSearch {
 		QueryResponse queryResponse = solrClient.query(solrQuery);
 		solrClient.close();  // Must now explicitly close the MF solr connection
 		SolrDocumentList solrDocumentList = queryResponse.getResults();
-		String xmlString = solrDocumentListToXML(solrDocumentList);
+		Map<String, Integer> facetQueries = queryResponse.getFacetQuery();
+		String xmlString = solrDocumentListToXML(solrDocumentList, facetQueries);
 		Map<String,Object> debugMap = queryResponse.getDebugMap();
 		if (debugMap != null) System.out.println(debugMap.toString());
 		
@@ -259,7 +270,8 @@ public class SimpleSolrSearch {
 	}
 	
 	
-	private String solrDocumentListToXML(SolrDocumentList solrDocumentList) {
+	private String solrDocumentListToXML(SolrDocumentList solrDocumentList, 
+			                             Map<String, Integer> facetQueries) {
 		String xmlString = "";
 		final String INDENT = "    ";
 		long numFound = solrDocumentList.getNumFound();
@@ -358,6 +370,17 @@ public class SimpleSolrSearch {
 		    sb.append(String.format("%s</document>\n", INDENT));
 		}
 		
+		if (facetQueries != null && facetQueries.size() > 0) {
+			sb.append(String.format("%s<facetQueries>\n", INDENT));
+			for (String facetQuery : facetQueries.keySet()) {
+				Integer count = facetQueries.get(facetQuery);
+				String facetQueryStr = StringEscapeUtils.escapeXml(facetQuery);
+				sb.append(String.format("%s%s<facetQuery count='%d'>%s</facetQuery>\n", 
+						                INDENT, INDENT, count, facetQueryStr));
+			}
+			sb.append(String.format("%s</facetQueries>\n", INDENT));
+		}
+		
 		sb.append("</resultset>\n");
 		xmlString = sb.toString();
 		
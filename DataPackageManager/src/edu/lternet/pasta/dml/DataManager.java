@@ -46,6 +46,7 @@ import edu.lternet.pasta.dml.database.ConnectionNotAvailableException;
 import edu.lternet.pasta.dml.database.DatabaseAdapter;
 import edu.lternet.pasta.dml.database.DatabaseConnectionPoolInterface;
 import edu.lternet.pasta.dml.database.DatabaseHandler;
+import edu.lternet.pasta.dml.database.DatabaseLoader;
 import edu.lternet.pasta.dml.database.HSQLAdapter;
 import edu.lternet.pasta.dml.database.OracleAdapter;
 import edu.lternet.pasta.dml.database.PostgresAdapter;
@@ -95,6 +96,9 @@ public class DataManager {
   private static String databaseAdapterName = null;
   private static DatabaseConnectionPoolInterface connectionPool = null;
   
+  /* When false, entities are validated in-stream instead of being loaded */
+  private static boolean relationalLoad = true;
+  
   // Constants
   private static final String  BLANKSTR = "";     
   private static final int MAXIMUM_NUMBER_TO_ACCESS_CONNECTIONPOOL = 10;
@@ -218,6 +222,31 @@ public class DataManager {
    {
        return connectionPool;
    }
+  
+  
+  /**
+   * Boolean to determine whether entity data is loaded into database tables.
+   * 
+   * @return  true if data is loaded into database tables, false if it is
+   *          only validated as it is read
+   */
+  public static boolean isRelationalLoad() {
+    return relationalLoad;
+  }
+  
+  
+  /**
+   * Sets whether entity data is loaded into database tables. When set to
+   * false, loadDataToDB() validates each data entity as it is read, running
+   * the same row-level quality checks as a database load, and no tables are
+   * created. Applications that query the loaded tables must leave this set
+   * to true (the default).
+   * 
+   * @param  relationalLoad  true to load data into database tables
+   */
+  public static void setRelationalLoad(boolean relationalLoad) {
+    DataManager.relationalLoad = relationalLoad;
+  }
 
 
   /*
@@ -635,6 +664,9 @@ public class DataManager {
         entity.addQualityCheck(dataLoadQualityCheck);
       }
     }
+    else if (!relationalLoad) {
+      success = validateData(entity, endPointInfo);
+    }
     else {  
       try {
         DatabaseHandler databaseHandler = 
@@ -643,13 +675,23 @@ public class DataManager {
         // First, generate a table for the entity
         success = databaseHandler.generateTable(entity);
 
-        // If we have a table, then load the data for the entity.
+        /*
+         * If we have a table, then load the data for the entity. The table
+         * is leased during the load so that no other thread drops it.
+         */
         if (success) {
-          success = databaseHandler.loadDataToDB(entity, endPointInfo);
+          databaseHandler.acquireLease(entity);
+          
+          try {
+            success = databaseHandler.loadDataToDB(entity, endPointInfo);
     
-          // If the data could not be loaded to the database, drop the table.
-          if (!success) {
-            databaseHandler.dropTable(entity);
+            // If the data could not be loaded to the database, drop the table.
+            if (!success) {
+              databaseHandler.dropTable(entity);
+            }
+          }
+          finally {
+            databaseHandler.releaseLease(entity);
           }
         }
       }
@@ -664,6 +706,36 @@ public class DataManager {
   }
   
   
+  /**
+   * Validates the data of a single entity as it is read, without loading it
+   * into a database table. The data is tokenized and checked row by row
+   * with the same quality checks as a database load.
+   * 
+   * @param  entity  the entity whose data is to be validated
+   * @param  endPointInfo which provides ecogrid endpoint information
+   * @return true if the data was read and no error was found, else false
+   */
+  public boolean validateData(Entity entity, EcogridEndPointInterface endPointInfo) {
+    boolean success = false;
+    DownloadHandler downloadHandler = entity.getDownloadHandler(endPointInfo);
+
+    try {
+      DatabaseLoader validator = 
+        new DatabaseLoader(databaseAdapterName, entity, true);
+      DataStorageInterface[] storage = new DataStorageInterface[1];
+      storage[0] = validator;
+      success = downloadHandler.download(storage);
+    }
+    catch (Exception e) {
+      log.error("Error validating entity " + entity.getName() + ": " + 
+                e.getMessage());
+      success = false;
+    }
+
+    return success;
+  }
+  
+  
   /**
    * Loads all entities in a data package to the database table cache. This
    * version of the method is passed a metadata input stream that needs
@@ -50,7 +50,10 @@ import edu.lternet.pasta.dml.parser.AttributeList;
 import edu.lternet.pasta.dml.parser.DateTimeDomain;
 import edu.lternet.pasta.dml.parser.Domain;
 import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.parser.EnumeratedDomain;
+import edu.lternet.pasta.dml.parser.NumericDomain;
 import edu.lternet.pasta.dml.parser.StorageType;
+import edu.lternet.pasta.dml.quality.ErrorBudget;
 import edu.lternet.pasta.dml.quality.QualityCheck;
 
 /**
@@ -81,6 +84,13 @@ public abstract class DatabaseAdapter {
 	public static final String           VALUES = "VALUES";
 	public static final String             NULL = "null";
   public static final String       UNDERSCORE = "_";
+  public static final String ENUMERATED_DOMAIN_MATCHES = "enumeratedDomainMatches";
+  public static final String NUMERIC_BOUNDS_MATCH = "numericBoundsMatch";
+	private static final String[] MONTH_ABBREVIATIONS = 
+	  { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
+	// The format strings that checkDatetimeValue() can read
+	private static final Pattern CHECKED_FORMAT_STRING = 
+	  Pattern.compile("((?i:YYYY|YY|WWW|DD|hh|ss|\\.s+)|MM|mm|T|Z|[^A-Za-z0-9])+");
 
   
   
@@ -93,6 +103,10 @@ public abstract class DatabaseAdapter {
 	    "http://www.w3.org/2001/XMLSchema-datatypes";
 	protected static final int DEFAULT_TABLE_NAME_MAX_LENGTH = 30;
 	private QualityCheck dateFormatMatchesQualityCheck = null;
+	private QualityCheck enumeratedDomainMatchesQualityCheck = null;
+	private QualityCheck numericBoundsMatchQualityCheck = null;
+	private ErrorBudget errorBudget = null;
+	private boolean checkDatetimeValues = false;
   
   
   /*
@@ -193,6 +207,187 @@ public abstract class DatabaseAdapter {
     }
 
 
+  /**
+   * Checks that a datetime value is a real date and time when read with
+   * its EML format string: that the month, day, hour, minute and second
+   * it contains are within range (e.g. no February 30th or hour 25). These
+   * are the values that the database's to_timestamp() function rejects
+   * during a load, even when they match the format string's regular
+   * expression. Like to_timestamp(), the check accepts a value that ends
+   * before the format string does (e.g. '2015-02-03' for the format string
+   * 'YYYY-MM-DD hh:mm:ss'); reading stops at the first field that is
+   * missing or does not match, and only the fields read are checked.
+   * 
+   * The format string is read as EML defines it: YYYY or YY for the year,
+   * MM for the month, WWW for the month abbreviation, DD for the day, hh
+   * for the hour (0-23, or 24:00), mm for the minute, ss for the second,
+   * and .s, .ss, ... for the fraction of a second. A time zone offset,
+   * which follows the time, is not checked. Values whose format string
+   * contains other letters are not checked.
+   * 
+   * @param formatString   the EML datetime format string
+   * @param value          the datetime value
+   * @return  a message describing the problem, or null if the value is
+   *          valid or cannot be checked
+   */
+  public static String checkDatetimeValue(String formatString, String value) {
+    if (formatString == null || value == null || 
+        !CHECKED_FORMAT_STRING.matcher(formatString).matches()) {
+      return null;
+    }
+    
+    int year = -1, month = -1, day = -1, hour = -1, minute = -1, second = -1;
+    int f = 0;
+    int v = 0;
+    String problem = null;
+    
+    while (f < formatString.length()) {
+      String rest = formatString.substring(f);
+      String upper = rest.toUpperCase();
+      char c = rest.charAt(0);
+      int[] field = null;
+      
+      if (upper.startsWith("YYYY")) {
+        field = readDigits(value, v, 4, 4);
+        f += 4;
+        if (field != null) { year = field[0]; }
+      }
+      else if (upper.startsWith("YY")) {
+        field = readDigits(value, v, 2, 2);
+        f += 2;
+        if (field != null) { year = (field[0] < 70) ? 2000 + field[0] : 1900 + field[0]; }
+      }
+      else if (upper.startsWith("WWW")) {
+        f += 3;
+        String abbreviation = 
+          (v + 3 <= value.length()) ? value.substring(v, v + 3).toUpperCase() : "";
+        for (int i = 0; i < MONTH_ABBREVIATIONS.length; i++) {
+          if (MONTH_ABBREVIATIONS[i].equals(abbreviation)) {
+            month = i + 1;
+            field = new int[] { month, v + 3 };
+          }
+        }
+      }
+      else if (rest.startsWith("MM")) {
+        field = readDigits(value, v, 1, 2);
+        f += 2;
+        if (field != null) { month = field[0]; }
+      }
+      else if (upper.startsWith("DD")) {
+        field = readDigits(value, v, 1, 2);
+        f += 2;
+        if (field != null) { day = field[0]; }
+      }
+      else if (upper.startsWith("HH")) {
+        field = readDigits(value, v, 1, 2);
+        f += 2;
+        if (field != null) { hour = field[0]; }
+      }
+      else if (rest.startsWith("mm")) {
+        field = readDigits(value, v, 1, 2);
+        f += 2;
+        if (field != null) { minute = field[0]; }
+      }
+      else if (upper.startsWith(".S")) {
+        // A fraction of a second, of any number of digits
+        f += 1;
+        while (f < formatString.length() && 
+               Character.toUpperCase(formatString.charAt(f)) == 'S') {
+          f++;
+        }
+        if (v < value.length() && value.charAt(v) == '.') {
+          field = readDigits(value, v + 1, 1, Integer.MAX_VALUE);
+        }
+      }
+      else if (upper.startsWith("SS")) {
+        field = readDigits(value, v, 1, 2);
+        f += 2;
+        if (field != null) { second = field[0]; }
+      }
+      else if (hour >= 0 && (c == '+' || c == '-' || c == 'Z')) {
+        // The time zone offset is not checked
+        break;
+      }
+      else if (c == 'T' || !Character.isLetterOrDigit(c)) {
+        // A separator; 'T' may also be given as a space
+        f += 1;
+        if (v < value.length()) {
+          char d = value.charAt(v);
+          boolean matches = 
+            (c == 'T') ? (d == 'T' || d == ' ') : !Character.isLetterOrDigit(d);
+          if (matches) {
+            field = new int[] { 0, v + 1 };
+          }
+        }
+      }
+      else {
+        return null;
+      }
+      
+      if (field == null) {
+        break;
+      }
+      v = field[1];
+    }
+    
+    int daysInMonth = 31;
+    if (month == 4 || month == 6 || month == 9 || month == 11) {
+      daysInMonth = 30;
+    }
+    else if (month == 2) {
+      boolean leapYear = (year < 0) || 
+                         (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0));
+      daysInMonth = leapYear ? 29 : 28;
+    }
+    
+    if (month == 0 || month > 12) {
+      problem = String.format("month %d is out of range", month);
+    }
+    else if (day == 0 || day > daysInMonth) {
+      problem = (month > 0) ? 
+        String.format("day %d is out of range for month %d", day, month) :
+        String.format("day %d is out of range", day);
+    }
+    else if (hour > 24 || (hour == 24 && (minute > 0 || second > 0))) {
+      problem = String.format("hour %d is out of range", hour);
+    }
+    else if (minute > 59) {
+      problem = String.format("minute %d is out of range", minute);
+    }
+    else if (second > 60) {
+      problem = String.format("second %d is out of range", second);
+    }
+    
+    if (problem != null) {
+      return String.format("'%s' is not a valid datetime for the formatString '%s': %s",
+                           value, formatString, problem);
+    }
+    
+    return null;
+  }
+  
+  
+  /*
+   * Reads between minDigits and maxDigits digits of a value, starting at
+   * an offset. Returns the number read and the offset that follows it, or
+   * null if fewer than minDigits digits were found.
+   */
+  private static int[] readDigits(String value, int offset, int minDigits, int maxDigits) {
+    int end = offset;
+    while (end < value.length() && end - offset < maxDigits && 
+           Character.isDigit(value.charAt(end))) {
+      end++;
+    }
+    
+    if (end - offset < minDigits) {
+      return null;
+    }
+    
+    String digits = value.substring(offset, Math.min(end, offset + 9));
+    return new int[] { Integer.parseInt(digits), end };
+  }
+  
+  
   /*
    * Instance methods
    */
@@ -361,7 +556,9 @@ public abstract class DatabaseAdapter {
       if (attributeType.equalsIgnoreCase("datetime")) {
       	String formatString = ((DateTimeDomain)domain).getFormatString();
       	
-      	if (this.dateFormatMatchesQualityCheck != null) {
+      	if (this.dateFormatMatchesQualityCheck != null && 
+      	    (errorBudget == null || 
+      	     !errorBudget.isCheckExhausted(dateFormatMatchesQualityCheck.getIdentifier()))) {
       		String msg = formatStringMatchesDataValue(formatString, value);
       		
       		if (msg != null) {
@@ -371,6 +568,7 @@ public abstract class DatabaseAdapter {
       		     */
       		    boolean notPreferred = msg.contains("not a preferred");
       			dateFormatMatchesQualityCheck.setFailedStatus();
+      			if (errorBudget != null) { errorBudget.recordFailure(dateFormatMatchesQualityCheck); }
       			String found = dateFormatMatchesQualityCheck.getFound();
       			if (found == null || found.isEmpty()) {
       				String explanation = null;
@@ -393,6 +591,19 @@ public abstract class DatabaseAdapter {
       		}
       	}
       	
+      	/*
+      	 * When the data are validated without being loaded, to_timestamp()
+      	 * does not reject invalid datetimes, so check them here
+      	 */
+      	if (checkDatetimeValues) {
+      	  String msg = checkDatetimeValue(formatString, value);
+      	  if (msg != null) {
+      	    String errorMsg = String.format("For attribute name %s, %s", attribute.getName(), msg);
+      	    log.error(errorMsg);
+      	    throw new DataNotMatchingMetadataException(errorMsg);
+      	  }
+      	}
+      	
       	// Transform the datetime format string for database compatibility
         String formatStringPrime = transformFormatString(formatString);
         
@@ -421,6 +632,11 @@ public abstract class DatabaseAdapter {
        * and wrap single quotes around the value.
        */
       else if (attributeType.equals("string")) {
+        if (domain instanceof EnumeratedDomain && !((EnumeratedDomain) domain).isCode(value)) {
+          recordValueFailure(enumeratedDomainMatchesQualityCheck, 
+            String.format("For attribute name %s, '%s' is not a code of the enumerated domain", 
+                          attribute.getName(), value));
+        }
     	value = escapeSpecialCharacterInData(value);
         sqlDataPart.append(SINGLEQUOTE);
         sqlDataPart.append(value);
@@ -439,17 +655,20 @@ public abstract class DatabaseAdapter {
             Float floatObj = new Float(value);
             float floatNum = floatObj.floatValue();
             sqlDataPart.append(floatNum);
+            checkNumericBounds(attribute, domain, floatObj.doubleValue(), value);
           } 
           else {
               try {
                   Integer integerObj = new Integer(value);
                   int integerNum = integerObj.intValue();
                   sqlDataPart.append(integerNum);
+                  checkNumericBounds(attribute, domain, integerNum, value);
               }
               catch (NumberFormatException e) {
                   Long longObj = new Long(value);
                   long longNum = longObj.longValue();
                   sqlDataPart.append(longNum);
+                  checkNumericBounds(attribute, domain, longNum, value);
               }
           }
           
@@ -594,6 +813,33 @@ public abstract class DatabaseAdapter {
   public abstract String getCountingRowNumberSQL(String tableName);
 
 
+  /**
+   * Gets the sql command to read the on-disk size, in bytes, of a given table
+   * from the database catalog. The query returns a single row whose
+   * 'table_size' column holds the size.
+   * 
+   * @param tableName  the given table name
+   * @return   In the parent DatabaseAdapter class, returns null, meaning that
+   *           table sizes are not known for this database.
+   */
+  public String getTableSizeSQL(String tableName) {
+    return null;
+  }
+
+
+  /**
+   * Gets the sql command to read the on-disk sizes, in bytes, of all tables
+   * from the database catalog. The query returns one row per table, with
+   * 'table_name' and 'table_size' columns.
+   * 
+   * @return   In the parent DatabaseAdapter class, returns null, meaning that
+   *           table sizes are not known for this database.
+   */
+  public String getTableSizesSQL() {
+    return null;
+  }
+
+
   /**
    * The map between metadat data type and database native data type.
    * 
@@ -819,4 +1065,87 @@ public abstract class DatabaseAdapter {
 	  this.dateFormatMatchesQualityCheck = qualityCheck;
   }
   
+  
+  /**
+   * Sets the quality checks of enumerated and numeric values: whether a
+   * value is one of the codes of its enumerated domain, and whether it
+   * lies within the bounds of its numeric domain. A null quality check is
+   * not applied.
+   * 
+   * @param enumeratedDomainMatches  the enumeratedDomainMatches quality check
+   * @param numericBoundsMatch       the numericBoundsMatch quality check
+   */
+  public void setDomainQualityChecks(QualityCheck enumeratedDomainMatches,
+                                     QualityCheck numericBoundsMatch) {
+	  this.enumeratedDomainMatchesQualityCheck = enumeratedDomainMatches;
+	  this.numericBoundsMatchQualityCheck = numericBoundsMatch;
+  }
+  
+  
+  /**
+   * Sets whether generateInsertSQL() checks datetime values with
+   * checkDatetimeValue(), throwing DataNotMatchingMetadataException for
+   * an invalid value. This is needed when the data are validated without
+   * being loaded, since the database's to_timestamp() then never sees them.
+   * 
+   * @param checkDatetimeValues   true to check datetime values
+   */
+  public void setCheckDatetimeValues(boolean checkDatetimeValues) {
+	  this.checkDatetimeValues = checkDatetimeValues;
+  }
+  
+  
+  /*
+   * Records a failure of the numericBoundsMatch quality check if a value
+   * lies outside the bounds of its numeric domain. Bounds are inclusive.
+   */
+  private void checkNumericBounds(Attribute attribute, Domain domain, 
+                                  double number, String value) {
+	  if (domain instanceof NumericDomain) {
+		  Double minimum = ((NumericDomain) domain).getMinimum();
+		  Double maximum = ((NumericDomain) domain).getMaximum();
+		  if ((minimum != null && number < minimum) || (maximum != null && number > maximum)) {
+			  recordValueFailure(numericBoundsMatchQualityCheck, 
+			    String.format("For attribute name %s, %s is outside the bounds [%s, %s]", 
+			                  attribute.getName(), value, 
+			                  (minimum == null) ? "" : minimum, 
+			                  (maximum == null) ? "" : maximum));
+		  }
+	  }
+  }
+  
+  
+  /*
+   * Records a failed value in a quality check and in the error budget,
+   * unless the check is not applied or its budget is exhausted. The found
+   * value lists the failed values, up to about 300 characters.
+   */
+  private void recordValueFailure(QualityCheck qualityCheck, String msg) {
+	  if (qualityCheck == null || 
+	      (errorBudget != null && errorBudget.isCheckExhausted(qualityCheck.getIdentifier()))) {
+		  return;
+	  }
+	  
+	  qualityCheck.setFailedStatus();
+	  if (errorBudget != null) { errorBudget.recordFailure(qualityCheck); }
+	  String found = qualityCheck.getFound();
+	  if (found == null || found.isEmpty()) {
+		  qualityCheck.setFound(msg);
+	  }
+	  else if (found.length() <= 300) {
+		  qualityCheck.setFound(found + "\\n" + msg);
+	  }
+  }
+  
+  
+  /**
+   * Setter method for the errorBudget instance value. Failures of the
+   * dateFormatMatches quality check are recorded in the error budget, and
+   * the check is no longer applied once its budget is exhausted.
+   * @param errorBudget  the ErrorBudget object for the entity being loaded
+   */
+  public void setErrorBudget(ErrorBudget errorBudget) {
+	  this.errorBudget = errorBudget;
+  }
+  
 }
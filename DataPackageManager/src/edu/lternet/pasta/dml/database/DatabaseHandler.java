@@ -119,21 +119,53 @@ public class DatabaseHandler
 
 
   /**
-   * Given a table name, drops the data table from the database.
+   * Acquires a lease on the data table of an entity, so that it is not
+   * dropped while it is being loaded or queried. The lease must be released
+   * with releaseLease().
+   * 
+   * @param   entity  the entity whose data table is being used
+   */
+  public void acquireLease(Entity entity) {
+    tableMonitor.acquireLease(entity.getDBTableName());
+  }
+
+
+  /**
+   * Releases a lease on the data table of an entity. If the table was
+   * to be dropped while it was leased, it is dropped now.
+   * 
+   * @param   entity  the entity whose data table is no longer being used
+   */
+  public void releaseLease(Entity entity) throws SQLException {
+    String tableName = entity.getDBTableName();
+    
+    if (tableMonitor.releaseLease(tableName)) {
+      dropTable(tableName);
+    }
+  }
+
+
+  /**
+   * Given a table name, drops the data table from the database. If the
+   * table is leased by an active load or query, it is dropped when the
+   * last lease is released instead.
    * 
    * @param   tableName  The name of the table that is to be dropped.
    * @return  true if the data table was successfully dropped, else false.
    */
   boolean dropTable(String tableName) throws SQLException {
-    Connection connection = DataManager.getConnection();
     boolean success = false;
     String sqlString;
     
     if ((tableName != null) && (!tableName.trim().equals(""))) {
+      if (tableMonitor.deferDropIfLeased(tableName)) {
+        success = true;
+      }
       /*
        * If the table is in the database, drop it.
        */
-      if (tableMonitor.isTableInDB(tableName)) {
+      else if (tableMonitor.isTableInDB(tableName)) {
+        Connection connection = DataManager.getConnection();
         Statement stmt = null;
         sqlString = databaseAdapter.generateDropTableSQL(tableName);
 
@@ -437,6 +469,15 @@ public class DatabaseHandler
          *  } success = downloadHandler.isSuccess();
          */
         success = downloadHandler.download(storage);
+        
+        /*
+         * Record the size of the loaded table, and drop the least recently
+         * used tables if the database quota is now exceeded.
+         */
+        if (success) {
+          tableMonitor.updateTableSize(entity.getDBTableName());
+          tableMonitor.freeTableSpace(this);
+        }
       } 
       catch (Exception e) {
         success = false;
@@ -460,6 +501,19 @@ public class DatabaseHandler
     Connection connection = DataManager.getConnection();
     ResultSet rs = null;
     Statement stmt = null;
+    ArrayList<Entity> leasedEntities = new ArrayList<Entity>();
+    
+    // Lease the data tables of the packages while the query runs
+    if (packages != null) {
+      for (DataPackage dataPackage : packages) {
+        for (Entity entity : dataPackage.getEntityList()) {
+          if (entity.getDBTableName() != null) {
+            acquireLease(entity);
+            leasedEntities.add(entity);
+          }
+        }
+      }
+    }
     
     try {
       stmt = connection.createStatement();
@@ -472,6 +526,10 @@ public class DatabaseHandler
     finally {
       //if (stmt != null) stmt.close();
       DataManager.returnConnection(connection);
+      
+      for (Entity entity : leasedEntities) {
+        releaseLease(entity);
+      }
     }
     
     return rs;
@@ -1,5 +1,7 @@
 package edu.lternet.pasta.dml.database;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -17,6 +19,7 @@ import edu.lternet.pasta.dml.download.DataSourceNotFoundException;
 import edu.lternet.pasta.dml.download.DataStorageInterface;
 import edu.lternet.pasta.dml.parser.AttributeList;
 import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.ErrorBudget;
 import edu.lternet.pasta.dml.quality.QualityCheck;
 import edu.lternet.pasta.dml.quality.QualityReport;
 import edu.lternet.pasta.dml.quality.QualityCheck.Status;
@@ -26,6 +29,13 @@ import edu.lternet.pasta.dml.quality.QualityCheck.Status;
  * In this class, PipedOutputStream and PipedInputStream are used in order
  * to eliminate the need to use temporary files on disk.
  * 
+ * A loader constructed in validate-only mode tokenizes the data and runs the
+ * same row-level checks (field counts, missing value codes, numeric types,
+ * datetime formats, record count) without creating or inserting into a
+ * database table. The checks are the ones made by the database adapter when
+ * it generates the insert statement for a row, so the quality checks match
+ * those of a database load.
+ * 
  * @author Jing Tao
  *
  */
@@ -53,6 +63,10 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
   private boolean success = false;
   private Exception exception = null;
   private QualityCheck dateFormatMatchesQualityCheck = null;
+  private QualityCheck enumeratedDomainMatchesQualityCheck = null;
+  private QualityCheck numericBoundsMatchQualityCheck = null;
+  private boolean validateOnly = false;
+  private String dbAdapterName = null;
   
   
   /*
@@ -70,6 +84,24 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
    */
   public DatabaseLoader(String dbAdapterName, Entity entity)
           throws IOException, SQLException
+  {
+    this(dbAdapterName, entity, false);
+  }
+  
+  
+  /**
+   * Constructor of this class, optionally in validate-only mode. A
+   * validate-only loader does not use the database, so its table monitor
+   * is not initialized; the database field names of the entity attributes
+   * are assigned here instead of by DDL generation.
+   * 
+   * @param dbAdapterName   Name of database adapter
+   * @param entity          Metadata information associated with the loader
+   * @param validateOnly    true to check the data without loading it
+   * @throws IOException
+   */
+  public DatabaseLoader(String dbAdapterName, Entity entity, boolean validateOnly)
+          throws IOException, SQLException
   {
     outputStream = new PipedOutputStream();
     inputStream = new PipedInputStream();
@@ -88,7 +120,16 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
       this.databaseAdapter = new OracleAdapter();
     }
     
-    tableMonitor = new TableMonitor(databaseAdapter);
+    this.validateOnly = validateOnly;
+    this.dbAdapterName = dbAdapterName;
+    if (validateOnly) {
+      if (entity != null && entity.getAttributeList() != null) {
+        databaseAdapter.assignDbFieldNames(entity.getAttributeList());
+      }
+    }
+    else {
+      tableMonitor = new TableMonitor(databaseAdapter);
+    }
   }
 	
 	 
@@ -207,13 +248,121 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
    * Reads the data from PipedInputStream which connects the PipedOutputStream
    * which was returned to DownloadHandler. The read data will be loaded into 
    * db. This is the real procedure to load data into db.
+   * 
+   * In validate-only mode, a large entity that is stored in a local file is
+   * validated by a ParallelValidator. The pipe is then only drained, so that
+   * the DownloadHandler completes normally, and if the entity cannot be
+   * validated in parallel it is validated sequentially from the file.
    */
   public void run() {
+    File entityFile = validateOnly ? ParallelValidator.getEntityFile(entity) : null;
+
+    if (entityFile == null) {
+      loadData(inputStream);
+      return;
+    }
+
+    drainInputStream();
+
+    if (validateInParallel(entityFile)) {
+      completed = true;
+      return;
+    }
+
+    FileInputStream fileInputStream = null;
+    try {
+      fileInputStream = new FileInputStream(entityFile);
+      loadData(fileInputStream);
+    }
+    catch (IOException e) {
+      log.error("Exception in DatabaseLoader.run(): " + e.getMessage());
+      success = false;
+      exception = e;
+      completed = true;
+    }
+    finally {
+      if (fileInputStream != null) {
+        try {
+          fileInputStream.close();
+        }
+        catch (IOException e) {
+          log.error("Could not close entity file: " + e.getMessage());
+        }
+      }
+    }
+  }
+  
+  
+  /*
+   * Reads and discards the data written to the pipe, on its own thread.
+   */
+  private void drainInputStream() {
+    Thread drainThread = new Thread(new Runnable() {
+      public void run() {
+        byte[] buffer = new byte[8192];
+        try {
+          while (inputStream.read(buffer) != -1) {
+            // The data is read from the entity file instead
+          }
+        }
+        catch (IOException e) {
+          // The pipe was closed by finishSerialize()
+        }
+      }
+    });
+    drainThread.setDaemon(true);
+    drainThread.start();
+  }
+  
+  
+  /*
+   * Validates an entity file with a ParallelValidator and reports the
+   * merged results as the sequential load would. Returns false if the
+   * entity must be validated sequentially.
+   */
+  private boolean validateInParallel(File entityFile) {
+    ParallelValidator parallelValidator = 
+      new ParallelValidator(entity, dbAdapterName, entityFile);
+    
+    if (!parallelValidator.validate()) {
+      return false;
+    }
+    
+    String dataLoadIdentifier = "dataLoadStatus";
+    QualityCheck dataLoadTemplate = 
+      QualityReport.getQualityCheckTemplate(dataLoadIdentifier);
+    QualityCheck dataLoadQualityCheck = 
+      new QualityCheck(dataLoadIdentifier, dataLoadTemplate);
+    
+    entity.addHeaderLine(parallelValidator.getHeaderLines());
+    for (QualityCheck qualityCheck : parallelValidator.getQualityChecks()) {
+      entity.addQualityCheck(qualityCheck);
+    }
+    reportFirstRow(parallelValidator.getFirstRow());
+    reportFieldChecks(0, 0, parallelValidator.hasRecordDelimiter(), false, 0);
+    reportDataLoad(dataLoadQualityCheck, false, parallelValidator.getRowCount());
+    this.dateFormatMatchesQualityCheck = parallelValidator.getDateFormatMatchesQualityCheck();
+    this.enumeratedDomainMatchesQualityCheck = parallelValidator.getEnumeratedDomainMatchesQualityCheck();
+    this.numericBoundsMatchQualityCheck = parallelValidator.getNumericBoundsMatchQualityCheck();
+    reportFinalChecks(entity.getAttributeList(), parallelValidator.getErrorBudget());
+    
+    success = true;
+    return true;
+  }
+  
+  
+  /*
+   * Loads, or in validate-only mode validates, the data read from a
+   * stream.
+   */
+  private void loadData(InputStream dataStream) {
     DelimitedReader delimitedReader = null;
     QualityCheck dataLoadQualityCheck = null;
     String insertSQL = "";
     Vector<String> rowVector = new Vector<String>();
     int rowCount = 0;
+    ErrorBudget errorBudget = new ErrorBudget();
+    boolean budgetExceeded = false;
     
     if (entity == null) {
       success = false;
@@ -237,6 +386,18 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
         	// Tell the database adapter to apply the dateFormatMatches quality check
         	databaseAdapter.setDateFormatMatchesQualityCheck(dateFormatMatchesQualityCheck);
         }
+        
+        // Initialize the enumeratedDomainMatches and numericBoundsMatch checks
+        this.enumeratedDomainMatchesQualityCheck = 
+          newValueQualityCheck(entity, DatabaseAdapter.ENUMERATED_DOMAIN_MATCHES);
+        this.numericBoundsMatchQualityCheck = 
+          newValueQualityCheck(entity, DatabaseAdapter.NUMERIC_BOUNDS_MATCH);
+        databaseAdapter.setDomainQualityChecks(enumeratedDomainMatchesQualityCheck, 
+                                               numericBoundsMatchQualityCheck);
+        
+        // Without a load, to_timestamp() does not check the datetime values
+        databaseAdapter.setCheckDatetimeValues(validateOnly);
+        databaseAdapter.setErrorBudget(errorBudget);
     }
     
     AttributeList attributeList = entity.getAttributeList();
@@ -244,11 +405,11 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
     TextDataReader dataReader = null;
     boolean stripHeaderLine = true;
     
-    if (inputStream != null) {
+    if (dataStream != null) {
       try {
         if (entity.isSimpleDelimited()) {
           delimitedReader = new DelimitedReader(
-                                  inputStream,
+                                  dataStream,
                                   entity,
                                   entity.getAttributes().length, 
                                   entity.getFieldDelimiter(), 
@@ -258,6 +419,7 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
                                   stripHeaderLine
                                  );
           delimitedReader.setCollapseDelimiters(entity.getCollapseDelimiters());
+          delimitedReader.setErrorBudget(errorBudget);
           delimitedReader.setNumFooterLines(entity.getNumFooterLines());
           if (entity.getQuoteCharacter() != null)
           {
@@ -270,7 +432,7 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
           dataReader = delimitedReader;
         } 
         else {
-          dataReader = new TextComplexFormatDataReader(inputStream, 
+          dataReader = new TextComplexFormatDataReader(dataStream, 
                                                        entity,
                                                        stripHeaderLine
                                                       );
@@ -301,25 +463,10 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
       Connection connection = null;
 
       try {
-        /*
-         *  Display the first row of data in a QualityCheck object
-         */
-        String displayRowIdentifier = "displayFirstInsertRow";
-        QualityCheck displayRowTemplate = 
-          QualityReport.getQualityCheckTemplate(displayRowIdentifier);
-        QualityCheck displayRowQualityCheck = 
-          new QualityCheck(displayRowIdentifier, displayRowTemplate);
-
-        if (QualityCheck.shouldRunQualityCheck(entity, displayRowQualityCheck)) {
-          // Note that rowVector starts and ends with square brackets. We're
-          // using a shortcut by incorporating them into the CDATA tags
-          String foundString = "<![CDATA" + rowVector.toString() + "]>";
-          displayRowQualityCheck.setFound(foundString);
-          displayRowQualityCheck.setStatus(Status.info);
-          entity.addQualityCheck(displayRowQualityCheck);
-        }
+        reportFirstRow(rowVector);
         
-        connection = DataManager.getConnection();
+        if (!validateOnly) {
+          connection = DataManager.getConnection();
     	  if (connection == null)
     	  {
     		  success = false;
@@ -327,12 +474,18 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
     		  completed = true;
     		  return;
     	  }
+        }
     	  //connection.setAutoCommit(false);
         while (!rowVector.isEmpty()) {
+          errorBudget.countRow();
           insertSQL = databaseAdapter.generateInsertSQL(attributeList,
                                                         tableName, 
                                                         rowVector);
-          if (insertSQL != null)
+          if (insertSQL != null && validateOnly)
+          {
+            rowCount++;
+          }
+          else if (insertSQL != null)
           {
               PreparedStatement pstmt = null;
               try {
@@ -352,135 +505,39 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
             }
           }
             
-          rowVector = dataReader.getOneRowDataVector();
-        }
-        //connection.commit();
-        
-        if (delimitedReader != null) {
           /*
-           * If no 'tooFewFields' errors were detected, record the
-           * quality check status as 'valid'
+           * Once the entity is certain to fail and has used up its error
+           * budget, stop loading it. Closing the pipe stops the download
+           * handler that is writing to it.
            */
-          String tooFewFieldsIdentifier = "tooFewFields";
-          QualityCheck tooFewFieldsTemplate = 
-            QualityReport.getQualityCheckTemplate(tooFewFieldsIdentifier);
-          QualityCheck tooFewFieldsCheck = 
-            new QualityCheck(tooFewFieldsIdentifier, tooFewFieldsTemplate);
-          if (QualityCheck.shouldRunQualityCheck(entity, tooFewFieldsCheck)) {
-            if (delimitedReader.getTooFewFieldsCounter() == 0) {
-              tooFewFieldsCheck.setExplanation("");
-              tooFewFieldsCheck.setFound("No errors detected");
-              tooFewFieldsCheck.setStatus(Status.valid);
-              tooFewFieldsCheck.setSuggestion("");
-              entity.addQualityCheck(tooFewFieldsCheck);
+          if (errorBudget.isExceeded()) {
+            budgetExceeded = true;
+            log.warn(String.format("%s: error budget exceeded after %d rows; loading stopped", 
+                                   entity.getName(), errorBudget.getRowsChecked()));
+            try {
+              dataStream.close();
             }
-          }
-          
-          /*
-           * If no 'tooManyFields' errors were detected, record the
-           * quality check status as 'valid'
-           */
-          String tooManyFieldsIdentifier = "tooManyFields";
-          QualityCheck tooManyFieldsTemplate = 
-            QualityReport.getQualityCheckTemplate(tooManyFieldsIdentifier);
-          QualityCheck tooManyFieldsCheck = 
-            new QualityCheck(tooManyFieldsIdentifier, tooManyFieldsTemplate);
-          if (QualityCheck.shouldRunQualityCheck(entity, tooManyFieldsCheck)) {
-            if (delimitedReader.getTooManyFieldsCounter() == 0) {
-              tooManyFieldsCheck.setExplanation("");
-              tooManyFieldsCheck.setFound("No errors detected");
-              tooManyFieldsCheck.setStatus(Status.valid);
-              tooManyFieldsCheck.setSuggestion("");
-              entity.addQualityCheck(tooManyFieldsCheck);
-            }
-          }
-
-          /*
-           * If no delimiter string was found in the data, record the
-           * an examineRecordDelimiter quality check as 'error'
-           */
-          String examineRecordDelimiterIdentifier = "examineRecordDelimiter";
-          QualityCheck examineRecordDelimiterTemplate = 
-            QualityReport.getQualityCheckTemplate(examineRecordDelimiterIdentifier);
-          QualityCheck examineRecordDelimiter = 
-            new QualityCheck(examineRecordDelimiterIdentifier, examineRecordDelimiterTemplate);
-          if (QualityCheck.shouldRunQualityCheck(entity, examineRecordDelimiter)) {
-            if (!delimitedReader.hasRecordDelimiter()) {
-              String explanation = "No record delimiter was found in the data entity.";
-              if (delimitedReader.exceedsRecordLengthLimit()) {
-            	  int recordLengthLimit = delimitedReader.getRecordLengthLimit();
-            	  explanation = String.format("The first %d characters of the data entity were examined and no record delimiter was found matching the record delimiter specified in the metadata.", recordLengthLimit);
-              }
-              examineRecordDelimiter.setExplanation(explanation);
-              examineRecordDelimiter.setFound("No record delimiter was found.");
-              examineRecordDelimiter.setStatus(Status.error);
-              examineRecordDelimiter.setSuggestion("Check that the record delimiter is specified in the metadata.");
-              entity.addQualityCheck(examineRecordDelimiter);
+            catch (IOException e) {
+              log.error("Could not close inputStream: " + e.getMessage());
             }
+            break;
           }
+            
+          rowVector = dataReader.getOneRowDataVector();
         }
-
-        if (QualityCheck.shouldRunQualityCheck(entity, dataLoadQualityCheck)) {
-
-          if (rowCount > 0) {         
-            dataLoadQualityCheck.setStatus(Status.valid);
-            dataLoadQualityCheck.setFound("The data table loaded successfully into a database");
-          }
-          else {
-            dataLoadQualityCheck.setFailedStatus();
-            dataLoadQualityCheck.setFound("No data could be loaded into a database");
-          }
-          entity.addQualityCheck(dataLoadQualityCheck);   
-           
-          /*
-           * Store number of records found in a QualityCheck object
-           */
-          String numberOfRecordsIdentifier = "numberOfRecords";
-          QualityCheck numberOfRecordsTemplate = 
-            QualityReport.getQualityCheckTemplate(numberOfRecordsIdentifier);
-          QualityCheck numberOfRecordsQualityCheck = 
-            new QualityCheck(numberOfRecordsIdentifier, numberOfRecordsTemplate);
-          if (QualityCheck.shouldRunQualityCheck(entity, numberOfRecordsQualityCheck)) {
-            int expectedNumberOfRecords = entity.getNumRecords();
-            numberOfRecordsQualityCheck.setExpected("" + expectedNumberOfRecords);
-            numberOfRecordsQualityCheck.setFound("" + rowCount);        
-            if (expectedNumberOfRecords == rowCount) {
-              numberOfRecordsQualityCheck.setStatus(Status.valid);
-              numberOfRecordsQualityCheck.setExplanation(
-                "The expected number of records (" + 
-                rowCount + ") was found in the data table.");
-            }
-            // When zero records were counted, set an error status
-            else if ((expectedNumberOfRecords != 0) && (rowCount == 0)) {
-              numberOfRecordsQualityCheck.setFailedStatus();
-              numberOfRecordsQualityCheck.setExplanation(
-                "The number of records found in the data table was: " +  
-                rowCount +
-                ". Check that a valid record delimiter was specified in the metadata.");
-            }
-            // When 'numberOfRecords' is not specified in the EML, the EML
-            // parser sets the value to -1.
-            else if (expectedNumberOfRecords < 0) {
-              numberOfRecordsQualityCheck.setStatus(Status.info);
-              numberOfRecordsQualityCheck.setExplanation(
-                "The number of records found in the data table was: " +  
-                rowCount +
-                ". There was no 'numberOfRecords' value specified in the EML.");
-            }
-            else {
-              // Report number of records check as failed
-              numberOfRecordsQualityCheck.setFailedStatus();
-              numberOfRecordsQualityCheck.setExplanation(
-                "The number of records found in the data table (" + rowCount +
-                ") does not match the 'numberOfRecords' value specified in the EML (" +
-                expectedNumberOfRecords + ")"
-              );
-            }
-            entity.addQualityCheck(numberOfRecordsQualityCheck);
-          }
+        //connection.commit();
+        
+        if (delimitedReader != null) {
+          reportFieldChecks(delimitedReader.getTooFewFieldsCounter(),
+                            delimitedReader.getTooManyFieldsCounter(),
+                            delimitedReader.hasRecordDelimiter(),
+                            delimitedReader.exceedsRecordLengthLimit(),
+                            delimitedReader.getRecordLengthLimit());
         }
 
-        success = true;
+        reportDataLoad(dataLoadQualityCheck, budgetExceeded, rowCount);
+
+        success = !budgetExceeded;
       }
       catch (Exception e) {
         log.error(e.getMessage());
@@ -491,60 +548,28 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
         if (QualityCheck.shouldRunQualityCheck(entity, dataLoadQualityCheck)) {
           // Report data load status as failed
           dataLoadQualityCheck.setFailedStatus();
-          dataLoadQualityCheck.setFound("Error inserting data at row " +
+          dataLoadQualityCheck.setFound((validateOnly ? "Error validating data at row " : "Error inserting data at row ") +
                                         (rowCount + 1) + ".");
           String explanation = "<![CDATA[" + e.getMessage() + "]]>";
           dataLoadQualityCheck.setExplanation(explanation);
           entity.addQualityCheck(dataLoadQualityCheck);
         }
         
-        try {
-          connection.rollback();
-        } 
-        catch (Exception ee) {
-          log.error(ee.getMessage());
+        if (connection != null) {
+          try {
+            connection.rollback();
+          } 
+          catch (Exception ee) {
+            log.error(ee.getMessage());
+          }
         }
       }
       finally {
-          String headerRowAttributeNamesIdentifier = "headerRowAttributeNames";
-          QualityCheck headerRowAttributeNamesTemplate = QualityReport.getQualityCheckTemplate(headerRowAttributeNamesIdentifier);
-          QualityCheck headerRowAttributeNamesQualityCheck = new QualityCheck(headerRowAttributeNamesIdentifier, headerRowAttributeNamesTemplate);
-          if (QualityCheck.shouldRunQualityCheck(entity, headerRowAttributeNamesQualityCheck)) {
-              final String headerRowsBanner = "*** HEADER ROWS ***\n";
-              final String attributesBanner = "*** ATTRIBUTE LIST ***\n";
-              String found = "";
-              String headerText = entity.getHeaderText();
-              if (headerText == null || headerText.isEmpty()) {
-                  found = headerRowsBanner + "No header rows were found.";
-              }
-              else {
-                  found = String.format("%s%s", 
-                                        headerRowsBanner, 
-                                        headerText);
-              }
-              
-              found += attributesBanner;
-              String attributeListStr = "";
-              if (attributeList != null) {
-                  attributeListStr = attributeList.prettyPrintAttributes();
-              }
-              found += attributeListStr;
-              found = QualityCheck.embedInCDATA(found);
-              headerRowAttributeNamesQualityCheck.setFound(found);
-              headerRowAttributeNamesQualityCheck.setStatus(Status.info);
-              entity.addQualityCheck(headerRowAttributeNamesQualityCheck);
-          }
+          reportFinalChecks(attributeList, errorBudget);
           
-          if (QualityCheck.shouldRunQualityCheck(entity, dateFormatMatchesQualityCheck)) {
-              String found = this.dateFormatMatchesQualityCheck.getFound();
-              if (found == null || found.isEmpty()) {
-                  this.dateFormatMatchesQualityCheck.setFound("Data values matched the specified formatString.");
-                  this.dateFormatMatchesQualityCheck.setExplanation("");
-              }
-              entity.addQualityCheck(dateFormatMatchesQualityCheck);
+          if (connection != null) {
+              DataManager.returnConnection(connection);
           }
-          
-          DataManager.returnConnection(connection);
       }
     }
     else {
@@ -556,6 +581,262 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
   }
 		
 		
+  /*
+   * Displays the first row of data in a QualityCheck object.
+   */
+  private void reportFirstRow(Vector<String> rowVector) {
+    String displayRowIdentifier = "displayFirstInsertRow";
+    QualityCheck displayRowTemplate = 
+      QualityReport.getQualityCheckTemplate(displayRowIdentifier);
+    QualityCheck displayRowQualityCheck = 
+      new QualityCheck(displayRowIdentifier, displayRowTemplate);
+
+    if (QualityCheck.shouldRunQualityCheck(entity, displayRowQualityCheck)) {
+      // Note that rowVector starts and ends with square brackets. We're
+      // using a shortcut by incorporating them into the CDATA tags
+      String foundString = "<![CDATA" + rowVector.toString() + "]>";
+      displayRowQualityCheck.setFound(foundString);
+      displayRowQualityCheck.setStatus(Status.info);
+      entity.addQualityCheck(displayRowQualityCheck);
+    }
+  }
+  
+  
+  /*
+   * Reports the field count and record delimiter checks of a delimited
+   * data entity, once all of its rows have been read.
+   */
+  private void reportFieldChecks(int tooFewFieldsCounter, 
+                                 int tooManyFieldsCounter,
+                                 boolean hasRecordDelimiter, 
+                                 boolean exceedsRecordLengthLimit,
+                                 int recordLengthLimit) {
+    /*
+     * If no 'tooFewFields' errors were detected, record the
+     * quality check status as 'valid'
+     */
+    String tooFewFieldsIdentifier = "tooFewFields";
+    QualityCheck tooFewFieldsTemplate = 
+      QualityReport.getQualityCheckTemplate(tooFewFieldsIdentifier);
+    QualityCheck tooFewFieldsCheck = 
+      new QualityCheck(tooFewFieldsIdentifier, tooFewFieldsTemplate);
+    if (QualityCheck.shouldRunQualityCheck(entity, tooFewFieldsCheck)) {
+      if (tooFewFieldsCounter == 0) {
+        tooFewFieldsCheck.setExplanation("");
+        tooFewFieldsCheck.setFound("No errors detected");
+        tooFewFieldsCheck.setStatus(Status.valid);
+        tooFewFieldsCheck.setSuggestion("");
+        entity.addQualityCheck(tooFewFieldsCheck);
+      }
+    }
+
+    /*
+     * If no 'tooManyFields' errors were detected, record the
+     * quality check status as 'valid'
+     */
+    String tooManyFieldsIdentifier = "tooManyFields";
+    QualityCheck tooManyFieldsTemplate = 
+      QualityReport.getQualityCheckTemplate(tooManyFieldsIdentifier);
+    QualityCheck tooManyFieldsCheck = 
+      new QualityCheck(tooManyFieldsIdentifier, tooManyFieldsTemplate);
+    if (QualityCheck.shouldRunQualityCheck(entity, tooManyFieldsCheck)) {
+      if (tooManyFieldsCounter == 0) {
+        tooManyFieldsCheck.setExplanation("");
+        tooManyFieldsCheck.setFound("No errors detected");
+        tooManyFieldsCheck.setStatus(Status.valid);
+        tooManyFieldsCheck.setSuggestion("");
+        entity.addQualityCheck(tooManyFieldsCheck);
+      }
+    }
+
+    /*
+     * If no delimiter string was found in the data, record the
+     * an examineRecordDelimiter quality check as 'error'
+     */
+    String examineRecordDelimiterIdentifier = "examineRecordDelimiter";
+    QualityCheck examineRecordDelimiterTemplate = 
+      QualityReport.getQualityCheckTemplate(examineRecordDelimiterIdentifier);
+    QualityCheck examineRecordDelimiter = 
+      new QualityCheck(examineRecordDelimiterIdentifier, examineRecordDelimiterTemplate);
+    if (QualityCheck.shouldRunQualityCheck(entity, examineRecordDelimiter)) {
+      if (!hasRecordDelimiter) {
+        String explanation = "No record delimiter was found in the data entity.";
+        if (exceedsRecordLengthLimit) {
+          explanation = String.format("The first %d characters of the data entity were examined and no record delimiter was found matching the record delimiter specified in the metadata.", recordLengthLimit);
+        }
+        examineRecordDelimiter.setExplanation(explanation);
+        examineRecordDelimiter.setFound("No record delimiter was found.");
+        examineRecordDelimiter.setStatus(Status.error);
+        examineRecordDelimiter.setSuggestion("Check that the record delimiter is specified in the metadata.");
+        entity.addQualityCheck(examineRecordDelimiter);
+      }
+    }
+  }
+  
+  
+  /*
+   * Reports the data load status and the number of records.
+   */
+  private void reportDataLoad(QualityCheck dataLoadQualityCheck, 
+                              boolean budgetExceeded, 
+                              int rowCount) {
+    if (QualityCheck.shouldRunQualityCheck(entity, dataLoadQualityCheck)) {
+
+      if (budgetExceeded) {
+        dataLoadQualityCheck.setFailedStatus();
+        dataLoadQualityCheck.setFound(
+          String.format("Data loading was stopped after %d rows because of too many errors", rowCount));
+      }
+      else if (rowCount > 0) {         
+        dataLoadQualityCheck.setStatus(Status.valid);
+        if (validateOnly) {
+          dataLoadQualityCheck.setFound("The data table was read and its values matched the attribute definitions");
+        }
+        else {
+          dataLoadQualityCheck.setFound("The data table loaded successfully into a database");
+        }
+      }
+      else {
+        dataLoadQualityCheck.setFailedStatus();
+        if (validateOnly) {
+          dataLoadQualityCheck.setFound("No data rows could be read from the data table");
+        }
+        else {
+          dataLoadQualityCheck.setFound("No data could be loaded into a database");
+        }
+      }
+      entity.addQualityCheck(dataLoadQualityCheck);   
+
+      /*
+       * Store number of records found in a QualityCheck object
+       */
+      String numberOfRecordsIdentifier = "numberOfRecords";
+      QualityCheck numberOfRecordsTemplate = 
+        QualityReport.getQualityCheckTemplate(numberOfRecordsIdentifier);
+      QualityCheck numberOfRecordsQualityCheck = 
+        new QualityCheck(numberOfRecordsIdentifier, numberOfRecordsTemplate);
+      if (!budgetExceeded && 
+          QualityCheck.shouldRunQualityCheck(entity, numberOfRecordsQualityCheck)) {
+        int expectedNumberOfRecords = entity.getNumRecords();
+        numberOfRecordsQualityCheck.setExpected("" + expectedNumberOfRecords);
+        numberOfRecordsQualityCheck.setFound("" + rowCount);        
+        if (expectedNumberOfRecords == rowCount) {
+          numberOfRecordsQualityCheck.setStatus(Status.valid);
+          numberOfRecordsQualityCheck.setExplanation(
+            "The expected number of records (" + 
+            rowCount + ") was found in the data table.");
+        }
+        // When zero records were counted, set an error status
+        else if ((expectedNumberOfRecords != 0) && (rowCount == 0)) {
+          numberOfRecordsQualityCheck.setFailedStatus();
+          numberOfRecordsQualityCheck.setExplanation(
+            "The number of records found in the data table was: " +  
+            rowCount +
+            ". Check that a valid record delimiter was specified in the metadata.");
+        }
+        // When 'numberOfRecords' is not specified in the EML, the EML
+        // parser sets the value to -1.
+        else if (expectedNumberOfRecords < 0) {
+          numberOfRecordsQualityCheck.setStatus(Status.info);
+          numberOfRecordsQualityCheck.setExplanation(
+            "The number of records found in the data table was: " +  
+            rowCount +
+            ". There was no 'numberOfRecords' value specified in the EML.");
+        }
+        else {
+          // Report number of records check as failed
+          numberOfRecordsQualityCheck.setFailedStatus();
+          numberOfRecordsQualityCheck.setExplanation(
+            "The number of records found in the data table (" + rowCount +
+            ") does not match the 'numberOfRecords' value specified in the EML (" +
+            expectedNumberOfRecords + ")"
+          );
+        }
+        entity.addQualityCheck(numberOfRecordsQualityCheck);
+      }
+    }
+  }
+  
+  
+  /*
+   * Creates a quality check of the data values, initially valid, or
+   * returns null if the check should not be run for the entity.
+   */
+  static QualityCheck newValueQualityCheck(Entity entity, String identifier) {
+    QualityCheck template = QualityReport.getQualityCheckTemplate(identifier);
+    QualityCheck qualityCheck = new QualityCheck(identifier, template);
+    qualityCheck.setStatus(QualityCheck.Status.valid);
+    return QualityCheck.shouldRunQualityCheck(entity, qualityCheck) ? qualityCheck : null;
+  }
+  
+  
+  /*
+   * Reports the header rows, the error budget, and the dateFormatMatches,
+   * enumeratedDomainMatches and numericBoundsMatch checks, which are
+   * reported whether or not the load succeeded.
+   */
+  private void reportFinalChecks(AttributeList attributeList, ErrorBudget errorBudget) {
+    String headerRowAttributeNamesIdentifier = "headerRowAttributeNames";
+    QualityCheck headerRowAttributeNamesTemplate = QualityReport.getQualityCheckTemplate(headerRowAttributeNamesIdentifier);
+    QualityCheck headerRowAttributeNamesQualityCheck = new QualityCheck(headerRowAttributeNamesIdentifier, headerRowAttributeNamesTemplate);
+    if (QualityCheck.shouldRunQualityCheck(entity, headerRowAttributeNamesQualityCheck)) {
+        final String headerRowsBanner = "*** HEADER ROWS ***\n";
+        final String attributesBanner = "*** ATTRIBUTE LIST ***\n";
+        String found = "";
+        String headerText = entity.getHeaderText();
+        if (headerText == null || headerText.isEmpty()) {
+            found = headerRowsBanner + "No header rows were found.";
+        }
+        else {
+            found = String.format("%s%s", 
+                                  headerRowsBanner, 
+                                  headerText);
+        }
+
+        found += attributesBanner;
+        String attributeListStr = "";
+        if (attributeList != null) {
+            attributeListStr = attributeList.prettyPrintAttributes();
+        }
+        found += attributeListStr;
+        found = QualityCheck.embedInCDATA(found);
+        headerRowAttributeNamesQualityCheck.setFound(found);
+        headerRowAttributeNamesQualityCheck.setStatus(Status.info);
+        entity.addQualityCheck(headerRowAttributeNamesQualityCheck);
+    }
+
+    QualityCheck errorBudgetQualityCheck = errorBudget.toQualityCheck();
+    if (QualityCheck.shouldRunQualityCheck(entity, errorBudgetQualityCheck)) {
+        entity.addQualityCheck(errorBudgetQualityCheck);
+    }
+
+    if (QualityCheck.shouldRunQualityCheck(entity, dateFormatMatchesQualityCheck)) {
+        String found = this.dateFormatMatchesQualityCheck.getFound();
+        if (found == null || found.isEmpty()) {
+            this.dateFormatMatchesQualityCheck.setFound("Data values matched the specified formatString.");
+            this.dateFormatMatchesQualityCheck.setExplanation("");
+        }
+        entity.addQualityCheck(dateFormatMatchesQualityCheck);
+    }
+    
+    if (enumeratedDomainMatchesQualityCheck != null) {
+        if (enumeratedDomainMatchesQualityCheck.getStatus() == Status.valid) {
+            enumeratedDomainMatchesQualityCheck.setFound("Data values matched the enumerated domain codes.");
+            enumeratedDomainMatchesQualityCheck.setExplanation("");
+        }
+        entity.addQualityCheck(enumeratedDomainMatchesQualityCheck);
+    }
+    
+    if (numericBoundsMatchQualityCheck != null) {
+        if (numericBoundsMatchQualityCheck.getStatus() == Status.valid) {
+            numericBoundsMatchQualityCheck.setFound("Data values were within the numeric domain bounds.");
+            numericBoundsMatchQualityCheck.setExplanation("");
+        }
+        entity.addQualityCheck(numericBoundsMatchQualityCheck);
+    }
+  }
+		
+		
   /**
    * Determines whether the data table corresponding to a given identifier
    * already exists in the database and is loaded with data. This method is
@@ -572,14 +853,14 @@ public class DatabaseLoader implements DataStorageInterface, Runnable
   public boolean doesDataExist(String identifier) {
     boolean doesExist = false;
 
+    // Nothing is stored by a validate-only loader
+    if (validateOnly) {
+      return false;
+    }
+
     try {
       String tableName = tableMonitor.identifierToTableName(identifier);
-      doesExist = tableMonitor.isTableInDB(tableName);
-
-      if (doesExist) {
-        int rowCount = tableMonitor.countRows(tableName);
-        doesExist = (rowCount > 0);
-      }
+      doesExist = tableMonitor.hasRows(tableName);
     } 
     catch (SQLException e) {
       log.error(e.getMessage());
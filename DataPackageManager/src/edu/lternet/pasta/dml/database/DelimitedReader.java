@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Vector;
 
 import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.ErrorBudget;
 import edu.lternet.pasta.dml.quality.QualityCheck;
 import edu.lternet.pasta.dml.quality.QualityCheck.Status;
 import edu.lternet.pasta.dml.quality.QualityReport;
@@ -82,6 +83,9 @@ public class DelimitedReader extends TextDataReader
   private int examineRecordDelimiterCounter = 0; // Counts 'examineRecordDelimiter' checks
   private final int EXAMINE_RECORD_DELIMITER_MAX = 1; // Max number of examineRecordDelimiter checks
   private boolean hasRecordDelimiter = false; // Set to true when the record delimiter is found in the data table
+  private ErrorBudget errorBudget = null; // Limits the checking of rows once enough failures are found
+  private ArrayList<QualityCheck> collectedQualityChecks = null; // When set, quality checks are collected instead of added to the entity
+  private StringBuffer collectedHeaderLines = null; // When set, header lines are collected instead of added to the entity
 
   /*
    * Maximum length of a record. Exceeding this limit usually indicates incongruency between the
@@ -282,6 +286,80 @@ public class DelimitedReader extends TextDataReader
   }
   
   
+  /**
+   * Method to set the error budget that field count failures are recorded in.
+   * 
+   * @param errorBudget  the error budget for the entity being read
+   */
+  public void setErrorBudget(ErrorBudget errorBudget)
+  {
+	  this.errorBudget = errorBudget;
+  }
+  
+  
+  /**
+   * Collects the quality checks and header lines found by this reader
+   * instead of adding them to the entity. This is used when a part of a
+   * data entity is read on its own, so that the caller can decide which
+   * results to add to the entity.
+   */
+  public void collectQualityChecks()
+  {
+	  this.collectedQualityChecks = new ArrayList<QualityCheck>();
+	  this.collectedHeaderLines = new StringBuffer();
+  }
+  
+  
+  /**
+   * Gets the quality checks collected by this reader.
+   * 
+   * @return the collected quality checks, or null if they are not collected
+   */
+  public ArrayList<QualityCheck> getCollectedQualityChecks()
+  {
+	  return collectedQualityChecks;
+  }
+  
+  
+  /**
+   * Gets the header lines collected by this reader.
+   * 
+   * @return the collected header lines, or null if they are not collected
+   */
+  public String getCollectedHeaderLines()
+  {
+	  return (collectedHeaderLines == null) ? null : collectedHeaderLines.toString();
+  }
+  
+  
+  /*
+   * Adds a quality check to the entity, or to the collected quality checks.
+   */
+  private void addQualityCheck(QualityCheck qualityCheck)
+  {
+	  if (collectedQualityChecks != null) {
+		  collectedQualityChecks.add(qualityCheck);
+	  }
+	  else {
+		  entity.addQualityCheck(qualityCheck);
+	  }
+  }
+  
+  
+  /*
+   * Adds a header line to the entity, or to the collected header lines.
+   */
+  private void addHeaderLine(String line)
+  {
+	  if (collectedHeaderLines != null) {
+		  collectedHeaderLines.append(line);
+	  }
+	  else {
+		  entity.addHeaderLine(line);
+	  }
+  }
+  
+  
   /**
    * Set up the footer line number.
    * 
@@ -402,7 +480,7 @@ public class DelimitedReader extends TextDataReader
           }
 
           examineRecordDelimiterQualityCheck.setFound(found);
-          entity.addQualityCheck(examineRecordDelimiterQualityCheck);
+          addQualityCheck(examineRecordDelimiterQualityCheck);
         }
         examineRecordDelimiterCounter++;
       }
@@ -506,7 +584,7 @@ public class DelimitedReader extends TextDataReader
                   numHeaderLines > 0 &&
                   headLineNumberCount < numHeaderLines
                  ) {
-                  entity.addHeaderLine(rowBuffer.toString());
+                  addHeaderLine(rowBuffer.toString());
                   // Reset string buffer (discard the header line)
                   rowBuffer = null;
                   rowBuffer = new StringBuffer();
@@ -615,9 +693,10 @@ public class DelimitedReader extends TextDataReader
           explanation += "<![CDATA[" + truncatedData + "]]>";
           tooFewCheck.setExplanation(explanation);
           tooFewFieldsCounter++;
+          if (errorBudget != null) { errorBudget.recordFailure(tooFewCheck); }
           // Limit the number of these checks included in the quality report
           if (tooFewFieldsCounter <= FIELD_CHECK_MAX) {
-            entity.addQualityCheck(tooFewCheck);
+            addQualityCheck(tooFewCheck);
           }
         }
       }
@@ -650,9 +729,10 @@ public class DelimitedReader extends TextDataReader
           explanation += "<![CDATA[" + truncatedData + "]]>";
           tooManyCheck.setExplanation(explanation);
           tooManyFieldsCounter++;
+          if (errorBudget != null) { errorBudget.recordFailure(tooManyCheck); }
           // Limit the number of these checks included in the quality report
           if (tooManyFieldsCounter <= FIELD_CHECK_MAX) {
-            entity.addQualityCheck(tooManyCheck);
+            addQualityCheck(tooManyCheck);
           }
         }
       }
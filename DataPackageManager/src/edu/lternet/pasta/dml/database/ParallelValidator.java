@@ -0,0 +1,730 @@
+package edu.lternet.pasta.dml.database;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.lternet.pasta.dml.DataManager;
+import edu.lternet.pasta.dml.parser.AttributeList;
+import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.ErrorBudget;
+import edu.lternet.pasta.dml.quality.QualityCheck;
+import edu.lternet.pasta.dml.quality.QualityReport;
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
+
+/**
+ * Validates a large, simple delimited data entity on several threads. The
+ * entity file is split into chunks at record boundaries, and each chunk is
+ * tokenized and checked on its own thread with its own DelimitedReader and
+ * DatabaseAdapter. The chunk results are then merged, in file order, into
+ * a single row count and set of quality checks.
+ *
+ * Splitting is quote-aware: a chunk boundary is only placed at a record
+ * delimiter if the records on both sides of it have balanced quote
+ * characters. If no such boundary can be found, or if the entity uses a
+ * literal (escape) character, footer lines, or a record delimiter other
+ * than a newline, the entity is not split.
+ *
+ * Parallel validation is an optimistic fast path for well-formed data. If
+ * any chunk finds an error (too few or too many fields, a value that does
+ * not match its attribute type, or any other failure with an 'error'
+ * status), the other chunks are stopped and validate() returns false; the
+ * caller then validates the entity sequentially, so that row numbers and
+ * the error budget are reported exactly as before. Warnings, such as
+ * dateFormatMatches, enumeratedDomainMatches and numericBoundsMatch
+ * failures, are merged.
+ *
+ * @author dcosta
+ *
+ */
+public class ParallelValidator {
+
+  /*
+   * Class fields
+   */
+
+  public static Log log = LogFactory.getLog(ParallelValidator.class);
+
+  private static final String FILE_URL_PREFIX = "file://";
+  private static final String DATE_FORMAT_NOT_CHECKED = "Not checked.";
+  private static final int MAX_DATE_FORMAT_FOUND_LENGTH = 300;
+
+  // How far past a chunk's nominal start to look for a safe boundary
+  private static final int BOUNDARY_SEARCH_LIMIT = 1024 * 1024;
+
+  // The longest record that DelimitedReader will read
+  private static final int RECORD_LENGTH_LIMIT = 20000;
+
+  private static int threads = 1;
+  private static long minBytes = 256L * 1024 * 1024;
+
+
+  /*
+   * Instance fields
+   */
+
+  private final Entity entity;
+  private final String dbAdapterName;
+  private final File entityFile;
+  private final boolean crlf;
+  private final int quoteByte;
+  private final AtomicBoolean aborted = new AtomicBoolean(false);
+
+  // Merged results
+  private int rowCount = 0;
+  private Vector<String> firstRow = null;
+  private boolean hasRecordDelimiter = false;
+  private ErrorBudget errorBudget = null;
+  private QualityCheck dateFormatMatchesQualityCheck = null;
+  private QualityCheck enumeratedDomainMatchesQualityCheck = null;
+  private QualityCheck numericBoundsMatchQualityCheck = null;
+  private ArrayList<QualityCheck> qualityChecks = null;
+  private String headerLines = null;
+
+
+  /*
+   * Constructors
+   */
+
+  /**
+   * Constructs a ParallelValidator for an entity file. The file should
+   * have been obtained from getEntityFile().
+   *
+   * @param entity          the entity to be validated
+   * @param dbAdapterName   name of the database adapter used for type checks
+   * @param entityFile      the local file holding the entity data
+   */
+  public ParallelValidator(Entity entity, String dbAdapterName, File entityFile) {
+    this.entity = entity;
+    this.dbAdapterName = dbAdapterName;
+    this.entityFile = entityFile;
+    String lineEnding = DelimitedReader.unescapeDelimiter(entity.getRecordDelimiter());
+    this.crlf = lineEnding.equals("\r\n");
+    String quoteCharacter = entity.getQuoteCharacter();
+    this.quoteByte = (quoteCharacter == null) ? -1 : quoteCharacter.charAt(0);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Sets the number of threads used to validate an entity, and the size
+   * of the smallest entity that is validated in parallel.
+   *
+   * @param threads    threads per entity; a value less than 2 disables
+   *                   parallel validation
+   * @param minBytes   the smallest entity file, in bytes, that is split
+   */
+  public static void setParallelism(int threads, long minBytes) {
+    ParallelValidator.threads = threads;
+    ParallelValidator.minBytes = minBytes;
+  }
+
+
+  /**
+   * Gets the local file of an entity that can be validated in parallel.
+   *
+   * @param entity   the entity to be validated
+   * @return the entity file, or null if the entity should be validated
+   *         sequentially
+   */
+  public static File getEntityFile(Entity entity) {
+    if (threads < 2 || entity == null || !entity.isSimpleDelimited() ||
+        entity.getNumFooterLines() > 0 || entity.getLiteralCharacter() != null) {
+      return null;
+    }
+
+    String lineEnding = DelimitedReader.unescapeDelimiter(entity.getRecordDelimiter());
+    if (!lineEnding.equals("\n") && !lineEnding.equals("\r\n")) {
+      return null;
+    }
+
+    String quoteCharacter = entity.getQuoteCharacter();
+    if (quoteCharacter != null &&
+        (quoteCharacter.length() != 1 || quoteCharacter.charAt(0) > 127)) {
+      return null;
+    }
+
+    String url = entity.getURL();
+    if (url == null || !url.startsWith(FILE_URL_PREFIX)) {
+      return null;
+    }
+
+    File file = new File(url.substring(FILE_URL_PREFIX.length()));
+    if (!file.isFile() || file.length() < minBytes) {
+      return null;
+    }
+
+    return file;
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Validates the entity in parallel and merges the chunk results.
+   *
+   * @return true if the entity was validated and the results merged, or
+   *         false if it must be validated sequentially
+   */
+  public boolean validate() {
+    long[] boundaries = null;
+
+    try {
+      boundaries = findChunkBoundaries();
+    }
+    catch (IOException e) {
+      log.warn(String.format("Unable to split %s: %s", entityFile.getName(), e.getMessage()));
+    }
+
+    if (boundaries == null) {
+      return false;
+    }
+
+    int chunks = boundaries.length - 1;
+    ExecutorService executor = Executors.newFixedThreadPool(chunks);
+    List<Future<ChunkResult>> futures = new ArrayList<Future<ChunkResult>>();
+    List<ChunkResult> results = new ArrayList<ChunkResult>();
+
+    try {
+      for (int i = 0; i < chunks; i++) {
+        futures.add(executor.submit(new ChunkValidator(i, boundaries[i], boundaries[i + 1])));
+      }
+
+      for (Future<ChunkResult> future : futures) {
+        results.add(future.get());
+      }
+    }
+    catch (Exception e) {
+      log.error(String.format("Parallel validation of %s failed: %s",
+                              entityFile.getName(), e.getMessage()));
+      return false;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+
+    for (ChunkResult result : results) {
+      if (!result.mergeable) {
+        log.info(String.format(
+            "%s: an error was found in chunk %d; validating sequentially",
+            entity.getName(), result.index));
+        return false;
+      }
+    }
+
+    merge(results);
+    log.info(String.format("%s: validated %d rows in %d parallel chunks",
+                           entity.getName(), rowCount, chunks));
+    return true;
+  }
+
+
+  /*
+   * Merges the chunk results in file order.
+   */
+  private void merge(List<ChunkResult> results) {
+    ChunkResult first = results.get(0);
+    firstRow = first.firstRow;
+    qualityChecks = first.qualityChecks;
+    headerLines = first.headerLines;
+    errorBudget = new ErrorBudget();
+
+    for (ChunkResult result : results) {
+      rowCount += result.rowCount;
+      hasRecordDelimiter = hasRecordDelimiter || result.hasRecordDelimiter;
+      errorBudget.merge(result.errorBudget);
+      mergeDateFormatMatches(result.dateFormatMatchesQualityCheck);
+      enumeratedDomainMatchesQualityCheck = 
+        mergeValueCheck(enumeratedDomainMatchesQualityCheck, result.enumeratedDomainMatchesQualityCheck);
+      numericBoundsMatchQualityCheck = 
+        mergeValueCheck(numericBoundsMatchQualityCheck, result.numericBoundsMatchQualityCheck);
+    }
+  }
+
+
+  /*
+   * Merges a chunk's enumeratedDomainMatches or numericBoundsMatch check
+   * into the merged check, and returns the merged check. The checks are
+   * null when they are not run.
+   */
+  private static QualityCheck mergeValueCheck(QualityCheck mergedCheck, QualityCheck chunkCheck) {
+    if (mergedCheck == null || mergedCheck.getStatus() == Status.valid) {
+      return chunkCheck;
+    }
+    else if (chunkCheck != null && chunkCheck.getStatus() != Status.valid) {
+      String found = mergedCheck.getFound();
+      if (found.length() <= MAX_DATE_FORMAT_FOUND_LENGTH) {
+        mergedCheck.setFound(found + "\\n" + chunkCheck.getFound());
+      }
+    }
+    return mergedCheck;
+  }
+
+
+  /*
+   * Merges a chunk's dateFormatMatches check. The first chunk with a
+   * failure sets the status, found value and explanation; the found values
+   * of later chunks are appended, within the same length limit that
+   * DatabaseAdapter applies.
+   */
+  private void mergeDateFormatMatches(QualityCheck chunkCheck) {
+    if (dateFormatMatchesQualityCheck == null ||
+        dateFormatMatchesQualityCheck.getStatus() == Status.valid) {
+      dateFormatMatchesQualityCheck = chunkCheck;
+    }
+    else if (chunkCheck.getStatus() != Status.valid) {
+      String found = dateFormatMatchesQualityCheck.getFound();
+      String chunkFound = chunkCheck.getFound();
+      if (!DATE_FORMAT_NOT_CHECKED.equals(found) &&
+          found.length() <= MAX_DATE_FORMAT_FOUND_LENGTH) {
+        dateFormatMatchesQualityCheck.setFound(found + chunkFound + "\\n");
+      }
+    }
+  }
+
+
+  /*
+   * Finds the chunk boundaries: offsets of record starts, beginning with 0
+   * and ending with the file length. Returns null if the file cannot be
+   * split into at least two chunks.
+   */
+  private long[] findChunkBoundaries() throws IOException {
+    long length = entityFile.length();
+    ArrayList<Long> boundaries = new ArrayList<Long>();
+    RandomAccessFile randomAccessFile = new RandomAccessFile(entityFile, "r");
+
+    try {
+      long headerEnd = findHeaderEnd(randomAccessFile, length);
+      if (headerEnd < 0) {
+        return null;
+      }
+
+      boundaries.add(0L);
+      for (int i = 1; i < threads; i++) {
+        long previous = boundaries.get(boundaries.size() - 1);
+        long target = Math.max(Math.max(length * i / threads, previous), headerEnd);
+        long boundary = findBoundary(randomAccessFile, length, target);
+        if (boundary < 0) {
+          // Quoting makes the split ambiguous
+          return null;
+        }
+        if (boundary >= length) {
+          break;
+        }
+        boundaries.add(boundary);
+      }
+      boundaries.add(length);
+    }
+    finally {
+      randomAccessFile.close();
+    }
+
+    if (boundaries.size() < 3) {
+      return null;
+    }
+
+    long[] offsets = new long[boundaries.size()];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = boundaries.get(i);
+    }
+
+    return offsets;
+  }
+
+
+  /*
+   * Returns the offset just past the header lines, or -1 if the header
+   * lines are not found near the start of the file.
+   */
+  private long findHeaderEnd(RandomAccessFile randomAccessFile, long length)
+          throws IOException {
+    int numHeaderLines = entity.getNumHeaderLines();
+    if (numHeaderLines <= 0) {
+      return 0;
+    }
+
+    byte[] buffer = read(randomAccessFile, length, 0, BOUNDARY_SEARCH_LIMIT);
+    int lines = 0;
+    for (int i = 0; i < buffer.length; i++) {
+      if (isRecordEnd(buffer, i) && ++lines == numHeaderLines) {
+        return i + 1;
+      }
+    }
+
+    return -1;
+  }
+
+
+  /*
+   * Returns the offset of the first safe record boundary after the target
+   * offset, the file length if the rest of the file is a single record, or
+   * -1 if no safe boundary was found within the search limit.
+   */
+  private long findBoundary(RandomAccessFile randomAccessFile, long length, long target)
+          throws IOException {
+    // Start a record length early so the record before a boundary can be examined
+    long start = Math.max(0, target - RECORD_LENGTH_LIMIT);
+    byte[] buffer = read(randomAccessFile, length, start,
+                         RECORD_LENGTH_LIMIT + BOUNDARY_SEARCH_LIMIT);
+    boolean atEOF = (start + buffer.length >= length);
+    int recordStart = (start == 0) ? 0 : -1;
+    int candidate = -1;
+
+    for (int i = 0; i < buffer.length; i++) {
+      if (isRecordEnd(buffer, i)) {
+        int recordEnd = i + 1;
+
+        /*
+         * A candidate boundary is safe if the record before it and the
+         * record after it (which ends here) both have balanced quotes.
+         */
+        if (candidate >= 0 && balancedQuotes(buffer, candidate, recordEnd)) {
+          return start + candidate;
+        }
+        candidate = -1;
+
+        if (recordStart >= 0 && start + recordEnd > target &&
+            balancedQuotes(buffer, recordStart, recordEnd)) {
+          candidate = recordEnd;
+        }
+        recordStart = recordEnd;
+      }
+    }
+
+    if (atEOF) {
+      if (candidate >= 0 && balancedQuotes(buffer, candidate, buffer.length)) {
+        return start + candidate;
+      }
+      if (recordStart >= 0 && start + recordStart <= target) {
+        return length;
+      }
+    }
+
+    return -1;
+  }
+
+
+  /*
+   * Boolean to determine whether the byte at index i ends a record.
+   */
+  private boolean isRecordEnd(byte[] buffer, int i) {
+    return buffer[i] == '\n' && (!crlf || (i > 0 && buffer[i - 1] == '\r'));
+  }
+
+
+  /*
+   * Boolean to determine whether a byte range holds an even number of
+   * quote characters. Always true if the entity has no quote character.
+   */
+  private boolean balancedQuotes(byte[] buffer, int from, int to) {
+    if (quoteByte < 0) {
+      return true;
+    }
+
+    int quotes = 0;
+    for (int i = from; i < to; i++) {
+      if (buffer[i] == quoteByte) {
+        quotes++;
+      }
+    }
+
+    return (quotes % 2 == 0);
+  }
+
+
+  /*
+   * Reads up to maxBytes bytes of the file, starting at an offset.
+   */
+  private byte[] read(RandomAccessFile randomAccessFile, long length, long offset, int maxBytes)
+          throws IOException {
+    byte[] buffer = new byte[(int) Math.min(length - offset, maxBytes)];
+    randomAccessFile.seek(offset);
+    randomAccessFile.readFully(buffer);
+    return buffer;
+  }
+
+
+  /**
+   * @return the number of rows validated
+   */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+
+  /**
+   * @return the first row of data, as tokenized by DelimitedReader
+   */
+  public Vector<String> getFirstRow() {
+    return firstRow;
+  }
+
+
+  /**
+   * @return true if the record delimiter was found in the data
+   */
+  public boolean hasRecordDelimiter() {
+    return hasRecordDelimiter;
+  }
+
+
+  /**
+   * @return the merged error budget of the chunks
+   */
+  public ErrorBudget getErrorBudget() {
+    return errorBudget;
+  }
+
+
+  /**
+   * @return the merged dateFormatMatches quality check
+   */
+  public QualityCheck getDateFormatMatchesQualityCheck() {
+    return dateFormatMatchesQualityCheck;
+  }
+
+
+  /**
+   * @return the merged enumeratedDomainMatches quality check, or null if
+   *         the check is not run
+   */
+  public QualityCheck getEnumeratedDomainMatchesQualityCheck() {
+    return enumeratedDomainMatchesQualityCheck;
+  }
+
+
+  /**
+   * @return the merged numericBoundsMatch quality check, or null if the
+   *         check is not run
+   */
+  public QualityCheck getNumericBoundsMatchQualityCheck() {
+    return numericBoundsMatchQualityCheck;
+  }
+
+
+  /**
+   * @return the quality checks found by the reader of the first chunk
+   */
+  public ArrayList<QualityCheck> getQualityChecks() {
+    return qualityChecks;
+  }
+
+
+  /**
+   * @return the header lines of the entity
+   */
+  public String getHeaderLines() {
+    return headerLines;
+  }
+
+
+  /*
+   * Inner classes
+   */
+
+  /*
+   * The results of validating one chunk.
+   */
+  private static class ChunkResult {
+    int index;
+    boolean mergeable = false;
+    int rowCount = 0;
+    Vector<String> firstRow = null;
+    boolean hasRecordDelimiter = false;
+    ErrorBudget errorBudget = new ErrorBudget();
+    QualityCheck dateFormatMatchesQualityCheck = null;
+    QualityCheck enumeratedDomainMatchesQualityCheck = null;
+    QualityCheck numericBoundsMatchQualityCheck = null;
+    ArrayList<QualityCheck> qualityChecks = null;
+    String headerLines = null;
+  }
+
+
+  /*
+   * Validates the rows of one chunk, as DatabaseLoader does for a whole
+   * entity in validate-only mode.
+   */
+  private class ChunkValidator implements Callable<ChunkResult> {
+    private final int index;
+    private final long start;
+    private final long end;
+
+    ChunkValidator(int index, long start, long end) {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+    }
+
+    public ChunkResult call() {
+      ChunkResult result = new ChunkResult();
+      result.index = index;
+      InputStream inputStream = null;
+
+      try {
+        inputStream = new BufferedInputStream(new ChunkInputStream(entityFile, start, end));
+        DatabaseAdapter databaseAdapter = DataManager.getDatabaseAdapterObject(dbAdapterName);
+        AttributeList attributeList = entity.getAttributeList();
+        String tableName = entity.getDBTableName();
+
+        String dateFormatMatchesIdentifier = "dateFormatMatches";
+        QualityCheck dateFormatMatchesTemplate =
+          QualityReport.getQualityCheckTemplate(dateFormatMatchesIdentifier);
+        result.dateFormatMatchesQualityCheck =
+          new QualityCheck(dateFormatMatchesIdentifier, dateFormatMatchesTemplate);
+        result.dateFormatMatchesQualityCheck.setStatus(Status.valid);
+        if (QualityCheck.shouldRunQualityCheck(entity, result.dateFormatMatchesQualityCheck)) {
+          databaseAdapter.setDateFormatMatchesQualityCheck(result.dateFormatMatchesQualityCheck);
+        }
+        result.enumeratedDomainMatchesQualityCheck =
+          DatabaseLoader.newValueQualityCheck(entity, DatabaseAdapter.ENUMERATED_DOMAIN_MATCHES);
+        result.numericBoundsMatchQualityCheck =
+          DatabaseLoader.newValueQualityCheck(entity, DatabaseAdapter.NUMERIC_BOUNDS_MATCH);
+        databaseAdapter.setDomainQualityChecks(result.enumeratedDomainMatchesQualityCheck,
+                                               result.numericBoundsMatchQualityCheck);
+        databaseAdapter.setCheckDatetimeValues(true);
+        databaseAdapter.setErrorBudget(result.errorBudget);
+
+        // Only the first chunk holds the header lines
+        int numHeaderLines = (index == 0) ? entity.getNumHeaderLines() : 0;
+        DelimitedReader delimitedReader = new DelimitedReader(
+                                inputStream,
+                                entity,
+                                entity.getAttributes().length,
+                                entity.getFieldDelimiter(),
+                                numHeaderLines,
+                                entity.getRecordDelimiter(),
+                                entity.getNumRecords(),
+                                true
+                               );
+        delimitedReader.setCollapseDelimiters(entity.getCollapseDelimiters());
+        delimitedReader.setErrorBudget(result.errorBudget);
+        if (entity.getQuoteCharacter() != null) {
+          delimitedReader.setQuoteCharacter(entity.getQuoteCharacter());
+        }
+        delimitedReader.collectQualityChecks();
+
+        Vector<String> rowVector = delimitedReader.getOneRowDataVector();
+        result.firstRow = rowVector;
+
+        while (!rowVector.isEmpty() && !aborted.get()) {
+          result.errorBudget.countRow();
+          if (databaseAdapter.generateInsertSQL(attributeList, tableName, rowVector) != null) {
+            result.rowCount++;
+          }
+          if (result.errorBudget.getEntityErrors() > 0) {
+            break;
+          }
+          rowVector = delimitedReader.getOneRowDataVector();
+        }
+
+        result.hasRecordDelimiter = delimitedReader.hasRecordDelimiter();
+        result.qualityChecks = delimitedReader.getCollectedQualityChecks();
+        result.headerLines = delimitedReader.getCollectedHeaderLines();
+        result.mergeable = !aborted.get() &&
+                           delimitedReader.getTooFewFieldsCounter() == 0 &&
+                           delimitedReader.getTooManyFieldsCounter() == 0 &&
+                           !delimitedReader.exceedsRecordLengthLimit() &&
+                           result.errorBudget.getEntityErrors() == 0;
+      }
+      catch (Exception e) {
+        log.debug(String.format("Chunk %d of %s: %s", index, entityFile.getName(), e.getMessage()));
+        result.mergeable = false;
+      }
+      finally {
+        if (inputStream != null) {
+          try {
+            inputStream.close();
+          }
+          catch (IOException e) {
+            log.error("Could not close chunk inputStream: " + e.getMessage());
+          }
+        }
+      }
+
+      // The entity will be validated sequentially, so stop the other chunks
+      if (!result.mergeable) {
+        aborted.set(true);
+      }
+
+      return result;
+    }
+  }
+
+
+  /*
+   * An input stream over a byte range of a file.
+   */
+  private static class ChunkInputStream extends FilterInputStream {
+    private long remaining;
+
+    ChunkInputStream(File file, long start, long end) throws IOException {
+      super(new FileInputStream(file));
+      long skipped = 0;
+      while (skipped < start) {
+        long n = in.skip(start - skipped);
+        if (n <= 0) {
+          throw new IOException("Unable to skip to offset " + start);
+        }
+        skipped += n;
+      }
+      this.remaining = end - start;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int bytesRead = in.read(b, off, (int) Math.min(len, remaining));
+      if (bytesRead > 0) {
+        remaining -= bytesRead;
+      }
+      return bytesRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(Math.min(n, remaining));
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+  }
+
+}
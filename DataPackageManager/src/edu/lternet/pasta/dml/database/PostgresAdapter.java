@@ -355,5 +355,35 @@ public class PostgresAdapter extends DatabaseAdapter {
     String selectString = "SELECT COUNT(*) FROM " + tableName;
     return selectString;
   }
+
+
+  /**
+   * Get the sql command to read the on-disk size of a given table, including
+   * its TOAST data and indexes, from the catalog. This is much cheaper than
+   * counting its rows.
+   * 
+   * @param  tableName  the given table name
+   * @return the sql string which reads the table size
+   */
+  public String getTableSizeSQL(String tableName) {
+    String selectString = 
+      "SELECT pg_total_relation_size('" + tableName + "') AS table_size";
+    return selectString;
+  }
+
+
+  /**
+   * Get the sql command to read the on-disk sizes of all tables in the
+   * search path from the catalog. Table names are returned in lower case,
+   * as Postgres folds the unquoted names used by this adapter.
+   * 
+   * @return the sql string which reads the table sizes
+   */
+  public String getTableSizesSQL() {
+    String selectString = 
+      "SELECT relname AS table_name, pg_total_relation_size(oid) AS table_size" +
+      " FROM pg_class WHERE relkind = 'r' AND pg_table_is_visible(oid)";
+    return selectString;
+  }
 	
 }
@@ -204,12 +204,7 @@ public class SimpleDatabaseLoader implements DataStorageInterface, Runnable {
 		try {
 			String tableName = 
 				tableMonitor.identifierToTableName(identifier);
-			doesExist = tableMonitor.isTableInDB(tableName);
-
-			if (doesExist) {
-				int rowCount = tableMonitor.countRows(tableName);
-				doesExist = (rowCount > 0);
-			}
+			doesExist = tableMonitor.hasRows(tableName);
 		} catch (SQLException e) {
 			log.error(e.getMessage());
 			e.printStackTrace();
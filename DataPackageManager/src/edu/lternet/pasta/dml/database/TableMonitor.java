@@ -39,6 +39,7 @@ import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Vector;
 
 import edu.lternet.pasta.dml.DataManager;
@@ -59,6 +60,18 @@ import edu.lternet.pasta.dml.parser.Entity;
  * It also sets the maximum amount of space that the database can use, and
  * attempts to free up space by dropping old tables when necessary.
  * 
+ * The registry is also held in memory, shared by all TableMonitor objects,
+ * so that looking up table names does not need a round trip to the
+ * database. The in-memory registry additionally tracks, for each table:
+ * 
+ *   size      the on-disk size of the table, read from the database catalog
+ *   leases    the number of active loads or queries using the table; a
+ *             leased table is never dropped, and a request to drop it is
+ *             deferred until its last lease is released
+ * 
+ * The in-memory registry is ordered by use, so that the least recently
+ * used tables are dropped first when the tables exceed the database quota.
+ * 
  */
 public class TableMonitor {
   
@@ -66,6 +79,13 @@ public class TableMonitor {
    * Class fields
    */
 
+  // In-memory registry keyed by lower-case table name, in access order
+  // (least recently used first). All access is synchronized on the map.
+  private static final LinkedHashMap<String, TableEntry> registry =
+    new LinkedHashMap<String, TableEntry>(64, 0.75f, true);
+  private static boolean registryLoaded = false;
+  private static long quotaBytes = 0;        // maximum DB size; 0 is no limit
+
 
   /*
    * Instance fields
@@ -75,8 +95,6 @@ public class TableMonitor {
   private final String DATA_TABLE_REGISTRY = "DATA_TABLE_REGISTRY";
                                              // name of the database table where
                                              // data tables are registered
-  private final int DEFAULT_DB_SIZE = 100;   // default maximum DB size (in Mb)
-  private int dbSize = DEFAULT_DB_SIZE;      // maximum DB size (in Mb)
   
   
   /*
@@ -94,12 +112,19 @@ public class TableMonitor {
         throws SQLException {
     this.dbAdapter = dbAdapter;
 
-    /*
-     * Check for existence of dataTableRegistry table. Create it if it does not
-     * already exist.
-     */
-    if (!isTableInDB(DATA_TABLE_REGISTRY)) {
-      createDataTableRegistry();
+    synchronized (registry) {
+      if (!registryLoaded) {
+        /*
+         * Check for existence of dataTableRegistry table. Create it if it
+         * does not already exist.
+         */
+        if (!isTableInDB(DATA_TABLE_REGISTRY)) {
+          createDataTableRegistry();
+        }
+        
+        loadRegistry();
+        registryLoaded = true;
+      }
     }
     
   }
@@ -109,11 +134,100 @@ public class TableMonitor {
    * Class methods
    */
 	
+  /**
+   * Sets the database quota, the maximum amount of space (in Megabytes) that
+   * the data tables may use before the least recently used tables are 
+   * dropped.
+   * 
+   * @param megabytes   the quota; zero or less means that there is no quota
+   */
+  public static void setDatabaseQuota(int megabytes) {
+    synchronized (registry) {
+      quotaBytes = (megabytes > 0) ? (megabytes * 1024L * 1024L) : 0;
+    }
+  }
+  
+  
+  /*
+   * Gets the in-memory registry entry for a table, or null if there is none.
+   * Callers must synchronize on the registry.
+   */
+  private static TableEntry getTableEntry(String tableName) {
+    return (tableName == null) ? null : registry.get(tableName.toLowerCase());
+  }
+	
 
   /*
    * Instance methods
    */
 	
+  /**
+   * Acquires a lease on a table for an active load or query. The table will
+   * not be dropped until the lease is released.
+   * 
+   * @param   tableName   the name of the table being used
+   */
+  public void acquireLease(String tableName) {
+    synchronized (registry) {
+      TableEntry tableEntry = getTableEntry(tableName);
+      
+      if (tableEntry != null) {
+        tableEntry.leases++;
+      }
+    }
+  }
+  
+  
+  /**
+   * Releases a lease on a table that was acquired with acquireLease().
+   * 
+   * @param   tableName   the name of the table that is no longer being used
+   * @return  true if a drop of the table was deferred while it was leased and
+   *          the last lease has now been released, in which case the caller
+   *          should drop the table
+   */
+  public boolean releaseLease(String tableName) {
+    boolean dropPending = false;
+    
+    synchronized (registry) {
+      TableEntry tableEntry = getTableEntry(tableName);
+      
+      if (tableEntry != null && tableEntry.leases > 0) {
+        tableEntry.leases--;
+        
+        if (tableEntry.leases == 0 && tableEntry.dropPending) {
+          tableEntry.dropPending = false;
+          dropPending = true;
+        }
+      }
+    }
+    
+    return dropPending;
+  }
+  
+  
+  /**
+   * Defers dropping a table if it is leased by an active load or query. The
+   * drop is then left to the caller that releases the last lease.
+   * 
+   * @param   tableName   the name of the table that is to be dropped
+   * @return  true if the table is leased and the drop was deferred, false if
+   *          the table may be dropped now
+   */
+  boolean deferDropIfLeased(String tableName) {
+    synchronized (registry) {
+      TableEntry tableEntry = getTableEntry(tableName);
+      
+      if (tableEntry != null && tableEntry.leases > 0) {
+        tableEntry.dropPending = true;
+        return true;
+      }
+    }
+    
+    return false;
+  }
+  
+  
   /**
    * Adds a new table entry for a given Entity object. By default, the creation
    * date and last used date are set to the current date and time. By default,
@@ -139,16 +253,17 @@ public class TableMonitor {
 
     /*
      * If we already have an entry for this entity in the data table registry,
-     * simply update its last usage date to the current date.
+     * simply update its last usage date to the current date. If the entry has
+     * since been removed from the database, it is inserted again below.
      */
     if (inUse) {
-      setLastUsageDate(tableName, now);
+      inUse = setLastUsageDate(tableName, now);
     } 
     /*
      * Otherwise, insert a new entry for this entity into the data
      * table registry.
      */
-    else {
+    if (!inUse) {
       insertString = 
         "INSERT INTO " + 
         DATA_TABLE_REGISTRY + 
@@ -167,6 +282,20 @@ public class TableMonitor {
       try {
         stmt = connection.createStatement();
         stmt.executeUpdate(insertString);
+        
+        synchronized (registry) {
+          TableEntry tableEntry = getTableEntry(tableName);
+          
+          if (tableEntry == null) {
+            tableEntry = new TableEntry(tableName);
+            registry.put(tableName.toLowerCase(), tableEntry);
+          }
+          
+          tableEntry.packageId = packageId;
+          tableEntry.entityIdentifier = entityIdentifier;
+          tableEntry.entityName = entityName;
+          tableEntry.priority = Integer.parseInt(priority);
+        }
       } 
       catch (SQLException e) {
         System.err.println("Error inserting record for " + tableName
@@ -205,33 +334,19 @@ public class TableMonitor {
    */
   String assignTableName(String entityIdentifier, String entityName) 
           throws SQLException {
-    Connection connection = DataManager.getConnection();
     String tableName = null;
-    String selectString = "SELECT TABLE_NAME, ENTITY_IDENTIFIER, ENTITY_NAME" +
-                          " FROM " + DATA_TABLE_REGISTRY +
-                          " WHERE ENTITY_IDENTIFIER='" + entityIdentifier + 
-                          "' AND ENTITY_NAME='" + entityName + "'";
-    Statement stmt = null;
 
     /*
      * First, determine whether this entity has already been assigned a table
      * name. If it has, just return the previously assigned table name.
      */
-    try {
-      stmt = connection.createStatement();
-      ResultSet rs = stmt.executeQuery(selectString);
-      
-      while (rs.next()) {
-        tableName = rs.getString("table_name");
-      }    
-    }
-    catch (SQLException e) {
-      System.err.println("SQLException: " + e.getMessage());
-      throw(e);
-    }
-    finally {
-      if (stmt != null) stmt.close();
-      DataManager.returnConnection(connection);
+    synchronized (registry) {
+      for (TableEntry tableEntry : registry.values()) {
+        if (isSameValue(entityIdentifier, tableEntry.entityIdentifier) &&
+            isSameValue(entityName, tableEntry.entityName)) {
+          tableName = tableEntry.tableName;
+        }
+      }
     }
 
     /*
@@ -356,6 +471,10 @@ public class TableMonitor {
       stmt = connection.createStatement();
       rowCount = stmt.executeUpdate(deleteString);
       success = (rowCount == 1);
+      
+      synchronized (registry) {
+        registry.remove(tableName.toLowerCase());
+      }
     }
     catch(SQLException e) {
       System.err.println("SQLException: " + e.getMessage());
@@ -371,14 +490,47 @@ public class TableMonitor {
   
 
   /**
-   * Frees up table space by dropping one or more old tables.
+   * Frees up table space by dropping the least recently used tables until
+   * the total size of the data tables is within the database quota. Tables
+   * that are leased, that may not expire (priority zero), or whose size is
+   * not known are never dropped.
+   * 
    * @param  databaseHandler  the databaseHandler which will free space
-   * @return  the size of table which has been freed
+   * @return  the size, in bytes, of the tables which have been freed
    */
-  public int freeTableSpace(DatabaseHandler databaseHandler)
+  public long freeTableSpace(DatabaseHandler databaseHandler)
           throws SQLException {
-    int freedSpace = 0;
-    //String oldestTable = getOldestTable();
+    long freedSpace = 0;
+    ArrayList<String> expiredTables = new ArrayList<String>();
+    
+    synchronized (registry) {
+      long excess = getTotalSize() - quotaBytes;
+      
+      if (quotaBytes > 0) {
+        for (TableEntry tableEntry : registry.values()) {
+          if (excess <= 0) {
+            break;
+          }
+          
+          if (tableEntry.leases == 0 && tableEntry.priority != 0 && 
+              tableEntry.size > 0) {
+            expiredTables.add(tableEntry.tableName);
+            excess -= tableEntry.size;
+          }
+        }
+      }
+    }
+    
+    for (String tableName : expiredTables) {
+      long size = getTableSize(tableName);
+      databaseHandler.dropTable(tableName);
+      
+      synchronized (registry) {
+        if (getTableEntry(tableName) == null) {
+          freedSpace += size;
+        }
+      }
+    }
     
     return freedSpace;
   }
@@ -516,28 +668,15 @@ public class TableMonitor {
           throws SQLException {
     String tableName = null;
     
-    Connection connection = DataManager.getConnection();
-    String selectString = "SELECT table_name FROM " + DATA_TABLE_REGISTRY +
-                          " WHERE package_id ='" + packageID + "'" +
-                          "   AND entity_name ='" + entityName + "'";
-    Statement stmt = null;
-      
-    try {
-      stmt = connection.createStatement();             
-      ResultSet rs = stmt.executeQuery(selectString);
-      
-      if (rs.next()) {
-        tableName = rs.getString("table_name");
+    synchronized (registry) {
+      for (TableEntry tableEntry : registry.values()) {
+        if (isSameValue(packageID, tableEntry.packageId) &&
+            isSameValue(entityName, tableEntry.entityName)) {
+          tableName = tableEntry.tableName;
+          break;
+        }
       }
     }
-    catch(SQLException e) {
-      System.err.println("SQLException: " + e.getMessage());
-      throw(e);
-    }
-    finally {
-      if (stmt != null) stmt.close();
-      DataManager.returnConnection(connection);
-    }
           
     return tableName;
   }
@@ -559,28 +698,14 @@ public class TableMonitor {
     
     if (packageID != null) {
       tableNames = new ArrayList<String>();
-      Connection connection = DataManager.getConnection();
-      String selectString = "SELECT table_name FROM " + DATA_TABLE_REGISTRY +
-                            " WHERE package_id ='" + packageID + "'";
-      Statement stmt = null;
       
-      try {
-        stmt = connection.createStatement();             
-        ResultSet rs = stmt.executeQuery(selectString);
-      
-        while (rs.next()) {
-          String tableName = rs.getString("table_name");
-          tableNames.add(tableName);
+      synchronized (registry) {
+        for (TableEntry tableEntry : registry.values()) {
+          if (packageID.equals(tableEntry.packageId)) {
+            tableNames.add(tableEntry.tableName);
+          }
         }
       }
-      catch(SQLException e) {
-        System.err.println("SQLException: " + e.getMessage());
-        throw(e);
-      }
-      finally {
-        if (stmt != null) stmt.close();
-        DataManager.returnConnection(connection);
-      }
     }
           
     return tableNames;
@@ -682,35 +807,89 @@ public class TableMonitor {
    * @return  a String array of all tables names currently in the database
    */
   public String[] getTableList() throws SQLException {
-    Connection connection = DataManager.getConnection();
-    String selectString = "SELECT table_name FROM " + DATA_TABLE_REGISTRY;
-    Statement stmt = null;
-    Vector vector = new Vector();
+    String[] tableList;
     
-    try {
-      stmt = connection.createStatement();             
-      ResultSet rs = stmt.executeQuery(selectString);
+    synchronized (registry) {
+      tableList = new String[registry.size()];
+      int i = 0;
       
-      while (rs.next()) {
-        String tableName = rs.getString("table_name");
-        vector.add(tableName);
+      for (TableEntry tableEntry : registry.values()) {
+        tableList[i++] = tableEntry.tableName;
       }
     }
-    catch(SQLException e) {
-      System.err.println("SQLException: " + e.getMessage());
-      throw(e);
-    }
-    finally {
-      if (stmt != null) stmt.close();
-      DataManager.returnConnection(connection);
+
+    return tableList;
+  }
+  
+  
+  /**
+   * Gets the on-disk size of a table, as last read from the database catalog.
+   * 
+   * @param   tableName   the table name
+   * @return  the size in bytes, or -1 if the size is not known
+   */
+  public long getTableSize(String tableName) {
+    synchronized (registry) {
+      TableEntry tableEntry = getTableEntry(tableName);
+      return (tableEntry == null) ? -1 : tableEntry.size;
     }
+  }
+  
+  
+  /**
+   * Gets the total on-disk size of the registered tables whose size is known.
+   * 
+   * @return  the total size in bytes
+   */
+  public long getTotalSize() {
+    long totalSize = 0;
     
-    String[] tableList = new String[vector.size()];
-    for (int i = 0; i < vector.size(); i++) {
-      tableList[i] = (String) vector.get(i);
+    synchronized (registry) {
+      for (TableEntry tableEntry : registry.values()) {
+        if (tableEntry.size > 0) {
+          totalSize += tableEntry.size;
+        }
+      }
     }
+    
+    return totalSize;
+  }
+  
+  
+  /**
+   * Boolean to determine whether a table holds at least one row. Unlike
+   * countRows(), this reads a single row rather than scanning the table.
+   * 
+   * @param   tableName   the table name
+   * @return  true if the table is in the database and has one or more rows
+   * @throws SQLException
+   */
+  public boolean hasRows(String tableName) throws SQLException {
+    boolean hasRows = false;
+    
+    if (isTableInDB(tableName)) {
+      String selectString = "SELECT 1 FROM " + tableName;
+      Statement stmt = null;
+      Connection connection = DataManager.getConnection();
 
-    return tableList;
+      try {
+        stmt = connection.createStatement();
+        stmt.setMaxRows(1);
+        ResultSet rs = stmt.executeQuery(selectString);
+        hasRows = rs.next();
+        rs.close();
+      }
+      catch (SQLException e) {
+        System.err.println("SQLException: " + e.getMessage());
+        throw(e);
+      }
+      finally {	
+        if (stmt != null) stmt.close();
+        DataManager.returnConnection(connection);
+      }
+    }
+    
+    return hasRows;
   }
   
   
@@ -723,30 +902,14 @@ public class TableMonitor {
    */
   String identifierToTableName(String identifier) 
           throws SQLException {
-    Connection connection = DataManager.getConnection();
     String tableName = null;
-    String selectString = 
-      "SELECT table_name" +
-      " FROM " + DATA_TABLE_REGISTRY +
-      " WHERE entity_identifier='" + identifier + "'";
-    Statement stmt = null;
     
-    try {
-      stmt = connection.createStatement();             
-      ResultSet rs = stmt.executeQuery(selectString);
-      
-      while (rs.next()) {
-        tableName = rs.getString("table_name");    
+    synchronized (registry) {
+      for (TableEntry tableEntry : registry.values()) {
+        if (isSameValue(identifier, tableEntry.entityIdentifier)) {
+          tableName = tableEntry.tableName;
+        }
       }
-      if(rs != null)rs.close();
-    }
-    catch(SQLException e) {
-      System.err.println("SQLException: " + e.getMessage());
-      throw(e);
-    }
-    finally {
-      if (stmt != null) stmt.close();
-      DataManager.returnConnection(connection);
     }
     
     return tableName;
@@ -762,17 +925,10 @@ public class TableMonitor {
    * @throws SQLException
    */
   boolean isDBTableNameInUse(String tableName) throws SQLException {
-    boolean inUse = false;
-    String[] tableNames = getTableList();
-    
-    for (int i = 0; i < tableNames.length; i++) {
-      if (tableNames[i].equalsIgnoreCase(tableName)) {
-        inUse = true;
-        break;
-      }
+    synchronized (registry) {
+      return (tableName != null) && 
+             registry.containsKey(tableName.toLowerCase());
     }
-    
-    return inUse;
   }
   
 
@@ -812,6 +968,59 @@ public class TableMonitor {
   }
   
 
+  /*
+   * Loads the in-memory registry from the data table registry, together with
+   * the on-disk sizes of the tables if the database catalog provides them.
+   * Called once, by the first TableMonitor object to be constructed.
+   */
+  private void loadRegistry() throws SQLException {
+    Connection connection = DataManager.getConnection();
+    String selectString = 
+      "SELECT table_name, package_id, entity_identifier, entity_name, " +
+      "priority FROM " + DATA_TABLE_REGISTRY + " ORDER BY last_usage_date";
+    String sizesString = dbAdapter.getTableSizesSQL();
+    Statement stmt = null;
+    
+    try {
+      stmt = connection.createStatement();
+      ResultSet rs = stmt.executeQuery(selectString);
+      
+      while (rs.next()) {
+        TableEntry tableEntry = new TableEntry(rs.getString("table_name"));
+        tableEntry.packageId = rs.getString("package_id");
+        tableEntry.entityIdentifier = rs.getString("entity_identifier");
+        tableEntry.entityName = rs.getString("entity_name");
+        tableEntry.priority = rs.getInt("priority");
+        registry.put(tableEntry.tableName.toLowerCase(), tableEntry);
+      }
+      rs.close();
+      
+      if (sizesString != null) {
+        rs = stmt.executeQuery(sizesString);
+        
+        while (rs.next()) {
+          String tableName = rs.getString("table_name");
+          TableEntry tableEntry = (tableName == null) ? null :
+            registry.get(tableName.toLowerCase());
+          
+          if (tableEntry != null) {
+            tableEntry.size = rs.getLong("table_size");
+          }
+        }
+        rs.close();
+      }
+    }
+    catch (SQLException e) {
+      System.err.println("SQLException: " + e.getMessage());
+      throw(e);
+    }
+    finally {
+      if (stmt != null) stmt.close();
+      DataManager.returnConnection(connection);
+    }
+  }
+  
+
   /**
    * Given a table name, return a mangled name. This is done by tagging on a
    * string pattern followed by an integer. If the table name always contains
@@ -858,19 +1067,14 @@ public class TableMonitor {
 
   /**
    * Sets the maximum database size to the given value (in Megabytes).
-   * (Note: How do we persist this value -- in a table?)
+   * The value is shared by all TableMonitor objects; it is not persisted.
    * 
    * @param size   the maximum size (in Megabytes) of the database
    */
   public void setDBSize(int size) {
     int minSize = 1;      // Don't allow dbSize to be set below a minimum value
 
-    if (size < minSize) {
-      dbSize = minSize;
-    }
-    else {
-      dbSize = size;
-    }
+    setDatabaseQuota(Math.max(size, minSize));
   }
   
 
@@ -902,6 +1106,11 @@ public class TableMonitor {
       stmt = connection.createStatement();
       rowCount = stmt.executeUpdate(updateString);
       success = (rowCount == 1);
+      
+      // Move the table to the most recently used end of the registry
+      synchronized (registry) {
+        getTableEntry(tableName);
+      }
     } 
     catch (SQLException e) {
       System.err.println("SQLException: " + e.getMessage());
@@ -947,6 +1156,14 @@ public class TableMonitor {
       stmt = connection.createStatement();
       rowCount = stmt.executeUpdate(updateString);
       success = (rowCount == 1);
+      
+      synchronized (registry) {
+        TableEntry tableEntry = getTableEntry(tableName);
+        
+        if (tableEntry != null) {
+          tableEntry.priority = priority;
+        }
+      }
     } 
     catch (SQLException e) {
       System.err.println("SQLException: " + e.getMessage());
@@ -959,5 +1176,80 @@ public class TableMonitor {
     
     return success;
   }
+  
+  
+  /**
+   * Reads the on-disk size of a table from the database catalog and records
+   * it in the in-memory registry. This should be called by the 
+   * DatabaseHandler after data has been loaded into the table.
+   * 
+   * @param   tableName   the name of the table whose size is updated
+   * @return  the size in bytes, or -1 if the database does not report
+   *          table sizes
+   */
+  public long updateTableSize(String tableName) throws SQLException {
+    long size = -1;
+    String selectString = dbAdapter.getTableSizeSQL(tableName);
+    
+    if (selectString != null) {
+      Connection connection = DataManager.getConnection();
+      Statement stmt = null;
+      
+      try {
+        stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(selectString);
+        
+        if (rs.next()) {
+          size = rs.getLong("table_size");
+        }
+        rs.close();
+      }
+      catch (SQLException e) {
+        System.err.println("SQLException: " + e.getMessage());
+        throw (e);
+      }
+      finally {
+        if (stmt != null) stmt.close();
+        DataManager.returnConnection(connection);
+      }
+      
+      synchronized (registry) {
+        TableEntry tableEntry = getTableEntry(tableName);
+        
+        if (tableEntry != null) {
+          tableEntry.size = size;
+        }
+      }
+    }
+    
+    return size;
+  }
+  
+  
+  /*
+   * Null-safe string comparison for registry values.
+   */
+  private static boolean isSameValue(String a, String b) {
+    return (a == null) ? (b == null) : a.equals(b);
+  }
+  
+  
+  /*
+   * In-memory state of a registered data table.
+   */
+  private static class TableEntry {
+    String tableName;
+    String packageId;
+    String entityIdentifier;
+    String entityName;
+    int priority = 1;
+    long size = -1;             // on-disk size in bytes, or -1 if not known
+    int leases = 0;             // active loads or queries using the table
+    boolean dropPending = false;
+    
+    TableEntry(String tableName) {
+      this.tableName = tableName;
+    }
+  }
 	
 }
@@ -83,7 +83,9 @@ public abstract class ArchivedDataHandler extends DownloadHandler
     
    /**
     * Method to download compressed file from ecogrid to a tmp dir.
-    * This is a temporary solution, we need figure out how to remove this step.
+    * The tar handler no longer uses this; it unarchives the entity as it is
+    * read through an EcoGridInputStream. It is kept as a fallback for
+    * archive formats that need random access to the whole file.
     * The tmpZip File will be returned. If download failed, null will be 
     * returned.
     * 
@@ -83,8 +83,10 @@ public abstract class CompressedDataHandler extends DownloadHandler
 	    
      /**
       * Method to download compressed file from ecogrid to a tmp dir.
-      * This is a temporary solution, we need figure out how to remove this 
-      * step. The tmpZip File will be returned. If download failed, 
+      * The gzip and zip handlers no longer use this; they unpack the entity
+      * as it is read through an EcoGridInputStream. It is kept as a fallback
+      * for compressed formats that need random access to the whole file.
+      * The tmpZip File will be returned. If download failed, 
       * null will be returned.
       *
       * 
@@ -857,6 +857,25 @@ public class DownloadHandler implements Runnable
     }
     
     
+    /*
+     * Closes an input stream, ignoring any error.
+     */
+    protected static void closeQuietly(InputStream inputStream)
+    {
+        if (inputStream != null)
+        {
+            try
+            {
+                inputStream.close();
+            }
+            catch (IOException e)
+            {
+                log.warn("Error closing input stream: " + e.getMessage());
+            }
+        }
+    }
+    
+    
     /*
      * This method will transfer a srb url to srb docid in ecogrid.
      * srb id should look like: 
@@ -0,0 +1,146 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.dml.download;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.URL;
+
+import org.ecoinformatics.ecogrid.authenticatedqueryservice.AuthenticatedQueryServiceGetToStreamClient;
+import org.ecoinformatics.ecogrid.queryservice.QueryServiceGetToStreamClient;
+
+
+/**
+ * An input stream over an EcoGrid object. The EcoGrid clients write the
+ * object to an output stream, so the client is run in its own thread and
+ * writes into a bounded pipe that is read through this stream. This lets
+ * the compressed and archived data handlers unpack an EcoGrid entity as it
+ * arrives instead of first staging it in a temporary file.
+ *
+ * An error raised by the EcoGrid client is rethrown as an IOException by
+ * the read that reaches the end of the stream. Closing the stream before
+ * the end stops the client thread.
+ *
+ * @author dcosta
+ *
+ */
+public class EcoGridInputStream extends PipedInputStream {
+
+	/*
+	 * Class variables
+	 */
+
+	private static final int PIPE_SIZE = 64 * 1024;
+
+
+	/*
+	 * Instance variables
+	 */
+
+	private volatile Exception exception = null;
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Constructs an EcoGridInputStream and starts reading the object from
+	 * the EcoGrid service.
+	 *
+	 * @param endPoint    the EcoGrid end point
+	 * @param identifier  the EcoGrid identifier of the object
+	 * @param sessionId   the session id for an authenticated read, or null
+	 * @throws IOException if the end point is not a valid URL
+	 */
+	public EcoGridInputStream(String endPoint, final String identifier,
+	                          final String sessionId) throws IOException {
+		super(PIPE_SIZE);
+		final URL endPointURL = new URL(endPoint);
+		final PipedOutputStream pipedOutputStream = new PipedOutputStream(this);
+
+		Thread clientThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					if (sessionId != null) {
+						AuthenticatedQueryServiceGetToStreamClient authenticatedEcogridClient =
+						    new AuthenticatedQueryServiceGetToStreamClient(endPointURL);
+						authenticatedEcogridClient.get(identifier, sessionId, pipedOutputStream);
+					}
+					else {
+						QueryServiceGetToStreamClient ecogridClient =
+						    new QueryServiceGetToStreamClient(endPointURL);
+						ecogridClient.get(identifier, pipedOutputStream);
+					}
+				}
+				catch (Exception e) {
+					exception = e;
+				}
+				finally {
+					try {
+						pipedOutputStream.close();
+					}
+					catch (IOException e) {
+						// The reader has already closed the pipe
+					}
+				}
+			}
+		}, "EcoGrid " + identifier);
+
+		clientThread.setDaemon(true);
+		clientThread.start();
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Override
+	public synchronized int read() throws IOException {
+		int b = super.read();
+		if (b == -1) { checkException(); }
+		return b;
+	}
+
+
+	@Override
+	public synchronized int read(byte[] b, int off, int len) throws IOException {
+		int bytesRead = super.read(b, off, len);
+		if (bytesRead == -1) { checkException(); }
+		return bytesRead;
+	}
+
+
+	/*
+	 * Rethrows an error raised by the EcoGrid client, so that a failed read
+	 * is not mistaken for the end of the object.
+	 */
+	private void checkException() throws IOException {
+		if (exception != null) {
+			throw new IOException(
+			    String.format("Error reading from EcoGrid: %s", exception.getMessage()),
+			    exception);
+		}
+	}
+
+}
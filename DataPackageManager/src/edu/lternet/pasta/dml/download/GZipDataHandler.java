@@ -31,8 +31,6 @@
  */
 package edu.lternet.pasta.dml.download;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
@@ -146,26 +144,28 @@ public class GZipDataHandler extends CompressedDataHandler
    protected boolean getContentFromEcoGridSource(String endPoint, 
                                                  String ecogridIdentifier)
    {
-	   boolean success = false;
-       File gzipTmp = writeEcoGridCompressedDataIntoTmp(endPoint, 
-                                                        ecogridIdentifier, 
-                                                        ".gz");
-       System.out.println("The gzip file name is "+gzipTmp);
-       
-       try
-       {
-	       if (gzipTmp != null)
-	       {
-	    	  InputStream stream = new FileInputStream(gzipTmp);
-	    	  success = this.writeRemoteInputStreamIntoDataStorage(stream);
-	       }
-       }
-       catch(Exception e)
-       {
-    	   System.out.println("Error is " + e.getMessage());
-       }
-       
-       return success;
+      boolean success = false;
+      InputStream stream = null;
+
+      if (endPoint != null && ecogridIdentifier != null)
+      {
+          try
+          {
+              // Unpack the entity as it is read from EcoGrid, without staging it in a temp file
+              stream = new EcoGridInputStream(endPoint, ecogridIdentifier, sessionId);
+              success = this.writeRemoteInputStreamIntoDataStorage(stream);
+          }
+          catch(Exception e)
+          {
+              log.error("Error getting content from EcoGrid: " + e.getMessage());
+          }
+          finally
+          {
+              closeQuietly(stream);
+          }
+      }
+
+      return success;
    }
 
 }
@@ -31,8 +31,6 @@
  */
 package edu.lternet.pasta.dml.download;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -162,24 +160,28 @@ public class TarDataHandler extends ArchivedDataHandler
     protected boolean getContentFromEcoGridSource(String endPoint, 
                                                   String ecogridIdentifier)
     {
- 	   boolean success = false;
-        File zipTmp = writeEcoGridArchivedDataIntoTmp(endPoint, 
-                                                      ecogridIdentifier, 
-                                                      ".tar");
-        try
-        {
- 	       if (zipTmp != null)
- 	       {
- 	    	  InputStream stream = new FileInputStream(zipTmp);
- 	    	  success = this.writeRemoteInputStreamIntoDataStorage(stream);
- 	       }
-        }
-        catch(Exception e)
-        {
-     	   System.out.println("Error is " + e.getMessage());
-        }
-        
-        return success;
+       boolean success = false;
+       InputStream stream = null;
+
+       if (endPoint != null && ecogridIdentifier != null)
+       {
+           try
+           {
+               // Unpack the entity as it is read from EcoGrid, without staging it in a temp file
+               stream = new EcoGridInputStream(endPoint, ecogridIdentifier, sessionId);
+               success = this.writeRemoteInputStreamIntoDataStorage(stream);
+           }
+           catch(Exception e)
+           {
+               log.error("Error getting content from EcoGrid: " + e.getMessage());
+           }
+           finally
+           {
+               closeQuietly(stream);
+           }
+       }
+
+       return success;
     }
 
 }
@@ -272,9 +272,19 @@ public class Entity extends DataObjectDescription
     
     public void setSha1HashValue(String hashValue) {
     	this.sha1HashValue = hashValue;
-    	
+
     	checkIntegrityChecksum("SHA-1", hashValue);
     }
+
+
+    public String getMd5HashValue() {
+    	return md5HashValue;
+    }
+
+
+    public String getSha1HashValue() {
+    	return sha1HashValue;
+    }
     
     
     /*
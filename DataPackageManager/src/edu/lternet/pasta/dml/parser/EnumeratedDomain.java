@@ -31,6 +31,9 @@
  */
 package edu.lternet.pasta.dml.parser;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Vector;
 
 
@@ -49,6 +52,7 @@ public class EnumeratedDomain implements Domain
     //private DataType dataType;
     //private DataTypeResolver resolver = DataTypeResolver.instanceOf();
     private Vector info;
+    private Set<String> codes = new HashSet<String>();
     
     
     /*
@@ -79,6 +83,46 @@ public class EnumeratedDomain implements Domain
     }
     
     
+    /**
+     * Sets the codes of the enumerated domain, as given in its code
+     * definitions. Leading and trailing white space is ignored.
+     * 
+     * @param codes  the codes
+     */
+    public void setCodes(Collection<String> codes)
+    {
+        this.codes = new HashSet<String>();
+        for (String code : codes) {
+            this.codes.add(code.trim());
+        }
+    }
+    
+    
+    /**
+     * Gets the codes of the enumerated domain.
+     * 
+     * @return  the codes, or an empty set if the domain has no code
+     *          definitions (e.g. its codes are in an external code set)
+     */
+    public Set<String> getCodes()
+    {
+        return codes;
+    }
+    
+    
+    /**
+     * Determines whether a data value is one of the codes of the enumerated
+     * domain. Any value matches a domain without code definitions.
+     * 
+     * @param value  the data value
+     * @return  true if the value is a code, or if the domain has no codes
+     */
+    public boolean isCode(String value)
+    {
+        return codes.isEmpty() || (value != null && codes.contains(value.trim()));
+    }
+    
+    
     /**
      * Method getDomainInfo gets the ith domain info item,
      * or an empty string if i is greater than the number of items.
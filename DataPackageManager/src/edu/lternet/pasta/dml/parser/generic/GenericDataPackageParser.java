@@ -832,6 +832,10 @@ public class GenericDataPackageParser implements DataPackageParserInterface
                                         Node boundsNode;
 
                                         //String exclMin = null, exclMax = null;
+                                        /*
+                                         * The minimum and maximum are each
+                                         * optional, so they are read apart
+                                         */
                                         try
                                         {
                                             aNodeList = xpathapi.selectNodeList(
@@ -843,8 +847,16 @@ public class GenericDataPackageParser implements DataPackageParserInterface
                                             /*exclMin = bound.getAttributes()
                                                     .getNamedItem("exclusive")
                                                     .getNodeValue();*/
+                                        }
+                                        catch (Exception e)
+                                        {
+                                        	//log.debug("Error in handle bound ", e);
+                                        }
+                                        
+                                        try
+                                        {
                                             aNodeList = xpathapi.selectNodeList(
-                                                    boundsNodeList.item(0),
+                                                    boundsNodeList.item(i),
                                                     "./maximum");
                                             boundsNode = aNodeList.item(0);
                                             max = boundsNode.getFirstChild()
@@ -948,14 +960,22 @@ public class GenericDataPackageParser implements DataPackageParserInterface
                                           nonNumericDomainChildNode,
                                           "./codeDefinition");
                                     
+                                    ArrayList<String> codes = new ArrayList<String>();
+                                    
                                     for (int l = 0; 
                                          l < codeDefinitionNodeList.getLength(); 
                                          l++) {
                                         info.add(codeDefinitionNodeList.item(l).
                                                  getFirstChild().getNodeValue());
+                                        Node codeNode = xpathapi.selectSingleNode(
+                                            codeDefinitionNodeList.item(l), "./code");
+                                        if (codeNode != null) {
+                                            codes.add(codeNode.getTextContent());
+                                        }
                                     }
                                     
                                     enumeratedDomain.setInfo(info);
+                                    enumeratedDomain.setCodes(codes);
                                     domain = enumeratedDomain;
                                 }
                             }
@@ -1,5 +1,8 @@
 package edu.lternet.pasta.dml.quality;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -133,27 +136,48 @@ public class EntityReport {
   public String toXML() {
     String xmlString = null; 
     
-      if (entity != null) {
-        String entityName = entity.getName();
-        String entityId = entity.getId();
-        StringBuffer stringBuffer = new StringBuffer("");
-        stringBuffer.append("  <entityReport>\n");
-        String escapedEntityName = StringEscapeUtils.escapeXml(entityName);
-        stringBuffer.append("    <entityName>" + escapedEntityName + "</entityName>\n");
-        if (entityId != null && !entityId.equals("")) {
-          stringBuffer.append("    <entityId>" + entityId + "</entityId>\n");
-        }  
-        if (qualityChecks != null && qualityChecks.size() > 0) {
-          for (QualityCheck aQualityCheck : qualityChecks) {
-            String qualityCheckXML = aQualityCheck.toXML();
-            stringBuffer.append(qualityCheckXML);
-          }
-        }
-        stringBuffer.append("  </entityReport>\n");
-        xmlString = stringBuffer.toString();
+    if (entity != null) {
+      StringWriter stringWriter = new StringWriter();
+      
+      try {
+        writeXML(stringWriter);
+      }
+      catch (IOException e) {
+        throw new IllegalStateException(e);  // not thrown by a StringWriter
       }
+      
+      xmlString = stringWriter.toString();
+    }
     
     return xmlString;
   }
 
+
+  /**
+   * Writes an XML entity report structure from the quality check objects
+   * stored in the entity. Nothing is written if there is no entity.
+   * 
+   * @param  writer  the writer that the <entityReport> XML fragment is 
+   *                 written to
+   * @throws IOException
+   */
+  public void writeXML(Writer writer) throws IOException {
+    if (entity != null) {
+      String entityName = entity.getName();
+      String entityId = entity.getId();
+      writer.write("  <entityReport>\n");
+      String escapedEntityName = StringEscapeUtils.escapeXml(entityName);
+      writer.write("    <entityName>" + escapedEntityName + "</entityName>\n");
+      if (entityId != null && !entityId.equals("")) {
+        writer.write("    <entityId>" + entityId + "</entityId>\n");
+      }  
+      if (qualityChecks != null && qualityChecks.size() > 0) {
+        for (QualityCheck aQualityCheck : qualityChecks) {
+          aQualityCheck.writeXML(writer);
+        }
+      }
+      writer.write("  </entityReport>\n");
+    }
+  }
+
 }
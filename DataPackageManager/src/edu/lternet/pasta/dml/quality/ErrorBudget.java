@@ -0,0 +1,242 @@
+package edu.lternet.pasta.dml.quality;
+
+import java.util.HashMap;
+
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
+
+/**
+ * Limits how much work is spent checking a data entity once it has enough
+ * failures. There are two kinds of limits:
+ *
+ *   - a per-check limit: after a row-level quality check has failed
+ *     maxCheckFailures times, it is no longer run for the rest of the
+ *     entity;
+ *   - a per-entity limit on failures with an 'error' status: the entity
+ *     is certain to fail, so loading stops once maxEntityErrors such
+ *     failures have been found, or once the error rate exceeds
+ *     maxErrorPercent after at least rateRows rows have been checked.
+ *
+ * A limit of zero (the default) disables it. The limits are configured
+ * once by the calling application; an ErrorBudget object tracks the
+ * failures for one entity.
+ *
+ * @author dcosta
+ *
+ */
+public class ErrorBudget {
+
+  /*
+   * Class variables
+   */
+
+  public static final String QUALITY_CHECK_IDENTIFIER = "errorBudget";
+
+  private static int maxCheckFailures = 0;
+  private static int maxEntityErrors = 0;
+  private static int maxErrorPercent = 0;
+  private static int rateRows = 0;
+
+
+  /*
+   * Instance variables
+   */
+
+  // Number of failures counted for each quality check identifier
+  private HashMap<String, Integer> checkFailures = new HashMap<String, Integer>();
+  private int entityErrors = 0;
+  private int rowsChecked = 0;
+  private String exceededReason = null;
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Sets the error budget limits. A value of zero disables a limit.
+   *
+   * @param maxCheckFailures   failures of a single check before it stops being run
+   * @param maxEntityErrors    'error' failures in an entity before loading stops
+   * @param maxErrorPercent    error rate, as a percentage of rows checked,
+   *                           above which loading stops
+   * @param rateRows           rows that must be checked before the error rate applies
+   */
+  public static void setLimits(int maxCheckFailures, int maxEntityErrors,
+                               int maxErrorPercent, int rateRows) {
+    ErrorBudget.maxCheckFailures = Math.max(maxCheckFailures, 0);
+    ErrorBudget.maxEntityErrors = Math.max(maxEntityErrors, 0);
+    ErrorBudget.maxErrorPercent = Math.max(maxErrorPercent, 0);
+    ErrorBudget.rateRows = Math.max(rateRows, 0);
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Counts a row that has been checked.
+   */
+  public void countRow() {
+    rowsChecked++;
+  }
+
+
+  /**
+   * Records a failure of a quality check.
+   *
+   * @param qualityCheck   the failed quality check
+   */
+  public void recordFailure(QualityCheck qualityCheck) {
+    String identifier = qualityCheck.getIdentifier();
+    Integer failures = checkFailures.get(identifier);
+    checkFailures.put(identifier, (failures == null) ? 1 : failures + 1);
+
+    if (qualityCheck.getStatus() == Status.error) {
+      entityErrors++;
+    }
+  }
+
+
+  /**
+   * Boolean to determine whether a quality check has used up its budget
+   * and should no longer be run.
+   *
+   * @param identifier   the quality check identifier
+   * @return  true if the check has failed maxCheckFailures times
+   */
+  public boolean isCheckExhausted(String identifier) {
+    Integer failures = checkFailures.get(identifier);
+    return (maxCheckFailures > 0) && (failures != null) && (failures >= maxCheckFailures);
+  }
+
+
+  /**
+   * Boolean to determine whether the entity has used up its budget, in
+   * which case no more of its rows need to be checked.
+   *
+   * @return  true if the per-entity error limit or error rate has been exceeded
+   */
+  public boolean isExceeded() {
+    if (exceededReason == null && entityErrors > 0) {
+      if (maxEntityErrors > 0 && entityErrors >= maxEntityErrors) {
+        exceededReason = String.format("%d errors were found", entityErrors);
+      }
+      else if (maxErrorPercent > 0 && rowsChecked >= rateRows &&
+               (entityErrors * 100L) > ((long) maxErrorPercent * rowsChecked)) {
+        exceededReason = String.format(
+            "%d errors were found in %d rows, exceeding the limit of %d%%",
+            entityErrors, rowsChecked, maxErrorPercent);
+      }
+    }
+
+    return (exceededReason != null);
+  }
+
+
+  /**
+   * Boolean to determine whether any limit was reached while checking the
+   * entity.
+   *
+   * @return  true if a check was exhausted or the entity budget was exceeded
+   */
+  public boolean isLimited() {
+    if (isExceeded()) {
+      return true;
+    }
+
+    for (String identifier : checkFailures.keySet()) {
+      if (isCheckExhausted(identifier)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+
+  /**
+   * Adds the failures counted by another error budget, for a part of the
+   * same entity that was checked separately. A check's failures are capped
+   * at maxCheckFailures, the count at which it would have stopped running
+   * had the parts been checked together.
+   *
+   * @param other   the error budget of the other part of the entity
+   */
+  public void merge(ErrorBudget other) {
+    rowsChecked += other.rowsChecked;
+    entityErrors += other.entityErrors;
+
+    for (String identifier : other.checkFailures.keySet()) {
+      Integer failures = checkFailures.get(identifier);
+      int total = ((failures == null) ? 0 : failures) + other.checkFailures.get(identifier);
+      if (maxCheckFailures > 0 && total > maxCheckFailures) {
+        total = maxCheckFailures;
+      }
+      checkFailures.put(identifier, total);
+    }
+  }
+
+
+  /**
+   * Gets the number of failures with an 'error' status.
+   *
+   * @return  the error count
+   */
+  public int getEntityErrors() {
+    return entityErrors;
+  }
+
+
+  /**
+   * Gets the number of rows that were checked.
+   *
+   * @return  the row count
+   */
+  public int getRowsChecked() {
+    return rowsChecked;
+  }
+
+
+  /**
+   * Creates a quality check reporting which limits were reached and how
+   * much of the entity was checked. The status is 'error' if checking of
+   * the entity was stopped, or 'info' if only individual checks were
+   * stopped.
+   *
+   * @return  the quality check, or null if no limit was reached
+   */
+  public QualityCheck toQualityCheck() {
+    QualityCheck qualityCheck = null;
+
+    if (isLimited()) {
+      QualityCheck template = QualityReport.getQualityCheckTemplate(QUALITY_CHECK_IDENTIFIER);
+      qualityCheck = new QualityCheck(QUALITY_CHECK_IDENTIFIER, template);
+      StringBuilder explanation = new StringBuilder();
+
+      for (String identifier : checkFailures.keySet()) {
+        if (isCheckExhausted(identifier)) {
+          explanation.append(String.format(
+              "The '%s' check was stopped after %d failures. ",
+              identifier, checkFailures.get(identifier)));
+        }
+      }
+
+      if (isExceeded()) {
+        qualityCheck.setStatus(Status.error);
+        qualityCheck.setFound(String.format(
+            "Checking stopped after %d rows: %s", rowsChecked, exceededReason));
+        explanation.append("The remaining rows of the data entity were not checked.");
+      }
+      else {
+        qualityCheck.setStatus(Status.info);
+        qualityCheck.setFound(String.format("All %d rows were checked", rowsChecked));
+      }
+
+      qualityCheck.setExplanation(explanation.toString().trim());
+    }
+
+    return qualityCheck;
+  }
+
+}
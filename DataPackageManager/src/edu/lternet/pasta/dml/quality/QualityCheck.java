@@ -32,6 +32,10 @@
 
 package edu.lternet.pasta.dml.quality;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import edu.lternet.pasta.dml.parser.DataPackage;
@@ -294,8 +298,27 @@ public class QualityCheck {
    * @return  a string holding the XML representation
    */
 	public String toXML() {
-	  String xmlString = null;
-	  StringBuffer xmlStringBuffer = new StringBuffer("");
+	  StringWriter stringWriter = new StringWriter();
+	  
+	  try {
+	    writeXML(stringWriter);
+	  }
+	  catch (IOException e) {
+	    throw new IllegalStateException(e);  // not thrown by a StringWriter
+	  }
+	  
+	  return stringWriter.toString();
+	}
+	
+	
+  /**
+   * Writes an XML representation of the content of this QualityCheck
+   * object.
+   * 
+   * @param   writer   the writer that the XML is written to
+   * @throws  IOException
+   */
+	public void writeXML(Writer writer) throws IOException {
 	  final String indent = "  ";
 	  String qualityTypeStr = null;
 	  String statusTypeStr = null;
@@ -305,23 +328,36 @@ public class QualityCheck {
     if (statusType != null) { statusTypeStr = statusType.toString(); }
     if (status != null) { statusStr = status.toString(); }
 	  
-	  xmlStringBuffer.append(indent + indent + "<qualityCheck" +
+	  writer.write(indent + indent + "<qualityCheck" +
 	    " qualityType=\"" + qualityTypeStr + "\"" +
 	    " system=\"" + system + "\"" +
 	    " statusType=\"" + statusTypeStr + "\" >\n");
-    xmlStringBuffer.append(indent + indent + indent + "<identifier>" + identifier + "</identifier>\n");
-	  xmlStringBuffer.append(indent + indent + indent + "<name>" + name + "</name>\n");
-	  xmlStringBuffer.append(indent + indent + indent + "<description>" + description + "</description>\n");
-	  xmlStringBuffer.append(indent + indent + indent + "<expected>" + expected + "</expected>\n");
-	  xmlStringBuffer.append(indent + indent + indent + "<found>" + found + "</found>\n");
-    xmlStringBuffer.append(indent + indent + indent + "<status>" + statusStr + "</status>\n");
-    xmlStringBuffer.append(indent + indent + indent + "<explanation>" + explanation + "</explanation>\n");
-    xmlStringBuffer.append(indent + indent + indent + "<suggestion>" + suggestion + "</suggestion>\n");
-    xmlStringBuffer.append(indent + indent + indent + "<reference>" + reference + "</reference>\n");
-	  xmlStringBuffer.append(indent + indent + "</qualityCheck>\n");
-	  
-	  xmlString = xmlStringBuffer.toString();
-	  return xmlString;
+    writeElement(writer, "identifier", identifier);
+    writeElement(writer, "name", name);
+    writeElement(writer, "description", description);
+    writeElement(writer, "expected", expected);
+    writeElement(writer, "found", found);
+    writeElement(writer, "status", statusStr);
+    writeElement(writer, "explanation", explanation);
+    writeElement(writer, "suggestion", suggestion);
+    writeElement(writer, "reference", reference);
+	  writer.write(indent + indent + "</qualityCheck>\n");
+	}
+	
+	
+	/*
+	 * Writes a child element of the <qualityCheck> element. The value is
+	 * written as is, since some values hold CDATA sections or markup.
+	 */
+	private void writeElement(Writer writer, String name, String value) 
+	        throws IOException {
+	  writer.write("      <");
+	  writer.write(name);
+	  writer.write(">");
+	  writer.write(String.valueOf(value));
+	  writer.write("</");
+	  writer.write(name);
+	  writer.write(">\n");
 	}
 	
 	
@@ -1,13 +1,17 @@
 package edu.lternet.pasta.dml.quality;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
@@ -27,13 +31,12 @@ import org.apache.xpath.CachedXPathAPI;
 
 import edu.lternet.pasta.dml.parser.DataPackage;
 import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
-import edu.ucsb.nceas.utilities.IOUtil;
-
 
 public class QualityReport {
   
@@ -445,35 +448,6 @@ public class QualityReport {
 	}
   
 
-  /**
-   * This method ensures that the output String has only valid XML unicode characters as 
-   * specified by the XML 1.0 standard. For reference, please see 
-   * <a href="http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char">the standard</a>. 
-   * This method will return an empty String if the input is null or empty.
-   *
-   * @param in The String whose non-valid characters we want to remove.
-   * @return The in String, stripped of non-valid characters.
-   */
-  private static String stripNonValidXMLCharacters(String in) {
-      StringBuffer out = new StringBuffer(); // Used to hold the output.
-      char current; // Used to reference the current character.
-
-      if (in == null || ("".equals(in))) return ""; // vacancy test.
-      for (int i = 0; i < in.length(); i++) {
-          current = in.charAt(i); // NOTE: No IndexOutOfBoundsException caught here; it should not happen.
-          if ((current == 0x9) ||
-              (current == 0xA) ||
-              (current == 0xD) ||
-              ((current >= 0x20) && (current <= 0xD7FF)) ||
-              ((current >= 0xE000) && (current <= 0xFFFD)) ||
-              ((current >= 0x10000) && (current <= 0x10FFFF))) {
-              out.append(current);
-          }
-      }
-      return out.toString();
-  }
-
-
   /*
    * Instance methods
    */
@@ -508,6 +482,40 @@ public class QualityReport {
   }
   
   
+  /**
+   * Counts the quality checks in this report, at both the dataset and the
+   * entity level, that have a given status. This lets callers summarize
+   * the report without generating or parsing its XML.
+   * 
+   * @param   status   the status to count
+   * @return  the number of quality checks with that status
+   */
+  public int getStatusCount(Status status) {
+    int count = 0;
+    
+    for (QualityCheck qualityCheck : datasetQualityChecks) {
+      if (qualityCheck.getStatus() == status) {
+        count++;
+      }
+    }
+    
+    if (dataPackage != null && dataPackage.getEntityList() != null) {
+      for (Entity entity : dataPackage.getEntityList()) {
+        EntityReport entityReport = (entity == null) ? null : entity.getEntityReport();
+        if (entityReport != null) {
+          for (QualityCheck qualityCheck : entityReport.getQualityChecks()) {
+            if (qualityCheck.getStatus() == status) {
+              count++;
+            }
+          }
+        }
+      }
+    }
+    
+    return count;
+  }
+  
+  
   /**
    * Boolean to determine whether this quality report has at
    * least one dataset-level quality error. 
@@ -539,7 +547,8 @@ public class QualityReport {
 
 
   /**
-   * Stores a quality report on the file system.
+   * Stores a quality report on the file system. The report is written to
+   * the file as it is generated, without first being built as a string.
    * 
    * @param   qualityReportFile  the file object where the quality
    *            report is to be written
@@ -548,23 +557,21 @@ public class QualityReport {
   public boolean storeQualityReport(File qualityReportFile) 
           throws IOException {
     boolean success = false;
+    Writer writer = null;
     
-    String qualityReportXML = toXML();
-    
-    if (qualityReportXML != null) {
-      StringBuffer stringBuffer = new StringBuffer(qualityReportXML);
-      try {
-        FileWriter fileWriter = new FileWriter(qualityReportFile);
-        IOUtil.writeToWriter(stringBuffer, fileWriter, true);
-      }
-      catch (IOException e) {
-        e.printStackTrace();
-        throw(e);
-      }
-      finally {
-        success = (qualityReportFile != null) && 
-                  (qualityReportFile.exists());
-     }
+    try {
+      writer = new BufferedWriter(new OutputStreamWriter(
+                 new FileOutputStream(qualityReportFile), "UTF-8"));
+      writeXML(writer);
+    }
+    catch (IOException e) {
+      e.printStackTrace();
+      throw(e);
+    }
+    finally {
+      if (writer != null) writer.close();
+      success = (qualityReportFile != null) && 
+                (qualityReportFile.exists());
     }
       
     return success;   
@@ -573,28 +580,51 @@ public class QualityReport {
   
   /**
    * Generates an XML quality report string from the quality check objects
-   * and the entity report objects stored in the data package.
+   * and the entity report objects stored in the data package. For large
+   * reports, prefer writeXML() or storeQualityReport(), which do not hold 
+   * the whole report in memory.
    * 
    * @return an XML string representation of the full quality report
    */
   public String toXML() {
+    StringWriter stringWriter = new StringWriter();
+    
+    try {
+      writeXML(stringWriter);
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);  // not thrown by a StringWriter
+    }
+    
+    return stringWriter.toString();
+  }
+  
+  
+  /**
+   * Writes an XML quality report from the quality check objects and the
+   * entity report objects stored in the data package. Characters that are
+   * not valid in XML are dropped as the report is written.
+   * 
+   * @param   writer   the writer that the report is written to; it is
+   *                   flushed but not closed
+   * @throws  IOException
+   */
+  public void writeXML(Writer writer) throws IOException {
     Date now = new Date();
     SimpleDateFormat dateFormat = 
         new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
     String dateCreated = dateFormat.format(now);
-    String xmlString = null;
-    
-    StringBuffer stringBuffer = new StringBuffer("");
+    Writer out = new XMLCharacterFilterWriter(writer);
     
-    stringBuffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-    stringBuffer.append("<qr:qualityReport\n");
-    stringBuffer.append("  xmlns=\"eml://ecoinformatics.org/qualityReport\"\n");
-    stringBuffer.append("  xmlns:qr=\"eml://ecoinformatics.org/qualityReport\"\n");
-    stringBuffer.append("  xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
-    stringBuffer.append("  xsi:schemaLocation=\"eml://ecoinformatics.org/qualityReport https://raw.githubusercontent.com/PASTAplus/PASTA/master/DataPackageManager/WebRoot/xml/qualityReportSchema.xsd\"\n");
-    stringBuffer.append("  >\n");
-    stringBuffer.append("  <creationDate>" + dateCreated + "</creationDate>\n");
-    stringBuffer.append("  <packageId>" + packageId + "</packageId>\n");
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<qr:qualityReport\n");
+    out.write("  xmlns=\"eml://ecoinformatics.org/qualityReport\"\n");
+    out.write("  xmlns:qr=\"eml://ecoinformatics.org/qualityReport\"\n");
+    out.write("  xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
+    out.write("  xsi:schemaLocation=\"eml://ecoinformatics.org/qualityReport https://raw.githubusercontent.com/PASTAplus/PASTA/master/DataPackageManager/WebRoot/xml/qualityReportSchema.xsd\"\n");
+    out.write("  >\n");
+    out.write("  <creationDate>" + dateCreated + "</creationDate>\n");
+    out.write("  <packageId>" + packageId + "</packageId>\n");
     
     /* 
      * Write the list of includeSystem elements that were read from 
@@ -603,18 +633,17 @@ public class QualityReport {
      * when determining the set of quality checks to apply.
      */
     for (String includeSystem : includeSystems.keySet()) {
-      stringBuffer.append("  <includeSystem>" + includeSystem + "</includeSystem>\n");
+      out.write("  <includeSystem>" + includeSystem + "</includeSystem>\n");
     }
     
     // Add quality checks at the data set level
-    stringBuffer.append("  <datasetReport>\n");
+    out.write("  <datasetReport>\n");
     if (datasetQualityChecks != null && datasetQualityChecks.size() > 0) {
       for (QualityCheck aQualityCheck : datasetQualityChecks) {
-        String qualityCheckXML = aQualityCheck.toXML();
-        stringBuffer.append(qualityCheckXML);
+        aQualityCheck.writeXML(out);
       }
     }
-    stringBuffer.append("  </datasetReport>\n");
+    out.write("  </datasetReport>\n");
     
     // Add quality checks at the entity level
     if (this.dataPackage != null) {     
@@ -625,18 +654,15 @@ public class QualityReport {
           if (entity != null) {
             EntityReport entityReport = entity.getEntityReport();
             if (entityReport != null) {
-              String entityReportXML = entityReport.toXML();
-              stringBuffer.append(entityReportXML);
+              entityReport.writeXML(out);
             }
           }
         }
       }
     }
 
-    stringBuffer.append("</qr:qualityReport>\n");
-    xmlString = stringBuffer.toString();
-    xmlString = stripNonValidXMLCharacters(xmlString);
-    return xmlString;
+    out.write("</qr:qualityReport>\n");
+    out.flush();
   }
   
 }
@@ -0,0 +1,82 @@
+package edu.lternet.pasta.dml.quality;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A writer that drops characters which are not valid XML characters as
+ * specified by the XML 1.0 standard. For reference, please see
+ * <a href="http://www.w3.org/TR/2000/REC-xml-20001006#NT-Char">the standard</a>.
+ * The quality report is written through this filter, so that it is
+ * stripped of non-valid characters as it is written rather than as a
+ * whole string afterwards.
+ *
+ * @author dcosta
+ *
+ */
+class XMLCharacterFilterWriter extends FilterWriter {
+
+  /*
+   * Constructors
+   */
+
+  XMLCharacterFilterWriter(Writer out) {
+    super(out);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /*
+   * Boolean to determine whether a character is a valid XML character.
+   */
+  private static boolean isValidXMLCharacter(char current) {
+    return (current == 0x9) ||
+           (current == 0xA) ||
+           (current == 0xD) ||
+           ((current >= 0x20) && (current <= 0xD7FF)) ||
+           ((current >= 0xE000) && (current <= 0xFFFD));
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  public void write(int c) throws IOException {
+    if (isValidXMLCharacter((char) c)) {
+      out.write(c);
+    }
+  }
+
+
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    int start = off;
+    int end = off + len;
+
+    // Write each run of valid characters, skipping the non-valid ones
+    for (int i = off; i < end; i++) {
+      if (!isValidXMLCharacter(cbuf[i])) {
+        if (i > start) {
+          out.write(cbuf, start, i - start);
+        }
+        start = i + 1;
+      }
+    }
+
+    if (end > start) {
+      out.write(cbuf, start, end - start);
+    }
+  }
+
+
+  public void write(String str, int off, int len) throws IOException {
+    char[] cbuf = new char[len];
+    str.getChars(off, off + len, cbuf, 0);
+    write(cbuf, 0, len);
+  }
+
+}
@@ -1,7 +1,9 @@
 package edu.lternet.pasta.dml.transpose;
 
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -13,7 +15,98 @@ import edu.ucsb.nceas.utilities.OrderedMap;
 
 public class DataTranspose {
 
+	/**
+	 * Gets the distinct values of a pivot column with a DISTINCT query, for
+	 * use with the streaming transpose.
+	 * 
+	 * @param connection       the database connection
+	 * @param tableName        the table being transposed
+	 * @param pivotColumnName  the pivot column name
+	 * @return the pivot values, in sorted order
+	 * @throws SQLException
+	 */
+	public static List<String> getPivotValues(Connection connection, String tableName,
+			String pivotColumnName) throws SQLException {
+		List<String> pivotValues = new ArrayList<String>();
+		String selectString = "SELECT DISTINCT " + pivotColumnName + " FROM " + tableName +
+		                      " ORDER BY " + pivotColumnName;
+		Statement stmt = connection.createStatement();
+		
+		try {
+			ResultSet rs = stmt.executeQuery(selectString);
+			while (rs.next()) {
+				pivotValues.add(rs.getString(1));
+			}
+			rs.close();
+		}
+		finally {
+			stmt.close();
+		}
+		
+		return pivotValues;
+	}
+	
 	
+	/**
+	 * Creates a statement whose result sets can be streamed by
+	 * transpose(ResultSet, int, int, List, boolean): forward-only and
+	 * read-only, with a fetch size. The PostgreSQL driver only uses the
+	 * fetch size, rather than reading the whole result set into memory,
+	 * when auto-commit is off, so auto-commit is turned off on the
+	 * connection; the caller restores it when done.
+	 * 
+	 * @param connection   the database connection
+	 * @param fetchSize    the number of rows fetched at a time
+	 * @return the statement
+	 * @throws SQLException
+	 */
+	public static Statement createStreamingStatement(Connection connection, int fetchSize)
+			throws SQLException {
+		connection.setAutoCommit(false);
+		Statement stmt = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY,
+		                                            ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(fetchSize);
+		return stmt;
+	}
+	
+	
+	/**
+	 * Transposes a result set as it is read. Memory use is proportional to
+	 * one output row, rather than to the whole table as with
+	 * transpose(ResultSet, int, int, boolean), provided that the driver
+	 * streams the result set too. The result set must be:
+	 * <ul>
+	 * <li>ordered by the id column, so that the rows of an id are
+	 * adjacent;</li>
+	 * <li>forward-only (a scrollable PostgreSQL result set is always read
+	 * into memory whole);</li>
+	 * <li>created by a statement with a fetch size, on a connection with
+	 * auto-commit off, as createStreamingStatement() does.</li>
+	 * </ul>
+	 * The pivot values come from a separate query, getPivotValues(Connection,
+	 * String, String), since the result set cannot be read twice.
+	 * 
+	 * @param rs            the forward-only result set, ordered by the id column
+	 * @param idCol         the id column index
+	 * @param pivotCol      the pivot column index
+	 * @param pivotValues   the pivot values, as from getPivotValues()
+	 * @param omitIdValues  if true, id values are replaced by the row number
+	 * @return an iterator over the header and then the transposed rows
+	 * @throws SQLException if the result set is not forward-only
+	 */
+	public static Iterator<String[]> transpose(ResultSet rs, int idCol, int pivotCol,
+			List<String> pivotValues, boolean omitIdValues) throws SQLException {
+		return new TransposedRowIterator(rs, idCol, pivotCol, pivotValues, omitIdValues);
+	}
+	
+	
+	/**
+	 * Transposes a whole result set in memory.
+	 * 
+	 * @deprecated holds the whole table in memory; use the streaming
+	 *             transpose(ResultSet, int, int, List, boolean) instead
+	 */
+	@Deprecated
 	public static List transpose(ResultSet rs, int idCol, int pivotCol, boolean omitIdValues) throws SQLException {
 		OrderedMap table = new OrderedMap();
 		OrderedMap widestRow = new OrderedMap();
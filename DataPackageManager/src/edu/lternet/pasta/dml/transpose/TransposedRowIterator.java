@@ -0,0 +1,143 @@
+package edu.lternet.pasta.dml.transpose;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the rows of a transposed (pivoted) result set, reading the
+ * result set as the rows are consumed. The first row returned is the
+ * header; each following row holds the values of one id.
+ *
+ * The result set must be ordered by the id column, so that the rows of an
+ * id are adjacent, and the pivot values must be known up front (see
+ * DataTranspose.getPivotValues()). Only the row being built is held in
+ * memory, as long as the driver streams the result set: it must be
+ * forward-only, and its statement must have a fetch size on a connection
+ * with auto-commit off (see DataTranspose.createStreamingStatement()).
+ *
+ * SQLExceptions raised while reading the result set are rethrown as
+ * IllegalStateExceptions, since an Iterator cannot throw checked
+ * exceptions.
+ */
+public class TransposedRowIterator implements Iterator<String[]> {
+
+	private ResultSet rs;
+	private int idCol;
+	private int pivotCol;
+	private boolean omitIdValues;
+	private int[] valueCols;                 // columns other than id and pivot
+	private HashMap<String, Integer> pivotOffsets = new HashMap<String, Integer>();
+	private String[] header;
+	private boolean headerReturned = false;
+	private boolean onRow = false;           // rs is positioned on an unread row
+	private int rowCount = 0;
+
+
+	/**
+	 * Constructs an iterator over the transposed rows of a result set.
+	 *
+	 * @param rs            the forward-only result set, ordered by the id
+	 *                      column
+	 * @param idCol         the id column index
+	 * @param pivotCol      the pivot column index
+	 * @param pivotValues   the values of the pivot column, in the order in
+	 *                      which their columns are output
+	 * @param omitIdValues  if true, id values are replaced by the row number
+	 * @throws SQLException if the result set is not forward-only
+	 */
+	public TransposedRowIterator(ResultSet rs, int idCol, int pivotCol,
+			List<String> pivotValues, boolean omitIdValues) throws SQLException {
+		if (rs.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+			throw new SQLException(
+				"The result set must be forward-only to be transposed as it is read");
+		}
+
+		this.rs = rs;
+		this.idCol = idCol;
+		this.pivotCol = pivotCol;
+		this.omitIdValues = omitIdValues;
+
+		ResultSetMetaData metaData = rs.getMetaData();
+		int colCount = metaData.getColumnCount();
+		valueCols = new int[colCount - 2];
+		int j = 0;
+		for (int i = 1; i <= colCount; i++) {
+			if (i != idCol && i != pivotCol) {
+				valueCols[j++] = i;
+			}
+		}
+
+		//the id column, then the value columns of each pivot value in turn
+		header = new String[1 + pivotValues.size() * valueCols.length];
+		header[0] = metaData.getColumnName(idCol);
+		int offset = 1;
+		for (String pivotValue : pivotValues) {
+			pivotOffsets.put(pivotValue, offset);
+			for (int i = 0; i < valueCols.length; i++) {
+				//annotate the column name with the pivot column value
+				header[offset++] = pivotValue + "_" + metaData.getColumnName(valueCols[i]);
+			}
+		}
+
+		onRow = rs.next();
+	}
+
+
+	public boolean hasNext() {
+		return !headerReturned || onRow;
+	}
+
+
+	public String[] next() {
+		if (!headerReturned) {
+			headerReturned = true;
+			return header.clone();
+		}
+
+		if (!onRow) {
+			throw new NoSuchElementException();
+		}
+
+		try {
+			String[] row = new String[header.length];
+			String id = rs.getString(idCol);
+			rowCount++;
+			row[0] = omitIdValues ? String.valueOf(rowCount) : id;
+
+			//fill in the values for each pivot of this id
+			do {
+				String pivotValue = rs.getString(pivotCol);
+				Integer offset = pivotOffsets.get(pivotValue);
+				if (offset == null) {
+					throw new IllegalStateException(
+						"Pivot value '" + pivotValue + "' is not one of the pivot columns");
+				}
+				for (int i = 0; i < valueCols.length; i++) {
+					row[offset + i] = rs.getString(valueCols[i]);
+				}
+				onRow = rs.next();
+			} while (onRow && isSameId(id, rs.getString(idCol)));
+
+			return row;
+		}
+		catch (SQLException e) {
+			throw new IllegalStateException("Error reading the result set: " + e.getMessage(), e);
+		}
+	}
+
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+
+	private static boolean isSameId(String id, String otherId) {
+		return (id == null) ? (otherId == null) : id.equals(otherId);
+	}
+
+}
@@ -0,0 +1,370 @@
+package edu.lternet.pasta.doi;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.common.EmlPackageIdFormat;
+import edu.lternet.pasta.datapackagemanager.DataPackageManager;
+import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
+import edu.lternet.pasta.metadatamanager.SolrMetadataCatalog;
+import edu.ucsb.nceas.utilities.Options;
+
+
+/**
+ * The DOIRegistrationQueue class takes DOI registration off the upload path.
+ * Data packages awaiting a DOI are recorded in the DOI_PENDING table. A
+ * background thread polls the table for resources whose next attempt is due
+ * and hands them to a fixed-size pool of workers, which bounds the number of
+ * concurrent requests made to the DOI registrar.
+ *
+ * For each registered DOI the worker records the DOI in the resource
+ * registry, adds it to the Level-1 EML as an alternate identifier (and
+ * regenerates the Dublin Core and metadata checksum to match), and updates
+ * the Solr index. A failed registration stays in the table and is retried
+ * with an increasing delay.
+ *
+ * @author dcosta
+ *
+ */
+public class DOIRegistrationQueue implements Runnable {
+
+	/*
+	 * Class fields
+	 */
+
+	private static final Logger logger = Logger.getLogger(DOIRegistrationQueue.class);
+
+	private static final int DEFAULT_WORKERS = 4;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final int DEFAULT_POLL_INTERVAL = 60000;          // milliseconds
+	private static final int DEFAULT_RETRY_INTERVAL = 300000;        // milliseconds
+	private static final int DEFAULT_MAX_RETRY_INTERVAL = 86400000;  // milliseconds
+
+	private static DOIRegistrationQueue instance = null;
+
+
+	/*
+	 * Instance fields
+	 */
+
+	private final DOIScanner doiScanner;
+	private final PendingDOI pendingDOI;
+	private final DataPackageRegistry dataPackageRegistry;
+	private final String solrUrl;
+	private final int workers;
+	private final int batchSize;
+	private final int pollInterval;
+	private final int retryInterval;
+	private final int maxRetryInterval;
+
+	/*
+	 * DataCite metadata built on the upload path, keyed by resource id. Entries
+	 * are used in place of re-reading the stored EML and are discarded once the
+	 * DOI is registered. Resources recovered from the table after a restart
+	 * have no entry here and are built from the stored Level-1 EML.
+	 */
+	private final Map<String, DataCiteMetadata> prebuiltMetadata =
+			new ConcurrentHashMap<String, DataCiteMetadata>();
+
+	private final Semaphore wakeup = new Semaphore(0);
+	private final Object dataPackageManagerLock = new Object();
+	private DataPackageManager dataPackageManager = null;
+	private volatile boolean running = true;
+	private Thread poller = null;
+
+
+	/*
+	 * Constructors
+	 */
+
+	DOIRegistrationQueue(Options options, DOIScanner doiScanner) {
+		String dbDriver = options.getOption("dbDriver");
+		String dbURL = options.getOption("dbURL");
+		String dbUser = options.getOption("dbUser");
+		String dbPassword = options.getOption("dbPassword");
+		this.solrUrl = options.getOption("datapackagemanager.metadatacatalog.solrUrl");
+		this.workers = getIntOption(options, "datapackagemanager.doi.workers", DEFAULT_WORKERS);
+		this.batchSize = getIntOption(options, "datapackagemanager.doi.batchSize", DEFAULT_BATCH_SIZE);
+		this.pollInterval = getIntOption(options, "datapackagemanager.doi.pollInterval", DEFAULT_POLL_INTERVAL);
+		this.retryInterval = getIntOption(options, "datapackagemanager.doi.retryInterval", DEFAULT_RETRY_INTERVAL);
+		this.maxRetryInterval = getIntOption(options, "datapackagemanager.doi.maxRetryInterval", DEFAULT_MAX_RETRY_INTERVAL);
+		this.doiScanner = doiScanner;
+		this.pendingDOI = new PendingDOI(dbDriver, dbURL, dbUser, dbPassword);
+		this.dataPackageRegistry = doiScanner.getDataPackageRegistry();
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Starts the DOI registration queue and its polling thread. Any
+	 * registrations left in the table by a previous run are picked up on the
+	 * first poll.
+	 *
+	 * @param options   the DataPackageManager options
+	 */
+	public static synchronized void start(Options options) throws Exception {
+		if (instance == null) {
+			DOIRegistrationQueue doiRegistrationQueue =
+					new DOIRegistrationQueue(options, new DOIScanner());
+			doiRegistrationQueue.poller = new Thread(doiRegistrationQueue, "DOIRegistrationQueue");
+			doiRegistrationQueue.poller.setDaemon(true);
+			doiRegistrationQueue.poller.start();
+			instance = doiRegistrationQueue;
+			logger.info("DOI registration queue has started.");
+		}
+	}
+
+
+	/**
+	 * Stops the polling thread. Registrations that have not completed remain
+	 * in the table and are picked up on the next start.
+	 */
+	public static synchronized void stop() {
+		if (instance != null) {
+			instance.running = false;
+			instance.poller.interrupt();
+			try {
+				instance.poller.join(10000L);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			instance = null;
+			logger.info("DOI registration queue has stopped.");
+		}
+	}
+
+
+	/**
+	 * @return the running DOIRegistrationQueue, or null if it has not been started
+	 */
+	public static synchronized DOIRegistrationQueue getInstance() {
+		return instance;
+	}
+
+
+	private static int getIntOption(Options options, String name, int defaultValue) {
+		int value = defaultValue;
+		String str = options.getOption(name);
+
+		if (str != null && !str.trim().isEmpty()) {
+			try {
+				value = Integer.parseInt(str.trim());
+			}
+			catch (NumberFormatException e) {
+				logger.warn(String.format("Invalid value for %s: %s; using %d", name, str, defaultValue));
+			}
+		}
+
+		return value;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Queues a dataPackage resource for DOI registration and wakes the
+	 * polling thread.
+	 *
+	 * @param resource           the dataPackage resource
+	 * @param dataCiteMetadata   the DataCite metadata for the resource, or null
+	 *                           to build it from the stored Level-1 EML
+	 */
+	public void submit(Resource resource, DataCiteMetadata dataCiteMetadata)
+			throws ClassNotFoundException, SQLException {
+		String resourceId = resource.getResourceId();
+		if (dataCiteMetadata != null) {
+			prebuiltMetadata.put(resourceId, dataCiteMetadata);
+		}
+
+		try {
+			pendingDOI.addResource(resourceId, resource.getPackageId());
+		}
+		catch (ClassNotFoundException | SQLException e) {
+			prebuiltMetadata.remove(resourceId);
+			throw (e);
+		}
+
+		wakeup.release();
+	}
+
+
+	public void run() {
+		while (running) {
+			try {
+				drain();
+				if (wakeup.tryAcquire(pollInterval, TimeUnit.MILLISECONDS)) {
+					wakeup.drainPermits();
+				}
+			}
+			catch (InterruptedException e) {
+				if (!running) break;
+			}
+			catch (Exception e) {
+				logger.error("DOI registration pass failed: " + e.getMessage());
+				try {
+					Thread.sleep(pollInterval);
+				}
+				catch (InterruptedException ie) {
+					if (!running) break;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Processes every queued resource whose next attempt is due, using up to
+	 * the configured number of concurrent workers.
+	 *
+	 * @return the number of DOIs that were registered
+	 */
+	public synchronized int drain()
+			throws ClassNotFoundException, SQLException, InterruptedException {
+		int registered = 0;
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+
+		try {
+			ArrayList<Resource> resources = pendingDOI.listDueResources(batchSize);
+
+			while (!resources.isEmpty()) {
+				List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+				for (final Resource resource : resources) {
+					futures.add(executorService.submit(new Callable<Boolean>() {
+						public Boolean call() throws Exception {
+							return processResource(resource);
+						}
+					}));
+				}
+
+				int progress = 0;
+				for (Future<Boolean> future : futures) {
+					try {
+						if (future.get()) registered++;
+						progress++;
+					}
+					catch (ExecutionException e) {
+						// The failure could not be recorded, so the resource is still due
+						logger.error("DOI registration failed: " + e.getCause().getMessage());
+					}
+				}
+
+				if (progress == 0 || resources.size() < batchSize) break;
+				resources = pendingDOI.listDueResources(batchSize);
+			}
+		}
+		finally {
+			executorService.shutdownNow();
+		}
+
+		if (registered > 0) {
+			logger.info(String.format("Registered %d DOIs", registered));
+		}
+
+		return registered;
+	}
+
+
+	/*
+	 * Registers a DOI for one queued resource. Returns true if a DOI was
+	 * registered, false if the resource was discarded or the attempt failed
+	 * and has been rescheduled.
+	 */
+	private boolean processResource(Resource resource)
+			throws ClassNotFoundException, SQLException {
+		String resourceId = resource.getResourceId();
+
+		try {
+			if (resource.getResourceType() == null ||
+				resource.getDoi() != null ||
+				resource.getDateDeactivated() != null
+			   ) {
+				// Deleted, deactivated, or already given a DOI since it was queued
+				discard(resourceId);
+				return false;
+			}
+
+			DataCiteMetadata dataCiteMetadata = prebuiltMetadata.get(resourceId);
+			if (dataCiteMetadata == null) {
+				// DOIs are created only for publicly accessible resources
+				if (!dataPackageRegistry.isPublicAccessible(resourceId)) {
+					discard(resourceId);
+					return false;
+				}
+
+				dataCiteMetadata = doiScanner.createDataCiteMetadata(resource);
+				if (dataCiteMetadata == null) {
+					throw new DOIException("Level-1 EML is not available for " + resource.getPackageId());
+				}
+			}
+
+			String doi = doiScanner.registerDataCiteMetadata(resource, dataCiteMetadata);
+			discard(resourceId);
+			afterRegistration(resource.getPackageId(), doi);
+			return true;
+		}
+		catch (Exception e) {
+			logger.error(String.format("DOI registration for %s failed: %s",
+					                   resource.getPackageId(), e.getMessage()));
+			pendingDOI.recordFailure(resourceId, e.getMessage(), retryInterval, maxRetryInterval);
+			return false;
+		}
+	}
+
+
+	private void discard(String resourceId)
+			throws ClassNotFoundException, SQLException {
+		pendingDOI.removeResource(resourceId);
+		prebuiltMetadata.remove(resourceId);
+	}
+
+
+	/*
+	 * Adds the newly registered DOI to the Level-1 EML and to the Solr index.
+	 * Failures here are logged but do not undo the registration.
+	 */
+	private void afterRegistration(String packageId, String doi) {
+		try {
+			EmlPackageIdFormat emlPackageIdFormat = new EmlPackageIdFormat();
+			EmlPackageId emlPackageId = emlPackageIdFormat.parse(packageId);
+			getDataPackageManager().addDoiToLevelOneMetadata(emlPackageId, doi);
+			SolrMetadataCatalog solrCatalog = new SolrMetadataCatalog(solrUrl);
+			solrCatalog.indexDoi(emlPackageId, doi);
+		}
+		catch (Exception e) {
+			logger.error(String.format("Error adding DOI %s to data package %s: %s",
+					                   doi, packageId, e.getMessage()));
+			e.printStackTrace();
+		}
+	}
+
+
+	private DataPackageManager getDataPackageManager() throws Exception {
+		synchronized (dataPackageManagerLock) {
+			if (dataPackageManager == null) {
+				dataPackageManager = new DataPackageManager();
+			}
+
+			return dataPackageManager;
+		}
+	}
+
+}
@@ -28,15 +28,12 @@ import java.util.Date;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.log4j.Logger;
 
-import edu.lternet.pasta.common.EmlPackageIdFormat;
-import edu.lternet.pasta.common.EmlPackageId;
 import edu.lternet.pasta.common.eml.EmlObject;
 import edu.lternet.pasta.common.eml.ResponsibleParty;
 import edu.lternet.pasta.common.eml.Title;
 import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
 import edu.lternet.pasta.datapackagemanager.DataPackageRegistry;
 import edu.lternet.pasta.datapackagemanager.JournalCitation;
-import edu.lternet.pasta.metadatamanager.SolrMetadataCatalog;
 import edu.ucsb.nceas.utilities.Options;
 
 /**
@@ -76,8 +73,10 @@ public class DOIScanner {
 	private String doiTest = null;
 	private Boolean isDoiTest = null;
 	private String solrUrl = null;
+	private Options options = null;
 	
 	private DataPackageRegistry dataPackageRegistry = null;
+	private PendingDOI pendingDOI = null;
 	
 	/*
 	 * Constructors
@@ -101,6 +100,7 @@ public class DOIScanner {
 		}
 
 		loadOptions(options);
+		this.options = options;
 		
 		if (this.doiTest.equalsIgnoreCase(TRUE)) {
 			this.setDoiTest(true);
@@ -131,6 +131,7 @@ public class DOIScanner {
 		}
 
 		dataPackageRegistry = new DataPackageRegistry(dbDriver, dbURL, dbUser, dbPassword);
+		pendingDOI = new PendingDOI(dbDriver, dbURL, dbUser, dbPassword);
 
 	}
 
@@ -141,6 +142,7 @@ public class DOIScanner {
 	public static void main(String[] args) {
 		try {
 			DOIScanner doiScanner = new DOIScanner();
+			doiScanner.doScanToBackfill();
 			doiScanner.doScanToRegister();
 			logger.info("Finished DOIScanner main program.");
 		}
@@ -157,6 +159,17 @@ public class DOIScanner {
 	public DataPackageRegistry getDataPackageRegistry() {
 	    return this.dataPackageRegistry;
 	}
+	
+	
+	/**
+	 * Replaces the DOI registrar selected by the datapackagemanager.doiProvider
+	 * property, e.g. with a local stub registrar for testing.
+	 * 
+	 * @param registrar   the Registrar to be used
+	 */
+	public void setRegistrar(Registrar registrar) {
+	    this.registrar = registrar;
+	}
 
 	/**
 	 * Loads Data Manager options from a configuration file.
@@ -189,37 +202,80 @@ public class DOIScanner {
 
 	
 	/**
-	 * Scans the Data Package Manager resource registry for resources that are (1)
-	 * not deactivated (not deleted), (2) publicly accessible and (3) do not have
-	 * a DOI. Resources that meet these criteria have a DataCite DOI registered to
-	 * them on their behalf.
+	 * Registers DOIs for the data packages in the pending DOI queue whose
+	 * next attempt is due. Resources are processed by the configured number
+	 * of concurrent workers. If the background DOI registration queue is
+	 * running, the work is done by that queue.
 	 * 
 	 * @throws DOIException
 	 */
 	public void doScanToRegister() throws Exception {
+		DOIRegistrationQueue doiRegistrationQueue = DOIRegistrationQueue.getInstance();
+		
+		if (doiRegistrationQueue == null) {
+			doiRegistrationQueue = new DOIRegistrationQueue(this.options, this);
+		}
 
-		ArrayList<Resource> resourceList = null;
+		try {
+			doiRegistrationQueue.drain();
+		} 
+		catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			throw new DOIException(e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Scans the Data Package Manager resource registry for resources that are
+	 * (1) not deactivated (not deleted) and (2) do not have a DOI, and adds
+	 * them to the pending DOI queue. Public accessibility is checked when
+	 * each queued resource is processed. This is needed only to seed the queue
+	 * with data packages that were never queued, e.g. those uploaded before
+	 * the queue existed.
+	 * 
+	 * @return the number of resources added to the queue
+	 * @throws DOIException
+	 */
+	public int doScanToBackfill() throws Exception {
+		int count = 0;
 
 		try {
-			resourceList = dataPackageRegistry.listDoilessResources();
-		} catch (SQLException e) {
+			count = pendingDOI.addDoilessResources();
+			logger.info(String.format("Queued %d DOI-less resources for DOI registration", count));
+		} 
+		catch (SQLException e) {
 			logger.error(e.getMessage());
 			e.printStackTrace();
 			throw new DOIException(e.getMessage());
 		}
 
-		// For all resources without a registered DOI
-		for (Resource resource : resourceList) {
-			String packageId = resource.getPackageId();
-			if (packageId != null) {
-				EmlPackageIdFormat epidf = new EmlPackageIdFormat();
-				EmlPackageId epid = epidf.parse(packageId);
-				String doi = processOneResource(resource);
-				if (epid != null && doi != null) {
-					SolrMetadataCatalog solrCatalog = new SolrMetadataCatalog(this.solrUrl);
-					solrCatalog.indexDoi(epid, doi);
-				}
-			}
+		return count;
+	}
+	
+	
+	/**
+	 * Queues a newly uploaded data package for DOI registration. The DataCite
+	 * metadata is built from the already-parsed Level-1 EML, so the registrar
+	 * request can be made later without re-reading the EML from disk. If the
+	 * background DOI registration queue is not running, the resource is
+	 * recorded in the pending DOI queue for the next scan.
+	 * 
+	 * @param resource    the dataPackage resource to be registered
+	 * @param emlObject   the parsed Level-1 EML of the data package
+	 * @throws Exception
+	 */
+	public void queueRegistration(Resource resource, EmlObject emlObject) 
+			throws Exception {
+		DOIRegistrationQueue doiRegistrationQueue = DOIRegistrationQueue.getInstance();
+
+		if (doiRegistrationQueue != null) {
+			DataCiteMetadata dataCiteMetadata = createDataCiteMetadata(resource, emlObject);
+			doiRegistrationQueue.submit(resource, dataCiteMetadata);
+		}
+		else {
+			pendingDOI.addResource(resource.getResourceId(), resource.getPackageId());
 		}
 	}
 	
@@ -320,9 +376,63 @@ public class DOIScanner {
 	 * @throws DOIException
 	 */
 	public String processOneResource(Resource resource) throws Exception {
+		String doi = null;
+		DataCiteMetadata dataCiteMetadata = createDataCiteMetadata(resource);
+
+		if (dataCiteMetadata != null) {
+			try {
+				doi = registerDataCiteMetadata(resource, dataCiteMetadata);
+			}
+			catch (RegistrarException e) {
+				logger.error(e.getMessage());
+				e.printStackTrace();
+			}
+		}
+
+		return doi;
+	}
+
+
+	/**
+	 * Builds the DataCite metadata for a resource from its stored Level-1 EML.
+	 * 
+	 * @param resource    the Resource to be registered
+	 * @return the DataCite metadata object, or null if the Level-1 EML does not exist
+	 * 
+	 * @throws DOIException
+	 */
+	public DataCiteMetadata createDataCiteMetadata(Resource resource) throws Exception {
+		DataCiteMetadata dataCiteMetadata = null;
+		String packageId = resource.getPackageId();
+
+		// Build EML document object
+		File emlFile = new File(this.getEmlFilePath(packageId));
+
+		if (emlFile.exists()) {
+			EmlObject emlObject = new EmlObject(emlFile);
+			dataCiteMetadata = createDataCiteMetadata(resource, emlObject);
+		} 
+		else {
+			String gripe = "createDataCiteMetadata: Level-1-EML.xml file does not exist for "
+			    + packageId;
+			logger.error(gripe);
+		}
+
+		return dataCiteMetadata;
+	}
+
 
-		File emlFile = null;
-		EmlObject emlObject = null;
+	/**
+	 * Builds the DataCite metadata for a resource from its parsed Level-1 EML.
+	 * 
+	 * @param resource    the Resource to be registered
+	 * @param emlObject   the parsed Level-1 EML
+	 * @return the DataCite metadata object
+	 * 
+	 * @throws DOIException
+	 */
+	public DataCiteMetadata createDataCiteMetadata(Resource resource, EmlObject emlObject) 
+			throws Exception {
 		String resourceId = null;
 		String doiUrl = null;
 		String publicationYear = null;
@@ -333,121 +443,123 @@ public class DOIScanner {
 		AlternateIdentifier alternateIdentifier = null;
 		Date time = null;
 		String doi = resource.getDoi();
-        String packageId = resource.getPackageId();
+		String packageId = resource.getPackageId();
+
+		// Set local metadata attributes
+		resourceId = resource.getResourceId();
+		String doiUrlHead = this.doiUrlHeadEDI;
+		String scope = scopeFromPackageId(packageId);
+		if (isLTERScope(scope)) {
+			doiUrlHead = this.doiUrlHeadLTER;
+		}
+		doiUrl = doiUrlHead + packageId;
+		logger.info("DOI landing page URL will be set to: " + doiUrl);
+		publicationYear = this.getResourceCreateYear(resource.getDateCreated());
+		creators = emlObject.getCreators();
+		titles = emlObject.getTitles();
+		String abstractText = emlObject.getAbstractText();
+
+		String md5Id = null;
+		if (doi != null) {
+		    md5Id = md5IdFromDoi(doi);
+		} 
+		else {
+		    // If DOI testing, add salt to resource identifier to create unique DOI
+            // so subsequent tests will not result in DOI create errors.
+		    if (this.isDoiTest) {
+		        time = new Date();
+		        Long salt = time.getTime();
+		        md5Id = DigestUtils.md5Hex(resourceId + salt.toString());
+		    } 
+		    else {
+		        md5Id = DigestUtils.md5Hex(resourceId);
+		    }
+		}
+		
+        digitalObjectIdentifier = new DigitalObjectIdentifier(md5Id);
+
+		resourceType = new ResourceType(ResourceType.DATASET);
+		resourceType.setResourceType(resource.getResourceType());
+		alternateIdentifier = new AlternateIdentifier(AlternateIdentifier.URL);
+		alternateIdentifier.setAlternateIdentifier(resourceId);
+
+		// Create and populate the DataCite metadata object
+		DataCiteMetadata dataCiteMetadata = new DataCiteMetadata();
+
+		dataCiteMetadata.setLocationUrl(doiUrl);
+		dataCiteMetadata.setPublicationYear(publicationYear);
+		dataCiteMetadata.setCreators(creators);
+		dataCiteMetadata.setTitles(titles);
+		dataCiteMetadata.setDigitalObjectIdentifier(digitalObjectIdentifier);
+		dataCiteMetadata.setResourceType(resourceType);
+		dataCiteMetadata.setAlternateIdentifier(alternateIdentifier);
+		dataCiteMetadata.setDescription(abstractText);
+		
+		/*
+		 * Find all the journal citations for this data package and tell the
+		 * DataCite metadata object to include them as relatedIdentifiers.
+		 */
 
-			// Build EML document object
-			emlFile = new File(this.getEmlFilePath(packageId));
-			
-			if (emlFile.exists()) {
-				emlObject = new EmlObject(emlFile);
-
-				// Set local metadata attributes
-				resourceId = resource.getResourceId();
-				String doiUrlHead = this.doiUrlHeadEDI;
-				String scope = scopeFromPackageId(packageId);
-				if (isLTERScope(scope)) {
-					doiUrlHead = this.doiUrlHeadLTER;
-				}
-				doiUrl = doiUrlHead + packageId;
-				logger.info("DOI landing page URL will be set to: " + doiUrl);
-				publicationYear = this.getResourceCreateYear(resource.getDateCreated());
-				creators = emlObject.getCreators();
-				titles = emlObject.getTitles();
-				String abstractText = emlObject.getAbstractText();
-
-				String md5Id = null;
-				if (doi != null) {
-				    md5Id = md5IdFromDoi(doi);
-				} 
-				else {
-				    // If DOI testing, add salt to resource identifier to create unique DOI
-                    // so subsequent tests will not result in DOI create errors.
-				    if (this.isDoiTest) {
-				        time = new Date();
-				        Long salt = time.getTime();
-				        md5Id = DigestUtils.md5Hex(resourceId + salt.toString());
-				    } 
-				    else {
-				        md5Id = DigestUtils.md5Hex(resourceId);
-				    }
-				}
-				
-                digitalObjectIdentifier = new DigitalObjectIdentifier(md5Id);
-
-				resourceType = new ResourceType(ResourceType.DATASET);
-				resourceType.setResourceType(resource.getResourceType());
-				alternateIdentifier = new AlternateIdentifier(AlternateIdentifier.URL);
-				alternateIdentifier.setAlternateIdentifier(resourceId);
-
-				// Create and populate the DataCite metadata object
-				DataCiteMetadata dataCiteMetadata = new DataCiteMetadata();
-
-				dataCiteMetadata.setLocationUrl(doiUrl);
-				dataCiteMetadata.setPublicationYear(publicationYear);
-				dataCiteMetadata.setCreators(creators);
-				dataCiteMetadata.setTitles(titles);
-				dataCiteMetadata.setDigitalObjectIdentifier(digitalObjectIdentifier);
-				dataCiteMetadata.setResourceType(resourceType);
-				dataCiteMetadata.setAlternateIdentifier(alternateIdentifier);
-				dataCiteMetadata.setDescription(abstractText);
-				
-				/*
-				 * Find all the journal citations for this data package and tell the
-				 * DataCite metadata object to include them as relatedIdentifiers.
-				 */
-
-				String allParam = null;
-				Integer identifier = identifierFromPackageId(packageId);
-				Integer revision = revisionFromPackageId(packageId);
-
-				ArrayList<JournalCitation> journalCitations = dataPackageRegistry.listDataPackageCitations(scope,
-						identifier, revision, allParam);
-				dataCiteMetadata.addJournalCitations(journalCitations);
-
-				try {
-					doi = dataCiteMetadata.getDigitalObjectIdentifier().getDoi();
-					registrar.registerDataCiteMetadata(dataCiteMetadata);
-				} 
-				catch (RegistrarException e) {
-					/*
-					 * In the event that a DOI registration succeeded, but
-					 * failed to be recorded in the resource registry, the following
-					 * exception allows the resource registry to be updated with the DOI
-					 * string.
-					 */
-
-					if (e.getMessage().equals("identifier already exists")) {
-						String msg = String.format(
-                            "%s already exists in DOI registry but it needs to be updated in the resource registry for %s.", 
-                            doi, resource.getPackageId()
-                        );
-						logger.warn(msg + "  Proceeding with resource registry update...");
-					} 
-					else {
-						logger.error(e.getMessage());
-						e.printStackTrace();
-						doi = null;
-					}
-				}
-
-				if (doi != null) {
-					// Update Data Package Manager resource registry with DOI
-					try {
-						dataPackageRegistry.addResourceDoi(resourceId, doi);
-					} 
-					catch (SQLException e) {
-						logger.error(e.getMessage());
-						e.printStackTrace();
-						throw new DOIException(e.getMessage());
-					}
-				}
+		String allParam = null;
+		Integer identifier = identifierFromPackageId(packageId);
+		Integer revision = revisionFromPackageId(packageId);
+
+		ArrayList<JournalCitation> journalCitations = dataPackageRegistry.listDataPackageCitations(scope,
+				identifier, revision, allParam);
+		dataCiteMetadata.addJournalCitations(journalCitations);
+
+		return dataCiteMetadata;
+	}
+
+
+	/**
+	 * Registers the DataCite metadata with the DOI registrar and records the
+	 * DOI in the resource registry.
+	 * 
+	 * @param resource           the Resource to be registered
+	 * @param dataCiteMetadata   the DataCite metadata for the resource
+	 * @return doi               the DOI value that was registered
+	 * 
+	 * @throws RegistrarException if the registrar rejects the registration
+	 * @throws DOIException if the DOI cannot be recorded in the resource registry
+	 */
+	public String registerDataCiteMetadata(Resource resource, DataCiteMetadata dataCiteMetadata) 
+			throws Exception {
+		String doi = dataCiteMetadata.getDigitalObjectIdentifier().getDoi();
+
+		try {
+			registrar.registerDataCiteMetadata(dataCiteMetadata);
+		} 
+		catch (RegistrarException e) {
+			/*
+			 * In the event that a DOI registration succeeded, but
+			 * failed to be recorded in the resource registry, the following
+			 * exception allows the resource registry to be updated with the DOI
+			 * string.
+			 */
+
+			if (e.getMessage().equals("identifier already exists")) {
+				String msg = String.format(
+                    "%s already exists in DOI registry but it needs to be updated in the resource registry for %s.", 
+                    doi, resource.getPackageId()
+                );
+				logger.warn(msg + "  Proceeding with resource registry update...");
 			} 
 			else {
-				String gripe = "doScanToRegister: Level-1-EML.xml file does not exist for "
-				    + resource.getPackageId();
-				logger.error(gripe);
+				throw (e);
 			}
-			
+		}
+
+		// Update Data Package Manager resource registry with DOI
+		try {
+			dataPackageRegistry.addResourceDoi(resource.getResourceId(), doi);
+		} 
+		catch (SQLException e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			throw new DOIException(e.getMessage());
+		}
+
 		return doi;
 	}
 
@@ -3,6 +3,7 @@ package edu.lternet.pasta.doi;
 import java.io.IOException;
 import java.sql.SQLException;
 
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -10,6 +11,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
 
+import edu.lternet.pasta.datapackagemanager.ConfigurationListener;
+import edu.ucsb.nceas.utilities.Options;
+
 /**
  * @author servilla
  * @since Nov 21, 2012
@@ -33,6 +37,32 @@ public class DOIServlet extends HttpServlet {
 		// TODO Auto-generated constructor stub
 	}
 
+	/**
+	 * Starts the DOI registration queue when the server starts up.
+	 * 
+	 * @see Servlet#init(ServletConfig)
+	 */
+	public void init(ServletConfig config) throws ServletException {
+		Options options = ConfigurationListener.getOptions();
+
+		try {
+			DOIRegistrationQueue.start(options);
+		}
+		catch (Exception e) {
+			logger.error("Unable to start the DOI registration queue: " + e.getMessage());
+			e.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * @see Servlet#destroy()
+	 */
+	public void destroy() {
+		DOIRegistrationQueue.stop();
+	}
+
+
 	/**
 	 * @see HttpServlet#doGet(HttpServletRequest request, HttpServletResponse
 	 *      response)
@@ -53,6 +83,16 @@ public class DOIServlet extends HttpServlet {
 
 		try {
 			DOIScanner doiScanner = new DOIScanner();
+			
+			/*
+			 * Optionally seed the pending DOI queue with every DOI-less
+			 * data package before registering, e.g. "/doiscan?backfill=true"
+			 */
+			String backfill = request.getParameter("backfill");
+			if (backfill != null && backfill.equalsIgnoreCase("true")) {
+				doiScanner.doScanToBackfill();
+			}
+			
 			doiScanner.doScanToRegister();
 
 			/*
@@ -0,0 +1,331 @@
+/*
+ *
+ * Copyright 2011, 2012, 2013 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.doi;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+import org.apache.log4j.Logger;
+
+
+/**
+ * @author dcosta
+ *
+ * The PendingDOI class maintains the queue of dataPackage resources that are
+ * awaiting DOI registration. Resources are added to the queue when they are
+ * uploaded and removed once their DOI has been registered and recorded in the
+ * resource registry. A failed registration is retried with an increasing
+ * delay, so a registrar outage does not cause the same resources to be
+ * retried on every pass.
+ */
+public class PendingDOI {
+
+  /*
+   * Class variables
+   */
+
+  private static Logger logger = Logger.getLogger(PendingDOI.class);
+
+
+  /*
+   * Instance variables
+   */
+
+  private final String DOI_PENDING = "datapackagemanager.DOI_PENDING";
+  private final String RESOURCE_REGISTRY = "datapackagemanager.RESOURCE_REGISTRY";
+
+  private String dbDriver;           // database driver
+  private String dbURL;              // database URL
+  private String dbUser;             // database user name
+  private String dbPassword;         // database user password
+
+
+  /*
+   * Constructors
+   */
+
+	/**
+	 * Constructs a new PendingDOI object.
+	 *
+	 * @param dbDriver
+	 *            the database driver
+	 * @param dbURL
+	 *            the database URL
+	 * @paramm dbUser
+	 *            the database user name
+	 * @param dbPassword
+	 *            the database user password
+	 */
+	public PendingDOI(String dbDriver, String dbURL, String dbUser, String dbPassword) {
+		this.dbDriver = dbDriver;
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPassword = dbPassword;
+	}
+
+
+  /*
+   * Instance methods
+   */
+
+	/**
+	 * Adds a dataPackage resource to the pending DOI queue. A resource that
+	 * is already queued keeps its existing retry state.
+	 *
+	 * @param resourceId   the dataPackage resource id
+	 * @param packageId    the packageId of the data package
+	 */
+	public void addResource(String resourceId, String packageId)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String insertString =
+				"INSERT INTO " + DOI_PENDING +
+				"(resource_id, package_id, date_queued, next_attempt, attempts) " +
+				"VALUES(?,?,now(),now(),0) ON CONFLICT (resource_id) DO NOTHING";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(insertString);
+			pstmt.setString(1, resourceId);
+			pstmt.setString(2, packageId);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error queuing DOI registration for %s: %s",
+					                   packageId, e.getMessage()));
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Adds every active dataPackage resource that lacks a DOI to the pending
+	 * DOI queue. This seeds the queue with data packages that were uploaded
+	 * before the queue existed (or whose registration was never queued); it
+	 * does not need to be run routinely. Access control is checked when each
+	 * resource is processed.
+	 *
+	 * @return the number of resources that were added to the queue
+	 */
+	public int addDoilessResources()
+			throws ClassNotFoundException, SQLException {
+		int rowCount = 0;
+		Connection connection = null;
+		String insertString =
+				"INSERT INTO " + DOI_PENDING +
+				"(resource_id, package_id, date_queued, next_attempt, attempts) " +
+				"SELECT resource_id, package_id, now(), now(), 0 FROM " + RESOURCE_REGISTRY +
+				" WHERE resource_type='dataPackage' AND doi IS NULL AND date_deactivated IS NULL" +
+				" ON CONFLICT (resource_id) DO NOTHING";
+
+		try {
+			connection = getConnection();
+			Statement stmt = connection.createStatement();
+			rowCount = stmt.executeUpdate(insertString);
+			stmt.close();
+		}
+		catch (SQLException e) {
+			logger.error("Error queuing DOI-less resources: " + e.getMessage());
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return rowCount;
+	}
+
+
+	/**
+	 * Lists queued resources whose next registration attempt is due, oldest
+	 * first. The DOI and deactivation date are taken from the resource
+	 * registry so that the caller can discard resources that have since been
+	 * given a DOI or deleted.
+	 *
+	 * @param limit   the maximum number of resources to return
+	 * @return a list of Resource objects
+	 */
+	public ArrayList<Resource> listDueResources(int limit)
+			throws ClassNotFoundException, SQLException {
+		ArrayList<Resource> resources = new ArrayList<Resource>();
+		Connection connection = null;
+		String selectString =
+				"SELECT p.resource_id, p.package_id, r.resource_type, r.date_created, " +
+				"r.date_deactivated, r.doi FROM " + DOI_PENDING + " p LEFT JOIN " +
+				RESOURCE_REGISTRY + " r ON r.resource_id=p.resource_id " +
+				"WHERE p.next_attempt<=now() ORDER BY p.next_attempt ASC LIMIT ?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(selectString);
+			pstmt.setInt(1, limit);
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				Resource resource = new Resource();
+				resource.setResourceId(rs.getString(1));
+				resource.setPackageId(rs.getString(2));
+				resource.setResourceType(rs.getString(3));
+				resource.setDateCreated(rs.getString(4));
+				resource.setDateDeactivated(rs.getString(5));
+				resource.setDoi(rs.getString(6));
+				resources.add(resource);
+			}
+
+			pstmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+
+		return resources;
+	}
+
+
+	/**
+	 * Removes a resource from the pending DOI queue.
+	 *
+	 * @param resourceId   the dataPackage resource id
+	 */
+	public void removeResource(String resourceId)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String deleteString = "DELETE FROM " + DOI_PENDING + " WHERE resource_id=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(deleteString);
+			pstmt.setString(1, resourceId);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		catch (SQLException e) {
+			logger.error(String.format("Error removing pending DOI record for %s: %s",
+					                   resourceId, e.getMessage()));
+			throw (e);
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+	/**
+	 * Records a failed registration attempt. The next attempt is scheduled
+	 * after retryInterval milliseconds, doubling with each further failure
+	 * up to maxRetryInterval milliseconds.
+	 *
+	 * @param resourceId         the dataPackage resource id
+	 * @param errorMessage       the error message to be recorded
+	 * @param retryInterval      the delay after the first failure, in milliseconds
+	 * @param maxRetryInterval   the maximum delay, in milliseconds
+	 */
+	public void recordFailure(String resourceId, String errorMessage,
+			                  long retryInterval, long maxRetryInterval)
+			throws ClassNotFoundException, SQLException {
+		Connection connection = null;
+		String updateString =
+				"UPDATE " + DOI_PENDING +
+				" SET attempts=attempts+1, last_error=?," +
+				" next_attempt=now() + LEAST(? * POWER(2, LEAST(attempts, 30)), ?) * INTERVAL '1 millisecond'" +
+				" WHERE resource_id=?";
+
+		try {
+			connection = getConnection();
+			PreparedStatement pstmt = connection.prepareStatement(updateString);
+			pstmt.setString(1, errorMessage);
+			pstmt.setLong(2, retryInterval);
+			pstmt.setLong(3, maxRetryInterval);
+			pstmt.setString(4, resourceId);
+			pstmt.executeUpdate();
+			pstmt.close();
+		}
+		finally {
+			returnConnection(connection);
+		}
+	}
+
+
+  /**
+   * Returns a connection to the database.
+   *
+   * @return  conn  the database Connection object
+   */
+  public Connection getConnection()
+          throws ClassNotFoundException, SQLException {
+    Connection conn = null;
+    SQLWarning warn;
+
+    // Load the jdbc driver
+    try {
+      Class.forName(dbDriver);
+    }
+    catch (ClassNotFoundException e) {
+      logger.error("Can't load driver " + e.getMessage());
+      throw(e);
+    }
+
+    // Make the database connection
+    conn = DriverManager.getConnection(dbURL, dbUser, dbPassword);
+
+    // If a SQLWarning object is available, print its warning(s).
+    // There may be multiple warnings chained.
+    warn = conn.getWarnings();
+
+    while (warn != null) {
+      logger.warn("SQLState: " + warn.getSQLState());
+      logger.warn("Message:  " + warn.getMessage());
+      logger.warn("Vendor: " + warn.getErrorCode());
+      warn = warn.getNextWarning();
+    }
+
+    return conn;
+  }
+
+
+	/**
+	 * Closes the connection to the database.
+	 */
+	public void returnConnection(Connection conn) {
+		try {
+			if (conn != null) {
+				conn.close();
+			}
+		}
+		// We won't worry about throwing an exception if the connection return
+		// fails. Just issue a log error.
+		catch (SQLException e) {
+			logger.error("Failed to close connection. Database access failed " +
+		                 e.getMessage());
+		}
+	}
+
+}
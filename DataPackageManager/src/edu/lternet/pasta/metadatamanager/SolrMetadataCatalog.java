@@ -9,10 +9,12 @@ import javax.ws.rs.core.UriInfo;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrInputDocument;
 
 import edu.lternet.pasta.common.EmlPackageId;
 import edu.lternet.pasta.common.QueryString;
 import edu.lternet.pasta.datapackagemanager.solr.index.SolrIndex;
+import edu.lternet.pasta.datapackagemanager.solr.index.SolrIndexQueue;
 import edu.lternet.pasta.datapackagemanager.solr.search.SimpleSolrSearch;
 
 
@@ -67,6 +69,12 @@ public class SolrMetadataCatalog implements MetadataCatalog {
     public String deleteEmlDocument(EmlPackageId epid) {
     	String result = null;
     	
+    	SolrIndexQueue solrIndexQueue = SolrIndexQueue.getInstance();
+    	if (solrIndexQueue != null) {
+    		solrIndexQueue.submitDelete(epid);
+    		return result;
+    	}
+    	
     	SolrIndex solrIndex = new SolrIndex(solrUrl);
     	
     	try {
@@ -82,10 +90,29 @@ public class SolrMetadataCatalog implements MetadataCatalog {
     }
     
     
+    /*
+     * When the Solr index queue is running (i.e. inside the web application),
+     * the document is parsed here, so that a parsing error is still reported
+     * to the caller, but it is sent to Solr asynchronously so that uploads
+     * do not wait on Solr. Otherwise, index the document directly.
+     */
     private String indexEmlDocument(EmlPackageId epid, String emlDocument) {
     	String result = null;
     	SolrIndex solrIndex = new SolrIndex(solrUrl);
     	
+    	SolrIndexQueue solrIndexQueue = SolrIndexQueue.getInstance();
+    	if (solrIndexQueue != null) {
+    		SolrInputDocument solrInputDocument = solrIndex.createSolrInputDocument(epid, emlDocument);
+    		if (solrInputDocument != null) {
+    			solrIndexQueue.submitIndex(epid, solrInputDocument);
+    		}
+    		else {
+    			result = String.format("Solr indexing failed with error while parsing docid %s", 
+    					               SolrIndex.composeId(epid));
+    		}
+    		return result;
+    	}
+    	
     	try {
     		result = solrIndex.indexEmlDocument(epid, emlDocument);
     		solrIndex.commit(); // Always commit after individual document uploads
@@ -101,6 +128,17 @@ public class SolrMetadataCatalog implements MetadataCatalog {
     
     public String indexDoi(EmlPackageId epid, String doi) {
     	String result = null;
+    	
+    	/*
+    	 * The queued index task picks up the DOI from the resource registry
+    	 * when it builds the Solr document.
+    	 */
+    	SolrIndexQueue solrIndexQueue = SolrIndexQueue.getInstance();
+    	if (solrIndexQueue != null) {
+    		solrIndexQueue.submitIndex(epid);
+    		return result;
+    	}
+    	
     	SolrIndex solrIndex = new SolrIndex(solrUrl);
     	
     	try {
@@ -158,6 +196,12 @@ public class SolrMetadataCatalog implements MetadataCatalog {
 							simpleSolrSearch.addFilterQuery(fq);
 						}
 					}
+					else if (key.equals("facet.query")) {
+						List<String> values = queryParams.get(key);
+						for (String facetQuery : values) {
+							simpleSolrSearch.addFacetQuery(facetQuery);
+						}
+					}
 					else if (key.equals("start")) {
 						List<String> values = queryParams.get(key);
 						String value = values.get(0);
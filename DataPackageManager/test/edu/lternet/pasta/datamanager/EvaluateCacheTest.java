@@ -0,0 +1,207 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datamanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.quality.QualityCheck;
+
+/**
+ * Junit test case for the EvaluateCache class: an entity evaluated from
+ * data that has changed by the time of the upload must not be reused, and
+ * an evaluate that found quality errors must not be cached.
+ *
+ * @author dcosta
+ */
+public class EvaluateCacheTest {
+
+	/*
+	 * Instance variables
+	 */
+
+	private HttpServer server = null;
+	private String dataUrl = null;
+	private volatile String eTag = "\"v1\"";
+	private File dataFile = null;
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+		// Serves a data entity whose ETag changes when its data changes
+		server.createContext("/data.csv", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] body = "a,b\n1,2\n".getBytes("UTF-8");
+				exchange.getResponseHeaders().add("ETag", eTag);
+				if ("HEAD".equals(exchange.getRequestMethod())) {
+					exchange.getResponseHeaders().add("Content-Length", String.valueOf(body.length));
+					exchange.sendResponseHeaders(200, -1);
+				}
+				else {
+					exchange.sendResponseHeaders(200, body.length);
+					OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				}
+				exchange.close();
+			}
+		});
+
+		// Serves a data entity without validators
+		server.createContext("/novalidators.csv", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, -1);
+				exchange.close();
+			}
+		});
+
+		server.start();
+		dataUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/data.csv";
+		dataFile = File.createTempFile("EvaluateCacheTest", ".csv");
+		FileUtils.writeStringToFile(dataFile, "a,b\n1,2\n", "UTF-8");
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		FileUtils.deleteQuietly(dataFile);
+	}
+
+
+	private static Entity makeEntity(String md5, String sha1) {
+		Entity entity = new Entity("knb-lter-nin.1.1", "entity-1", "data.csv", null, null);
+		if (md5 != null) {
+			entity.addPhysicalAuthentication("MD5", md5);
+		}
+		if (sha1 != null) {
+			entity.addPhysicalAuthentication("SHA-1", sha1);
+		}
+		return entity;
+	}
+
+
+	/**
+	 * Evaluate, change the data at an HTTP URL, then upload: the evaluated
+	 * entity is reused only while the ETag is unchanged.
+	 */
+	@Test
+	public void testHttpDataChanged() {
+		String validator = EvaluateCache.getValidator(dataUrl);
+		assertNotNull(validator);
+		Entity evaluatedEntity = makeEntity(null, null);
+		Entity entity = makeEntity(null, null);
+		assertTrue(EvaluateCache.isUnchanged(evaluatedEntity, validator, entity, dataUrl));
+
+		eTag = "\"v2\"";
+		assertFalse(EvaluateCache.isUnchanged(evaluatedEntity, validator, entity, dataUrl));
+	}
+
+
+	/**
+	 * Evaluate, change the data of a file URL, then upload.
+	 */
+	@Test
+	public void testFileDataChanged() throws Exception {
+		String url = dataFile.toURI().toString().replaceFirst("^file:/+", "file:///");
+		String validator = EvaluateCache.getValidator(url);
+		assertNotNull(validator);
+		Entity evaluatedEntity = makeEntity(null, null);
+		Entity entity = makeEntity(null, null);
+		assertTrue(EvaluateCache.isUnchanged(evaluatedEntity, validator, entity, url));
+
+		FileUtils.writeStringToFile(dataFile, "a,b\n1,2\n3,4\n", "UTF-8");
+		assertFalse(EvaluateCache.isUnchanged(evaluatedEntity, validator, entity, url));
+	}
+
+
+	/**
+	 * Data that cannot be revalidated is never reused.
+	 */
+	@Test
+	public void testNoValidators() {
+		String url = dataUrl.replace("data.csv", "novalidators.csv");
+		assertNull(EvaluateCache.getValidator(url));
+		assertNull(EvaluateCache.getValidator("ftp://example.org/data.csv"));
+		assertFalse(EvaluateCache.isUnchanged(makeEntity(null, null), null, makeEntity(null, null), url));
+	}
+
+
+	/**
+	 * A digest declared in the EML decides, whatever the validators say.
+	 */
+	@Test
+	public void testDeclaredDigest() {
+		String md5 = "0123456789abcdef0123456789abcdef";
+		Entity evaluatedEntity = makeEntity(md5, null);
+		evaluatedEntity.setMd5HashValue(md5.toUpperCase());
+		assertTrue(EvaluateCache.isUnchanged(evaluatedEntity, null, makeEntity(md5, null), dataUrl));
+
+		evaluatedEntity.setMd5HashValue("fedcba9876543210fedcba9876543210");
+		String validator = EvaluateCache.getValidator(dataUrl);
+		assertFalse(EvaluateCache.isUnchanged(evaluatedEntity, validator, makeEntity(md5, null), dataUrl));
+	}
+
+
+	/**
+	 * An evaluate with an entity-level quality error is not cached.
+	 */
+	@Test
+	public void testQualityErrorNotCacheable() {
+		Map<String, Entity> entities = new LinkedHashMap<String, Entity>();
+		Entity entity = makeEntity(null, null);
+		entities.put(entity.getId(), entity);
+		assertTrue(EvaluateCache.isCacheable(entities));
+
+		QualityCheck qualityCheck = new QualityCheck("numberOfRecords");
+		qualityCheck.setStatus(QualityCheck.Status.error);
+		entity.addQualityCheck(qualityCheck);
+		assertFalse(EvaluateCache.isCacheable(entities));
+		assertEquals(1, entities.size());
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lternet.pasta.common.security.auth.AuthSystemDef;
+import edu.lternet.pasta.common.security.authorization.Rule;
+import edu.lternet.pasta.common.security.token.AuthToken;
+import edu.lternet.pasta.common.security.token.AuthTokenFactory;
+
+/**
+ * Junit test case for the ProvenanceLineage class, building a lineage
+ * graph from provenance matrix rows as DataPackageRegistry returns them.
+ *
+ * @author dcosta
+ */
+public class ProvenanceLineageTest {
+
+	/*
+	 * Instance variables
+	 */
+
+	private ProvenanceLineage lineage = null;
+	private AuthToken publicToken = null;
+	private AuthToken ownerToken = null;
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Before
+	public void setUp() throws Exception {
+		long expiration = System.currentTimeMillis() + 60000L;
+		publicToken = AuthTokenFactory.makeCookieAuthToken("public",
+				AuthSystemDef.KNB, expiration, new HashSet<String>());
+		ownerToken = AuthTokenFactory.makeCookieAuthToken("uid=owner,o=EDI,dc=edirepository,dc=org",
+				AuthSystemDef.KNB, expiration, new HashSet<String>());
+
+		/*
+		 * d (external, by URL) -> a.1.1 -> b.1.1 -> c.1.1, where b.1.1 is
+		 * also a source of a.1.1; and b.1.1 -> e.1.1, which is private
+		 */
+		lineage = new ProvenanceLineage("b.1.1", "http://example.org/b", 5);
+		lineage.addEdge(ProvenanceLineage.SOURCE, 1, "b.1.1", "Title B", "http://example.org/b",
+				"a.1.1", "Title A", null);
+		lineage.addEdge(ProvenanceLineage.DERIVED, 1, "c.1.1", "Title C", "http://example.org/c",
+				"b.1.1", "Title B", null);
+		lineage.addEdge(ProvenanceLineage.DERIVED, 1, "e.1.1", "Title E", "http://example.org/e",
+				"b.1.1", "Title B", null);
+		lineage.addEdge(ProvenanceLineage.SOURCE, 2, "a.1.1", "Title A", "http://example.org/a",
+				null, "Title D", "http://example.org/d");
+		lineage.addEdge(ProvenanceLineage.SOURCE, 2, "a.1.1", "Title A", "http://example.org/a",
+				"b.1.1", "Title B", null);
+
+		lineage.addDataPackage("a.1.1", "uid=owner,o=EDI,dc=edirepository,dc=org");
+		lineage.addDataPackage("b.1.1", "uid=owner,o=EDI,dc=edirepository,dc=org");
+		lineage.addDataPackage("c.1.1", "uid=owner,o=EDI,dc=edirepository,dc=org");
+		lineage.addDataPackage("e.1.1", "uid=owner,o=EDI,dc=edirepository,dc=org");
+		for (String packageId : new String[] { "a.1.1", "b.1.1", "c.1.1" }) {
+			Rule rule = new Rule();
+			rule.setPrincipal("public");
+			rule.setAccessType("allow");
+			rule.setOrder("allowFirst");
+			rule.setPermission(Rule.Permission.read);
+			lineage.addAccessRule(packageId, rule);
+		}
+	}
+
+
+	/**
+	 * Nodes are added once, at the depth first reached, and edges once,
+	 * including the edge that closes the a-b cycle.
+	 */
+	@Test
+	public void testGraph() {
+		assertEquals(5, lineage.getNodeCount());
+		assertEquals(5, lineage.getEdgeCount());
+		assertEquals(4, lineage.getPackageIds().size());
+		assertTrue(lineage.isRegistered("b.1.1"));
+		assertFalse(lineage.isRegistered("x.1.1"));
+
+		String xml = lineage.toXML(publicToken);
+		assertTrue(xml.contains("<lineage packageId=\"b.1.1\" maxDepth=\"5\">"));
+		assertTrue(xml.contains("<node id=\"0\" relation=\"self\" depth=\"0\" packageId=\"b.1.1\" title=\"Title B\" url=\"http://example.org/b\"/>"));
+		assertTrue(xml.contains("<node id=\"1\" relation=\"source\" depth=\"1\" packageId=\"a.1.1\" title=\"Title A\""));
+		assertTrue(xml.contains("<node id=\"4\" relation=\"source\" depth=\"2\" title=\"Title D\" url=\"http://example.org/d\"/>"));
+		assertTrue(xml.contains("<edge source=\"1\" derived=\"0\"/>"));
+		assertTrue(xml.contains("<edge source=\"0\" derived=\"1\"/>"));
+		assertTrue(xml.contains("<edge source=\"4\" derived=\"1\"/>"));
+	}
+
+
+	/**
+	 * The title of a package the user may not read is omitted, but the
+	 * package stays in the graph.
+	 */
+	@Test
+	public void testAccess() {
+		assertFalse(lineage.isReadable(publicToken, "e.1.1"));
+		assertTrue(lineage.isReadable(ownerToken, "e.1.1"));
+		assertTrue(lineage.isReadable(publicToken, "x.1.1"));
+
+		String xml = lineage.toXML(publicToken);
+		assertTrue(xml.contains("packageId=\"e.1.1\" readable=\"false\""));
+		assertFalse(xml.contains("Title E"));
+		assertTrue(xml.contains("<edge source=\"0\" derived=\"3\"/>"));
+
+		xml = lineage.toXML(ownerToken);
+		assertTrue(xml.contains("packageId=\"e.1.1\" title=\"Title E\""));
+		assertFalse(xml.contains("readable=\"false\""));
+	}
+
+}
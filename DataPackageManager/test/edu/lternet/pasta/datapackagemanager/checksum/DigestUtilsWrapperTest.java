@@ -0,0 +1,83 @@
+/**
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager.checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class DigestUtilsWrapperTest {
+
+  private static File testFile = null;
+
+
+  @BeforeClass public static void setUpBeforeClass() throws Exception {
+    testFile = File.createTempFile("DigestUtilsWrapperTest", ".dat");
+    byte[] bytes = new byte[200000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) (i % 251);
+    }
+    FileOutputStream fos = new FileOutputStream(testFile);
+    fos.write(bytes);
+    fos.close();
+  }
+
+
+  @AfterClass public static void tearDownAfterClass() {
+    testFile.delete();
+  }
+
+
+  /**
+   * The single-pass checksums should match the individually calculated ones.
+   */
+  @Test public void testGetMD5AndSHA1Checksums() throws Exception {
+    String[] checksums = DigestUtilsWrapper.getMD5AndSHA1Checksums(testFile, null);
+    assertEquals(DigestUtilsWrapper.getMD5Checksum(testFile), checksums[0]);
+    assertEquals(DigestUtilsWrapper.getSHA1Checksum(testFile), checksums[1]);
+  }
+
+
+  /**
+   * Reading 200000 bytes at 100000 bytes per second, with an initial burst
+   * of one second's worth, should take roughly one second.
+   */
+  @Test public void testReadRateLimiter() throws Exception {
+    ReadRateLimiter readRateLimiter = new ReadRateLimiter(100000L);
+    long start = System.currentTimeMillis();
+    String[] checksums = DigestUtilsWrapper.getMD5AndSHA1Checksums(testFile, readRateLimiter);
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(DigestUtilsWrapper.getSHA1Checksum(testFile), checksums[1]);
+    assertTrue("Expected the read to be throttled, took " + elapsed + " ms", elapsed >= 800L);
+  }
+
+}
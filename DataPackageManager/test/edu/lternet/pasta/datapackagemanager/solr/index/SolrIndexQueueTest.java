@@ -0,0 +1,192 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.datapackagemanager.solr.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.lternet.pasta.common.EmlPackageId;
+
+/**
+ * Junit test case for the SolrIndexQueue class, using in-memory stand-ins
+ * for Solr and the pending index table: a document that Solr rejects must
+ * not hold back the rest of its batch, and is set aside as a dead letter
+ * after the maximum number of attempts.
+ *
+ * @author dcosta
+ */
+public class SolrIndexQueueTest {
+
+	/*
+	 * Class variables
+	 */
+
+	private static final int MAX_ATTEMPTS = 3;
+
+
+	/*
+	 * Instance variables
+	 */
+
+	private final Set<String> indexed = new HashSet<String>();
+	private final Set<String> removed = new HashSet<String>();
+	private final Map<String, Integer> attempts = new HashMap<String, Integer>();
+	private final Set<String> deadLetters = new HashSet<String>();
+	private boolean solrDown = false;
+	private SolrIndexQueue solrIndexQueue = null;
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Before
+	public void setUp() {
+		SolrIndex solrIndex = new SolrIndex("http://127.0.0.1:1/solr/collection1", 1000) {
+			@Override
+			public int addDocuments(Collection<SolrInputDocument> solrInputDocuments)
+					throws IOException, SolrServerException {
+				if (solrDown) {
+					throw new SolrServerException("Connection refused");
+				}
+				for (SolrInputDocument document : solrInputDocuments) {
+					if (document.getFieldValue("id").toString().startsWith("poison")) {
+						throw new SolrException(SolrException.ErrorCode.BAD_REQUEST,
+								"Invalid date in " + document.getFieldValue("id"));
+					}
+				}
+				for (SolrInputDocument document : solrInputDocuments) {
+					indexed.add(document.getFieldValue("id").toString());
+				}
+				return 0;
+			}
+		};
+
+		PendingIndex pendingIndex = new PendingIndex(null, null, null, null) {
+			@Override
+			public void addTask(IndexTask task) {
+			}
+
+			@Override
+			public void removeTasks(List<IndexTask> tasks) {
+				for (IndexTask task : tasks) {
+					removed.add(task.getSolrId());
+				}
+			}
+
+			@Override
+			public void recordFailure(IndexTask task, String errorMessage, boolean deadLetter) {
+				Integer n = attempts.get(task.getSolrId());
+				attempts.put(task.getSolrId(), (n == null) ? 1 : n + 1);
+				if (deadLetter) {
+					deadLetters.add(task.getSolrId());
+				}
+			}
+		};
+
+		solrIndexQueue = new SolrIndexQueue(solrIndex, pendingIndex, 100, 0, MAX_ATTEMPTS);
+	}
+
+
+	private void submit(String scope) {
+		EmlPackageId epid = new EmlPackageId(scope, 1, 1);
+		SolrInputDocument document = new SolrInputDocument();
+		document.addField("id", SolrIndex.composeId(epid));
+		solrIndexQueue.submitIndex(epid, document);
+	}
+
+
+	private void submitBatch() {
+		submit("knb-lter-nin");
+		submit("poison");
+		submit("knb-lter-nwk");
+	}
+
+
+	/**
+	 * The documents around a rejected document are indexed; the rejected
+	 * task is retried until it becomes a dead letter.
+	 */
+	@Test
+	public void testPoisonDocument() throws Exception {
+		submitBatch();
+		solrIndexQueue.process(solrIndexQueue.takeBatch());
+
+		assertTrue(indexed.contains("knb-lter-nin.1"));
+		assertTrue(indexed.contains("knb-lter-nwk.1"));
+		assertTrue(removed.contains("knb-lter-nin.1"));
+		assertFalse(removed.contains("poison.1"));
+		assertEquals(Integer.valueOf(1), attempts.get("poison.1"));
+		assertEquals(1, solrIndexQueue.size());
+
+		for (int i = 1; i < MAX_ATTEMPTS; i++) {
+			submit("knb-lter-bes");
+			solrIndexQueue.process(solrIndexQueue.takeBatch());
+		}
+
+		assertTrue(indexed.contains("knb-lter-bes.1"));
+		assertEquals(Integer.valueOf(MAX_ATTEMPTS), attempts.get("poison.1"));
+		assertTrue(deadLetters.contains("poison.1"));
+		assertEquals(0, solrIndexQueue.size());
+		assertEquals(1, attempts.size());
+	}
+
+
+	/**
+	 * An outage is retried as a whole without counting attempts.
+	 */
+	@Test
+	public void testOutage() throws Exception {
+		solrDown = true;
+		submitBatch();
+		for (int i = 0; i < MAX_ATTEMPTS + 1; i++) {
+			solrIndexQueue.process(solrIndexQueue.takeBatch());
+		}
+
+		assertTrue(attempts.isEmpty());
+		assertTrue(deadLetters.isEmpty());
+		assertEquals(3, solrIndexQueue.size());
+
+		solrDown = false;
+		solrIndexQueue.process(solrIndexQueue.takeBatch());
+		assertTrue(indexed.contains("knb-lter-nwk.1"));
+		assertEquals(1, solrIndexQueue.size());
+		assertTrue(SolrIndexQueue.isOutage(new SolrServerException("down")));
+		assertFalse(SolrIndexQueue.isOutage(
+				new SolrException(SolrException.ErrorCode.BAD_REQUEST, "rejected")));
+	}
+
+}
@@ -0,0 +1,258 @@
+package edu.lternet.pasta.dml.database;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import edu.lternet.pasta.dml.parser.Attribute;
+import edu.lternet.pasta.dml.parser.DateTimeDomain;
+import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.parser.EnumeratedDomain;
+import edu.lternet.pasta.dml.parser.NumericDomain;
+import edu.lternet.pasta.dml.parser.TextDomain;
+import edu.lternet.pasta.dml.quality.QualityCheck;
+import edu.lternet.pasta.dml.quality.QualityReport;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * JUnit test suite for the validate-only mode of the DatabaseLoader class.
+ * A validate-only loader never uses the database, so these tests run
+ * without a database connection pool.
+ *
+ * @author dcosta
+ *
+ */
+public class DatabaseLoaderValidationTest extends TestCase {
+
+  /*
+   * Instance fields
+   */
+
+  private Entity entity = null;
+
+
+  /**
+   * Constructor
+   *
+   * @param name The name of testing
+   */
+  public DatabaseLoaderValidationTest(String name) {
+    super(name);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Create a suite of tests to be run together
+   */
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new DatabaseLoaderValidationTest("testValidData"));
+    suite.addTest(new DatabaseLoaderValidationTest("testInvalidNumber"));
+    suite.addTest(new DatabaseLoaderValidationTest("testCheckDatetimeValue"));
+    suite.addTest(new DatabaseLoaderValidationTest("testValidDatetime"));
+    suite.addTest(new DatabaseLoaderValidationTest("testInvalidDatetime"));
+    suite.addTest(new DatabaseLoaderValidationTest("testDateOnlyDatetime"));
+    suite.addTest(new DatabaseLoaderValidationTest("testDomainChecks"));
+    return suite;
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Establish a testing framework by initializing appropriate objects.
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+    entity = new Entity("knb-lter-xyz.1.1", "entity-1", "counts", "counts",
+                        null, null, 2);
+    entity.setSimpleDelimited(true);
+    entity.setFieldDelimiter(",");
+    entity.setRecordDelimiter("\\n");
+    entity.setNumHeaderLines(1);
+    entity.add(new Attribute("attribute-1", "site", new TextDomain()));
+    entity.add(new Attribute("attribute-2", "count",
+                             new NumericDomain("integer", null, null)));
+  }
+
+
+  /**
+   * Release any objects after tests are complete.
+   */
+  protected void tearDown() throws Exception {
+    QualityReport.setQualityReporting(false, null);
+    entity = null;
+    super.tearDown();
+  }
+
+
+  /*
+   * Streams data through a validate-only loader and waits for it to finish.
+   */
+  private DatabaseLoader validate(String data) throws Exception {
+    DatabaseLoader databaseLoader =
+      new DatabaseLoader(DatabaseAdapter.POSTGRES_ADAPTER, entity, true);
+    OutputStream outputStream = databaseLoader.startSerialize(entity.getName());
+    outputStream.write(data.getBytes("UTF-8"));
+    outputStream.close();
+
+    for (int i = 0; i < 100 && !databaseLoader.isCompleted(entity.getName()); i++) {
+      Thread.sleep(50);
+    }
+
+    assertTrue(databaseLoader.isCompleted(entity.getName()));
+    return databaseLoader;
+  }
+
+
+  /**
+   * Data that matches the attribute definitions is valid.
+   */
+  public void testValidData() throws Exception {
+    DatabaseLoader databaseLoader = validate("site,count\nA,1\nB,2\n");
+    assertTrue(databaseLoader.isSuccess(entity.getName()));
+    assertNull(databaseLoader.getException());
+    assertFalse(databaseLoader.doesDataExist(entity.getName()));
+  }
+
+
+  /**
+   * A value that does not match a numeric attribute fails validation.
+   */
+  public void testInvalidNumber() throws Exception {
+    DatabaseLoader databaseLoader = validate("site,count\nA,1\nB,many\n");
+    assertFalse(databaseLoader.isSuccess(entity.getName()));
+    assertTrue(databaseLoader.getException() instanceof DataNotMatchingMetadataException);
+  }
+
+
+  /*
+   * Adds a datetime attribute with a format string.
+   */
+  private void addDateAttribute(String formatString) {
+    DateTimeDomain dateTimeDomain = new DateTimeDomain();
+    dateTimeDomain.setFormatString(formatString);
+    entity.add(new Attribute("attribute-3", "date", dateTimeDomain));
+  }
+
+
+  /*
+   * Finds a quality check of the entity by its identifier.
+   */
+  private QualityCheck getQualityCheck(String identifier) {
+    for (QualityCheck qualityCheck : entity.getEntityReport().getQualityChecks()) {
+      if (qualityCheck.getIdentifier().equals(identifier)) {
+        return qualityCheck;
+      }
+    }
+    return null;
+  }
+
+
+  /**
+   * Datetime values that to_timestamp() would reject are found without
+   * a database.
+   */
+  public void testCheckDatetimeValue() {
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2016-02-29"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm:ss", "2015-12-31 24:00:00"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DDThh:mm:ss.sss", "2015-06-30T23:59:60.125"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm:ss.sss+hh", "1976-09-23 10:30:30.000+10"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("DD-WWW-YYYY", "23-Sep-1976"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("MM/DD", "02/29"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2015-02-29"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2015-04-31"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2015-13-01"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2015-00-10"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm", "2015-01-01 25:00"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm", "2015-01-01 12:60"));
+    assertNotNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm:ss", "2015-02-30"));
+
+    // As with to_timestamp(), values may end before the format string does
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD hh:mm:ss", "2015-02-03"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DDThh:mm:ss.sss", "2015-02-03T12"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYY-MM-DD", "2015-01"));
+
+    // Format strings with fields that are not read are not checked
+    assertNull(DatabaseAdapter.checkDatetimeValue("YYYYDDD", "1976999"));
+    assertNull(DatabaseAdapter.checkDatetimeValue("DD-MMM-YYYY", "23-Sep-1976"));
+  }
+
+
+  /**
+   * Valid datetime values pass validation.
+   */
+  public void testValidDatetime() throws Exception {
+    addDateAttribute("YYYY-MM-DD");
+    DatabaseLoader databaseLoader = validate("site,count,date\nA,1,2016-02-29\nB,2,2015-12-31\n");
+    assertTrue(databaseLoader.isSuccess(entity.getName()));
+    assertNull(databaseLoader.getException());
+  }
+
+
+  /**
+   * A datetime value that matches the format string's pattern but that
+   * to_timestamp() would reject when loading still fails validation.
+   */
+  public void testInvalidDatetime() throws Exception {
+    addDateAttribute("YYYY-MM-DD");
+    DatabaseLoader databaseLoader = validate("site,count,date\nA,1,2016-02-29\nB,2,2015-02-30\n");
+    assertFalse(databaseLoader.isSuccess(entity.getName()));
+    assertTrue(databaseLoader.getException() instanceof DataNotMatchingMetadataException);
+    assertTrue(databaseLoader.getException().getMessage().contains("2015-02-30"));
+  }
+
+
+  /**
+   * A date without the time of a format string that includes a time is
+   * valid, as to_timestamp() accepts it when loading.
+   */
+  public void testDateOnlyDatetime() throws Exception {
+    addDateAttribute("YYYY-MM-DD hh:mm:ss");
+    DatabaseLoader databaseLoader = 
+      validate("site,count,date\nA,1,2015-02-03\nB,2,2015-02-03 12:30:00\n");
+    assertTrue(databaseLoader.isSuccess(entity.getName()));
+    assertNull(databaseLoader.getException());
+  }
+
+
+  /**
+   * Values that are not codes of their enumerated domain, or that are
+   * outside the bounds of their numeric domain, are reported as warnings.
+   */
+  public void testDomainChecks() throws Exception {
+    QualityReport.setQualityReporting(true, "WebRoot/xml/qualityReportTemplate.xml.template");
+    entity = new Entity("knb-lter-xyz.1.1", "entity-1", "counts", "counts",
+                        null, null, 2);
+    entity.setSimpleDelimited(true);
+    entity.setFieldDelimiter(",");
+    entity.setRecordDelimiter("\\n");
+    entity.setNumHeaderLines(1);
+    EnumeratedDomain enumeratedDomain = new EnumeratedDomain();
+    enumeratedDomain.setCodes(Arrays.asList("A", "B"));
+    entity.add(new Attribute("attribute-1", "site", enumeratedDomain));
+    entity.add(new Attribute("attribute-2", "count",
+                             new NumericDomain("integer", 0.0, 10.0)));
+
+    DatabaseLoader databaseLoader = validate("site,count\nA,0\nB,10\nC,11\n");
+    assertTrue(databaseLoader.isSuccess(entity.getName()));
+
+    QualityCheck enumeratedDomainMatches = getQualityCheck(DatabaseAdapter.ENUMERATED_DOMAIN_MATCHES);
+    assertEquals(QualityCheck.Status.warn, enumeratedDomainMatches.getStatus());
+    assertTrue(enumeratedDomainMatches.getFound().contains("'C'"));
+    QualityCheck numericBoundsMatch = getQualityCheck(DatabaseAdapter.NUMERIC_BOUNDS_MATCH);
+    assertEquals(QualityCheck.Status.warn, numericBoundsMatch.getStatus());
+    assertTrue(numericBoundsMatch.getFound().contains("11"));
+    assertFalse(numericBoundsMatch.getFound().contains(" 10 "));
+  }
+
+}
@@ -0,0 +1,203 @@
+package edu.lternet.pasta.dml.database;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import edu.lternet.pasta.dml.parser.Attribute;
+import edu.lternet.pasta.dml.parser.Entity;
+import edu.lternet.pasta.dml.parser.NumericDomain;
+import edu.lternet.pasta.dml.parser.TextDomain;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * JUnit test suite for the ParallelValidator class.
+ *
+ * @author dcosta
+ *
+ */
+public class ParallelValidatorTest extends TestCase {
+
+  /*
+   * Class fields
+   */
+
+  private static final int ROWS = 1000;
+
+
+  /*
+   * Instance fields
+   */
+
+  private Entity entity = null;
+  private File entityFile = null;
+
+
+  /**
+   * Constructor
+   *
+   * @param name The name of testing
+   */
+  public ParallelValidatorTest(String name) {
+    super(name);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Create a suite of tests to be run together
+   */
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new ParallelValidatorTest("testValidate"));
+    suite.addTest(new ParallelValidatorTest("testErrorFallsBack"));
+    suite.addTest(new ParallelValidatorTest("testUnbalancedQuotesFallBack"));
+    suite.addTest(new ParallelValidatorTest("testSmallEntityNotSplit"));
+    suite.addTest(new ParallelValidatorTest("testDatabaseLoader"));
+    return suite;
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Establish a testing framework by initializing appropriate objects.
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+    ParallelValidator.setParallelism(4, 0);
+    entityFile = File.createTempFile("ParallelValidatorTest", ".csv");
+    entity = new Entity("knb-lter-xyz.1.1", "entity-1", "counts", "counts",
+                        null, null, ROWS);
+    entity.setSimpleDelimited(true);
+    entity.setFieldDelimiter(",");
+    entity.setRecordDelimiter("\\n");
+    entity.setNumHeaderLines(1);
+    entity.setURL("file://" + entityFile.getAbsolutePath());
+    entity.add(new Attribute("attribute-1", "site", new TextDomain()));
+    entity.add(new Attribute("attribute-2", "count",
+                             new NumericDomain("integer", null, null)));
+  }
+
+
+  /**
+   * Release any objects after tests are complete.
+   */
+  protected void tearDown() throws Exception {
+    ParallelValidator.setParallelism(1, 0);
+    entityFile.delete();
+    entity = null;
+    super.tearDown();
+  }
+
+
+  /*
+   * Writes the entity file: a header line followed by ROWS rows, with the
+   * given value in the count column of the last row.
+   */
+  private String writeEntity(String lastSite, String lastCount) throws Exception {
+    StringBuilder data = new StringBuilder("site,count\n");
+    for (int i = 1; i < ROWS; i++) {
+      data.append("site-").append(i).append(',').append(i).append('\n');
+    }
+    data.append(lastSite).append(',').append(lastCount).append('\n');
+
+    OutputStream outputStream = new FileOutputStream(entityFile);
+    outputStream.write(data.toString().getBytes("UTF-8"));
+    outputStream.close();
+    return data.toString();
+  }
+
+
+  /**
+   * A valid entity is split into chunks whose results are merged.
+   */
+  public void testValidate() throws Exception {
+    writeEntity("last", "1000");
+    assertEquals(entityFile, ParallelValidator.getEntityFile(entity));
+
+    ParallelValidator parallelValidator =
+      new ParallelValidator(entity, DatabaseAdapter.POSTGRES_ADAPTER, entityFile);
+    assertTrue(parallelValidator.validate());
+    assertEquals(ROWS, parallelValidator.getRowCount());
+    assertEquals(ROWS, parallelValidator.getErrorBudget().getRowsChecked());
+    assertEquals("site,count\n", parallelValidator.getHeaderLines());
+    assertEquals("site-1", parallelValidator.getFirstRow().get(0));
+    assertTrue(parallelValidator.hasRecordDelimiter());
+  }
+
+
+  /**
+   * An error in any chunk leaves the entity to be validated sequentially.
+   */
+  public void testErrorFallsBack() throws Exception {
+    writeEntity("last", "many");
+    ParallelValidator parallelValidator =
+      new ParallelValidator(entity, DatabaseAdapter.POSTGRES_ADAPTER, entityFile);
+    assertFalse(parallelValidator.validate());
+  }
+
+
+  /**
+   * When no record boundary has balanced quotes on both sides, splitting
+   * is ambiguous and the entity is validated sequentially.
+   */
+  public void testUnbalancedQuotesFallBack() throws Exception {
+    entity.setQuoteCharacter("\"");
+    StringBuilder data = new StringBuilder("site,count\n");
+    for (int i = 1; i <= ROWS; i++) {
+      data.append("\"site-").append(i).append(',').append(i).append('\n');
+    }
+    OutputStream outputStream = new FileOutputStream(entityFile);
+    outputStream.write(data.toString().getBytes("UTF-8"));
+    outputStream.close();
+
+    ParallelValidator parallelValidator =
+      new ParallelValidator(entity, DatabaseAdapter.POSTGRES_ADAPTER, entityFile);
+    assertFalse(parallelValidator.validate());
+  }
+
+
+  /**
+   * Entities smaller than the minimum size are validated sequentially.
+   */
+  public void testSmallEntityNotSplit() throws Exception {
+    writeEntity("last", "1000");
+    ParallelValidator.setParallelism(4, entityFile.length() + 1);
+    assertNull(ParallelValidator.getEntityFile(entity));
+    ParallelValidator.setParallelism(1, 0);
+    assertNull(ParallelValidator.getEntityFile(entity));
+  }
+
+
+  /**
+   * A validate-only DatabaseLoader uses the ParallelValidator while the
+   * data written to it is discarded.
+   */
+  public void testDatabaseLoader() throws Exception {
+    String data = writeEntity("last", "1000");
+    DatabaseLoader databaseLoader =
+      new DatabaseLoader(DatabaseAdapter.POSTGRES_ADAPTER, entity, true);
+    OutputStream outputStream = databaseLoader.startSerialize(entity.getName());
+    outputStream.write(data.getBytes("UTF-8"));
+    outputStream.close();
+
+    for (int i = 0; i < 100 && !databaseLoader.isCompleted(entity.getName()); i++) {
+      Thread.sleep(50);
+    }
+
+    assertTrue(databaseLoader.isCompleted(entity.getName()));
+    assertTrue(databaseLoader.isSuccess(entity.getName()));
+    assertEquals("site,count\n", entity.getHeaderText());
+  }
+
+}
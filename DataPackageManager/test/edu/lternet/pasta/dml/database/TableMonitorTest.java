@@ -87,6 +87,7 @@ public class TableMonitorTest extends TestCase {
     testSuite.addTest(new TableMonitorTest("testIdentifierToTableName"));
     testSuite.addTest(new TableMonitorTest("testIsDBTableNameInUse"));
     testSuite.addTest(new TableMonitorTest("testIsTableInDB"));
+    testSuite.addTest(new TableMonitorTest("testLeases"));
     testSuite.addTest(new TableMonitorTest("testMangleName"));
     testSuite.addTest(new TableMonitorTest("testSetLastUsageDate"));
     testSuite.addTest(new TableMonitorTest("testSetTableExpirationPolicy"));
@@ -572,6 +573,33 @@ public class TableMonitorTest extends TestCase {
     inUse = tableMonitor.isDBTableNameInUse(addedTableName);
     assertFalse("inUse is true but should be false: ", inUse);
   }
+
+  
+  /**
+   * Tests the TableMonitor lease methods. A drop of a leased table is
+   * deferred, and is handed back to the caller that releases the last lease.
+   * 
+   * @throws SQLException
+   */
+  public void testLeases() throws SQLException {
+    String addedTableName = tableMonitor.addTableEntry(entity);
+    assertNotNull("Failed to add table entry", addedTableName);
+
+    // An unleased table may be dropped at once
+    assertFalse(tableMonitor.deferDropIfLeased(addedTableName));
+
+    tableMonitor.acquireLease(addedTableName);
+    tableMonitor.acquireLease(addedTableName);
+    assertTrue(tableMonitor.deferDropIfLeased(addedTableName));
+    
+    // The drop is only handed back when the last lease is released
+    assertFalse(tableMonitor.releaseLease(addedTableName));
+    assertTrue(tableMonitor.releaseLease(addedTableName));
+    assertFalse(tableMonitor.releaseLease(addedTableName));
+
+    // Clean-up by dropping the table name that was added.
+    tableMonitor.dropTableEntry(addedTableName);
+  }
     
  
   /**
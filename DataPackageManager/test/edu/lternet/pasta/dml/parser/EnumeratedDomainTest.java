@@ -1,5 +1,6 @@
 package edu.lternet.pasta.dml.parser;
 
+import java.util.Arrays;
 import java.util.Vector;
 
 import junit.framework.Test;
@@ -45,6 +46,7 @@ public class EnumeratedDomainTest extends TestCase
      TestSuite suite = new TestSuite();
      suite.addTest(new EnumeratedDomainTest("initialize"));
      suite.addTest(new EnumeratedDomainTest("testMethods"));
+     suite.addTest(new EnumeratedDomainTest("testIsCode"));
      return suite;
    }
   
@@ -94,6 +96,21 @@ public class EnumeratedDomainTest extends TestCase
   }
   
 
+  /**
+   * Tests setCodes() and isCode() methods.
+   */
+  public void testIsCode()
+  {
+	  assertTrue(domain.isCode("anything"));
+	  domain.setCodes(Arrays.asList("102", " 202 "));
+	  assertEquals(2, domain.getCodes().size());
+	  assertTrue(domain.isCode("102"));
+	  assertTrue(domain.isCode("202 "));
+	  assertFalse(domain.isCode("302"));
+	  assertFalse(domain.isCode(null));
+  }
+  
+
   /**
   * Run an initial test that always passes to check that the test
   * harness is working.
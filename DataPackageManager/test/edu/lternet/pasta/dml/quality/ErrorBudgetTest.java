@@ -0,0 +1,170 @@
+package edu.lternet.pasta.dml.quality;
+
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * JUnit test suite for the ErrorBudget class.
+ *
+ * @author dcosta
+ *
+ */
+public class ErrorBudgetTest extends TestCase {
+
+  /**
+   * Constructor
+   *
+   * @param name The name of testing
+   */
+  public ErrorBudgetTest(String name) {
+    super(name);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Create a suite of tests to be run together
+   */
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new ErrorBudgetTest("testNoLimits"));
+    suite.addTest(new ErrorBudgetTest("testCheckExhausted"));
+    suite.addTest(new ErrorBudgetTest("testEntityErrors"));
+    suite.addTest(new ErrorBudgetTest("testErrorRate"));
+    suite.addTest(new ErrorBudgetTest("testMerge"));
+    return suite;
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Release any objects after tests are complete.
+   */
+  protected void tearDown() throws Exception {
+    ErrorBudget.setLimits(0, 0, 0, 0);
+    super.tearDown();
+  }
+
+
+  private QualityCheck failedCheck(String identifier, Status status) {
+    QualityCheck qualityCheck = new QualityCheck(identifier);
+    qualityCheck.setStatus(status);
+    return qualityCheck;
+  }
+
+
+  /**
+   * With no limits set, checking is never stopped.
+   */
+  public void testNoLimits() {
+    ErrorBudget.setLimits(0, 0, 0, 0);
+    ErrorBudget errorBudget = new ErrorBudget();
+
+    for (int i = 0; i < 1000; i++) {
+      errorBudget.countRow();
+      errorBudget.recordFailure(failedCheck("tooFewFields", Status.error));
+    }
+
+    assertFalse(errorBudget.isCheckExhausted("tooFewFields"));
+    assertFalse(errorBudget.isExceeded());
+    assertNull(errorBudget.toQualityCheck());
+  }
+
+
+  /**
+   * A check is exhausted after maxCheckFailures failures, without
+   * stopping the entity if the failures are only warnings.
+   */
+  public void testCheckExhausted() {
+    ErrorBudget.setLimits(3, 0, 0, 0);
+    ErrorBudget errorBudget = new ErrorBudget();
+
+    for (int i = 0; i < 2; i++) {
+      errorBudget.countRow();
+      errorBudget.recordFailure(failedCheck("dateFormatMatches", Status.warn));
+    }
+    assertFalse(errorBudget.isCheckExhausted("dateFormatMatches"));
+
+    errorBudget.recordFailure(failedCheck("dateFormatMatches", Status.warn));
+    assertTrue(errorBudget.isCheckExhausted("dateFormatMatches"));
+    assertFalse(errorBudget.isCheckExhausted("tooFewFields"));
+    assertFalse(errorBudget.isExceeded());
+    assertTrue(errorBudget.isLimited());
+  }
+
+
+  /**
+   * The entity budget is exceeded after maxEntityErrors errors.
+   */
+  public void testEntityErrors() {
+    ErrorBudget.setLimits(0, 2, 0, 0);
+    ErrorBudget errorBudget = new ErrorBudget();
+
+    errorBudget.countRow();
+    errorBudget.recordFailure(failedCheck("dateFormatMatches", Status.warn));
+    errorBudget.recordFailure(failedCheck("tooFewFields", Status.error));
+    assertFalse(errorBudget.isExceeded());
+
+    errorBudget.countRow();
+    errorBudget.recordFailure(failedCheck("tooFewFields", Status.error));
+    assertTrue(errorBudget.isExceeded());
+    assertEquals(2, errorBudget.getRowsChecked());
+  }
+
+
+  /**
+   * The error rate only applies once rateRows rows have been checked.
+   */
+  public void testErrorRate() {
+    ErrorBudget.setLimits(0, 0, 10, 100);
+    ErrorBudget errorBudget = new ErrorBudget();
+
+    for (int i = 0; i < 99; i++) {
+      errorBudget.countRow();
+      if (i % 5 == 0) {
+        errorBudget.recordFailure(failedCheck("tooFewFields", Status.error));
+      }
+      assertFalse(errorBudget.isExceeded());
+    }
+
+    errorBudget.countRow();
+    assertTrue(errorBudget.isExceeded());
+  }
+
+
+
+  /**
+   * Merged budgets add their rows and errors, and cap each check's
+   * failures at the per-check limit.
+   */
+  public void testMerge() {
+    ErrorBudget.setLimits(3, 0, 0, 0);
+    ErrorBudget first = new ErrorBudget();
+    ErrorBudget second = new ErrorBudget();
+
+    for (int i = 0; i < 2; i++) {
+      first.countRow();
+      first.recordFailure(failedCheck("dateFormatMatches", Status.warn));
+      second.countRow();
+      second.recordFailure(failedCheck("dateFormatMatches", Status.warn));
+    }
+    second.recordFailure(failedCheck("tooFewFields", Status.error));
+
+    first.merge(second);
+    assertEquals(4, first.getRowsChecked());
+    assertEquals(1, first.getEntityErrors());
+    assertTrue(first.isCheckExhausted("dateFormatMatches"));
+    assertFalse(first.isCheckExhausted("tooFewFields"));
+  }
+
+}
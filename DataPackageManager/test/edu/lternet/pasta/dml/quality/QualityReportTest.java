@@ -0,0 +1,122 @@
+package edu.lternet.pasta.dml.quality;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+
+import edu.lternet.pasta.dml.quality.QualityCheck.Status;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * JUnit test suite for writing the QualityReport class.
+ *
+ * @author dcosta
+ *
+ */
+public class QualityReportTest extends TestCase {
+
+  /*
+   * Instance fields
+   */
+
+  private QualityReport qualityReport = null;
+
+
+  /**
+   * Constructor
+   *
+   * @param name The name of testing
+   */
+  public QualityReportTest(String name) {
+    super(name);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Create a suite of tests to be run together
+   */
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new QualityReportTest("testStoreQualityReport"));
+    suite.addTest(new QualityReportTest("testStatusCount"));
+    return suite;
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * Establish a testing framework by initializing appropriate objects.
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+    qualityReport = new QualityReport(null);
+    qualityReport.setPackageId("knb-lter-xyz.1.1");
+
+    QualityCheck validCheck = new QualityCheck("packageIdPattern");
+    validCheck.setStatus(Status.valid);
+    validCheck.setFound("knb-lter-xyz.1.1");
+    qualityReport.addDatasetQualityCheck(validCheck);
+
+    QualityCheck errorCheck = new QualityCheck("keywordPresent");
+    errorCheck.setStatus(Status.error);
+    errorCheck.setFound("bad\u0001character");
+    qualityReport.addDatasetQualityCheck(errorCheck);
+  }
+
+
+  /**
+   * Release any objects after tests are complete.
+   */
+  protected void tearDown() throws Exception {
+    qualityReport = null;
+    super.tearDown();
+  }
+
+
+  /**
+   * The stored report matches toXML(), and non-valid XML characters are
+   * dropped as it is written.
+   */
+  public void testStoreQualityReport() throws Exception {
+    File file = File.createTempFile("qualityReport", ".xml");
+
+    try {
+      assertTrue(qualityReport.storeQualityReport(file));
+      String stored = FileUtils.readFileToString(file, "UTF-8");
+      String xml = qualityReport.toXML();
+
+      // The creation dates may differ by a second
+      String pattern = "<creationDate>[^<]*</creationDate>";
+      assertEquals(xml.replaceAll(pattern, ""), stored.replaceAll(pattern, ""));
+      assertTrue(stored.contains("<found>badcharacter</found>"));
+      assertTrue(stored.contains("<status>error</status>"));
+      assertTrue(stored.endsWith("</qr:qualityReport>\n"));
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+
+  /**
+   * Status counts are available without generating the report.
+   */
+  public void testStatusCount() {
+    assertEquals(1, qualityReport.getStatusCount(Status.valid));
+    assertEquals(1, qualityReport.getStatusCount(Status.error));
+    assertEquals(0, qualityReport.getStatusCount(Status.warn));
+    assertTrue(qualityReport.hasDatasetQualityError());
+  }
+
+}
@@ -0,0 +1,218 @@
+package edu.lternet.pasta.dml.transpose;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+
+/**
+ * JUnit test suite for the DataTranspose class, comparing the streaming
+ * transpose with the deprecated in-memory transpose. The result sets are
+ * in-memory stand-ins for the rows a database returns.
+ *
+ * @author dcosta
+ *
+ */
+public class DataTransposeTest extends TestCase {
+
+  /*
+   * Class fields
+   */
+
+  private static final String[] COLUMNS = { "plot", "species", "count", "cover" };
+
+  // Ordered by plot, as the query's ORDER BY would return them
+  private static final String[][] ROWS = {
+    { "1", "ACRU", "3", "0.2" },
+    { "1", "QUAL", "5", "0.4" },
+    { "1", "TSCA", "1", "0.1" },
+    { "2", "ACRU", "7", "0.6" },
+    { "2", "TSCA", "2", "0.3" },
+    { "3", "QUAL", "4", "0.5" },
+  };
+
+
+  /**
+   * Constructor
+   *
+   * @param name The name of testing
+   */
+  public DataTransposeTest(String name) {
+    super(name);
+  }
+
+
+  /*
+   * Class methods
+   */
+
+  /**
+   * Create a suite of tests to be run together
+   */
+  public static Test suite() {
+    TestSuite suite = new TestSuite();
+    suite.addTest(new DataTransposeTest("testMatchesDeprecatedTranspose"));
+    suite.addTest(new DataTransposeTest("testNonContiguousIds"));
+    suite.addTest(new DataTransposeTest("testScrollableResultSet"));
+    return suite;
+  }
+
+
+  /*
+   * Returns a result set over the given rows. Only the methods used by
+   * DataTranspose are implemented.
+   */
+  private static ResultSet makeResultSet(final String[] columns, final String[][] rows,
+                                         final int type) {
+    final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+        ResultSetMetaData.class.getClassLoader(),
+        new Class<?>[] { ResultSetMetaData.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getColumnCount")) {
+              return columns.length;
+            }
+            else if (method.getName().equals("getColumnName")) {
+              return columns[(Integer) args[0] - 1];
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+
+    return (ResultSet) Proxy.newProxyInstance(
+        ResultSet.class.getClassLoader(),
+        new Class<?>[] { ResultSet.class },
+        new InvocationHandler() {
+          private int row = -1;
+
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("next")) {
+              row++;
+              return row < rows.length;
+            }
+            else if (method.getName().equals("getString")) {
+              return rows[row][(Integer) args[0] - 1];
+            }
+            else if (method.getName().equals("getMetaData")) {
+              return metaData;
+            }
+            else if (method.getName().equals("getType")) {
+              return type;
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+
+  /*
+   * Reads the rows of a transposed table.
+   */
+  private static List<String[]> toList(Iterator<String[]> iterator) {
+    List<String[]> table = new ArrayList<String[]>();
+    while (iterator.hasNext()) {
+      table.add(iterator.next());
+    }
+    return table;
+  }
+
+
+  /*
+   * Asserts that the streaming and deprecated transposes of the rows
+   * produce the same table.
+   */
+  @SuppressWarnings("deprecation")
+  private static void assertSameTranspose(String[][] rows, List<String> pivotValues,
+                                          boolean omitIdValues) throws SQLException {
+    List expected = DataTranspose.transpose(
+        makeResultSet(COLUMNS, rows, ResultSet.TYPE_FORWARD_ONLY), 1, 2, omitIdValues);
+    List<String[]> actual = toList(DataTranspose.transpose(
+        makeResultSet(COLUMNS, rows, ResultSet.TYPE_FORWARD_ONLY), 1, 2,
+        pivotValues, omitIdValues));
+
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(Arrays.asList((String[]) expected.get(i)), Arrays.asList(actual.get(i)));
+    }
+  }
+
+
+  /*
+   * Instance methods
+   */
+
+  /**
+   * The streaming transpose produces the deprecated transpose's table,
+   * including empty cells for missing pivot values.
+   */
+  public void testMatchesDeprecatedTranspose() throws Exception {
+    List<String> pivotValues = Arrays.asList("ACRU", "QUAL", "TSCA");
+    assertSameTranspose(ROWS, pivotValues, false);
+    assertSameTranspose(ROWS, pivotValues, true);
+
+    List<String[]> table = toList(DataTranspose.transpose(
+        makeResultSet(COLUMNS, ROWS, ResultSet.TYPE_FORWARD_ONLY), 1, 2, pivotValues, false));
+    assertEquals(4, table.size());
+    assertEquals(Arrays.asList("plot", "ACRU_count", "ACRU_cover", "QUAL_count",
+                               "QUAL_cover", "TSCA_count", "TSCA_cover"),
+                 Arrays.asList(table.get(0)));
+    assertEquals(Arrays.asList("2", "7", "0.6", null, null, "2", "0.3"),
+                 Arrays.asList(table.get(2)));
+  }
+
+
+  /**
+   * Ids with gaps between them, as when rows have been deleted or the id is
+   * not a row number, each give one row; with omitIdValues the rows are
+   * numbered from 1.
+   */
+  public void testNonContiguousIds() throws Exception {
+    String[][] rows = {
+      { "7", "ACRU", "3", "0.2" },
+      { "7", "TSCA", "1", "0.1" },
+      { "42", "QUAL", "5", "0.4" },
+      { "1003", "ACRU", "7", "0.6" },
+      { "1003", "QUAL", "2", "0.3" },
+      { "1003", "TSCA", "4", "0.5" },
+    };
+    List<String> pivotValues = Arrays.asList("ACRU", "TSCA", "QUAL");
+    assertSameTranspose(rows, pivotValues, false);
+    assertSameTranspose(rows, pivotValues, true);
+
+    List<String[]> table = toList(DataTranspose.transpose(
+        makeResultSet(COLUMNS, rows, ResultSet.TYPE_FORWARD_ONLY), 1, 2, pivotValues, true));
+    assertEquals(4, table.size());
+    assertEquals("1", table.get(1)[0]);
+    assertEquals("2", table.get(2)[0]);
+    assertEquals("3", table.get(3)[0]);
+    assertEquals("5", table.get(2)[5]);
+  }
+
+
+  /**
+   * A scrollable result set is rejected, since the driver may read it into
+   * memory whole.
+   */
+  public void testScrollableResultSet() throws Exception {
+    try {
+      DataTranspose.transpose(makeResultSet(COLUMNS, ROWS, ResultSet.TYPE_SCROLL_INSENSITIVE),
+                              1, 2, Arrays.asList("ACRU", "QUAL", "TSCA"), false);
+      fail("A scrollable result set was transposed");
+    }
+    catch (SQLException e) {
+      assertTrue(e.getMessage().contains("forward-only"));
+    }
+  }
+
+}
@@ -304,13 +304,23 @@ public class DOIScannerTest {
 		doiScanner.setDoiTest(true);
 		testIsLTERScope(doiScanner);
 		
-		// Test DOI registration through scanning the resource registry for active
-		// and public data packages without DOIs
+		StubRegistrar stubRegistrar = null;
+		try {
+			stubRegistrar = new StubRegistrar();
+		} catch (ConfigurationException e) {
+			fail(e.getMessage());
+		}
+		doiScanner.setRegistrar(stubRegistrar);
+		
+		// Test DOI registration by draining the pending DOI queue, to which
+		// the test data package was added when it was uploaded
 		try {
 			doiScanner.doScanToRegister();
 		} catch (Exception e) {
 			fail(e.getMessage());
 		}
+		assertFalse("Expected the stub registrar to register at least one DOI",
+		    stubRegistrar.getRegisteredDois().isEmpty());
 
     // Test that the test data package did receive a DOI
 		response = dataPackageManagerResource.readDataPackageDoi(httpHeaders,
@@ -0,0 +1,71 @@
+package edu.lternet.pasta.doi;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import edu.ucsb.nceas.utilities.Options;
+
+/**
+ * A local stand-in for the DOI registrar, used by the test suite so that
+ * tests never contact EZID or DataCite. Registered DOIs are recorded in
+ * memory; the stub can be told to fail to exercise the retry logic.
+ */
+public class StubRegistrar extends Registrar {
+
+	/*
+	 * Instance variables
+	 */
+
+	private final List<String> registeredDois =
+			Collections.synchronizedList(new ArrayList<String>());
+	private volatile boolean failing = false;
+
+
+	/*
+	 * Constructors
+	 */
+
+	public StubRegistrar() throws ConfigurationException {
+		super();
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Override
+	protected void loadOptions(Options options) throws ConfigurationException {
+		this.host = "localhost";
+		this.protocol = "http";
+	}
+
+
+	@Override
+	protected void registerDataCiteMetadata(DataCiteMetadata dataCiteMetadata)
+			throws Exception {
+		if (dataCiteMetadata == null) {
+			throw new RegistrarException("DataCiteMetadata object is null.");
+		}
+
+		if (failing) {
+			throw new RegistrarException("Stub registrar is failing by request");
+		}
+
+		// Serialize to catch metadata that the real registrar could not send
+		dataCiteMetadata.toDataCiteXml();
+		registeredDois.add(dataCiteMetadata.getDigitalObjectIdentifier().getDoi());
+	}
+
+
+	public List<String> getRegisteredDois() {
+		return registeredDois;
+	}
+
+
+	public void setFailing(boolean failing) {
+		this.failing = failing;
+	}
+
+}
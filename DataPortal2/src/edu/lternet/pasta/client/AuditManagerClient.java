@@ -36,7 +36,6 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -284,7 +283,7 @@ public class AuditManagerClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpGet httpGet = new HttpGet(BASE_URL + "/report/" + oid);
 
@@ -342,7 +341,7 @@ public class AuditManagerClient extends PastaClient {
 		HttpEntity responseEntity = null;
 		String fromTime = composeFromTime(numberOfDays);
 
-	    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+	    CloseableHttpClient httpClient = getHttpClient();
 		HttpResponse response = null;
 		String url = String.format("%s/recent-uploads?serviceMethod=%s&fromTime=%s&limit=%d", BASE_URL, serviceMethod, fromTime, limit);
 		HttpGet httpGet = new HttpGet(url);
@@ -530,7 +529,7 @@ public class AuditManagerClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpGet httpGet = new HttpGet(BASE_URL + "/report?" + filter);
 
@@ -39,6 +39,7 @@ import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpDelete;
@@ -46,7 +47,6 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -218,7 +218,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String createDataPackage(File emlFile) throws Exception {
 		String serviceMethod = "createDataPackage";
 		String contentType = "application/xml";
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		HttpPost httpPost = new HttpPost(BASE_URL + "/eml");
 		String resourceMap = null;
 
@@ -249,9 +249,10 @@ public class DataPackageManagerClient extends PastaClient {
 				Integer packageRevision = emlPackageId.getRevision();
 
 				Integer idleTime = 0;
+				int pollDelay = initialSleepTime;
 
 				// Initial sleep period to mitigate potential error-check race condition 
-				Thread.sleep(initialSleepTime);
+				Thread.sleep(pollDelay);
 				
 				while (idleTime <= maxIdleTime) {
 					logIdleTime(serviceMethod, emlPackageId.toString(), idleTime);
@@ -270,8 +271,9 @@ public class DataPackageManagerClient extends PastaClient {
 						} 
 						catch (ResourceNotFoundException e1) {
 							logger.info(e1.getMessage());
-							Thread.sleep(idleSleepTime);
-							idleTime += idleSleepTime;
+							pollDelay = nextPollDelay(pollDelay);
+							Thread.sleep(pollDelay);
+							idleTime += pollDelay;
 						}
 					}
 				}
@@ -303,7 +305,7 @@ public class DataPackageManagerClient extends PastaClient {
 			throws Exception {
 		String serviceMethod = "getDataPackageArchive";
 		String contentType = "text/plain";
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		HttpPost httpPost = new HttpPost(BASE_URL + "/archive/eml" + urlTail);
 		String resourceMap = null;
@@ -327,9 +329,10 @@ public class DataPackageManagerClient extends PastaClient {
 			if (statusCode == HttpStatus.SC_ACCEPTED) {
 				String transactionId = entityString;
 				Integer idleTime = 0;
+				int pollDelay = initialSleepTime;
 
 				// Initial sleep period to mitigate potential error-check race condition 
-				Thread.sleep(initialSleepTime);
+				Thread.sleep(pollDelay);
 				
 				while (idleTime <= maxIdleTime) {
 					logIdleTime(serviceMethod, emlPackageId.toString(), idleTime);
@@ -347,8 +350,9 @@ public class DataPackageManagerClient extends PastaClient {
 						} 
 						catch (ResourceNotFoundException e1) {
 							logger.info(e1.getMessage());
-							Thread.sleep(idleSleepTime);
-							idleTime += idleSleepTime;
+							pollDelay = nextPollDelay(pollDelay);
+							Thread.sleep(pollDelay);
+							idleTime += pollDelay;
 						}
 					}
 				}
@@ -379,7 +383,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String deleteDataPackage(String scope, Integer identifier)
 	    throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), null, null);
 		HttpDelete httpDelete = new HttpDelete(BASE_URL + "/eml" + urlTail);
 		String entityString = null;
@@ -423,7 +427,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String evaluateDataPackage(File emlFile, boolean useChecksum) throws Exception {
 		String serviceMethod = "evaluateDataPackage";
 		String contentType = "application/xml";
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String evaluateURL = "/evaluate/eml";
 		if (useChecksum) {
 			evaluateURL += "?useChecksum";
@@ -458,11 +462,12 @@ public class DataPackageManagerClient extends PastaClient {
 					Integer identifier = emlPackageId.getIdentifier();
 					Integer revision = emlPackageId.getRevision();
 					Integer idleTime = 0;
+					int pollDelay = initialSleepTime;
 
 					/*
 					 * Initial sleep period to mitigate potential error-check race condition
 					 */
-					Thread.sleep(initialSleepTime);
+					Thread.sleep(pollDelay);
 
 					while (idleTime <= maxIdleTime) {
 						logIdleTime(serviceMethod, emlPackageId.toString(), idleTime);
@@ -483,8 +488,9 @@ public class DataPackageManagerClient extends PastaClient {
 							}
 							catch (ResourceNotFoundException e1) {
 								logger.info(e1.getMessage());
-								Thread.sleep(idleSleepTime);
-								idleTime += idleSleepTime;
+								pollDelay = nextPollDelay(pollDelay);
+								Thread.sleep(pollDelay);
+								idleTime += pollDelay;
 							}
 						}
 					}
@@ -506,6 +512,17 @@ public class DataPackageManagerClient extends PastaClient {
 	}
 	
 	
+	/*
+	 * Returns the delay before the next poll of a transaction's status.
+	 * Polling starts after the initial sleep time and backs off
+	 * exponentially, so that quick transactions are noticed quickly while
+	 * long ones are not polled more often than every idle sleep time.
+	 */
+	private int nextPollDelay(int pollDelay) {
+		return (int) Math.min(2L * pollDelay, (long) idleSleepTime);
+	}
+	
+	
 	/*
 	 * Throw an exception if the amount of idle time exceeds the maximum value.
 	 * Generate a message appropriate to the operation being performed.
@@ -574,7 +591,7 @@ public class DataPackageManagerClient extends PastaClient {
 		// a kludge to deal with encoding nonsense.
 		resourceId = resourceId.replace("+", "%2B");
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = BASE_URL + "/authz?resourceId=" + resourceId;
 		HttpGet httpGet = new HttpGet(url);
 		String entityString = null;
@@ -619,7 +636,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String listDataEntities(String scope, Integer identifier,
 	    String revision) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/data/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -656,7 +673,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String listDataPackageIdentifiers(String scope) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = BASE_URL + "/eml/" + scope;
 		HttpGet httpGet = new HttpGet(url);
 		String entityString = null;
@@ -698,7 +715,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String listDataPackageRevisions(String scope, Integer identifier, String filter)
 	    throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), null, null);
 		
 		// Test for "oldest" or "newest" filter
@@ -741,7 +758,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String listDataPackageScopes() throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = BASE_URL + "/eml";
 		HttpGet httpGet = new HttpGet(url);
 		String entityString = null;
@@ -784,7 +801,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String listDataDescendants(String scope, Integer identifier,
 	    String revision) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/descendants/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -828,7 +845,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String listDataSources(String scope, Integer identifier,
 	    String revision) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/sources/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -855,6 +872,57 @@ public class DataPackageManagerClient extends PastaClient {
 	}
 
 	
+	/**
+	 * Executes the 'readProvenanceLineage' web service method, returning
+	 * the data packages the specified data package is derived from and the
+	 * data packages derived from it, followed transitively, as one graph.
+	 * 
+	 * @param scope
+	 *          the scope value, e.g. "knb-lter-lno"
+	 * @param identifier
+	 *          the identifier value, e.g. 10
+	 * @param revision
+	 *          the revision value, e.g. "1" or "newest"
+	 * @param depth
+	 *          the maximum number of provenance steps to follow in each
+	 *          direction, or null for the service maximum
+	 * @return the lineage graph XML
+	 * @see <a target="top"
+	 *      href="http://package.lternet.edu/package/docs/api">Data Package
+	 *      Manager web service API</a>
+	 */
+	public String readProvenanceLineage(String scope, Integer identifier,
+	    String revision, Integer depth) throws Exception {
+		CloseableHttpClient httpClient = getHttpClient();
+		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
+		String url = BASE_URL + "/lineage/eml" + urlTail;
+		if (depth != null) {
+			url = url + "?depth=" + depth;
+		}
+		HttpGet httpGet = new HttpGet(url);
+		String entityString = null;
+
+		// Set header content
+		if (this.token != null) {
+			httpGet.setHeader("Cookie", "auth-token=" + this.token);
+		}
+
+		try {
+			HttpResponse httpResponse = httpClient.execute(httpGet);
+			int statusCode = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity httpEntity = httpResponse.getEntity();
+			entityString = EntityUtils.toString(httpEntity, "UTF-8");
+			if (statusCode != HttpStatus.SC_OK) {
+				handleStatusCode(statusCode, entityString);
+			}
+		} finally {
+			closeHttpClient(httpClient);
+		}
+
+		return entityString;
+	}
+
+	
 	/**
 	 * Executes the 'listDeletedDataPackages' web service method.
 	 * 
@@ -865,7 +933,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String listDeletedDataPackages() throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = BASE_URL + "/eml/deleted";
 		HttpGet httpGet = new HttpGet(url);
 		String entityString = null;
@@ -901,7 +969,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String listRecentUploads(String serviceMethod, int limit) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String type = serviceMethod.equalsIgnoreCase("createDataPackage") ? "insert" : "update";
 		String url = String.format("%s/uploads/eml?type=%s&limit=%d", BASE_URL, type, limit);
 		HttpGet httpGet = new HttpGet(url);
@@ -928,6 +996,81 @@ public class DataPackageManagerClient extends PastaClient {
 	}
 
 	
+	/**
+	 * Executes the 'listRecentChanges' web service method.
+	 * 
+	 * @param fromDate
+	 *          include only changes on or after this date-time, 
+	 *          e.g. "2017-02-01T12:00:00"
+	 * @return an XML string representing a list of data package inserts,
+	 *         updates, and deletes, oldest first
+	 * @see <a target="top"
+	 *      href="http://package.lternet.edu/package/docs/api">Data Package
+	 *      Manager web service API</a>
+	 */
+	public String listRecentChanges(String fromDate) throws Exception {
+		CloseableHttpClient httpClient = getHttpClient();
+		String url = String.format("%s/changes/eml?fromDate=%s", BASE_URL, fromDate);
+		HttpGet httpGet = new HttpGet(url);
+		String entityString = null;
+
+		// Set header content
+		if (this.token != null) {
+			httpGet.setHeader("Cookie", "auth-token=" + this.token);
+		}
+
+		try {
+			HttpResponse httpResponse = httpClient.execute(httpGet);
+			int statusCode = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity httpEntity = httpResponse.getEntity();
+			entityString = EntityUtils.toString(httpEntity);
+			if (statusCode != HttpStatus.SC_OK) {
+				handleStatusCode(statusCode, entityString);
+			}
+		} finally {
+			closeHttpClient(httpClient);
+		}
+
+		return entityString;
+	}
+
+	
+	/**
+	 * Executes the 'readDataPackageStatistics' web service method.
+	 * 
+	 * @return an XML string of the number of data packages and revisions
+	 *         in PASTA and the number uploaded in each month
+	 * @see <a target="top"
+	 *      href="http://package.lternet.edu/package/docs/api">Data Package
+	 *      Manager web service API</a>
+	 */
+	public String readDataPackageStatistics() throws Exception {
+		CloseableHttpClient httpClient = getHttpClient();
+		String url = BASE_URL + "/statistics/eml";
+		HttpGet httpGet = new HttpGet(url);
+		String entityString = null;
+
+		// Set header content
+		if (this.token != null) {
+			httpGet.setHeader("Cookie", "auth-token=" + this.token);
+		}
+
+		try {
+			HttpResponse httpResponse = httpClient.execute(httpGet);
+			int statusCode = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity httpEntity = httpResponse.getEntity();
+			entityString = EntityUtils.toString(httpEntity);
+			if (statusCode != HttpStatus.SC_OK) {
+				handleStatusCode(statusCode, entityString);
+			}
+		} finally {
+			closeHttpClient(httpClient);
+		}
+
+		return entityString;
+	}
+
+	
 	/**
 	 * Executes the 'listServiceMethods' web service method.
 	 * 
@@ -938,7 +1081,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String listServiceMethods() throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = BASE_URL + "/service-methods";
 		HttpGet httpGet = new HttpGet(url);
 		String entityString = null;
@@ -984,6 +1127,44 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public void readDataEntity(String scope, Integer identifier, String revision,
 	    String entityId, HttpServletResponse servletResponse) throws Exception {
+		boolean redirect = false;
+		readDataEntity(scope, identifier, revision, entityId, servletResponse, redirect);
+	}
+
+
+	/**
+	 * Executes the 'readDataEntity' web service method.
+	 * 
+	 * PASTA answers a request for a large data entity with a temporary
+	 * redirect to the data server, whose URL carries a short-lived data token
+	 * that PASTA issues only after authorizing the user. When redirect is
+	 * true, that redirect is passed on to the client browser instead of being
+	 * followed, so the browser downloads the entity directly from the data
+	 * server (which supports range requests) and the entity bytes never pass
+	 * through the portal. Small entities, which PASTA returns directly, are
+	 * copied to the servlet response as before.
+	 * 
+	 * @param scope
+	 *          the scope value, e.g. "knb-lter-lno"
+	 * @param identifier
+	 *          the identifier value, e.g. 10
+	 * @param revision
+	 *          the revision value, e.g. "1"
+	 * @param entityId
+	 *          the entity identifier string, e.g. "NoneSuchBugCount"
+	 * @param servletResponse
+	 *          the servlet response object for returning content to the client
+	 *          browser
+	 * @param redirect
+	 *          if true, redirect the client browser to the data server rather
+	 *          than proxying the data entity
+	 * @see <a target="top"
+	 *      href="http://package.lternet.edu/package/docs/api">Data Package
+	 *      Manager web service API</a>
+	 */
+	public void readDataEntity(String scope, Integer identifier, String revision,
+	    String entityId, HttpServletResponse servletResponse, boolean redirect) 
+	    throws Exception {
 
 		HttpResponse httpResponse = null;
 
@@ -997,11 +1178,16 @@ public class DataPackageManagerClient extends PastaClient {
 		// a kludge to deal with encoding nonsense.
 		entityId = entityId.replace("%", "%25");
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision,
 		    entityId);
 		String url = BASE_URL + "/data/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
+		
+		if (redirect) {
+			httpGet.setConfig(RequestConfig.copy(PastaHttpClient.getRequestConfig())
+					                       .setRedirectsEnabled(false).build());
+		}
 
 		// Set header content
 		if (this.token != null) {
@@ -1015,8 +1201,15 @@ public class DataPackageManagerClient extends PastaClient {
 
 			int statusCode = httpResponse.getStatusLine().getStatusCode();
 			HttpEntity httpEntity = httpResponse.getEntity();
+			Header location = httpResponse.getFirstHeader("Location");
 
-			if (statusCode != HttpStatus.SC_OK) {
+			if (redirect && isRedirect(statusCode) && location != null) {
+				EntityUtils.consumeQuietly(httpEntity);
+				servletResponse.setStatus(HttpServletResponse.SC_TEMPORARY_REDIRECT);
+				servletResponse.setHeader("Location", location.getValue());
+				servletResponse.setHeader("Cache-Control", "no-store");
+			}
+			else if (statusCode != HttpStatus.SC_OK) {
 				String gripe = "An error occurred while attempting to read the data enity: "
 				    + entityId;
 				if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
@@ -1049,6 +1242,17 @@ public class DataPackageManagerClient extends PastaClient {
 		}
 
 	}
+	
+	
+	/*
+	 * Boolean to determine whether an HTTP status code is a redirect.
+	 */
+	private static boolean isRedirect(int statusCode) {
+		return (statusCode == HttpStatus.SC_MOVED_PERMANENTLY ||
+				statusCode == HttpStatus.SC_MOVED_TEMPORARILY ||
+				statusCode == HttpStatus.SC_SEE_OTHER ||
+				statusCode == HttpStatus.SC_TEMPORARY_REDIRECT);
+	}
 
 	/**
 	 * Executes the 'readDataEntityName' web service method.
@@ -1074,7 +1278,7 @@ public class DataPackageManagerClient extends PastaClient {
 		// a kludge to deal with encoding nonsense.
 		entityId = entityId.replace("%", "%25");
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision,
 		    entityId);
 		String url = BASE_URL + "/name/eml" + urlTail;
@@ -1121,7 +1325,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readDataEntityNames(String scope, Integer identifier, String revision) 
 			throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/name/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1175,7 +1379,7 @@ public class DataPackageManagerClient extends PastaClient {
 		// a kludge to deal with encoding nonsense.
 		entityId = entityId.replace("%", "%25");
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision,
 		    entityId);
 		String url = BASE_URL + "/data/size/eml" + urlTail;
@@ -1228,7 +1432,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readDataEntitySizes(String scope, Integer identifier, String revision) 
 			throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/data/size/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1274,7 +1478,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readDataPackage(String scope, Integer identifier,
 	    String revision) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1330,7 +1534,7 @@ public class DataPackageManagerClient extends PastaClient {
 			throw new Exception(gripe);
 		}
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String url = String.format("%s/archive/eml/%s/%d/%s/%s",  
 				                    BASE_URL, scope, identifier, revision, transaction);
 		HttpGet httpGet = new HttpGet(url);
@@ -1389,7 +1593,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readDataPackageReport(String scope, Integer identifier,
 	    String revision) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/report/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1434,7 +1638,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String readEvaluateReport(String scope, Integer identifier,
 	    String revision, String transaction) throws Exception {
 		String contentType = "application/xml";
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = "/" + transaction;
 		String url = BASE_URL + "/evaluate/report/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1479,7 +1683,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readMetadata(String scope, Integer identifier, String revision)
 	    throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/metadata/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1518,7 +1722,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String readDataPackageDoi(String scope, Integer identifier,
 	    String revision) throws Exception {
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/doi/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1545,6 +1749,51 @@ public class DataPackageManagerClient extends PastaClient {
 
 	}
 
+	/**
+	 * Executes the "readDataPackageSummary" web service method, returning
+	 * the information needed by a data package landing page (revisions,
+	 * deletion status, DOI, upload date, resources, entity names and sizes,
+	 * and provenance) in a single request.
+	 *
+	 * @param scope
+	 *          The package scope value
+	 * @param identifier
+	 *          The package identifier value
+	 * @param revision
+	 *          The package revision value, or "newest"
+	 * @return The data package summary XML
+	 * @throws Exception
+	 */
+	public String readDataPackageSummary(String scope, Integer identifier,
+	    String revision) throws Exception {
+
+		CloseableHttpClient httpClient = getHttpClient();
+		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
+		String url = BASE_URL + "/summary/eml" + urlTail;
+		HttpGet httpGet = new HttpGet(url);
+		String entityString = null;
+
+		// Set header content
+		if (this.token != null) {
+			httpGet.setHeader("Cookie", "auth-token=" + this.token);
+		}
+
+		try {
+			HttpResponse httpResponse = httpClient.execute(httpGet);
+			int statusCode = httpResponse.getStatusLine().getStatusCode();
+			HttpEntity httpEntity = httpResponse.getEntity();
+			entityString = EntityUtils.toString(httpEntity, "UTF-8");
+			if (statusCode != HttpStatus.SC_OK) {
+				handleStatusCode(statusCode, entityString);
+			}
+		} finally {
+			closeHttpClient(httpClient);
+		}
+
+		return entityString;
+
+	}
+
 	/**
 	 * Executes the "readDataPackageError" websevice method.
 	 * 
@@ -1561,7 +1810,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readDataPackageError(String transaction) throws Exception {
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = "/" + transaction;
 		String url = BASE_URL + "/error/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1601,7 +1850,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String readMetadataDoi(String scope, Integer identifier,
 	    String revision) throws Exception {
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/metadata/doi/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1641,7 +1890,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String readDataPackageReportDoi(String scope, Integer identifier,
 	    String revision) throws Exception {
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/report/doi/eml" + urlTail;
 		HttpGet httpGet = new HttpGet(url);
@@ -1682,7 +1931,7 @@ public class DataPackageManagerClient extends PastaClient {
 	public String readDataEntityDoi(String scope, Integer identifier,
 	    String revision, String entityId) throws Exception {
 
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision,
 		    entityId);
 		String url = BASE_URL + "/data/doi/eml" + urlTail;
@@ -1729,7 +1978,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 */
 	public String readResourceMetadata(String scope, Integer identifier, String revision)
 	    throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), revision, null);
 		String url = BASE_URL + "/rmd/eml" + urlTail;
 		String entityString = null;
@@ -1768,7 +2017,7 @@ public class DataPackageManagerClient extends PastaClient {
 	 *      Manager web service API</a>
 	 */
 	public String searchDataPackages(String solrQuery) throws Exception {
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		HttpGet httpGet = new HttpGet(BASE_URL + "/search/eml?" + solrQuery);
 		String resultSetXML = null;
 
@@ -1813,7 +2062,7 @@ public class DataPackageManagerClient extends PastaClient {
 	    throws Exception {
 		String serviceMethod = "updateDataPackage";
 		final String contentType = "application/xml";
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		String urlTail = makeUrlTail(scope, identifier.toString(), null, null);
 		String url = BASE_URL + "/eml" + urlTail;
 		if (useChecksum) {
@@ -1848,9 +2097,10 @@ public class DataPackageManagerClient extends PastaClient {
 				Integer packageRevision = emlPackageId.getRevision();
 
 				Integer idleTime = 0;
+				int pollDelay = initialSleepTime;
 
 				// Initial sleep period to mitigate potential error-check race condition 
-				Thread.sleep(initialSleepTime);
+				Thread.sleep(pollDelay);
 				
 				while (idleTime <= maxIdleTime) {
 					logIdleTime(serviceMethod, emlPackageId.toString(), idleTime);
@@ -1868,8 +2118,9 @@ public class DataPackageManagerClient extends PastaClient {
 						} 
 						catch (ResourceNotFoundException e1) {
 							logger.info(e1.getMessage());
-							Thread.sleep(idleSleepTime);
-							idleTime += idleSleepTime;
+							pollDelay = nextPollDelay(pollDelay);
+							Thread.sleep(pollDelay);
+							idleTime += pollDelay;
 						}
 					}
 				}
@@ -42,7 +42,6 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 import org.w3c.dom.Document;
@@ -123,7 +122,7 @@ public class EventSubscriptionClient extends PastaClient {
     HttpEntity responseEntity = null;
     String statusMessage = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpPost httpPost = new HttpPost(BASE_URL_SUBSCRIPTION);
 
@@ -216,7 +215,7 @@ public class EventSubscriptionClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpGet httpGet = new HttpGet(BASE_URL_SUBSCRIPTION + "/" + sid);
 
@@ -275,7 +274,7 @@ public class EventSubscriptionClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpGet httpGet = new HttpGet(BASE_URL_SUBSCRIPTION + "?" + filter);
 
@@ -331,7 +330,7 @@ public class EventSubscriptionClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpGet httpGet = new HttpGet(BASE_URL_SUBSCRIPTION + "/" + "schema");
 
@@ -387,7 +386,7 @@ public class EventSubscriptionClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
 
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     HttpDelete httpDelete = new HttpDelete(BASE_URL_SUBSCRIPTION + "/" + sid);
 
@@ -441,7 +440,7 @@ public class EventSubscriptionClient extends PastaClient {
     Integer statusCode = null;
     HttpEntity responseEntity = null;
     String statusMessage = null;
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = getHttpClient();
     HttpResponse response = null;
     String subscriptionURL = BASE_URL_EVENT + "/" + subscriptionId;
     HttpPost httpPost = new HttpPost(subscriptionURL);
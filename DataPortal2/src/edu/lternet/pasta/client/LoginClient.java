@@ -45,7 +45,6 @@ import org.apache.http.impl.auth.BasicScheme;
 import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.log4j.Logger;
 
 import edu.lternet.pasta.portal.ConfigurationListener;
@@ -181,7 +180,7 @@ public class LoginClient {
 
     // Define host parameters
     HttpHost httpHost = new HttpHost(this.pastaHost, this.pastaPort, this.pastaProtocol);
-    CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+    CloseableHttpClient httpClient = PastaClient.getHttpClient();
 
     // Define user authentication credentials that will be used with the host
     AuthScope authScope = new AuthScope(httpHost.getHostName(),
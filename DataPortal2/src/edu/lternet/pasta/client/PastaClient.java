@@ -211,12 +211,24 @@ public class PastaClient {
 	}	  
 	  
 	
+  /**
+   * Returns an HTTP client for executing requests on the portal's shared,
+   * pooled connections to PASTA. Close it with closeHttpClient() when the
+   * response has been read; that releases the connection back to the pool.
+   * 
+   * @return  an HTTP client backed by the shared connection pool
+   */
+  public static CloseableHttpClient getHttpClient() {
+    return PastaHttpClient.newClient();
+  }
+  
+  
   /*
    * Instance methods
    */
   
   	/*
-  	 * Closes the HTTP client
+  	 * Closes the HTTP client, releasing its connections to the shared pool
   	 */
 	protected void closeHttpClient(CloseableHttpClient httpClient) {
 		try {
@@ -0,0 +1,366 @@
+/*
+ *
+ * $Date$
+ * $Author: dcosta $
+ * $Revision$
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.log4j.Logger;
+
+import edu.lternet.pasta.portal.ConfigurationListener;
+
+
+/**
+ * The PastaHttpClient class gives the PASTA service clients a single,
+ * long-lived HTTP client with a pool of keep-alive connections, so that a
+ * portal page making several backend calls does not pay for a new TCP and
+ * TLS handshake on each of them.
+ *
+ * Each call to newClient() returns a lightweight PastaHttpClient that
+ * executes requests on the shared client and remembers their responses.
+ * Closing it closes those responses, which returns their connections to
+ * the pool (or discards them if the response content was not fully read);
+ * the shared client and its pool stay open. Service client code can
+ * therefore keep its existing "create, execute, close in finally" pattern.
+ *
+ * A monitor thread evicts expired and idle connections so that stale
+ * connections are not handed out, and the pool's utilization and the time
+ * spent waiting for a connection are recorded for monitoring.
+ *
+ * @author dcosta
+ *
+ */
+public class PastaHttpClient extends CloseableHttpClient {
+
+	/*
+	 * Class variables
+	 */
+
+	private static final Logger logger = Logger.getLogger(PastaHttpClient.class);
+
+	private static final int DEFAULT_MAX_TOTAL = 100;
+	private static final int DEFAULT_MAX_PER_ROUTE = 50;
+	private static final int DEFAULT_CONNECT_TIMEOUT = 10000;              // milliseconds
+	private static final int DEFAULT_SOCKET_TIMEOUT = 300000;              // milliseconds
+	private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 30000;   // milliseconds
+	private static final int DEFAULT_IDLE_TIMEOUT = 60000;                 // milliseconds
+	private static final int DEFAULT_MONITOR_INTERVAL = 30000;             // milliseconds
+
+	private static volatile TimedConnectionManager connectionManager = null;
+	private static volatile CloseableHttpClient sharedClient = null;
+	private static volatile RequestConfig requestConfig = null;
+	private static Thread monitor = null;
+
+
+	/*
+	 * Instance variables
+	 */
+
+	private final List<CloseableHttpResponse> responses = new ArrayList<CloseableHttpResponse>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	private PastaHttpClient() {
+		super();
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Returns a client that executes requests on the shared, pooled HTTP
+	 * client. The caller should close it when it has finished with the
+	 * responses; closing it does not close the shared client.
+	 *
+	 * @return a new PastaHttpClient
+	 */
+	public static PastaHttpClient newClient() {
+		if (sharedClient == null) {
+			start();
+		}
+		return new PastaHttpClient();
+	}
+
+
+	/**
+	 * Returns the default request configuration (timeouts and stale
+	 * connection checking) of the shared client. A request that needs a
+	 * different setting, such as disabling redirects, should start from a
+	 * copy of this configuration so that it keeps the default timeouts.
+	 *
+	 * @return the default request configuration
+	 */
+	public static RequestConfig getRequestConfig() {
+		if (requestConfig == null) {
+			start();
+		}
+		return requestConfig;
+	}
+
+
+	/**
+	 * Creates the shared client and its connection pool if they do not
+	 * already exist, using the pastaclient.http.* options in
+	 * dataportal.properties.
+	 */
+	public static synchronized void start() {
+		if (sharedClient != null) {
+			return;
+		}
+
+		PropertiesConfiguration options = ConfigurationListener.getOptions();
+		int maxTotal = getInt(options, "pastaclient.http.maxTotal", DEFAULT_MAX_TOTAL);
+		int maxPerRoute = getInt(options, "pastaclient.http.maxPerRoute", DEFAULT_MAX_PER_ROUTE);
+		int connectTimeout = getInt(options, "pastaclient.http.connectTimeout", DEFAULT_CONNECT_TIMEOUT);
+		int socketTimeout = getInt(options, "pastaclient.http.socketTimeout", DEFAULT_SOCKET_TIMEOUT);
+		int connectionRequestTimeout = getInt(options, "pastaclient.http.connectionRequestTimeout",
+				DEFAULT_CONNECTION_REQUEST_TIMEOUT);
+		final int idleTimeout = getInt(options, "pastaclient.http.idleTimeout", DEFAULT_IDLE_TIMEOUT);
+		final int monitorInterval = getInt(options, "pastaclient.http.monitorInterval",
+				DEFAULT_MONITOR_INTERVAL);
+
+		final TimedConnectionManager manager = new TimedConnectionManager();
+		manager.setMaxTotal(maxTotal);
+		manager.setDefaultMaxPerRoute(maxPerRoute);
+
+		requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(socketTimeout)
+				.setConnectionRequestTimeout(connectionRequestTimeout)
+				.setStaleConnectionCheckEnabled(true)
+				.build();
+
+		/*
+		 * The shared client serves every user of the portal, so it must not
+		 * keep cookies: an auth-token set in the response to one user's login
+		 * would otherwise be sent with every later request, including
+		 * anonymous ones. The service clients set the Cookie header
+		 * themselves.
+		 */
+		sharedClient = HttpClientBuilder.create()
+				.setConnectionManager(manager)
+				.setDefaultRequestConfig(requestConfig)
+				.disableCookieManagement()
+				.build();
+
+		monitor = new Thread("PastaHttpClientMonitor") {
+			public void run() {
+				while (!isInterrupted()) {
+					try {
+						Thread.sleep(monitorInterval);
+					}
+					catch (InterruptedException e) {
+						break;
+					}
+					manager.closeExpiredConnections();
+					manager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+					logger.debug(getPoolStatus());
+				}
+			}
+		};
+		monitor.setDaemon(true);
+		monitor.start();
+		connectionManager = manager;
+
+		logger.info(String.format("Started shared HTTP client: maxTotal=%d; maxPerRoute=%d",
+				                  maxTotal, maxPerRoute));
+	}
+
+
+	/**
+	 * Closes the shared client and its connection pool. Called when the
+	 * web application is shut down.
+	 */
+	public static synchronized void stop() {
+		if (sharedClient != null) {
+			monitor.interrupt();
+			try {
+				sharedClient.close();
+			}
+			catch (IOException e) {
+				logger.error("Error closing shared HTTP client: " + e.getMessage());
+			}
+			sharedClient = null;
+			connectionManager = null;
+			monitor = null;
+		}
+	}
+
+
+	/**
+	 * Returns a one-line summary of the connection pool's utilization and
+	 * the time requests have spent waiting for a pooled connection.
+	 *
+	 * @return the pool status, e.g. "leased=3; pending=0; available=7; max=100;
+	 *         leases=1520; timeouts=0; meanWaitMillis=0.02; maxWaitMillis=4"
+	 */
+	public static String getPoolStatus() {
+		TimedConnectionManager manager = connectionManager;
+
+		if (manager == null) {
+			return "The shared HTTP client has not been started";
+		}
+
+		PoolStats poolStats = manager.getTotalStats();
+		long leases = manager.leases.get();
+		double meanWaitMillis = (leases == 0) ? 0.0 :
+			(manager.totalWaitNanos.get() / (double) leases) / 1000000.0;
+
+		return String.format(
+				"leased=%d; pending=%d; available=%d; max=%d; leases=%d; timeouts=%d; meanWaitMillis=%.2f; maxWaitMillis=%d",
+				poolStats.getLeased(), poolStats.getPending(), poolStats.getAvailable(), poolStats.getMax(),
+				leases, manager.timeouts.get(), meanWaitMillis,
+				TimeUnit.NANOSECONDS.toMillis(manager.maxWaitNanos.get()));
+	}
+
+
+	private static int getInt(PropertiesConfiguration options, String name, int defaultValue) {
+		return (options == null) ? defaultValue : options.getInt(name, defaultValue);
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Override
+	protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context)
+			throws IOException, ClientProtocolException {
+		CloseableHttpResponse response = sharedClient.execute(target, request, context);
+		synchronized (responses) {
+			responses.add(response);
+		}
+		return response;
+	}
+
+
+	/**
+	 * Closes the responses executed by this client, releasing their
+	 * connections. The shared client remains open.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (responses) {
+			for (CloseableHttpResponse response : responses) {
+				try {
+					response.close();
+				}
+				catch (IOException e) {
+					logger.warn("Error closing HTTP response: " + e.getMessage());
+				}
+			}
+			responses.clear();
+		}
+	}
+
+
+	@Override
+	@Deprecated
+	public HttpParams getParams() {
+		return sharedClient.getParams();
+	}
+
+
+	@Override
+	@Deprecated
+	public org.apache.http.conn.ClientConnectionManager getConnectionManager() {
+		return sharedClient.getConnectionManager();
+	}
+
+
+	/*
+	 * A pooling connection manager that records how many connections have
+	 * been leased and how long each lease waited for a free connection.
+	 */
+	private static class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+		final AtomicLong leases = new AtomicLong();
+		final AtomicLong timeouts = new AtomicLong();
+		final AtomicLong totalWaitNanos = new AtomicLong();
+		final AtomicLong maxWaitNanos = new AtomicLong();
+
+		@Override
+		public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+			final ConnectionRequest connectionRequest = super.requestConnection(route, state);
+
+			return new ConnectionRequest() {
+				public HttpClientConnection get(long timeout, TimeUnit tunit)
+						throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+					long start = System.nanoTime();
+					try {
+						HttpClientConnection connection = connectionRequest.get(timeout, tunit);
+						leases.incrementAndGet();
+						return connection;
+					}
+					catch (ConnectionPoolTimeoutException e) {
+						timeouts.incrementAndGet();
+						throw e;
+					}
+					finally {
+						recordWait(System.nanoTime() - start);
+					}
+				}
+
+				public boolean cancel() {
+					return connectionRequest.cancel();
+				}
+			};
+		}
+
+		private void recordWait(long waitNanos) {
+			totalWaitNanos.addAndGet(waitNanos);
+			long max = maxWaitNanos.get();
+			while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos)) {
+				max = maxWaitNanos.get();
+			}
+		}
+	}
+
+}
@@ -34,7 +34,6 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -95,7 +94,7 @@ public class ProvenanceFactoryClient extends PastaClient {
 		String provenanceXml = null;
 		Integer statusCode = null;
 		HttpEntity responseEntity = null;
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		HttpResponse response = null;
 		String urlFragment = packageId.replace('.', '/');
 		String provenanceURL = String.format("%s/%s", BASE_URL, urlFragment);
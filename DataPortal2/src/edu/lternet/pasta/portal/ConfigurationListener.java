@@ -33,6 +33,8 @@ import org.apache.commons.configuration.*;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
+import edu.lternet.pasta.client.PastaHttpClient;
+
 /**
  * @author servilla
  * @since Mar 9, 2012
@@ -57,8 +59,7 @@ public class ConfigurationListener implements ServletContextListener {
 	 */
 	@Override
 	public void contextDestroyed(ServletContextEvent arg0) {
-		// TODO Auto-generated method stub
-
+		PastaHttpClient.stop();
 	}
 
 	/*
@@ -120,7 +120,6 @@ public class DataPackageAuditServlet extends DataPortalServlet {
     String xml = null;
     StringBuffer filter = new StringBuffer();
     String message = null;
-    String pastaUriHead = null;
     String uid = (String) httpSession.getAttribute("uid");
 
     if (uid == null || uid.isEmpty()) {
@@ -129,30 +128,32 @@ public class DataPackageAuditServlet extends DataPortalServlet {
     
     try {
       auditClient = new AuditManagerClient(uid);
-      pastaUriHead = auditClient.getPastaUriHead();
     
     /*
      * Request and process filter parameters
      */
     
-    // Encode empty request parameters with SQL regex string "%" 
-    String scope = "%25";
-    String identifier = "%25";
-    String revision = "%25";
-    String resourceId = null;
-    
+    /*
+     * Filter on the scope, identifier, and revision parts of the
+     * resourceId; the Audit Manager indexes these, and an empty
+     * request parameter leaves that part unconstrained.
+     */
     String value = "";
     
     value = request.getParameter("scope");
-    if (value != null && !value.isEmpty()) scope = value;
+    if (value != null && !value.isEmpty()) {
+      filter.append("scope=" + value + "&");
+    }
     
     value = request.getParameter("identifier");
-    if (value != null && !value.isEmpty()) identifier = value;
+    if (value != null && !value.isEmpty()) {
+      filter.append("identifier=" + value + "&");
+    }
 
     value = request.getParameter("revision");
-    if (value != null && !value.isEmpty()) revision = value;
-    
-    String packageId = scope + "." + identifier + "." + revision;
+    if (value != null && !value.isEmpty()) {
+      filter.append("revision=" + value + "&");
+    }
         
     String begin = (String) request.getParameter("begin");
     if (begin != null && !begin.isEmpty()) {
@@ -179,30 +180,22 @@ public class DataPackageAuditServlet extends DataPortalServlet {
     
     // Filter on "readDataPackage"
     if (packageResource || includeAllResources) {
-    	filter.append("serviceMethod=readDataPackage&");
-    	resourceId = getResourceId(pastaUriHead, packageId, PACKAGE);
-    	filter.append("resourceId=" + resourceId + "&");
+    	filter.append("serviceMethod=" + PACKAGE + "&");
     }
 
     // Filter on "readMetadata"
     if (metadataResource || includeAllResources) {
-    	filter.append("serviceMethod=readMetadata&");
-    	resourceId = getResourceId(pastaUriHead, packageId, METADATA);
-    	filter.append("resourceId=" + resourceId + "&");
+    	filter.append("serviceMethod=" + METADATA + "&");
     }
     
     // Filter on "readDataEntity"
     if (dataResource || includeAllResources) {
-    	filter.append("serviceMethod=readDataEntity&");
-    	resourceId = getResourceId(pastaUriHead, packageId, ENTITY);
-    	filter.append("resourceId=" + resourceId + "&");
+    	filter.append("serviceMethod=" + ENTITY + "&");
     }
 
     // Filter on "readDataPackageReport"
     if (reportResource || includeAllResources) {
-    	filter.append("serviceMethod=readDataPackageReport&");
-    	resourceId = getResourceId(pastaUriHead, packageId, REPORT);
-    	filter.append("resourceId=" + resourceId + "&");
+    	filter.append("serviceMethod=" + REPORT + "&");
     }
 
     String userIdParam = (String) request.getParameter("userId");
@@ -266,31 +259,5 @@ public class DataPackageAuditServlet extends DataPortalServlet {
     cwd = options.getString("system.cwd");
 
   }
-  
-  private String getResourceId(String pastaUriHead, String packageId, String serviceMethod) {
-  	
-  	String resourceId = null;
-  	
-  	String [] packageParts = packageId.split("\\.");
-  	
-		if (packageParts.length == 3) {
-			if (serviceMethod.equals(PACKAGE)) {
-				resourceId = pastaUriHead + "eml/" + packageParts[0] + "/" + packageParts[1]
-			    + "/" + packageParts[2];
-			} else if (serviceMethod.equals(METADATA)) {
-				resourceId = pastaUriHead + "metadata/eml/" + packageParts[0] + "/" + packageParts[1]
-				    + "/" + packageParts[2];
-			} else if (serviceMethod.equals(REPORT)) {
-				resourceId = pastaUriHead + "report/eml/" + packageParts[0] + "/" + packageParts[1]
-				    + "/" + packageParts[2];
-			} else { //ENTITY
-				resourceId = pastaUriHead + "data/eml/" + packageParts[0] + "/" + packageParts[1]
-				    + "/" + packageParts[2] + "/%25";
-			}
-		}
-  	
-  	return resourceId;
-  	
-  }
 
 }
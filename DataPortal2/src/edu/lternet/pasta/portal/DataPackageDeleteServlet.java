@@ -130,6 +130,7 @@ public class DataPackageDeleteServlet extends DataPortalServlet {
 
       DataPackageManagerClient dpmClient = new DataPackageManagerClient(uid);
       dpmClient.deleteDataPackage(scope, identifier);
+      RenderedPageCache.invalidate(scope, identifier);
         
       message = "Data package with scope and identifier '<b>" + packageId
             + "</b>' has been deleted.";
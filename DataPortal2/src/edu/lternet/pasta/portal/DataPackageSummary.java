@@ -0,0 +1,307 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.portal;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.xpath.CachedXPathAPI;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import edu.lternet.pasta.common.EmlPackageId;
+import edu.lternet.pasta.common.EmlPackageIdFormat;
+import edu.lternet.pasta.common.eml.DataPackage;
+import edu.lternet.pasta.common.eml.DataPackage.DataDescendant;
+import edu.lternet.pasta.common.eml.DataPackage.DataSource;
+
+
+/**
+ * DataPackageSummary parses the XML returned by the PASTA
+ * "readDataPackageSummary" web service method. Lists are returned in the
+ * same newline-separated formats as the individual service methods they
+ * replace (listDataPackageRevisions, readDataPackage, readDataEntityNames,
+ * and readDataEntitySizes), so that page-composition code can consume
+ * either.
+ *
+ * @author dcosta
+ *
+ */
+public class DataPackageSummary {
+
+	/*
+	 * Instance variables
+	 */
+
+	private final String xml;
+	private String packageId = null;
+	private boolean deleted = false;
+	private String doi = null;
+	private String dateCreated = null;
+	private final StringBuilder revisionList = new StringBuilder();
+	private final StringBuilder resourceMap = new StringBuilder();
+	private final StringBuilder entityNames = new StringBuilder();
+	private final StringBuilder entitySizes = new StringBuilder();
+	private final ArrayList<DataSource> dataSources = new ArrayList<DataSource>();
+	private final ArrayList<DataDescendant> dataDescendants = new ArrayList<DataDescendant>();
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Creates a new DataPackageSummary by parsing the summary XML.
+	 *
+	 * @param xml   the XML returned by the readDataPackageSummary service method
+	 * @throws Exception if the XML cannot be parsed
+	 */
+	public DataPackageSummary(String xml) throws Exception {
+		this.xml = xml;
+
+		InputStream inputStream = IOUtils.toInputStream(xml, "UTF-8");
+		try {
+			DocumentBuilder documentBuilder =
+					DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			Document document = documentBuilder.parse(inputStream);
+			CachedXPathAPI xpathapi = new CachedXPathAPI();
+			Node root = document.getDocumentElement();
+
+			packageId = textOf(xpathapi, root, "packageId");
+			deleted = "true".equals(textOf(xpathapi, root, "deleted"));
+			doi = textOf(xpathapi, root, "doi");
+			dateCreated = textOf(xpathapi, root, "dateCreated");
+
+			NodeList revisionNodes = xpathapi.selectNodeList(root, "revisions/revision");
+			for (int i = 0; i < revisionNodes.getLength(); i++) {
+				revisionList.append(revisionNodes.item(i).getTextContent().trim()).append("\n");
+			}
+
+			NodeList resourceNodes = xpathapi.selectNodeList(root, "resources/resource");
+			for (int i = 0; i < resourceNodes.getLength(); i++) {
+				resourceMap.append(resourceNodes.item(i).getTextContent().trim()).append("\n");
+			}
+
+			NodeList entityNodes = xpathapi.selectNodeList(root, "entities/entity");
+			for (int i = 0; i < entityNodes.getLength(); i++) {
+				Node entityNode = entityNodes.item(i);
+				String entityId = textOf(xpathapi, entityNode, "entityId");
+				String entityName = textOf(xpathapi, entityNode, "entityName");
+				String entitySize = textOf(xpathapi, entityNode, "entitySize");
+				if (entityId != null) {
+					if (entityName != null) {
+						entityNames.append(String.format("%s,%s\n", entityId, entityName));
+					}
+					if (entitySize != null) {
+						entitySizes.append(String.format("%s,%s\n", entityId, entitySize));
+					}
+				}
+			}
+
+			DataPackage dataPackage = new DataPackage();
+
+			NodeList dataSourceNodes = xpathapi.selectNodeList(root, "dataSources/dataSource");
+			for (int i = 0; i < dataSourceNodes.getLength(); i++) {
+				Node dataSourceNode = dataSourceNodes.item(i);
+				String sourceId = textOf(xpathapi, dataSourceNode, "packageId");
+				String sourceURL = textOf(xpathapi, dataSourceNode, "url");
+				dataSources.add(dataPackage.new DataSource(
+						sourceId,
+						textOf(xpathapi, dataSourceNode, "title"),
+						convertToDataPortalURL(sourceURL, sourceId)));
+			}
+
+			NodeList dataDescendantNodes = xpathapi.selectNodeList(root, "dataDescendants/dataDescendant");
+			for (int i = 0; i < dataDescendantNodes.getLength(); i++) {
+				Node dataDescendantNode = dataDescendantNodes.item(i);
+				String derivedId = textOf(xpathapi, dataDescendantNode, "packageId");
+				String derivedURL = textOf(xpathapi, dataDescendantNode, "url");
+				dataDescendants.add(dataPackage.new DataDescendant(
+						derivedId,
+						textOf(xpathapi, dataDescendantNode, "title"),
+						convertToDataPortalURL(derivedURL, derivedId)));
+			}
+		}
+		finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+
+	/*
+	 * Class methods
+	 */
+
+	private static String textOf(CachedXPathAPI xpathapi, Node contextNode, String xpath)
+			throws Exception {
+		Node node = xpathapi.selectSingleNode(contextNode, xpath);
+		return (node == null) ? null : node.getTextContent().trim();
+	}
+
+
+	/*
+	 * Convert a PASTA metadata URL to a Data Portal URL. This is done as a convenience to
+	 * the user, since it is easier to view a data package in the Data Portal as opposed
+	 * to opening the raw XML metadata in a browser window.
+	 */
+	private static String convertToDataPortalURL(String url, String packageId) {
+		String dataPortalURL = url;
+		
+		if (packageId != null ) {
+			EmlPackageIdFormat epif = new EmlPackageIdFormat();
+			try {
+				EmlPackageId epi = epif.parse(packageId);
+				if (epi != null) {
+					String scope = epi.getScope();
+					Integer identifier = epi.getIdentifier();
+					Integer revision = epi.getRevision();
+					if ((scope != null) && (identifier != null) && (revision != null)) {
+						dataPortalURL = String.format("mapbrowse?scope=%s&identifier=%d&revision=%d",
+												      scope, identifier, revision);
+					}
+				}
+			}
+			catch (Exception e) {
+				// No action needed; not a valid packageId so use the original url
+			}
+		}
+		
+		return dataPortalURL;
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * @return the summary XML; its dataSources and dataDescendants elements
+	 *         have the same form as the listDataSources and
+	 *         listDataDescendants service methods, and are also available
+	 *         already parsed from getDataSources() and getDataDescendants()
+	 */
+	public String getXml() {
+		return xml;
+	}
+
+
+	/**
+	 * @return the packageId of the summarized revision, e.g. "knb-lter-nin.1.1"
+	 */
+	public String getPackageId() {
+		return packageId;
+	}
+
+
+	/**
+	 * @return the revision that was summarized, resolving "newest"
+	 */
+	public String getRevision() {
+		String revision = null;
+		if (packageId != null) {
+			revision = packageId.substring(packageId.lastIndexOf('.') + 1);
+		}
+		return revision;
+	}
+
+
+	/**
+	 * @return true if the data package has been deleted
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+
+	/**
+	 * @return the data package DOI, or null if it has not been assigned one
+	 */
+	public String getDoi() {
+		return doi;
+	}
+
+
+	/**
+	 * @return the upload date-time, e.g. "2013-01-10T15:56:22.264"
+	 */
+	public String getDateCreated() {
+		return dateCreated;
+	}
+
+
+	/**
+	 * @return a newline-separated list of the data package's revisions
+	 */
+	public String getRevisionList() {
+		return revisionList.toString();
+	}
+
+
+	/**
+	 * @return a newline-separated list of the resource identifiers of the
+	 *         summarized revision
+	 */
+	public String getResourceMap() {
+		return resourceMap.toString();
+	}
+
+
+	/**
+	 * @return a newline-separated list of "entityId,entityName" lines for
+	 *         the data entities the user is authorized to read
+	 */
+	public String getEntityNames() {
+		return entityNames.toString();
+	}
+
+
+	/**
+	 * @return a newline-separated list of "entityId,entitySize" lines for
+	 *         the data entities the user is authorized to read
+	 */
+	public String getEntitySizes() {
+		return entitySizes.toString();
+	}
+
+
+	/**
+	 * @return the provenance sources of the data package; the URLs of PASTA
+	 *         data packages are converted to Data Portal (mapbrowse) URLs
+	 */
+	public ArrayList<DataSource> getDataSources() {
+		return dataSources;
+	}
+
+
+	/**
+	 * @return the data packages derived from the data package, with their
+	 *         URLs converted to Data Portal (mapbrowse) URLs
+	 */
+	public ArrayList<DataDescendant> getDataDescendants() {
+		return dataDescendants;
+	}
+
+}
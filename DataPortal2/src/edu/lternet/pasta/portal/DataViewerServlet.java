@@ -31,6 +31,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.log4j.Logger;
 
 import edu.lternet.pasta.client.DataPackageManagerClient;
@@ -45,6 +46,13 @@ public class DataViewerServlet extends DataPortalServlet {
   private static final Logger logger = Logger
       .getLogger(edu.lternet.pasta.portal.DataViewerServlet.class);
   private static final long serialVersionUID = 1L;
+  
+  /**
+   * Instance variables
+   */
+  
+  // If true, large data entities are downloaded directly from the data server
+  private boolean redirect = true;
 
   /**
    * Constructor of the object.
@@ -117,7 +125,7 @@ public class DataViewerServlet extends DataPortalServlet {
 				DataPackageManagerClient dpmClient = new DataPackageManagerClient(
 						uid);
 				dpmClient.readDataEntity(scope, identifier, revision, entityId,
-						response);
+						response, redirect);
 			}
 			else {
 				String message = 
@@ -140,7 +148,8 @@ public class DataViewerServlet extends DataPortalServlet {
    *           if an error occurs
    */
   public void init() throws ServletException {
-    // Put your code here
+    PropertiesConfiguration options = ConfigurationListener.getOptions();
+    redirect = options.getBoolean("dataportal.download.redirect", true);
   }
 
 }
@@ -25,7 +25,6 @@
 package edu.lternet.pasta.portal;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.sql.Time;
 import java.util.ArrayList;
@@ -59,6 +58,15 @@ public class HarvestReport {
   private static final Logger logger = Logger
   .getLogger(edu.lternet.pasta.portal.HarvestReport.class);
   
+  /*
+   * Files written in a data package's directory as the harvester works
+   * on it: the first marks it as in progress; the second holds the
+   * quality check status counts once it has finished, so that viewing
+   * the report does not re-parse every quality report.
+   */
+  private static final String IN_PROGRESS_FILE = "inProgress.txt";
+  private static final String STATUS_COUNTS_FILE = "statusCounts.txt";
+  
   /*
    * Instance variables
    */
@@ -73,6 +81,84 @@ public class HarvestReport {
    * Class methods
    */
   
+  /**
+   * Records that the harvester has started processing a data package, so
+   * that the harvest report can show it as in progress.
+   * 
+   * @param packageIdPath  the data package's directory in the harvest
+   */
+  public static void documentStarted(String packageIdPath) {
+    File inProgressFile = new File(packageIdPath, IN_PROGRESS_FILE);
+    
+    try {
+      FileUtils.writeStringToFile(inProgressFile, new Date().toString());
+    }
+    catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+  }
+  
+  
+  /**
+   * Records that the harvester has finished processing a data package,
+   * adding its row to the harvest report: the quality check status counts
+   * are computed once and stored alongside the quality report.
+   * 
+   * @param packageIdPath  the data package's directory in the harvest
+   */
+  public static void documentFinished(String packageIdPath) {
+    File qualityReportFile = new File(packageIdPath, "qualityReport.xml");
+    int[] statusCounts = getStatusCounts(qualityReportFile);
+    StringBuilder stringBuilder = new StringBuilder();
+    
+    for (int i = 0; i < statusCounts.length; i++) {
+      if (i > 0) {
+        stringBuilder.append(",");
+      }
+      stringBuilder.append(statusCounts[i]);
+    }
+    
+    try {
+      FileUtils.writeStringToFile(new File(packageIdPath, STATUS_COUNTS_FILE),
+                                  stringBuilder.toString());
+    }
+    catch (IOException e) {
+      logger.error(e.getMessage());
+    }
+    
+    FileUtils.deleteQuietly(new File(packageIdPath, IN_PROGRESS_FILE));
+  }
+  
+  
+  /*
+   * Reads the status counts stored when the harvester finished a data
+   * package, or returns null if there are none (e.g. in a harvest made
+   * before they were stored).
+   */
+  private static int[] readStatusCounts(String packageIdPath) {
+    int[] statusCounts = null;
+    File statusCountsFile = new File(packageIdPath, STATUS_COUNTS_FILE);
+    
+    if (statusCountsFile.exists()) {
+      try {
+        String[] counts = FileUtils.readFileToString(statusCountsFile).trim().split(",");
+        if (counts.length == 5) {
+          statusCounts = new int[5];
+          for (int i = 0; i < counts.length; i++) {
+            statusCounts[i] = Integer.parseInt(counts[i]);
+          }
+        }
+      }
+      catch (Exception e) {
+        logger.error(e.getMessage());
+        statusCounts = null;
+      }
+    }
+    
+    return statusCounts;
+  }
+  
+  
   
   /*
    * Instance methods
@@ -270,14 +356,19 @@ public class HarvestReport {
     String qualityReportPath = packageIdPath + "/qualityReport.xml";
     File qualityReportFile = new File(qualityReportPath);
     
+    boolean inProgress = new File(packageIdPath, IN_PROGRESS_FILE).exists();
     boolean wasInserted = wasInserted(packageIdPath, isEvaluate);
     String inserted = wasInserted ? "Yes" : "No";
+    if (inProgress) {
+      inserted = "In progress";
+      wasInserted = false;
+    }
     
     if (wasInserted && !isEvaluate) {
       dataPackageLink = getDataPackageLink(packageId);
     }
 
-    boolean qualityReportExists = qualityReportFile != null && 
+    boolean qualityReportExists = !inProgress && qualityReportFile != null && 
                                   qualityReportFile.exists();
     if (qualityReportExists) {
       qualityReportLink = getQualityReportLink(packageId, qualityReportPath);
@@ -287,7 +378,10 @@ public class HarvestReport {
     }
 
     String serviceMessage = serviceMessage(packageIdPath);
-    int[] statusCounts = getStatusCounts(qualityReportFile);
+    int[] statusCounts = readStatusCounts(packageIdPath);
+    if (statusCounts == null) {
+      statusCounts = inProgress ? new int[5] : getStatusCounts(qualityReportFile);
+    }
     
     stringBuffer.append("<td class=\"nis\">" + dataPackageLink + "</td>\n");
     stringBuffer.append("<td class=\"nis\">" + inserted + "</td>\n");
@@ -363,7 +457,7 @@ public class HarvestReport {
    * Generates an array of five int values representing status counts
    * for the quality checks in the specified quality report file.
    */
-  private int[] getStatusCounts(File qualityReportFile) {
+  private static int[] getStatusCounts(File qualityReportFile) {
     int[] statusCounts = new int[5];
     int total = 0;
     int valid = 0;
@@ -373,11 +467,9 @@ public class HarvestReport {
     
     try {
       if (qualityReportFile != null && qualityReportFile.exists()) {
-        FileInputStream fis = new FileInputStream(qualityReportFile);
-
         DocumentBuilder documentBuilder = DocumentBuilderFactory.newInstance()
             .newDocumentBuilder();
-        Document document = documentBuilder.parse(fis);
+        Document document = documentBuilder.parse(qualityReportFile);
         NodeList nodeList = document.getElementsByTagName("status");
         for (int i = 0; i < nodeList.getLength(); i++) {
           Node node = nodeList.item(i);
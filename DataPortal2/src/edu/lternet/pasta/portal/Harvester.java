@@ -34,6 +34,12 @@ import java.io.Writer;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.io.FileUtils;
@@ -63,13 +69,23 @@ public class Harvester implements Runnable {
       .getLogger(edu.lternet.pasta.portal.Harvester.class);
   private static final String PACKAGEID_PARSING_ERROR =
     "Unable to parse packageId from document. The document may not be well-formed XML.";
+  private static final int DEFAULT_THREADS = 4;
+  private static final int DEFAULT_RATE_PER_MINUTE = 20;
+  private static final int DEFAULT_RATE_BURST = 4;
+  
+  /*
+   * Limits the rate at which all harvests, together, submit documents
+   * to PASTA for evaluation or upload
+   */
+  private static TokenBucket rateLimiter = null;
   
   
   /*
    * Instance variables
    */
   
-  private int dummyPackageIdCounter = 1;
+  private final AtomicInteger dummyPackageIdCounter = new AtomicInteger(1);
+  private final AtomicInteger emlFileCounter = new AtomicInteger(1);
   private String harvesterPath = null;
   private String harvestReportId = null;
   private String harvestDirPath = null;
@@ -78,6 +94,8 @@ public class Harvester implements Runnable {
   private ArrayList<String> documentURLs = null;
   private String uid = null;
   private boolean useChecksum = false;
+  // Number of documents processed concurrently
+  private int threads = DEFAULT_THREADS;
 
   
   /*
@@ -100,6 +118,11 @@ public class Harvester implements Runnable {
     this.uid = uid;
     this.evaluate = isEvaluate;
     this.useChecksum = useChecksum;
+    
+    PropertiesConfiguration options = ConfigurationListener.getOptions();
+    if (options != null) {
+      this.threads = Math.max(1, options.getInt("harvester.threads", DEFAULT_THREADS));
+    }
   }
   
 
@@ -125,6 +148,26 @@ public class Harvester implements Runnable {
   }
 
 
+  /*
+   * Returns the rate limiter shared by all harvests, creating it from the
+   * harvester.rate.* options the first time it is needed.
+   */
+  private static synchronized TokenBucket getRateLimiter() {
+    if (rateLimiter == null) {
+      int perMinute = DEFAULT_RATE_PER_MINUTE;
+      int burst = DEFAULT_RATE_BURST;
+      PropertiesConfiguration options = ConfigurationListener.getOptions();
+      if (options != null) {
+        perMinute = options.getInt("harvester.rate.perMinute", DEFAULT_RATE_PER_MINUTE);
+        burst = options.getInt("harvester.rate.burst", DEFAULT_RATE_BURST);
+      }
+      rateLimiter = new TokenBucket(burst, perMinute);
+    }
+    
+    return rateLimiter;
+  }
+
+
   /*
    * A main program that exercises much of the HarvesterServlet's functionality.\
    * No command arguments are needed.
@@ -329,6 +372,7 @@ public class Harvester implements Runnable {
 			                    boolean isEvaluate) {
 		String filename = "serviceMessage.txt";
 		String packageId = "";
+		String packageIdPath = null;
 		EmlPackageId emlPackageId = null;
 
 		try {
@@ -348,14 +392,15 @@ public class Harvester implements Runnable {
 				packageId = epif.format(emlPackageId);
 			}
 			catch (Exception e) {
-				packageId = "Unknown-Package-ID-" + dummyPackageIdCounter++;
+				packageId = "Unknown-Package-ID-" + dummyPackageIdCounter.getAndIncrement();
 			}
 
-			String packageIdPath = harvestDirPath + "/" + packageId;
+			packageIdPath = harvestDirPath + "/" + packageId;
 			String verb = isEvaluate ? "Evaluating" : "Uploading";
 			logger.info(String.format("%s data package: %s", verb, packageId));
 
 			Harvester.createDirectory(packageIdPath);
+			HarvestReport.documentStarted(packageIdPath);
 
 			/* 
 			 * Process upload (insert or update) operation 
@@ -451,6 +496,11 @@ public class Harvester implements Runnable {
 		catch (Exception e) {
 			logger.error(e.getMessage());
 		}
+		finally {
+			if (packageIdPath != null) {
+				HarvestReport.documentFinished(packageIdPath);
+			}
+		}
 	}
   
   
@@ -541,6 +591,13 @@ public class Harvester implements Runnable {
   * Inserts or evaluates a list of EML documents. The document
   * URLs must first be stored in the this.documentURLs
   * instance variable.
+  * 
+  * The documents are fetched and processed by a pool of worker threads.
+  * Revisions of the same data package must reach PASTA in the order they
+  * appear in the list, so the documents are grouped by scope and
+  * identifier; each group is processed in order by one worker, and the
+  * groups are processed concurrently. Submissions to PASTA are paced by
+  * the shared rate limiter rather than by a fixed sleep.
   */
   private void processDocumentURLs() throws Exception {
     boolean tooManyHarvests = checkForTooManyHarvests();
@@ -550,37 +607,112 @@ public class Harvester implements Runnable {
       Harvester.createDirectory(harvestDirPath);
       
       // Sub-directory for temporary EML files
-      String harvestEMLPath = harvestDirPath + "/eml";
+      final String harvestEMLPath = harvestDirPath + "/eml";
       Harvester.createDirectory(harvestEMLPath);
       
-      for (String documentURL : documentURLs) {
-        if (documentURL != null && !documentURL.equals("")) {
-          String urlErrorMessage = null;
-          String emlString = null;
-          
-          try {
-            emlString = emlStringFromURL(documentURL);
-          }
-          catch (IOException e) {
-            urlErrorMessage = "IOException : " + e.getMessage();
-            logger.error(urlErrorMessage); 
-          }
-          
-          /*
-           * Save the EML to file then process it for evaluation or upload
-           */
-          if (emlString != null) {
-            File emlFile = saveEmlToFile(harvestEMLPath, emlString, evaluate);
-            processEMLFile(harvestDirPath, uid, emlFile, evaluate);
-            // Sleep to allow DAS database connection recovery
-            Thread.sleep(30000);
+      ExecutorService executorService = Executors.newFixedThreadPool(threads);
+      
+      try {
+        ArrayList<Future<File>> fetches = new ArrayList<Future<File>>();
+        for (final String documentURL : documentURLs) {
+          if (documentURL != null && !documentURL.equals("")) {
+            fetches.add(executorService.submit(new Callable<File>() {
+              public File call() throws Exception {
+                return fetchDocument(harvestEMLPath, documentURL);
+              }
+            }));
           }
-          else if (urlErrorMessage != null) {
-            writeUrlIoMessage(harvestDirPath, documentURL, urlErrorMessage);
+        }
+        
+        LinkedHashMap<String, ArrayList<File>> groups = 
+            new LinkedHashMap<String, ArrayList<File>>();
+        for (Future<File> fetch : fetches) {
+          File emlFile = fetch.get();
+          if (emlFile != null) {
+            String group = documentGroup(emlFile);
+            ArrayList<File> groupFiles = groups.get(group);
+            if (groupFiles == null) {
+              groupFiles = new ArrayList<File>();
+              groups.put(group, groupFiles);
+            }
+            groupFiles.add(emlFile);
           }
-        }    
+        }
+        
+        ArrayList<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (final ArrayList<File> groupFiles : groups.values()) {
+          results.add(executorService.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+              for (File emlFile : groupFiles) {
+                getRateLimiter().acquire();
+                processEMLFile(harvestDirPath, uid, emlFile, evaluate);
+              }
+              return null;
+            }
+          }));
+        }
+        
+        for (Future<Object> result : results) {
+          result.get();
+        }
+      }
+      finally {
+        executorService.shutdown();
+      }
+    }
+  }
+  
+  
+  /*
+   * Fetches a document URL and saves the EML to file for processing,
+   * recording an error message for the harvest report if it cannot be
+   * fetched.
+   * 
+   * @return the EML file, or null if the document could not be fetched
+   */
+  private File fetchDocument(String harvestEMLPath, String documentURL) {
+    File emlFile = null;
+    String urlErrorMessage = null;
+    String emlString = null;
+    
+    try {
+      emlString = emlStringFromURL(documentURL);
+    }
+    catch (IOException e) {
+      urlErrorMessage = "IOException : " + e.getMessage();
+      logger.error(urlErrorMessage); 
+    }
+    
+    if (emlString != null) {
+      emlFile = saveEmlToFile(harvestEMLPath, emlString, evaluate);
+    }
+    else if (urlErrorMessage != null) {
+      writeUrlIoMessage(harvestDirPath, documentURL, urlErrorMessage);
+    }
+    
+    return emlFile;
+  }
+  
+  
+  /*
+   * Returns the scope and identifier of the data package described by an
+   * EML file. A document whose packageId cannot be parsed forms a group
+   * of its own.
+   */
+  private String documentGroup(File emlFile) {
+    String group = emlFile.getName();
+    
+    try {
+      EmlPackageId emlPackageId = EmlUtility.emlPackageIdFromEML(emlFile);
+      if (emlPackageId != null && emlPackageId.getScope() != null) {
+        group = String.format("%s.%s", emlPackageId.getScope(), emlPackageId.getIdentifier());
       }
     }
+    catch (Exception e) {
+      // Processing the document will report the parsing error
+    }
+    
+    return group;
   }
   
   
@@ -635,7 +767,7 @@ public class Harvester implements Runnable {
    * Write the text of a URL IO error message to file for subsequent use in
    * harvest reports.
    */
-  private void writeUrlIoMessage(String path, String url, String message) {
+  private synchronized void writeUrlIoMessage(String path, String url, String message) {
     boolean append = true;
     String urlMessagesPath = path + "/urlMessages.txt";
     
@@ -662,7 +794,7 @@ public class Harvester implements Runnable {
     File tempFile = null;
     Date now = new Date();
     Long mili = now.getTime();
-    String tempFileName = mili.toString() + ".xml";
+    String tempFileName = mili.toString() + "-" + emlFileCounter.getAndIncrement() + ".xml";
     logger.debug("NOW: " + mili.toString());
     StringBuffer xmlBuffer = new StringBuffer(xml);
     
@@ -0,0 +1,80 @@
+/*
+ *
+ * $Date$
+ * $Author$
+ * $Revision$
+ *
+ * Copyright 2011,2012 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.portal;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import edu.lternet.pasta.client.PastaHttpClient;
+
+
+/**
+ * Reports the utilization of the portal's shared pool of HTTP connections
+ * to PASTA, and the time spent waiting for a pooled connection, as a
+ * single line of plain text for use by monitoring tools.
+ */
+public class HttpPoolStatusServlet extends DataPortalServlet {
+
+  /**
+   * Class variables
+   */
+
+  private static final long serialVersionUID = 1L;
+
+  
+  /**
+   * Constructor of the object.
+   */
+  public HttpPoolStatusServlet() {
+    super();
+  }
+
+  
+  /**
+   * The doGet method of the servlet. <br>
+   * 
+   * @param request
+   *          the request send by the client to the server
+   * @param response
+   *          the response send by the server to the client
+   * @throws ServletException
+   *           if an error occurred
+   * @throws IOException
+   *           if an error occurred
+   */
+	public void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		response.setContentType("text/plain");
+		response.setHeader("Cache-Control", "no-cache");
+		PrintWriter out = response.getWriter();
+		out.println(PastaHttpClient.getPoolStatus());
+		out.flush();
+	}
+
+}
@@ -25,10 +25,15 @@
 package edu.lternet.pasta.portal;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -37,19 +42,12 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.commons.lang3.text.StrTokenizer;
 import org.apache.commons.codec.EncoderException;
 import org.apache.commons.codec.net.URLCodec;
 import org.apache.commons.configuration.PropertiesConfiguration;
-import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
-import org.apache.xpath.CachedXPathAPI;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import edu.lternet.pasta.client.DataPackageManagerClient;
 import edu.lternet.pasta.common.EmlPackageId;
@@ -88,6 +86,46 @@ public class MapBrowseServlet extends DataPortalServlet {
 	private static final String DoiOrg = "https://doi.org/";
 	private static final String wasDeletedMsg = 
 	"This data package has been deleted by the metadata provider. It remains accessible for archival purposes only.";
+	private static final int DEFAULT_THREADS = 16;
+
+	/*
+	 * The rendered page cache view name and the version of the fragments
+	 * rendered by renderMetadataFragments(); change the version whenever
+	 * that rendering changes, so that fragments cached by an earlier
+	 * version are not used.
+	 */
+	private static final String VIEW = "mapbrowse";
+	private static final String RENDER_VERSION = "1";
+
+	/*
+	 * Names of the page fragments rendered from the metadata
+	 */
+	private static final String TITLE_HTML = "titleHTML";
+	private static final String CREATORS_HTML = "creatorsHTML";
+	private static final String ABSTRACT_HTML = "abstractHTML";
+	private static final String INTELLECTUAL_RIGHTS_HTML = "intellectualRightsHTML";
+	private static final String PUBLICATION_DATE_HTML = "publicationDateHTML";
+	private static final String SPATIAL_COVERAGE_HTML = "spatialCoverageHTML";
+	private static final String GOOGLE_MAP_HTML = "googleMapHTML";
+	private static final String CODE_GENERATION_HTML = "codeGenerationHTML";
+	private static final String JSON_COORDINATES = "jsonCoordinates";
+	private static final String EXPAND_COORDINATES = "expandCoordinates";
+	private static final String NORTH_COORD = "northCoord";
+	private static final String SOUTH_COORD = "southCoord";
+	private static final String EAST_COORD = "eastCoord";
+	private static final String WEST_COORD = "westCoord";
+	private static final String HAS_OFFLINE = "hasOffline";
+	private static final String OBJECT_NAME_PREFIX = "objectName.";
+	private static final String CITATION_CREATORS = "citationCreators";
+	private static final String CITATION_PUB_DATE = "citationPubDate";
+	private static final String CITATION_TITLE = "citationTitle";
+	private static final String CITATION_ERROR_HTML = "citationErrorHTML";
+
+	/*
+	 * Runs the backend requests that a page issues alongside the data
+	 * package summary request
+	 */
+	private static ExecutorService executorService = null;
 
 
 	/**
@@ -131,7 +169,10 @@ public class MapBrowseServlet extends DataPortalServlet {
 	 */
 	public void destroy() {
 		super.destroy(); // Just puts "destroy" string in log
-		// Put your code here
+		if (executorService != null) {
+			executorService.shutdownNow();
+			executorService = null;
+		}
 	}
 
 	/**
@@ -192,7 +233,6 @@ public class MapBrowseServlet extends DataPortalServlet {
 		String pastaDataObjectIdentifier = "";
 		String savedDataHTML = "";
 		String wasDeletedHTML = "";
-		EmlObject emlObject = null;
 		boolean showSaved = false;
 		boolean isSaved = false;
 		boolean hasOffline = false;
@@ -246,16 +286,10 @@ public class MapBrowseServlet extends DataPortalServlet {
 				}
 
 			if (isPackageId) {
-				StringBuilder titleHTMLBuilder = new StringBuilder();
-				StringBuilder creatorsHTMLBuilder = new StringBuilder();
-				StringBuilder publicationDateHTMLBuilder = new StringBuilder();
-				StringBuilder spatialCoverageHTMLBuilder = new StringBuilder();
-				StringBuilder googleMapHTMLBuilder = new StringBuilder();
 				StringBuilder packageIdHTMLBuilder = new StringBuilder();
 				StringBuilder resourcesHTMLBuilder = new StringBuilder();
 				StringBuilder citationHTMLBuilder = new StringBuilder();
 				StringBuilder provenanceHTMLBuilder = new StringBuilder();
-				StringBuilder codeGenerationHTMLBuilder = new StringBuilder();
 				StringBuilder savedDataHTMLBuilder = new StringBuilder();
 
 				String packageId = null;
@@ -278,30 +312,82 @@ public class MapBrowseServlet extends DataPortalServlet {
 				String map = null;
 				StrTokenizer tokens = null;
 				String emlString = null;
-				ArrayList<Title> titles = null;
-				ArrayList<ResponsibleParty> creators = null;
+				HashMap<String, String> fragments = null;
 
 				DataPackageManagerClient dpmClient = null;
+				DataPackageSummary summary = null;
 				RevisionUtility revUtil = null;
 
 				try {
 
 					dpmClient = new DataPackageManagerClient(uid);
-					
-					String deletionList = dpmClient.listDeletedDataPackages();
-					wasDeleted = isDeletedDataPackage(deletionList, scope, identifier);
+
+					/*
+					 * The summary supplies everything but the metadata
+					 * fragments and the data shelf status. The fragments
+					 * rendered from the metadata are read from the rendered
+					 * page cache when possible; otherwise the metadata is
+					 * requested concurrently with the summary.
+					 */
+					final DataPackageManagerClient client = dpmClient;
+					final String metadataScope = scope;
+					final Integer metadataId = id;
+					final String metadataRevision = revision;
+					String accessClass = RenderedPageCache.getAccessClass(uid);
+					boolean fromCache = false;
+					Future<String> emlFuture = null;
+
+					if (!revision.equals("newest")) {
+						String cacheKeyPackageId = String.format("%s.%d.%s", scope, id, revision);
+						fragments = readCachedFragments(cacheKeyPackageId, accessClass);
+					}
+
+					if (fragments == null) {
+						emlFuture = executorService.submit(new Callable<String>() {
+							public String call() throws Exception {
+								return client.readMetadata(metadataScope, metadataId, metadataRevision);
+							}
+						});
+					}
+
+					Future<Boolean> savedFuture = null;
+					if (showSaved) {
+						final String savedUid = uid;
+						final Integer identifierInt = new Integer(identifier);
+						savedFuture = executorService.submit(new Callable<Boolean>() {
+							public Boolean call() throws Exception {
+								SavedData savedData = new SavedData(savedUid);
+								return savedData.hasDocid(metadataScope, identifierInt);
+							}
+						});
+					}
+
+					/*
+					 * The summary request also checks that the user may read
+					 * the data package, and hence its metadata, before any
+					 * cached fragments are used.
+					 */
+					try {
+						summary = new DataPackageSummary(
+								dpmClient.readDataPackageSummary(scope, id, revision));
+					}
+					catch (Exception e) {
+						if (emlFuture != null) {
+							emlFuture.cancel(true);
+						}
+						throw (e);
+					}
+
+					wasDeleted = summary.isDeleted();
 					if (wasDeleted) {
 						wasDeletedHTML = String.format("<big>%s</big>", wasDeletedMsg);
 					}
 
-					String revisionList = dpmClient.listDataPackageRevisions(
-							scope, id, null);
-					revUtil = new RevisionUtility(revisionList);
+					revUtil = new RevisionUtility(summary.getRevisionList());
 					size = revUtil.getSize();
 
 					String newestRevisionValue = revUtil.getNewest().toString();
-					if (revision.equals("newest"))
-						revision = newestRevisionValue;
+					revision = summary.getRevision();
 
 					if (!newestRevisionValue.equals(revision)) {
 		                String displayText = "(View Newest Revision)";
@@ -315,14 +401,42 @@ public class MapBrowseServlet extends DataPortalServlet {
 							.valueOf(revision));
 					successor = revUtil.getSuccessor(Integer.valueOf(revision));
 
-					emlString = dpmClient.readMetadata(scope, id, revision);
-					emlObject = new EmlObject(emlString);
-					titles = emlObject.getTitles();
+					if (fragments == null) {
+						fragments = readCachedFragments(packageId, accessClass);
+					}
+
+					if (fragments != null) {
+						fromCache = true;
+						if (emlFuture != null) {
+							emlFuture.cancel(true);
+						}
+					}
+					else {
+						if (emlFuture != null) {
+							emlString = getResult(emlFuture);
+						}
+						else {
+							emlString = dpmClient.readMetadata(scope, id, revision);
+						}
+						EmlObject emlObject = new EmlObject(emlString);
+						fragments = renderMetadataFragments(emlObject, packageId);
+					}
+
+					/*
+					 * A deleted data package's pages are rendered from the
+					 * metadata on each view rather than cached.
+					 */
+					if (wasDeleted) {
+						if (fromCache) {
+							RenderedPageCache.invalidate(scope, id);
+						}
+					}
+					else if (!fromCache) {
+						RenderedPageCache.put(VIEW, packageId, RENDER_VERSION, accessClass, fragments);
+					}
 					
-					if (showSaved) {
-						SavedData savedData = new SavedData(uid);
-						Integer identifierInt = new Integer(identifier);
-						isSaved = savedData.hasDocid(scope, identifierInt);
+					if (savedFuture != null) {
+						isSaved = getResult(savedFuture);
 					}
 
 					if (showSaved) {
@@ -339,170 +453,24 @@ public class MapBrowseServlet extends DataPortalServlet {
 						savedDataHTML = savedDataHTMLBuilder.toString();
 					}
 
-					if (titles != null) {
-						titleHTMLBuilder
-								.append("<ul class=\"no-list-style\">\n");
-
-						for (Title title : titles) {
-							String listItem = "<li>" + title.getTitle() + "</li>\n";
-							titleHTMLBuilder.append(listItem);
-						}
-
-						titleHTMLBuilder.append("</ul>\n");
-						titleHTML = titleHTMLBuilder.toString();
-					}
-
-					creators = emlObject.getCreators();
-
-					if (creators != null) {
-
-						creatorsHTMLBuilder
-								.append("<ul class=\"no-list-style\">\n");
-
-						for (ResponsibleParty creator : creators) {
-							creatorsHTMLBuilder.append("<li>");
-
-							boolean useFullGivenName = true;
-							boolean lastNameFirst = true;
-							String individualName = creator.getIndividualName(useFullGivenName, lastNameFirst);
-							String positionName = creator.getPositionName();
-							String organizationName = creator
-									.getOrganizationName();
-
-							if (individualName != null) {
-								creatorsHTMLBuilder.append(individualName);
-							}
-
-							if (positionName != null) {
-								if (individualName != null) {
-									creatorsHTMLBuilder.append("; "
-											+ positionName);
-								}
-								else {
-									creatorsHTMLBuilder.append(positionName);
-								}
-							}
-
-							if (organizationName != null) {
-								if (positionName != null
-										|| individualName != null) {
-									creatorsHTMLBuilder.append("; "
-											+ organizationName);
-								}
-								else {
-									creatorsHTMLBuilder
-											.append(organizationName);
-								}
-							}
-
-							creatorsHTMLBuilder.append("</li>\n");
-						}
-
-						creatorsHTMLBuilder.append("</ul>\n");
-						creatorsHTML = creatorsHTMLBuilder.toString();
-					}
-					
-					String abstractText = emlObject.getAbstractText();
-
-					if (abstractText != null) {
-						abstractHTML = toSingleLine(abstractText);
-					}
-
-					
-					String intellectualRightsText = emlObject.getIntellectualRightsText();
-
-					if (intellectualRightsText != null) {
-						intellectualRightsHTML = toSingleLine(intellectualRightsText);
-					}
-
-					String pubDate = emlObject.getPubDate();
-
-					if (pubDate != null) {
-						publicationDateHTMLBuilder
-								.append("<ul class=\"no-list-style\">\n");
-						publicationDateHTMLBuilder.append("<li>" + pubDate
-								+ "</li>");
-						publicationDateHTMLBuilder.append("</ul>");
-						publicationDateHTML = publicationDateHTMLBuilder
-								.toString();
-					}
-
-					map = dpmClient.readDataPackage(scope, id, revision);
-					
-					String jsonCoordinates = emlObject.jsonSerializeCoordinates();
-					String stringCoordinates = emlObject.stringSerializeCoordinates();
-					
-					request.setAttribute("jsonCoordinates", jsonCoordinates);
-					if (stringCoordinates != null && !stringCoordinates.equals("")) {
-
-						String[] coordinatesArray = stringCoordinates.split(":");
-
-						/*
-						 * If there are two or fewer sets of coordinates, then initially
-						 * show them expanded, otherwise show them collapsed (to save
-						 * screen space.)
-						 */
-						request.setAttribute("expandCoordinates", new Boolean((coordinatesArray.length <= 2)));
-
-						// Only use the expander widget if there's more than one set of coordinates
-						boolean useExpander = (coordinatesArray.length > 1) ? true : false;
-						
-						if (useExpander) {
-							spatialCoverageHTMLBuilder.append("<div id='jqxWidget'>\n");
-							spatialCoverageHTMLBuilder.append("    <div id='jqxExpander'>\n");
-							spatialCoverageHTMLBuilder.append("        <div>Geographic Coordinates</div>\n");
-							spatialCoverageHTMLBuilder.append("        <div>\n");
-							spatialCoverageHTMLBuilder.append("            <ul class=\"no-list-style\">\n");
-							boolean firstCoordinates = true;
-							
-							for (String coordinates : coordinatesArray) {
-								String[] nsew = coordinates.split(",");
-								Double northCoord = new Double(nsew[0]);
-								Double southCoord = new Double(nsew[1]);
-								Double eastCoord = new Double(nsew[2]);
-								Double westCoord = new Double(nsew[3]);
-								if (firstCoordinates) {
-									request.setAttribute("northCoord", northCoord);
-									request.setAttribute("southCoord", southCoord);
-									request.setAttribute("eastCoord", eastCoord);
-									request.setAttribute("westCoord", westCoord);
-								}
-								firstCoordinates = false;
-								String spatial = String.format("N: %s,  S: %s,  E: %s,  W: %s",
-								             northCoord, southCoord, eastCoord, westCoord);
-								spatialCoverageHTMLBuilder.append(
-										String.format("  <li>%s</li>\n", spatial));	
-							}
-							
-							spatialCoverageHTMLBuilder.append("            </ul>\n");
-							spatialCoverageHTMLBuilder.append("        </div>\n");
-							spatialCoverageHTMLBuilder.append("    </div>\n");
-							spatialCoverageHTMLBuilder.append("</div>\n");
-						}
-						else {
-							String[] nsew = coordinatesArray[0].split(",");						
-							Double northCoord = new Double(nsew[0]);
-							Double southCoord = new Double(nsew[1]);
-							Double eastCoord = new Double(nsew[2]);
-							Double westCoord = new Double(nsew[3]);
-							request.setAttribute("northCoord", northCoord);
-							request.setAttribute("southCoord", southCoord);
-							request.setAttribute("eastCoord", eastCoord);
-							request.setAttribute("westCoord", westCoord);
-							final String spacer = "&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;";
-							spatialCoverageHTMLBuilder.append("<div>\n");
-							String spatial = String.format("N: %s%sS: %s%sE: %s%sW: %s",
-									          northCoord, spacer, southCoord, spacer, eastCoord, spacer, westCoord);
-							spatialCoverageHTMLBuilder.append(String.format("%s\n", spatial));
-							spatialCoverageHTMLBuilder.append("</div>\n");
-						}
-						
-						spatialCoverageHTML = spatialCoverageHTMLBuilder.toString();
-
-						googleMapHTMLBuilder.append("<ul class=\"no-list-style\">\n");
-						googleMapHTMLBuilder.append("  <li><div id='map-canvas-summary'></div></li>");						
-						googleMapHTMLBuilder.append("</ul>\n");
-						googleMapHTML = googleMapHTMLBuilder.toString();
+					titleHTML = getFragment(fragments, TITLE_HTML);
+					creatorsHTML = getFragment(fragments, CREATORS_HTML);
+					abstractHTML = getFragment(fragments, ABSTRACT_HTML);
+					intellectualRightsHTML = getFragment(fragments, INTELLECTUAL_RIGHTS_HTML);
+					publicationDateHTML = getFragment(fragments, PUBLICATION_DATE_HTML);
+					spatialCoverageHTML = getFragment(fragments, SPATIAL_COVERAGE_HTML);
+					googleMapHTML = getFragment(fragments, GOOGLE_MAP_HTML);
+
+					map = summary.getResourceMap();
+
+					request.setAttribute("jsonCoordinates", fragments.get(JSON_COORDINATES));
+					if (fragments.containsKey(EXPAND_COORDINATES)) {
+						request.setAttribute("expandCoordinates",
+								Boolean.valueOf(fragments.get(EXPAND_COORDINATES)));
+						request.setAttribute("northCoord", new Double(fragments.get(NORTH_COORD)));
+						request.setAttribute("southCoord", new Double(fragments.get(SOUTH_COORD)));
+						request.setAttribute("eastCoord", new Double(fragments.get(EAST_COORD)));
+						request.setAttribute("westCoord", new Double(fragments.get(WEST_COORD)));
 					}
 
 				}
@@ -523,8 +491,8 @@ public class MapBrowseServlet extends DataPortalServlet {
 				String report = null;
 				String data = "";
 				String doiId = null;
-				String entityNames = dpmClient.readDataEntityNames(scope, id, revision);
-				String entitySizes = dpmClient.readDataEntitySizes(scope, id, revision);
+				String entityNames = summary.getEntityNames();
+				String entitySizes = summary.getEntitySizes();
 				ScaledNumberFormat scaledNumberFormat = new ScaledNumberFormat();
 				
 				while (tokens.hasNext()) {
@@ -587,7 +555,7 @@ public class MapBrowseServlet extends DataPortalServlet {
 
 								if (isAuthorized) {
 									downloadableData = true;
-									String objectName = emlObject.getDataPackage().findObjectName(entityName);
+									String objectName = fragments.get(OBJECT_NAME_PREFIX + entityName.trim());
 									String fileInfo = (objectName == null) ? entityName : objectName;
 									String href = String.format("./dataviewer?packageid=%s&entityid=%s",
 											                    packageId, entityId);
@@ -615,23 +583,8 @@ public class MapBrowseServlet extends DataPortalServlet {
 							}
 							else {
 
-								try {
-									doiId = dpmClient.readDataPackageDoi(scope,
-											id, revision);
-								}
-								catch (Exception e) {
-									logger.error(e.getMessage());
-									e.printStackTrace();
-								}
-
-								String uploadDateHTML = "";
-								try {
-									uploadDateHTML = composeUploadDateHTML(dpmClient, scope, id, revision);
-								}
-								catch (Exception e) {
-									logger.error(e.getMessage());
-									e.printStackTrace();
-								}
+								doiId = summary.getDoi();
+								String uploadDateHTML = composeUploadDateHTML(summary.getDateCreated());
 
 								pastaDataObjectIdentifier = dpmClient
 										.getPastaPackageUri(scope, id, revision);
@@ -688,14 +641,7 @@ public class MapBrowseServlet extends DataPortalServlet {
 				/*
 				 * Check for offline entities
 				 */
-				ArrayList<Entity> entityList = emlObject.getDataPackage().getEntityList();
-				for (Entity entity : entityList) {
-					String offlineText = entity.getOfflineText();
-					if (offlineText != null) {
-						hasOffline = true;
-						break;
-					}
-				}					
+				hasOffline = fragments.containsKey(HAS_OFFLINE);
 				if (hasOffline) {
 					String offlineMsg = 
 							"Offline data: the metadata describes one or more data entities that have not been made available to this repository.";
@@ -754,34 +700,28 @@ public class MapBrowseServlet extends DataPortalServlet {
 								+ "\">How to cite this data package</a>\n");
 				citationLinkHTML = citationHTMLBuilder.toString();
 
-				String dataSourcesXML = dpmClient.listDataSources(scope, id, revision);
+				ArrayList<DataPackage.DataSource> dataSources = summary.getDataSources();
 				
-				if ((dataSourcesXML != null) && (dataSourcesXML.length() > 0)) {
-					ArrayList<DataPackage.DataSource> dataSources = xmlToDataSources(dataSourcesXML);
-					if ((dataSources != null) && (dataSources.size() > 0)) {
-						provenanceHTMLBuilder.append("This data package is derived from the following sources:<br/>");
-						provenanceHTMLBuilder.append("<ol>\n");
-						for (DataPackage.DataSource dataSource : dataSources) {
-							provenanceHTMLBuilder.append(String.format("<li>%s</li>", dataSource.toHTML()));
-						}
-						provenanceHTMLBuilder.append("</ol>\n");
-						provenanceHTMLBuilder.append("<br/>");
+				if (dataSources.size() > 0) {
+					provenanceHTMLBuilder.append("This data package is derived from the following sources:<br/>");
+					provenanceHTMLBuilder.append("<ol>\n");
+					for (DataPackage.DataSource dataSource : dataSources) {
+						provenanceHTMLBuilder.append(String.format("<li>%s</li>", dataSource.toHTML()));
 					}
+					provenanceHTMLBuilder.append("</ol>\n");
+					provenanceHTMLBuilder.append("<br/>");
 				}
 				
-				String dataDescendantsXML = dpmClient.listDataDescendants(scope, id, revision);
+				ArrayList<DataPackage.DataDescendant> dataDescendants = summary.getDataDescendants();
 				
-				if ((dataDescendantsXML != null) && (dataDescendantsXML.length() > 0)) {
-					ArrayList<DataPackage.DataDescendant> dataDescendants = xmlToDataDescendants(dataDescendantsXML);
-					if ((dataDescendants != null) && (dataDescendants.size() > 0)) {
-						provenanceHTMLBuilder.append("This data package is a source for the following data packages:<br/>");
-						provenanceHTMLBuilder.append("<ol>\n");
-						for (DataPackage.DataDescendant dataDescendant : dataDescendants) {
-							provenanceHTMLBuilder.append(String.format("<li>%s</li>", dataDescendant.toHTML()));
-						}
-						provenanceHTMLBuilder.append("</ol>\n");
-						provenanceHTMLBuilder.append("<br/>");
+				if (dataDescendants.size() > 0) {
+					provenanceHTMLBuilder.append("This data package is a source for the following data packages:<br/>");
+					provenanceHTMLBuilder.append("<ol>\n");
+					for (DataPackage.DataDescendant dataDescendant : dataDescendants) {
+						provenanceHTMLBuilder.append(String.format("<li>%s</li>", dataDescendant.toHTML()));
 					}
+					provenanceHTMLBuilder.append("</ol>\n");
+					provenanceHTMLBuilder.append("<br/>");
 				}
 				
 				/*
@@ -795,29 +735,9 @@ public class MapBrowseServlet extends DataPortalServlet {
 					
 				provenanceHTML = provenanceHTMLBuilder.toString();				
 
-				/*
-				 * Add code generation section only if this data package has at
-				 * least one entity that is a data table.
-				 */
-				DataPackage dataPackage = emlObject.getDataPackage();
-				boolean hasDataTableEntity = dataPackage.hasDataTableEntity();
-				if (hasDataTableEntity) {
-					ArrayList<String> programLinks = CodeGenerationServlet
-							.getProgramLinks(packageId);
-					codeGenerationHTMLBuilder
-							.append("Analyze this data package using ");
-					for (String programLink : programLinks) {
-						codeGenerationHTMLBuilder.append(String.format("%s, ",
-								programLink));
-					}
-					codeGenerationHTML = codeGenerationHTMLBuilder.toString();
-					codeGenerationHTML = codeGenerationHTML.substring(0,
-							codeGenerationHTML.length() - 2); // trim the last
-																// comma and
-																// space
-				}
+				codeGenerationHTML = getFragment(fragments, CODE_GENERATION_HTML);
 
-				citationHTML = this.citationFormatter(emlObject, uid, scope, id, revision);
+				citationHTML = this.citationFormatter(fragments, dpmClient, doiId, scope, id, revision);
 
 			}
 
@@ -854,139 +774,6 @@ public class MapBrowseServlet extends DataPortalServlet {
 	}
 	
 	
-	private ArrayList<DataPackage.DataSource> xmlToDataSources(String xml) {
-		ArrayList<DataPackage.DataSource> dataSources = new ArrayList<DataPackage.DataSource>();
-		
-  		if (xml != null) {
-  			InputStream inputStream = null;
-  			try {
-  				inputStream = IOUtils.toInputStream(xml, "UTF-8");
-  				DocumentBuilder documentBuilder = 
-  	              DocumentBuilderFactory.newInstance().newDocumentBuilder();
-  				CachedXPathAPI xpathapi = new CachedXPathAPI();
-
-  				Document document = null;
-  				document = documentBuilder.parse(inputStream);
-  	      
-  				if (document != null) { 	        
-  					NodeList dataSourceNodes = xpathapi.selectNodeList(document, "//dataSource");
-  					
-  					for (int i = 0; i < dataSourceNodes.getLength(); i++) {
-  						String packageId = null; 
-  						String title = null;
-  						String url = null;
-  						Node dataSourceNode = dataSourceNodes.item(i);
-  					    packageId = xpathapi.selectSingleNode(dataSourceNode, "packageId").getTextContent();
-  					    title = xpathapi.selectSingleNode(dataSourceNode, "title").getTextContent();
-  					    url = xpathapi.selectSingleNode(dataSourceNode, "url").getTextContent();
-  					    url = convertToDataPortalURL(url, packageId);
-  					  	DataPackage dp = new DataPackage();
-  						DataPackage.DataSource dataSource = dp.new DataSource(packageId, title, url);
-  						dataSources.add(dataSource);
-  					}
-  				}
-			}
-			catch (Exception e) {
-		        logger.error("Error parsing search result set: " + e.getMessage());
-			}
-			finally {
-				if (inputStream != null) {
-					try {
-						inputStream.close();
-					}
-					catch (IOException e) {
-						;
-					}
-				}
-			}
-  		}
-		
-		return dataSources;
-	}
-	
-	
-	/*
-	 * Convert a PASTA metadata URL to a Data Portal URL. This is done as a convenience to
-	 * the user, since it is easier to view a data package in the Data Portal as opposed
-	 * to opening the raw XML metadata in a browser window.
-	 */
-	private String convertToDataPortalURL(String url, String packageId) {
-		String dataPortalURL = url;
-		
-		if (packageId != null ) {
-			EmlPackageIdFormat epif = new EmlPackageIdFormat();
-			try {
-				EmlPackageId epi = epif.parse(packageId);
-				if (epi != null) {
-					String scope = epi.getScope();
-					Integer identifier = epi.getIdentifier();
-					Integer revision = epi.getRevision();
-					if ((scope != null) && (identifier != null) && (revision != null)) {
-						dataPortalURL = String.format("mapbrowse?scope=%s&identifier=%d&revision=%d",
-												      scope, identifier, revision);
-					}
-				}
-			}
-			catch (Exception e) {
-				// No action needed; not a valid packageId so use the original url
-			}
-		}
-		
-		return dataPortalURL;
-	}
-	
-	
-	private ArrayList<DataPackage.DataDescendant> xmlToDataDescendants(String xml) {
-		ArrayList<DataPackage.DataDescendant> dataDescendants = new ArrayList<DataPackage.DataDescendant>();
-		
-  		if (xml != null) {
-  			InputStream inputStream = null;
-  			try {
-  				inputStream = IOUtils.toInputStream(xml, "UTF-8");
-  				DocumentBuilder documentBuilder = 
-  	              DocumentBuilderFactory.newInstance().newDocumentBuilder();
-  				CachedXPathAPI xpathapi = new CachedXPathAPI();
-
-  				Document document = null;
-  				document = documentBuilder.parse(inputStream);
-  	      
-  				if (document != null) { 	        
-  					NodeList dataDescendantNodes = xpathapi.selectNodeList(document, "//dataDescendant");
-  					
-  					for (int i = 0; i < dataDescendantNodes.getLength(); i++) {
-  						String packageId = null; 
-  						String title = null;
-  						String url = null;
-  						Node dataDescendantNode = dataDescendantNodes.item(i);
-  					    packageId = xpathapi.selectSingleNode(dataDescendantNode, "packageId").getTextContent();
-  					    title = xpathapi.selectSingleNode(dataDescendantNode, "title").getTextContent();
-  					    url = xpathapi.selectSingleNode(dataDescendantNode, "url").getTextContent();
-  					    url = convertToDataPortalURL(url, packageId);
-  						DataPackage dp = new DataPackage();
-  						DataPackage.DataDescendant dataDescendant = dp.new DataDescendant(packageId, title, url);
-  						dataDescendants.add(dataDescendant);
-  					}
-  				}
-			}
-			catch (Exception e) {
-		        logger.error("Error parsing search result set: " + e.getMessage());
-			}
-			finally {
-				if (inputStream != null) {
-					try {
-						inputStream.close();
-					}
-					catch (IOException e) {
-						;
-					}
-				}
-			}
-  		}
-		
-		return dataDescendants;
-	}
-	
-	
 	private String findEntityName(String entityNames, String entityId) {
 		String entityName = null;
 		if (entityNames != null && entityId != null) {
@@ -1103,42 +890,257 @@ public class MapBrowseServlet extends DataPortalServlet {
 			throw new ServletException(
 			    "No value defined for 'pasta.uriHead' property.");
 		}
+
+		if (executorService == null) {
+			int threads = options.getInt("dataportal.mapbrowse.threads", DEFAULT_THREADS);
+			executorService = Executors.newFixedThreadPool(threads);
+		}
 	}
 
 	
-	/**
-	 * Formats the output for the data package citation.
-	 * 
-	 * @param scope
-	 *          The data package scope (namespace) value
-	 * @param identifier
-	 *          The data package identifier (accession number) value
-	 * @param revision
-	 *          The data package revision value
-	 * 
-	 * @return The formatted citation as HTML
+	/*
+	 * Renders the parts of the page that depend only on the data package's
+	 * metadata, which never changes for a given revision, so that they can
+	 * be held in the rendered page cache. The parts that depend on the
+	 * user or on the data package summary are composed on each request.
 	 */
-	private String citationFormatter(EmlObject emlObject, String uid, 
-			                         String scope, Integer identifier, String revision) {
-		String html = null;
+	private HashMap<String, String> renderMetadataFragments(EmlObject emlObject, String packageId) {
+		HashMap<String, String> fragments = new HashMap<String, String>();
+		StringBuilder titleHTMLBuilder = new StringBuilder();
+		StringBuilder creatorsHTMLBuilder = new StringBuilder();
+		StringBuilder publicationDateHTMLBuilder = new StringBuilder();
+		StringBuilder spatialCoverageHTMLBuilder = new StringBuilder();
+		StringBuilder googleMapHTMLBuilder = new StringBuilder();
+		StringBuilder codeGenerationHTMLBuilder = new StringBuilder();
+		ArrayList<Title> titles = emlObject.getTitles();
+		ArrayList<ResponsibleParty> creators = null;
+
+		if (titles != null) {
+			titleHTMLBuilder
+					.append("<ul class=\"no-list-style\">\n");
+
+			for (Title title : titles) {
+				String listItem = "<li>" + title.getTitle() + "</li>\n";
+				titleHTMLBuilder.append(listItem);
+			}
+
+			titleHTMLBuilder.append("</ul>\n");
+			fragments.put(TITLE_HTML, titleHTMLBuilder.toString());
+		}
+
+		creators = emlObject.getCreators();
+
+		if (creators != null) {
+
+			creatorsHTMLBuilder
+					.append("<ul class=\"no-list-style\">\n");
+
+			for (ResponsibleParty creator : creators) {
+				creatorsHTMLBuilder.append("<li>");
+
+				boolean useFullGivenName = true;
+				boolean lastNameFirst = true;
+				String individualName = creator.getIndividualName(useFullGivenName, lastNameFirst);
+				String positionName = creator.getPositionName();
+				String organizationName = creator
+						.getOrganizationName();
+
+				if (individualName != null) {
+					creatorsHTMLBuilder.append(individualName);
+				}
+
+				if (positionName != null) {
+					if (individualName != null) {
+						creatorsHTMLBuilder.append("; "
+								+ positionName);
+					}
+					else {
+						creatorsHTMLBuilder.append(positionName);
+					}
+				}
+
+				if (organizationName != null) {
+					if (positionName != null
+							|| individualName != null) {
+						creatorsHTMLBuilder.append("; "
+								+ organizationName);
+					}
+					else {
+						creatorsHTMLBuilder
+								.append(organizationName);
+					}
+				}
+
+				creatorsHTMLBuilder.append("</li>\n");
+			}
+
+			creatorsHTMLBuilder.append("</ul>\n");
+			fragments.put(CREATORS_HTML, creatorsHTMLBuilder.toString());
+		}
+		
+		String abstractText = emlObject.getAbstractText();
+
+		if (abstractText != null) {
+			fragments.put(ABSTRACT_HTML, toSingleLine(abstractText));
+		}
+
+		
+		String intellectualRightsText = emlObject.getIntellectualRightsText();
+
+		if (intellectualRightsText != null) {
+			fragments.put(INTELLECTUAL_RIGHTS_HTML, toSingleLine(intellectualRightsText));
+		}
+
+		String pubDate = emlObject.getPubDate();
+
+		if (pubDate != null) {
+			publicationDateHTMLBuilder
+					.append("<ul class=\"no-list-style\">\n");
+			publicationDateHTMLBuilder.append("<li>" + pubDate
+					+ "</li>");
+			publicationDateHTMLBuilder.append("</ul>");
+			fragments.put(PUBLICATION_DATE_HTML, publicationDateHTMLBuilder.toString());
+		}
+
+		String jsonCoordinates = emlObject.jsonSerializeCoordinates();
+		String stringCoordinates = emlObject.stringSerializeCoordinates();
+		
+		if (jsonCoordinates != null) {
+			fragments.put(JSON_COORDINATES, jsonCoordinates);
+		}
+		if (stringCoordinates != null && !stringCoordinates.equals("")) {
+
+			String[] coordinatesArray = stringCoordinates.split(":");
+
+			/*
+			 * If there are two or fewer sets of coordinates, then initially
+			 * show them expanded, otherwise show them collapsed (to save
+			 * screen space.)
+			 */
+			fragments.put(EXPAND_COORDINATES, Boolean.toString(coordinatesArray.length <= 2));
+
+			// Only use the expander widget if there's more than one set of coordinates
+			boolean useExpander = (coordinatesArray.length > 1) ? true : false;
+			
+			if (useExpander) {
+				spatialCoverageHTMLBuilder.append("<div id='jqxWidget'>\n");
+				spatialCoverageHTMLBuilder.append("    <div id='jqxExpander'>\n");
+				spatialCoverageHTMLBuilder.append("        <div>Geographic Coordinates</div>\n");
+				spatialCoverageHTMLBuilder.append("        <div>\n");
+				spatialCoverageHTMLBuilder.append("            <ul class=\"no-list-style\">\n");
+				boolean firstCoordinates = true;
+				
+				for (String coordinates : coordinatesArray) {
+					String[] nsew = coordinates.split(",");
+					Double northCoord = new Double(nsew[0]);
+					Double southCoord = new Double(nsew[1]);
+					Double eastCoord = new Double(nsew[2]);
+					Double westCoord = new Double(nsew[3]);
+					if (firstCoordinates) {
+						fragments.put(NORTH_COORD, northCoord.toString());
+						fragments.put(SOUTH_COORD, southCoord.toString());
+						fragments.put(EAST_COORD, eastCoord.toString());
+						fragments.put(WEST_COORD, westCoord.toString());
+					}
+					firstCoordinates = false;
+					String spatial = String.format("N: %s,  S: %s,  E: %s,  W: %s",
+					             northCoord, southCoord, eastCoord, westCoord);
+					spatialCoverageHTMLBuilder.append(
+							String.format("  <li>%s</li>\n", spatial));	
+				}
+				
+				spatialCoverageHTMLBuilder.append("            </ul>\n");
+				spatialCoverageHTMLBuilder.append("        </div>\n");
+				spatialCoverageHTMLBuilder.append("    </div>\n");
+				spatialCoverageHTMLBuilder.append("</div>\n");
+			}
+			else {
+				String[] nsew = coordinatesArray[0].split(",");						
+				Double northCoord = new Double(nsew[0]);
+				Double southCoord = new Double(nsew[1]);
+				Double eastCoord = new Double(nsew[2]);
+				Double westCoord = new Double(nsew[3]);
+				fragments.put(NORTH_COORD, northCoord.toString());
+				fragments.put(SOUTH_COORD, southCoord.toString());
+				fragments.put(EAST_COORD, eastCoord.toString());
+				fragments.put(WEST_COORD, westCoord.toString());
+				final String spacer = "&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;&nbsp;";
+				spatialCoverageHTMLBuilder.append("<div>\n");
+				String spatial = String.format("N: %s%sS: %s%sE: %s%sW: %s",
+						          northCoord, spacer, southCoord, spacer, eastCoord, spacer, westCoord);
+				spatialCoverageHTMLBuilder.append(String.format("%s\n", spatial));
+				spatialCoverageHTMLBuilder.append("</div>\n");
+			}
+			
+			fragments.put(SPATIAL_COVERAGE_HTML, spatialCoverageHTMLBuilder.toString());
+
+			googleMapHTMLBuilder.append("<ul class=\"no-list-style\">\n");
+			googleMapHTMLBuilder.append("  <li><div id='map-canvas-summary'></div></li>");						
+			googleMapHTMLBuilder.append("</ul>\n");
+			fragments.put(GOOGLE_MAP_HTML, googleMapHTMLBuilder.toString());
+		}
+
+		/*
+		 * Object names of the data entities, by entity name, and whether
+		 * any entity is offline
+		 */
+		DataPackage dataPackage = emlObject.getDataPackage();
+		for (Entity entity : dataPackage.getEntityList()) {
+			String entityName = entity.getName();
+			if (entityName != null) {
+				String objectName = entity.getObjectName();
+				if (objectName != null) {
+					fragments.put(OBJECT_NAME_PREFIX + entityName.trim(), objectName);
+				}
+				else {
+					fragments.remove(OBJECT_NAME_PREFIX + entityName.trim());
+				}
+			}
+			if (entity.getOfflineText() != null) {
+				fragments.put(HAS_OFFLINE, "true");
+			}
+		}
+
+		/*
+		 * Add code generation section only if this data package has at
+		 * least one entity that is a data table.
+		 */
+		boolean hasDataTableEntity = dataPackage.hasDataTableEntity();
+		if (hasDataTableEntity) {
+			ArrayList<String> programLinks = CodeGenerationServlet
+					.getProgramLinks(packageId);
+			codeGenerationHTMLBuilder
+					.append("Analyze this data package using ");
+			for (String programLink : programLinks) {
+				codeGenerationHTMLBuilder.append(String.format("%s, ",
+						programLink));
+			}
+			String codeGenerationHTML = codeGenerationHTMLBuilder.toString();
+			codeGenerationHTML = codeGenerationHTML.substring(0,
+					codeGenerationHTML.length() - 2); // trim the last
+														// comma and
+														// space
+			fragments.put(CODE_GENERATION_HTML, codeGenerationHTML);
+		}
+
+		renderCitationFragments(emlObject, fragments);
+
+		return fragments;
+	}
+
+
+	/*
+	 * Renders the creators, publication year, and title of the data package
+	 * citation.
+	 */
+	private void renderCitationFragments(EmlObject emlObject, HashMap<String, String> fragments) {
 		ArrayList<Title> titles = null;
 		ArrayList<ResponsibleParty> creators = null;
 		String titleText = "";
 		String creatorText = "";
-		String orgText = "";
 		String pubDateText = null;
-		String citationId = "";
-		String caveat = "";
-		String citationUrl = "";
-		
-		if (emlObject == null) {
-			return html;
-		}
-
-		DataPackageManagerClient dpmClient = null;
 
 		try {
-			dpmClient = new DataPackageManagerClient(uid);
 			titles = emlObject.getTitles();
 
 			if (titles != null) {
@@ -1195,20 +1197,6 @@ public class MapBrowseServlet extends DataPortalServlet {
 				}
 			}
 
-			try {
-				citationId = dpmClient.readDataPackageDoi(scope, identifier, revision);
-				citationId = citationId.replace("doi:", DoiOrg);
-			} 
-			catch (Exception e) {
-				logger.error(e.getMessage());
-				e.printStackTrace();
-				citationId = dpmClient.getPastaPackageUri(scope, identifier, revision);
-				caveat = "Note: DOIs are generated hourly for all data packages"
-				    + " that are \"publicly\" accessible.";
-			}
-			
-			citationUrl = "<a href=\"" + citationId + "\">" + citationId + "</a>."; 
-
 			String pubYear = emlObject.getPubYear();
 
 			if (pubYear != null) {
@@ -1218,6 +1206,64 @@ public class MapBrowseServlet extends DataPortalServlet {
 				pubDateText = "";
 			}
 
+		} catch (Exception e) {
+			logger.error(e.getMessage());
+			e.printStackTrace();
+			fragments.put(CITATION_ERROR_HTML, "<p class=\"warning\">" + e.getMessage() + "</p>\n");
+			return;
+		}
+
+		fragments.put(CITATION_CREATORS, creatorText);
+		fragments.put(CITATION_PUB_DATE, pubDateText);
+		fragments.put(CITATION_TITLE, titleText);
+	}
+
+
+	/**
+	 * Formats the output for the data package citation.
+	 * 
+	 * @param fragments
+	 *          The page fragments rendered from the data package metadata
+	 * @param dpmClient
+	 *          The DataPackageManagerClient object
+	 * @param doi
+	 *          The data package DOI, or null if it has not been assigned one
+	 * @param scope
+	 *          The data package scope (namespace) value
+	 * @param identifier
+	 *          The data package identifier (accession number) value
+	 * @param revision
+	 *          The data package revision value
+	 * 
+	 * @return The formatted citation as HTML
+	 */
+	private String citationFormatter(HashMap<String, String> fragments, DataPackageManagerClient dpmClient,
+			                         String doi, String scope, Integer identifier, String revision) {
+		String html = null;
+		String orgText = "";
+		String citationId = "";
+		String caveat = "";
+		String citationUrl = "";
+		
+		if (fragments == null) {
+			return html;
+		}
+
+		if (fragments.containsKey(CITATION_ERROR_HTML)) {
+			return fragments.get(CITATION_ERROR_HTML);
+		}
+
+		try {
+			if (doi != null) {
+				citationId = doi.replace("doi:", DoiOrg);
+			} 
+			else {
+				citationId = dpmClient.getPastaPackageUri(scope, identifier, revision);
+				caveat = "Note: DOIs are generated hourly for all data packages"
+				    + " that are \"publicly\" accessible.";
+			}
+			
+			citationUrl = "<a href=\"" + citationId + "\">" + citationId + "</a>."; 
 		} catch (Exception e) {
 			logger.error(e.getMessage());
 			e.printStackTrace();
@@ -1228,7 +1274,8 @@ public class MapBrowseServlet extends DataPortalServlet {
 		String datasetAccessed=datasetAccessed();
 
 		html = String.format("<ul class=\"no-list-style\"><li>%s%s <cite>%s</cite> %s %s %s %s</li><li>%s</li></ul>", 
-	               creatorText, pubDateText, titleText, orgText, PUBLISHER, citationUrl, datasetAccessed, caveat);
+	               fragments.get(CITATION_CREATORS), fragments.get(CITATION_PUB_DATE),
+	               fragments.get(CITATION_TITLE), orgText, PUBLISHER, citationUrl, datasetAccessed, caveat);
 		
 		return html;
 
@@ -1250,46 +1297,66 @@ public class MapBrowseServlet extends DataPortalServlet {
 	}
 	
 	
-	private boolean isDeletedDataPackage(String deletionList, String scope, String identifier) {
-		boolean isDeleted = false;
+	/*
+	 * Composes the upload date HTML from the data package's date created,
+	 * e.g. "2013-01-10T15:56:22.264".
+	 */
+	private String composeUploadDateHTML(String dateCreated) {
+		String html = "";
 		
-		if (deletionList != null && !deletionList.isEmpty()) {
-			String docid = String.format("%s.%s", scope, identifier);
-			String[] tokens = deletionList.split("\n");
-
-			if ((tokens != null) & (tokens.length > 0)) {
-				for (String token : tokens) {
-					if (docid.equals(token.trim())) {
-						isDeleted = true;
-						break;
-					}
-				}
-			}
+		if (dateCreated != null && dateCreated.length() >= 10) {
+			String dateStr = dateCreated.substring(0, 10);
+			html = String.format("&nbsp;&nbsp;(<em>Uploaded %s</em>)", dateStr);
 		}
 		
-		return isDeleted;
+		return html;			
 	}
-	
-	
-	private String composeUploadDateHTML(DataPackageManagerClient dpmClient, 
-			                       String scope, Integer id, String revision) 
-	        throws Exception {
-		String html = "";
-		String resourceMetadata = dpmClient.readResourceMetadata(scope, id, revision);
-		
-		if (resourceMetadata != null) {
-			// <dateCreated>2013-01-10 15:56:22.264</dateCreated>
-			String[] lines = resourceMetadata.split("\\n");
-			for (String line : lines) {
-				String trimmedLine = line.trim();
-				if (trimmedLine != null && trimmedLine.startsWith("<dateCreated>")) {
-                    String dateStr = trimmedLine.substring(13, 23);
-                    html = String.format("&nbsp;&nbsp;(<em>Uploaded %s</em>)", dateStr);
-				}
+
+
+	/*
+	 * Returns the cached metadata fragments for the packageId, or null if
+	 * they are not cached. Fragments rendered for the public may be used
+	 * for anyone; fragments rendered for an authenticated user may be used
+	 * for another authenticated user, since the data package summary
+	 * request has checked that the user may read the metadata.
+	 */
+	private HashMap<String, String> readCachedFragments(String packageId, String accessClass) {
+		HashMap<String, String> fragments = RenderedPageCache.get(VIEW, packageId,
+				RENDER_VERSION, RenderedPageCache.PUBLIC);
+
+		if (fragments == null && accessClass.equals(RenderedPageCache.AUTHENTICATED)) {
+			fragments = RenderedPageCache.get(VIEW, packageId, RENDER_VERSION,
+					RenderedPageCache.AUTHENTICATED);
+		}
+
+		return fragments;
+	}
+
+
+	/*
+	 * Returns the named fragment, or an empty string if there is none.
+	 */
+	private String getFragment(HashMap<String, String> fragments, String name) {
+		String fragment = fragments.get(name);
+		return (fragment == null) ? "" : fragment;
+	}
+
+
+	/*
+	 * Waits for the result of a concurrent backend request, rethrowing
+	 * the exception that caused it to fail, if any.
+	 */
+	private static <T> T getResult(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
 			}
+			throw e;
 		}
-		
-		return html;			
 	}
 	
 }
@@ -54,8 +54,12 @@ public class MetadataViewerServlet extends DataPortalServlet {
 
   private static final String forward = "./metadataViewer.jsp";
 
+  private static final String VIEW = "metadataviewer";
+  private static final String METADATA_HTML = "metadataHtml";
+
   private static String cwd = null;
   private static String xslpath = null;
+  private static String stylesheetVersion = null;
 
   /**
    * Constructor of the object.
@@ -172,9 +176,9 @@ public class MetadataViewerServlet extends DataPortalServlet {
         String dataPackageDOI = null;
         String xml = null;
         DataPackageManagerClient dpmClient = new DataPackageManagerClient(uid);
-        xml = dpmClient.readMetadata(scope, identifier, revision);
 
         if (contentType.equals("application/xml")) {
+          xml = dpmClient.readMetadata(scope, identifier, revision);
           metadataStr = xml;
           response.setContentType("application/xml");
           response.setCharacterEncoding("UTF-8");
@@ -184,25 +188,41 @@ public class MetadataViewerServlet extends DataPortalServlet {
           out.close();      
         } 
         else {
-          EmlUtility emlUtility = new EmlUtility(xml);
-          HashMap<String, String> parameterMap = new HashMap<String, String>();
           String pastUriHead = dpmClient.getPastaUriHead();
           String resourceId = packageIdToResourceId(pastUriHead, packageId);
-          // Pass the resourceId as a parameter to the XSLT
-          if (resourceId != null && !resourceId.equals("")) {
-            parameterMap.put("resourceId", resourceId);
-          }
-          // Pass the data package DOI as a parameter to the XSLT
-          try {
-            dataPackageDOI = dpmClient.readDataPackageDoi(scope, identifier, revision);
-            if (dataPackageDOI != null && !dataPackageDOI.equals("")) {
-              parameterMap.put("dataPackageDOI", dataPackageDOI);
+          String accessClass = RenderedPageCache.getAccessClass(uid);
+          metadataStr = readCachedMetadataHtml(dpmClient, packageId, resourceId, accessClass);
+
+          if (metadataStr == null) {
+            xml = dpmClient.readMetadata(scope, identifier, revision);
+            EmlUtility emlUtility = new EmlUtility(xml);
+            HashMap<String, String> parameterMap = new HashMap<String, String>();
+            // Pass the resourceId as a parameter to the XSLT
+            if (resourceId != null && !resourceId.equals("")) {
+              parameterMap.put("resourceId", resourceId);
+            }
+            // Pass the data package DOI as a parameter to the XSLT
+            try {
+              dataPackageDOI = dpmClient.readDataPackageDoi(scope, identifier, revision);
+              if (dataPackageDOI != null && !dataPackageDOI.equals("")) {
+                parameterMap.put("dataPackageDOI", dataPackageDOI);
+              }
+            }
+            catch (Exception e) {
+              // No DOI was read. Just continue on.
+            }
+            metadataStr = emlUtility.xmlToHtmlSaxon(cwd + xslpath, parameterMap);
+
+            /*
+             * DOIs are assigned after upload, so the page is only cached
+             * once it can include the DOI.
+             */
+            if (parameterMap.containsKey("dataPackageDOI")) {
+              HashMap<String, String> fragments = new HashMap<String, String>();
+              fragments.put(METADATA_HTML, metadataStr);
+              RenderedPageCache.put(VIEW, packageId, stylesheetVersion, accessClass, fragments);
             }
           }
-          catch (Exception e) {
-            // No DOI was read. Just continue on.
-          }
-          metadataStr = emlUtility.xmlToHtmlSaxon(cwd + xslpath, parameterMap);
           
           request.setAttribute("metadataHtml", metadataStr);
           request.setAttribute("packageId", packageId);
@@ -229,7 +249,32 @@ public class MetadataViewerServlet extends DataPortalServlet {
     PropertiesConfiguration options = ConfigurationListener.getOptions();
     xslpath = options.getString("emlutility.xslpath");
     cwd = options.getString("system.cwd");
+    stylesheetVersion = RenderedPageCache.getStylesheetVersion(cwd + xslpath);
+
+  }
+
+
+  /*
+   * Returns the cached metadata HTML for the packageId, or null if it is
+   * not cached. A page rendered for the public may be served to anyone; a
+   * page rendered for an authenticated user is only served to another
+   * authenticated user who is authorized to read the data package.
+   */
+  private String readCachedMetadataHtml(DataPackageManagerClient dpmClient,
+      String packageId, String resourceId, String accessClass) throws Exception {
+    HashMap<String, String> fragments = RenderedPageCache.get(VIEW, packageId,
+        stylesheetVersion, RenderedPageCache.PUBLIC);
+
+    if (fragments == null && accessClass.equals(RenderedPageCache.AUTHENTICATED)) {
+      fragments = RenderedPageCache.get(VIEW, packageId, stylesheetVersion,
+          RenderedPageCache.AUTHENTICATED);
+      if (fragments != null && 
+          (resourceId == null || !dpmClient.isAuthorized(resourceId))) {
+        fragments = null;
+      }
+    }
 
+    return (fragments == null) ? null : fragments.get(METADATA_HTML);
   }
 
 }
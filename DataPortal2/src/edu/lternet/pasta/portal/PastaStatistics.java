@@ -53,16 +53,16 @@ public class PastaStatistics {
     private static final String RESOURCE_REGISTRY = "datapackagemanager.resource_registry";
     
 	private static final String QUERY_CONTRIBUTED_UNIQUE = String.format(
-			"SELECT DISTINCT scope, identifier FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL AND scope != 'ecotrends' AND scope NOT LIKE 'lter-landsat%%'",
+			"SELECT COUNT(DISTINCT (scope, identifier)) FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL AND scope != 'ecotrends' AND scope NOT LIKE 'lter-landsat%%'",
 			RESOURCE_REGISTRY);
 	private static final String QUERY_CONTRIBUTED_ALL = String.format(
-			"SELECT DISTINCT scope, identifier, revision FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL AND scope != 'ecotrends' AND scope NOT LIKE 'lter-landsat%%'",
+			"SELECT COUNT(DISTINCT (scope, identifier, revision)) FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL AND scope != 'ecotrends' AND scope NOT LIKE 'lter-landsat%%'",
 			RESOURCE_REGISTRY);
 	private static final String QUERY_TOTAL_UNIQUE = String.format(
-			"SELECT DISTINCT scope, identifier FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL",
+			"SELECT COUNT(DISTINCT (scope, identifier)) FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL",
 			RESOURCE_REGISTRY);
 	private static final String QUERY_TOTAL_ALL = String.format(
-			"SELECT DISTINCT scope, identifier, revision FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL",
+			"SELECT COUNT(DISTINCT (scope, identifier, revision)) FROM %s WHERE resource_type='dataPackage' AND date_deactivated IS NULL",
 			RESOURCE_REGISTRY);
 
 	/*
@@ -104,6 +104,10 @@ public class PastaStatistics {
 	 * Instance methods
 	 */
 	
+	/*
+	 * Runs an aggregate query that returns a single count, so that the
+	 * counting is done by the database rather than by reading every row.
+	 */
 	private Integer countDataPackages(String sql) throws SQLException {
 		Integer packageCount = null;
 		Connection conn = databaseClient.getConnection();
@@ -113,11 +117,10 @@ public class PastaStatistics {
 				Statement stmnt = conn.createStatement();
 				ResultSet rs = stmnt.executeQuery(sql);
 
-				int i = 0;
-				while (rs.next()) {
-					i++;
+				if (rs.next()) {
+					packageCount = new Integer(rs.getInt(1));
 				}
-				packageCount = new Integer(i);
+				stmnt.close();
 			} 
 			finally {
 				databaseClient.closeConnection(conn);
@@ -129,7 +132,7 @@ public class PastaStatistics {
 		 
 	
 	/**
-	 * Iterates through the list of scopes and identifiers to calculate
+	 * Counts the scopes and identifiers to calculate
 	 * the number of unique data packages in PASTA (i.e., doesn't count
 	 * multiple revisions of the same data package.)
 	 * 
@@ -155,7 +158,7 @@ public class PastaStatistics {
 	
 	
 	/**
-	 * Iterates through the list of scopes and identifiers and revisions to 
+	 * Counts the scopes and identifiers and revisions to 
 	 * calculate the number of data packages in PASTA (including all revisions).
 	 * 
 	 * @param includeEcotrendsAndLandsat  
@@ -0,0 +1,439 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.portal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+
+/**
+ * RenderedPageCache holds HTML fragments rendered from a data package's
+ * metadata, so that the data package summary and metadata viewer pages do
+ * not re-fetch and re-transform the EML document on every view. The
+ * metadata of a given scope.identifier.revision never changes, so an entry
+ * remains valid until the rendering code or stylesheet changes (which
+ * changes the version in its key) or the data package is deleted (which
+ * invalidates it).
+ *
+ * Entries are keyed by view name, packageId, rendering version, and the
+ * viewer's access class. An entry in the "public" access class was
+ * rendered for an anonymous user and may be served to anyone; an entry in
+ * the "authenticated" access class may only be served to a user whose
+ * authorization to read the metadata has already been checked.
+ *
+ * Recently used entries are held in memory, bounded by the
+ * dataportal.pagecache.memoryBytes option. If dataportal.pagecache.dir is
+ * set, entries are also written to disk, bounded by the
+ * dataportal.pagecache.diskBytes option, so that they survive a restart.
+ * Both tiers evict the least recently used entries first.
+ *
+ * @author dcosta
+ *
+ */
+public class RenderedPageCache {
+
+	/*
+	 * Class variables
+	 */
+
+	private static final Logger logger = Logger.getLogger(RenderedPageCache.class);
+
+	public static final String PUBLIC = "public";
+	public static final String AUTHENTICATED = "authenticated";
+
+	private static final long DEFAULT_MEMORY_BYTES = 64L * 1024L * 1024L;
+	private static final long DEFAULT_DISK_BYTES = 1024L * 1024L * 1024L;
+	private static final String FILE_EXTENSION = ".properties";
+
+	/*
+	 * Only a well-formed packageId is cached, since its parts name the
+	 * entry's directory and file
+	 */
+	private static final Pattern PACKAGE_ID_PATTERN =
+			Pattern.compile("[A-Za-z0-9_-]+\\.[0-9]+\\.[0-9]+");
+
+	private static final LinkedHashMap<String, CacheEntry> memoryCache =
+			new LinkedHashMap<String, CacheEntry>(256, 0.75f, true);
+	private static long memoryBytes = 0L;
+	private static long diskBytes = 0L;
+
+	private static long maxMemoryBytes = DEFAULT_MEMORY_BYTES;
+	private static long maxDiskBytes = DEFAULT_DISK_BYTES;
+	private static File cacheDir = null;
+	private static boolean started = false;
+
+
+	/*
+	 * Class methods
+	 */
+
+	/**
+	 * Returns the access class of a viewer.
+	 *
+	 * @param uid   the user id, or "public" for an anonymous user
+	 * @return PUBLIC or AUTHENTICATED
+	 */
+	public static String getAccessClass(String uid) {
+		return (uid == null || uid.isEmpty() || uid.equals("public")) ? PUBLIC : AUTHENTICATED;
+	}
+
+
+	/**
+	 * Returns a version string for an XSLT stylesheet: the most recent
+	 * modification time of the stylesheet and the stylesheets alongside
+	 * it, which it may import.
+	 *
+	 * @param xslPath   the path to the stylesheet
+	 * @return the stylesheet version
+	 */
+	public static String getStylesheetVersion(String xslPath) {
+		File xslFile = new File(xslPath);
+		long lastModified = xslFile.lastModified();
+		File xslDir = xslFile.getParentFile();
+		if (xslDir != null) {
+			File[] files = xslDir.listFiles();
+			if (files != null) {
+				for (File file : files) {
+					lastModified = Math.max(lastModified, file.lastModified());
+				}
+			}
+		}
+		return Long.toString(lastModified);
+	}
+
+
+	/**
+	 * Returns the fragments cached for a rendered view of a data package.
+	 *
+	 * @param view          the name of the view, e.g. "mapbrowse"
+	 * @param packageId     the packageId, e.g. "knb-lter-nin.1.1"
+	 * @param version       the version of the rendering code or stylesheet
+	 * @param accessClass   PUBLIC or AUTHENTICATED
+	 * @return the fragments, or null if they are not cached
+	 */
+	public static HashMap<String, String> get(String view, String packageId,
+			String version, String accessClass) {
+		start();
+		String key = composeKey(view, packageId, version, accessClass);
+		if (key == null) {
+			return null;
+		}
+
+		synchronized (memoryCache) {
+			CacheEntry entry = memoryCache.get(key);
+			if (entry != null) {
+				return new HashMap<String, String>(entry.fragments);
+			}
+		}
+
+		File file = composeFile(view, packageId, version, accessClass);
+		if (file == null || !file.exists()) {
+			return null;
+		}
+
+		HashMap<String, String> fragments = null;
+		Reader reader = null;
+		try {
+			reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			Properties properties = new Properties();
+			properties.load(reader);
+			fragments = new HashMap<String, String>();
+			for (String name : properties.stringPropertyNames()) {
+				fragments.put(name, properties.getProperty(name));
+			}
+			file.setLastModified(System.currentTimeMillis());
+		}
+		catch (IOException e) {
+			logger.warn(String.format("Unable to read cached page %s: %s",
+					file.getAbsolutePath(), e.getMessage()));
+			return null;
+		}
+		finally {
+			IOUtils.closeQuietly(reader);
+		}
+
+		putInMemory(key, fragments);
+		return new HashMap<String, String>(fragments);
+	}
+
+
+	/**
+	 * Caches the fragments of a rendered view of a data package.
+	 *
+	 * @param view          the name of the view, e.g. "mapbrowse"
+	 * @param packageId     the packageId, e.g. "knb-lter-nin.1.1"
+	 * @param version       the version of the rendering code or stylesheet
+	 * @param accessClass   PUBLIC or AUTHENTICATED
+	 * @param fragments     the rendered fragments, by name
+	 */
+	public static void put(String view, String packageId, String version,
+			String accessClass, Map<String, String> fragments) {
+		start();
+		String key = composeKey(view, packageId, version, accessClass);
+		if (key == null) {
+			return;
+		}
+
+		HashMap<String, String> copy = new HashMap<String, String>(fragments);
+		putInMemory(key, copy);
+
+		File file = composeFile(view, packageId, version, accessClass);
+		if (file == null) {
+			return;
+		}
+
+		File tmpFile = new File(file.getParentFile(), file.getName() + ".tmp");
+		Writer writer = null;
+		try {
+			file.getParentFile().mkdirs();
+			writer = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+			Properties properties = new Properties();
+			properties.putAll(copy);
+			properties.store(writer, key);
+			writer.close();
+			writer = null;
+			long oldLength = file.length();
+			if (!tmpFile.renameTo(file)) {
+				FileUtils.deleteQuietly(file);
+				if (!tmpFile.renameTo(file)) {
+					throw new IOException("unable to rename " + tmpFile.getName());
+				}
+			}
+			synchronized (RenderedPageCache.class) {
+				diskBytes += file.length() - oldLength;
+			}
+		}
+		catch (IOException e) {
+			logger.warn(String.format("Unable to write cached page %s: %s",
+					file.getAbsolutePath(), e.getMessage()));
+			FileUtils.deleteQuietly(tmpFile);
+		}
+		finally {
+			IOUtils.closeQuietly(writer);
+		}
+
+		if (diskBytes > maxDiskBytes) {
+			evictFromDisk();
+		}
+	}
+
+
+	/**
+	 * Invalidates every cached view of every revision of a data package,
+	 * e.g. when the data package is deleted.
+	 *
+	 * @param scope        the data package scope
+	 * @param identifier   the data package identifier
+	 */
+	public static void invalidate(String scope, Integer identifier) {
+		start();
+		String prefix = String.format("%s.%d.", scope, identifier);
+		if (!PACKAGE_ID_PATTERN.matcher(prefix + "0").matches()) {
+			return;
+		}
+
+		synchronized (memoryCache) {
+			Iterator<Map.Entry<String, CacheEntry>> iterator = memoryCache.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, CacheEntry> mapEntry = iterator.next();
+				if (mapEntry.getValue().packageId.startsWith(prefix)) {
+					memoryBytes -= mapEntry.getValue().size;
+					iterator.remove();
+				}
+			}
+		}
+
+		if (cacheDir != null) {
+			File packageDir = new File(new File(cacheDir, scope), identifier.toString());
+			if (packageDir.exists()) {
+				long bytes = FileUtils.sizeOfDirectory(packageDir);
+				FileUtils.deleteQuietly(packageDir);
+				synchronized (RenderedPageCache.class) {
+					diskBytes -= bytes;
+				}
+			}
+		}
+
+		logger.info(String.format("Invalidated cached pages of data package %s.%d",
+				scope, identifier));
+	}
+
+
+	/*
+	 * Reads the dataportal.pagecache.* options and measures the disk tier,
+	 * the first time the cache is used.
+	 */
+	private static synchronized void start() {
+		if (started) {
+			return;
+		}
+
+		PropertiesConfiguration options = ConfigurationListener.getOptions();
+		if (options != null) {
+			maxMemoryBytes = options.getLong("dataportal.pagecache.memoryBytes", DEFAULT_MEMORY_BYTES);
+			maxDiskBytes = options.getLong("dataportal.pagecache.diskBytes", DEFAULT_DISK_BYTES);
+			String dir = options.getString("dataportal.pagecache.dir");
+			if (dir != null && !dir.isEmpty()) {
+				cacheDir = new File(dir);
+				if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+					logger.warn(String.format("Unable to create page cache directory %s", dir));
+					cacheDir = null;
+				}
+			}
+		}
+
+		if (cacheDir != null) {
+			diskBytes = FileUtils.sizeOfDirectory(cacheDir);
+		}
+
+		started = true;
+	}
+
+
+	private static void putInMemory(String key, HashMap<String, String> fragments) {
+		long size = 0L;
+		for (Map.Entry<String, String> fragment : fragments.entrySet()) {
+			size += 2L * (fragment.getKey().length() + fragment.getValue().length());
+		}
+
+		if (size > maxMemoryBytes) {
+			return;
+		}
+
+		String packageId = key.substring(0, key.indexOf('|'));
+		synchronized (memoryCache) {
+			CacheEntry old = memoryCache.put(key, new CacheEntry(packageId, fragments, size));
+			if (old != null) {
+				memoryBytes -= old.size;
+			}
+			memoryBytes += size;
+
+			Iterator<CacheEntry> iterator = memoryCache.values().iterator();
+			while (memoryBytes > maxMemoryBytes && iterator.hasNext()) {
+				memoryBytes -= iterator.next().size;
+				iterator.remove();
+			}
+		}
+	}
+
+
+	/*
+	 * Deletes the least recently used files until the disk tier is back
+	 * under 90% of its bound, so that eviction does not run on every put.
+	 */
+	private static synchronized void evictFromDisk() {
+		if (cacheDir == null || diskBytes <= maxDiskBytes) {
+			return;
+		}
+
+		ArrayList<File> files = new ArrayList<File>();
+		for (File file : FileUtils.listFiles(cacheDir, null, true)) {
+			if (file.getName().endsWith(FILE_EXTENSION)) {
+				files.add(file);
+			}
+		}
+
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File f1, File f2) {
+				return Long.compare(f1.lastModified(), f2.lastModified());
+			}
+		});
+
+		long target = maxDiskBytes / 10L * 9L;
+		int evicted = 0;
+		for (File file : files) {
+			if (diskBytes <= target) {
+				break;
+			}
+			long length = file.length();
+			if (file.delete()) {
+				diskBytes -= length;
+				evicted++;
+			}
+		}
+
+		logger.info(String.format("Evicted %d cached pages from %s", evicted,
+				cacheDir.getAbsolutePath()));
+	}
+
+
+	private static String composeKey(String view, String packageId,
+			String version, String accessClass) {
+		if (packageId == null || !PACKAGE_ID_PATTERN.matcher(packageId).matches()) {
+			return null;
+		}
+		return String.format("%s|%s|%s|%s", packageId, view, version, accessClass);
+	}
+
+
+	/*
+	 * Entries are stored as cacheDir/scope/identifier/view.revision.accessClass.version.properties
+	 * so that all revisions of a data package can be invalidated together.
+	 */
+	private static File composeFile(String view, String packageId,
+			String version, String accessClass) {
+		if (cacheDir == null) {
+			return null;
+		}
+		String[] tokens = packageId.split("\\.");
+		File packageDir = new File(new File(cacheDir, tokens[0]), tokens[1]);
+		String fileName = String.format("%s.%s.%s.%s%s", view, tokens[2], accessClass,
+				version, FILE_EXTENSION);
+		return new File(packageDir, fileName);
+	}
+
+
+	/*
+	 * A memory-tier entry and its approximate size in bytes.
+	 */
+	private static class CacheEntry {
+		final String packageId;
+		final HashMap<String, String> fragments;
+		final long size;
+
+		CacheEntry(String packageId, HashMap<String, String> fragments, long size) {
+			this.packageId = packageId;
+			this.fragments = fragments;
+			this.size = size;
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.portal;
+
+
+/**
+ * A token-bucket rate limiter. The bucket holds up to "capacity" tokens
+ * and is refilled at a steady rate; each call to acquire() takes one
+ * token, waiting for the bucket to refill if it is empty. Short bursts of
+ * up to "capacity" requests are therefore allowed, while the long-run
+ * request rate cannot exceed the refill rate.
+ *
+ * @author dcosta
+ *
+ */
+public class TokenBucket {
+
+	/*
+	 * Instance variables
+	 */
+
+	private final int capacity;
+	private final double nanosPerToken;
+	private double tokens;
+	private long lastRefill;
+
+
+	/*
+	 * Constructors
+	 */
+
+	/**
+	 * Constructs a full TokenBucket.
+	 *
+	 * @param capacity         the maximum number of tokens, i.e. the largest burst
+	 * @param tokensPerMinute  the rate at which tokens are added
+	 */
+	public TokenBucket(int capacity, int tokensPerMinute) {
+		if (capacity < 1 || tokensPerMinute < 1) {
+			throw new IllegalArgumentException(
+			    String.format("Invalid token bucket capacity (%d) or rate (%d)",
+			                  capacity, tokensPerMinute));
+		}
+		this.capacity = capacity;
+		this.nanosPerToken = 60.0e9 / tokensPerMinute;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+
+	/*
+	 * Instance methods
+	 */
+
+	/**
+	 * Takes a token from the bucket, waiting until one is available.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		long waitNanos;
+
+		synchronized (this) {
+			refill();
+			tokens -= 1.0;
+			/*
+			 * A negative balance reserves a future token for this caller,
+			 * so that waiting callers are served in arrival order.
+			 */
+			waitNanos = (tokens >= 0.0) ? 0L : (long) (-tokens * nanosPerToken);
+		}
+
+		if (waitNanos > 0L) {
+			Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+		}
+	}
+
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) / nanosPerToken);
+		lastRefill = now;
+	}
+
+}
@@ -31,7 +31,6 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
 
@@ -167,7 +166,7 @@ public class CodeGenerationClient extends PastaClient {
 		String programCode = null;
 		Integer statusCode = null;
 		HttpEntity responseEntity = null;
-		CloseableHttpClient httpClient = HttpClientBuilder.create().build();
+		CloseableHttpClient httpClient = getHttpClient();
 		HttpResponse response = null;
 		HttpGet httpGet = new HttpGet(this.url);
 
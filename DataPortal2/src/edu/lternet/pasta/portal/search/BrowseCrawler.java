@@ -26,18 +26,45 @@ package edu.lternet.pasta.portal.search;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import org.apache.commons.io.FileUtils;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
 
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
+import edu.lternet.pasta.client.DataPackageManagerClient;
 import edu.lternet.pasta.portal.ConfigurationListener;
 
 
 /**
  * The BrowseCrawler class searches browse terms via the Data Package Manager
  * and stores the search results in a browse cache on disk.
+ * 
+ * Match counts are obtained with Solr facet queries, so that one search
+ * request returns the counts of many browse terms. Terms whose counts
+ * cannot be obtained this way (e.g. because the Data Package Manager does
+ * not support facet queries) are counted with individual searches that are
+ * run in parallel. An incremental crawl recounts only the browse terms that
+ * match data packages uploaded since the previous crawl.
  */
 public class BrowseCrawler {
 
@@ -45,18 +72,35 @@ public class BrowseCrawler {
    * Class fields
    */
   private static final Logger logger = Logger.getLogger(BrowseCrawler.class);
+  
+  private static final int DEFAULT_THREADS = 4;
+  // Keeps each facet search request well within the URL length accepted by Tomcat
+  private static final int DEFAULT_MAX_QUERY_LENGTH = 6000;
+  private static final int DEFAULT_INCREMENTAL_MAX_CHANGES = 200;
+  private static final String CHANGE_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
 
 
   /*
    * Instance fields
    */
   
+  private int threads = DEFAULT_THREADS;
+  private int maxQueryLength = DEFAULT_MAX_QUERY_LENGTH;
+  private int incrementalMaxChanges = DEFAULT_INCREMENTAL_MAX_CHANGES;
+  
   
   /*
    * Constructor
    */
   
   public BrowseCrawler() {
+    PropertiesConfiguration options = ConfigurationListener.getOptions();
+    if (options != null) {
+      this.threads = Math.max(1, options.getInt("browse.crawler.threads", DEFAULT_THREADS));
+      this.maxQueryLength = options.getInt("browse.crawler.maxQueryLength", DEFAULT_MAX_QUERY_LENGTH);
+      this.incrementalMaxChanges = 
+          options.getInt("browse.crawler.incremental.maxChanges", DEFAULT_INCREMENTAL_MAX_CHANGES);
+    }
   }
 
   
@@ -87,6 +131,7 @@ public class BrowseCrawler {
 	 */
 	public BrowseGroup crawlKeywordTerms() {
 		logger.info("Starting crawl of keywords in LTER Controlled Vocabulary.");
+		long crawlTime = System.currentTimeMillis();
 
 		BrowseGroup browseCache = BrowseGroup.generateKeywordCache();
 
@@ -94,12 +139,9 @@ public class BrowseCrawler {
 			ArrayList<BrowseTerm> browseTerms = new ArrayList<BrowseTerm>();
 			browseCache.getBrowseTerms(browseTerms);
 			logger.info(String.format("Found %d keyword terms", browseTerms.size()));
-			for (BrowseTerm browseTerm : browseTerms) {
-				logger.info("Crawling term: " + browseTerm.getValue());
-				browseTerm.crawl();
-			}
+			countTerms(browseTerms);
 			File browseCacheFile = new File(BrowseSearch.browseKeywordPath);
-			writeBrowseCache(browseCacheFile, browseCache);
+			writeBrowseCache(browseCacheFile, browseCache, crawlTime);
 			logger.info(String.format("Finished keyword crawl: %d terms", browseTerms.size()));
 		}
 		else {
@@ -108,21 +150,256 @@ public class BrowseCrawler {
 
 		return browseCache;
 	}
+	
+	
+	/**
+	 * Updates the browse cache stored on disk by recounting only the keyword
+	 * terms that match data packages inserted or updated since the browse
+	 * cache was written. Falls back to a full crawl when there is no browse 
+	 * cache on disk, when data packages have been deleted, or when there are 
+	 * too many changes for an incremental crawl to pay off.
+	 * 
+	 * Because a data package update may also remove keywords, the counts of
+	 * terms matched only by a previous revision are corrected by the next
+	 * full crawl.
+	 * 
+	 * @return the updated browse cache, or null if the crawl failed
+	 */
+	public BrowseGroup crawlKeywordTermsIncremental() {
+		File browseCacheFile = new File(BrowseSearch.browseKeywordPath);
+		
+		if (!browseCacheFile.exists()) {
+			return crawlKeywordTerms();
+		}
+		
+		long crawlTime = System.currentTimeMillis();
+		SimpleDateFormat sdf = new SimpleDateFormat(CHANGE_DATE_FORMAT);
+		String fromDate = sdf.format(new Date(browseCacheFile.lastModified()));
+		List<String> changedPackageIds = new ArrayList<String>();
+		
+		try {
+			DataPackageManagerClient dpmClient = new DataPackageManagerClient("public");
+			String changesXML = dpmClient.listRecentChanges(fromDate);
+			Document document = parseXML(changesXML);
+			NodeList dataPackages = document.getElementsByTagName("dataPackage");
+			for (int i = 0; i < dataPackages.getLength(); i++) {
+				Element dataPackage = (Element) dataPackages.item(i);
+				String serviceMethod = elementText(dataPackage, "serviceMethod");
+				if ("deleteDataPackage".equals(serviceMethod)) {
+					logger.info("Data packages were deleted since the last crawl; starting a full crawl.");
+					return crawlKeywordTerms();
+				}
+				changedPackageIds.add(elementText(dataPackage, "packageId"));
+			}
+		}
+		catch (Exception e) {
+			logger.error(String.format("Error listing changes since %s: %s", fromDate, e.getMessage()));
+			return crawlKeywordTerms();
+		}
+		
+		if (changedPackageIds.size() > incrementalMaxChanges) {
+			logger.info(String.format("%d data packages changed since the last crawl; starting a full crawl.", 
+					                  changedPackageIds.size()));
+			return crawlKeywordTerms();
+		}
+		
+		BrowseGroup browseCache = new BrowseSearch().readBrowseCache(browseCacheFile);
+		if (browseCache == null) {
+			return crawlKeywordTerms();
+		}
+		
+		if (changedPackageIds.size() > 0) {
+			ArrayList<BrowseTerm> browseTerms = new ArrayList<BrowseTerm>();
+			browseCache.getBrowseTerms(browseTerms);
+			
+			/*
+			 * Restricting the facet queries to the changed data packages finds
+			 * the terms whose counts may have changed.
+			 */
+			StringBuilder filter = new StringBuilder("packageid:(");
+			for (int i = 0; i < changedPackageIds.size(); i++) {
+				if (i > 0) { filter.append(" OR "); }
+				filter.append(String.format("\"%s\"", changedPackageIds.get(i)));
+			}
+			filter.append(")");
+			
+			HashMap<String, Integer> changedCounts = runFacetQueries(browseTerms, filter.toString());
+			ArrayList<BrowseTerm> affectedTerms = new ArrayList<BrowseTerm>();
+			for (BrowseTerm browseTerm : browseTerms) {
+				Integer changedCount = changedCounts.get(browseTerm.getFacetQuery());
+				if (changedCount == null || changedCount > 0) {
+					affectedTerms.add(browseTerm);
+				}
+			}
+			
+			logger.info(String.format("Incremental crawl: %d data packages changed, recounting %d of %d terms", 
+					                  changedPackageIds.size(), affectedTerms.size(), browseTerms.size()));
+			countTerms(affectedTerms);
+		}
+		
+		writeBrowseCache(browseCacheFile, browseCache, crawlTime);
+
+		return browseCache;
+	}
+	
+	
+	/*
+	 * Sets the match counts of the browse terms, first with facet queries 
+	 * and then, for any terms left uncounted, with individual searches run
+	 * in parallel.
+	 */
+	private void countTerms(List<BrowseTerm> browseTerms) {
+		HashMap<String, Integer> counts = runFacetQueries(browseTerms, null);
+		ArrayList<BrowseTerm> uncountedTerms = new ArrayList<BrowseTerm>();
+		
+		for (BrowseTerm browseTerm : browseTerms) {
+			Integer count = counts.get(browseTerm.getFacetQuery());
+			if (count != null) {
+				browseTerm.setMatchCount(count);
+			}
+			else {
+				uncountedTerms.add(browseTerm);
+			}
+		}
+		
+		logger.info(String.format("Counted %d terms with facet queries; searching %d terms individually", 
+				                  browseTerms.size() - uncountedTerms.size(), uncountedTerms.size()));
+
+		if (uncountedTerms.size() > 0) {
+			ExecutorService executorService = Executors.newFixedThreadPool(threads);
+			
+			try {
+				ArrayList<Future<Object>> results = new ArrayList<Future<Object>>();
+				for (final BrowseTerm browseTerm : uncountedTerms) {
+					results.add(executorService.submit(new Callable<Object>() {
+						public Object call() throws Exception {
+							logger.debug("Crawling term: " + browseTerm.getValue());
+							browseTerm.crawl();
+							return null;
+						}
+					}));
+				}
+				
+				for (Future<Object> result : results) {
+					result.get();
+				}
+			}
+			catch (Exception e) {
+				logger.error("Error crawling browse terms: " + e.getMessage());
+				e.printStackTrace();
+			}
+			finally {
+				executorService.shutdown();
+			}
+		}
+	}
+	
+	
+	/*
+	 * Runs the facet queries of the browse terms in as few search requests
+	 * as the maximum query length allows, returning the counts keyed by 
+	 * facet query. Counts are missing for any request that fails or
+	 * that returns no facet counts.
+	 */
+	private HashMap<String, Integer> runFacetQueries(List<BrowseTerm> browseTerms, String filterQuery) {
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		
+		try {
+			StringBuilder baseQuery = new StringBuilder();
+			baseQuery.append(String.format("defType=%s&q=%s&fq=%s&fq=%s",
+					Search.DEFAULT_DEFTYPE, URLEncoder.encode(Search.DEFAULT_Q_STRING, "UTF-8"),
+					URLEncoder.encode(Search.ECOTRENDS_FILTER, "UTF-8"), 
+					URLEncoder.encode(Search.LANDSAT_FILTER, "UTF-8")));
+			if (filterQuery != null) {
+				baseQuery.append("&fq=" + URLEncoder.encode(filterQuery, "UTF-8"));
+			}
+			baseQuery.append("&fl=packageid&start=0&rows=0");
+			
+			StringBuilder query = new StringBuilder(baseQuery);
+			int facetCount = 0;
+			for (BrowseTerm browseTerm : browseTerms) {
+				String facetParam = "&facet.query=" + URLEncoder.encode(browseTerm.getFacetQuery(), "UTF-8");
+				if (facetCount > 0 && query.length() + facetParam.length() > maxQueryLength) {
+					runFacetSearch(query.toString(), counts);
+					query = new StringBuilder(baseQuery);
+					facetCount = 0;
+				}
+				query.append(facetParam);
+				facetCount++;
+			}
+			
+			if (facetCount > 0) {
+				runFacetSearch(query.toString(), counts);
+			}
+		}
+		catch (IOException e) {
+			logger.error("Error encoding facet queries: " + e.getMessage());
+		}
+		
+		return counts;
+	}
+	
+	
+	/*
+	 * Runs one facet search request, adding its facet counts to the map.
+	 */
+	private void runFacetSearch(String query, HashMap<String, Integer> counts) {
+		try {
+			DataPackageManagerClient dpmClient = new DataPackageManagerClient("public");
+			String resultsetXML = dpmClient.searchDataPackages(query);
+			Document document = parseXML(resultsetXML);
+			NodeList facetQueries = document.getElementsByTagName("facetQuery");
+			for (int i = 0; i < facetQueries.getLength(); i++) {
+				Element facetQuery = (Element) facetQueries.item(i);
+				Integer count = new Integer(facetQuery.getAttribute("count"));
+				counts.put(facetQuery.getTextContent(), count);
+			}
+		}
+		catch (Exception e) {
+			logger.error("Error running facet search: " + e.getMessage());
+		}
+	}
+	
+	
+	private static Document parseXML(String xml) throws Exception {
+		InputStream inputStream = IOUtils.toInputStream(xml, "UTF-8");
+		try {
+			DocumentBuilder documentBuilder = 
+					DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			return documentBuilder.parse(inputStream);
+		}
+		finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+	
+	
+	private static String elementText(Element parent, String tagName) {
+		NodeList nodeList = parent.getElementsByTagName(tagName);
+		return (nodeList.getLength() > 0) ? nodeList.item(0).getTextContent().trim() : null;
+	}
 
   
   /**
-   * Writes the browse cache from memory to disk.
+   * Writes the browse cache from memory to disk. The cache is written to a
+   * temporary file that then replaces the browse cache file, so readers 
+   * never see a partially written cache. The file's modification time is 
+   * set to the time the crawl started, marking the point from which the 
+   * next incremental crawl looks for changes.
    */
-  private void writeBrowseCache(File browseCacheFile, BrowseGroup browseCache) {
-    StringBuffer stringBuffer = new StringBuffer("");   
-    stringBuffer.append(browseCache.toXML());
+  private void writeBrowseCache(File browseCacheFile, BrowseGroup browseCache, long crawlTime) {
+    File tmpFile = new File(browseCacheFile.getPath() + ".tmp");
     
     try {
-      FileUtils.writeStringToFile(browseCacheFile, stringBuffer.toString());
+      FileUtils.writeStringToFile(tmpFile, browseCache.toXML(), "UTF-8");
+      tmpFile.setLastModified(crawlTime);
+      Files.move(tmpFile.toPath(), browseCacheFile.toPath(), 
+                 StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
     catch (IOException e) {
       logger.error("IOException:\n" + e.getMessage());
       e.printStackTrace();
+      FileUtils.deleteQuietly(tmpFile);
     }
   }
 
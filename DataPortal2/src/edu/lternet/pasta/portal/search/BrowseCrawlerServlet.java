@@ -55,6 +55,7 @@ public class BrowseCrawlerServlet extends HttpServlet implements Runnable {
   private boolean keepRunning = true;       // stops thread if false
   private Thread browseCrawlerThread;       // background thread
   private int crawlPeriod;                  // minimum hours between crawls
+  private int incrementalPeriod;            // minutes between incremental crawls (0 disables)
   ServletContext servletContext = null;
   private int windowBeginsAt = 0;           // first hour of crawlwindow (0-23)
   private int windowEndsAt = 23;            // last hour of crawl window (0-23) 
@@ -112,6 +113,7 @@ public class BrowseCrawlerServlet extends HttpServlet implements Runnable {
 
     crawlPeriodInt = new Integer("24");
     this.crawlPeriod = crawlPeriodInt.intValue();
+    this.incrementalPeriod = options.getInt("browse.crawler.incremental.minutes", 60);
 
     browseCrawlerThread = new Thread(this);
     browseCrawlerThread.setPriority(Thread.MIN_PRIORITY); // be a good citizen
@@ -122,17 +124,24 @@ public class BrowseCrawlerServlet extends HttpServlet implements Runnable {
   /**
    * Initiates a new crawl by constructing a new BrowseCrawler object and
    * calling its crawl() method.
+   * 
+   * @param incremental  if true, recount only the terms affected by data
+   *                     packages uploaded since the previous crawl
    */
-  private void initiateNewCrawl() {
+  private void initiateNewCrawl(boolean incremental) {
     BrowseCrawler browseCrawler = new BrowseCrawler();
-    BrowseGroup browseCache = browseCrawler.crawlKeywordTerms();    
+    BrowseGroup browseCache = incremental ? 
+        browseCrawler.crawlKeywordTermsIncremental() : browseCrawler.crawlKeywordTerms();    
 
     if (browseCache != null) {
-    	/* Lock the servlet context object to guarantee that only one thread at a
+    	/* The HTML is rendered before the attribute is replaced, so requests
+    	 * see either the old or the new browse cache, never a partial one.
+    	 * Lock the servlet context object to guarantee that only one thread at a
     	 * time can be getting or setting the context attribute. 
     	 */
+    	String browseKeywordHTML = browseCache.toHTML();
     	synchronized(servletContext) {
-    		servletContext.setAttribute("browseKeywordHTML", browseCache.toHTML());
+    		servletContext.setAttribute("browseKeywordHTML", browseKeywordHTML);
     	}
     }
   }
@@ -165,17 +174,26 @@ public class BrowseCrawlerServlet extends HttpServlet implements Runnable {
   
 
   /**
-   * Runs the BrowseCrawler main program in a separate thread. 
+   * Runs the BrowseCrawler main program in a separate thread. A full crawl
+   * runs once per crawl period within the crawl window; between full crawls,
+   * incremental crawls keep the counts current with new uploads.
    */
   public void run() {
     long delta;                     // endTime - startTime
     long endTime;                   // time that a crawl completes
     final long oneHour = (60 * 60 * 1000);      // milliseconds in one hour
-    long periodSleepTime;           // time to sleep between crawls
+    final long oneMinute = (60 * 1000);         // milliseconds in one minute
+    long lastFullCrawl = 0L;        // time that the last full crawl started
+    long lastCrawl = 0L;            // time that the last crawl of either kind started
     SimpleDateFormat simpleDateFormat = 
                        new SimpleDateFormat("E yyyy.MM.dd 'at' hh:mm:ss a zzz");
     long startTime;                 // time that a crawl starts
     final long tenMinutes = (10 * 60 * 1000);   // milliseconds in ten minutes
+    long checkSleepTime = tenMinutes;
+    
+    if (incrementalPeriod > 0) {
+      checkSleepTime = Math.min(tenMinutes, incrementalPeriod * oneMinute);
+    }
     
     while (keepRunning) {
       Date now = new Date();
@@ -183,34 +201,37 @@ public class BrowseCrawlerServlet extends HttpServlet implements Runnable {
           "Checking crawl critieria at time: " +
           simpleDateFormat.format(now)
                         );
-      if (checkCrawlCriteria()) {
+      startTime = System.currentTimeMillis();
+      boolean fullCrawlDue = (startTime - lastFullCrawl) >= (crawlPeriod * oneHour);
+      boolean incrementalCrawlDue = (lastFullCrawl > 0L) && (incrementalPeriod > 0) &&
+          ((startTime - lastCrawl) >= (incrementalPeriod * oneMinute));
+      
+      if (fullCrawlDue && checkCrawlCriteria()) {
         logger.info("Initiating new crawl.");
-        startTime = System.currentTimeMillis();
-        initiateNewCrawl();
+        initiateNewCrawl(false);
+        lastFullCrawl = startTime;
+        lastCrawl = startTime;
         endTime = System.currentTimeMillis();
         delta = endTime - startTime;
-
-        try {
-          periodSleepTime = (crawlPeriod * oneHour) - delta;
-          logger.info(
-              "Crawl completed. Sleeping for " + 
-              periodSleepTime +  
-              " milliseconds."
-                            );
-          Thread.sleep(periodSleepTime);
-        }
-        catch (InterruptedException e) {
-          logger.warn("InterruptedException: " + e.getMessage());
-        }
+        logger.info("Crawl completed in " + delta + " milliseconds.");
+      }
+      else if (incrementalCrawlDue) {
+        logger.info("Initiating new incremental crawl.");
+        initiateNewCrawl(true);
+        lastCrawl = startTime;
+        endTime = System.currentTimeMillis();
+        delta = endTime - startTime;
+        logger.info("Incremental crawl completed in " + delta + " milliseconds.");
       }
       else {
-        logger.debug("Crawl criteria failed. Sleeping for ten minutes.");
-        try {
-          Thread.sleep(tenMinutes);
-        }
-        catch (InterruptedException e) {
-          logger.error("InterruptedException: " + e.getMessage());
-        }
+        logger.debug("Crawl criteria failed.");
+      }
+
+      try {
+        Thread.sleep(checkSleepTime);
+      }
+      catch (InterruptedException e) {
+        logger.warn("InterruptedException: " + e.getMessage());
       }
     }
   }
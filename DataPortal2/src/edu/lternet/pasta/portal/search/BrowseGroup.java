@@ -364,34 +364,6 @@ public class BrowseGroup {
   }
 
   
-  /**
-   * Checks all the browse terms that are descendants of this browse group. If
-   * one of them matches the browse value, returns the XML that is
-   * stored in the browse cache for that browse value. Note that this method
-   * will only be called on the top-most browse group, since it is guaranteed
-   * to contain all the browse terms in the cache.
-   * 
-   * @param browseValue  The browse value, e.g. "bird".
-   * @return resultSet   An XML string representing the search results for this browse value
-   */
-  public String getResultSet(String browseValue) {
-    ArrayList<BrowseTerm> arrayList = new ArrayList<BrowseTerm>();
-    getBrowseTerms(arrayList);
-    String resultSet = "<?xml version=\'1.0\'?><resultset></resultset>\n";
-    
-    for (int i = 0; i < arrayList.size(); i++) {
-      BrowseTerm browseTerm = arrayList.get(i);
-      String browseTermValue = browseTerm.getValue();
-      if (browseValue.equalsIgnoreCase(browseTermValue)) {
-        resultSet = browseTerm.readSearchResults();
-        break;
-      }
-    }
-    
-    return resultSet;
-  }
-
-  
   /**
    * Getter method for 'value'.
    * 
@@ -24,13 +24,10 @@
 
 package edu.lternet.pasta.portal.search;
 
-import java.io.File;
-import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.text.ParseException;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 
 import edu.lternet.pasta.client.DataPackageManagerClient;
@@ -57,7 +54,6 @@ public class BrowseTerm {
   /*
    * Instance fields
    */
-  private String browseTermPath = null;
   private int matchCount = 0;
   private String queryString = null;
   private TermsList termsList;
@@ -77,14 +73,12 @@ public class BrowseTerm {
    * Constructor. Initialize this browse term with its text value, e.g. "percent carbon"
    */
   public BrowseTerm(String value) {
-    String fileSeparator = System.getProperty("file.separator");
     this.value = value;
     this.displayValue = value;
     if (isLTERSite()) {
         LTERSite lterSite = new LTERSite(value);
         displayValue = lterSite.getSiteName();
     }   
-    this.browseTermPath = BrowseSearch.browseCacheDir + fileSeparator + fileName() + ".term";
     this.queryString = composeQueryString();
     this.termsList = new TermsList();
     termsList.addTerm(displayValue);
@@ -109,6 +103,19 @@ public class BrowseTerm {
    * Passes through to use the SimpleSearch logic to compose the query string.
    */
   private String composeQueryString() {
+    String searchValue = composeSearchValue();
+    SimpleSearch simpleSearch = new SimpleSearch();
+    String queryString = simpleSearch.buildSolrQuery(searchValue, isLTERSite());
+    
+    return queryString;
+  }
+  
+  
+  /*
+   * Composes the search value for this browse term: site names are 
+   * lower-cased and multi-word terms are searched as phrases.
+   */
+  private String composeSearchValue() {
     boolean isSiteQuery = isLTERSite();
     String searchValue = null;
     
@@ -125,19 +132,54 @@ public class BrowseTerm {
     	}
     }
     
-    SimpleSearch simpleSearch = new SimpleSearch();
-    String queryString = simpleSearch.buildSolrQuery(searchValue, isLTERSite());
-    
-    return queryString;
+    return searchValue;
   }
   
   
   /**
-   * Queries the Data Package Manager for data packages matching this browse term's value.
+   * Queries the Data Package Manager for the number of data packages 
+   * matching this browse term's value.
    */
   public void crawl() {
-    String searchResults = runQuery(); 
-    writeSearchResults(searchResults);
+    String searchResults = runCountQuery();
+
+    if (searchResults != null) {
+      try {
+        ResultSetUtility resultSetUtility = new ResultSetUtility(searchResults, Search.DEFAULT_SORT);
+        this.matchCount = resultSetUtility.getNumFound();
+      }
+      catch (ParseException e) {
+        logger.error(String.format("Error parsing search results: %s", e.getMessage()));
+        e.printStackTrace();
+      }
+    }
+  }
+  
+  
+  /**
+   * Composes a Solr facet query that matches the same data packages as
+   * this browse term's search, so that the match counts of many browse
+   * terms can be returned by a single search request. The base filters 
+   * of the search (e.g. the exclusion of EcoTrends packages) are not part
+   * of the facet query and must be applied to the request as a whole.
+   * 
+   * @return the facet query, e.g. "{!edismax v='\"percent carbon\"'}"
+   */
+  public String getFacetQuery() {
+    String searchValue = composeSearchValue();
+    String facetQuery = null;
+    
+    if (isLTERSite()) {
+      facetQuery = String.format("scope:(knb-lter-%s)", searchValue);
+    }
+    else {
+      String escapedValue = Search.escapeQueryChars(searchValue);
+      // Escape the value for use inside a quoted local parameter
+      escapedValue = escapedValue.replace("\\", "\\\\").replace("'", "\\'");
+      facetQuery = String.format("{!%s v='%s'}", Search.DEFAULT_DEFTYPE, escapedValue);
+    }
+    
+    return facetQuery;
   }
   
   
@@ -153,7 +195,6 @@ public class BrowseTerm {
    */
   String toXML() {
     String cacheString = null;
-    String searchResults = readSearchResults();
     StringBuffer stringBuffer = new StringBuffer("");
     int indent = calculateIndent();
     
@@ -167,26 +208,10 @@ public class BrowseTerm {
     }
     stringBuffer.append("<value>" + value + "</value>\n");
 
-    if (searchResults != null) {
-        /* Count the number of matching documents */
-        this.matchCount = 0;
-
-        try {
-    		ResultSetUtility resultSetUtility = new ResultSetUtility(searchResults, Search.DEFAULT_SORT);
-    		Integer numFound = resultSetUtility.getNumFound();
-    		this.matchCount = numFound;
-    	}
-    	catch (ParseException e) {
-    		logger.error(String.format("Error parsing search results: %s", e.getMessage()));
-    		e.printStackTrace();
-    	}
-    	      
-      for (int i = 0; i < indent + 4; i++) {
-      	stringBuffer.append(" ");
-      }
-      
-      stringBuffer.append(String.format("<matchCount>%d</matchCount>\n", this.matchCount));
+    for (int i = 0; i < indent + 4; i++) {
+    	stringBuffer.append(" ");
     }
+    stringBuffer.append(String.format("<matchCount>%d</matchCount>\n", this.matchCount));
     
     for (int i = 0; i < indent; i++) {
     	stringBuffer.append(" ");
@@ -258,6 +283,29 @@ public class BrowseTerm {
 
     return resultsetXML;
   }
+  
+  
+  /*
+   * Runs the query for this browse term, returning only the number of
+   * matching documents and no documents.
+   */
+  private String runCountQuery() {
+    String uid = "public";
+    String resultsetXML = null;
+    
+    try {  
+      DataPackageManagerClient dpmClient = new DataPackageManagerClient(uid);
+      String extendedQueryString = String.format("%s&start=%d&rows=0", 
+    		  this.queryString, Search.DEFAULT_START);		
+      resultsetXML = dpmClient.searchDataPackages(extendedQueryString);    
+    } 
+    catch (Exception e) {
+      logger.error(String.format("Error counting matches for browse term '%s': %s", 
+    		                     this.value, e.getMessage()));
+    }
+
+    return resultsetXML;
+  }
 
 
   /**
@@ -307,17 +355,6 @@ public class BrowseTerm {
   }
 
   
-  /**
-   * Composes the filename for this browse term by replacing spaces with
-   * underscores.
-   * 
-   * @return
-   */
-  private String fileName () {
-    return value.replace(' ', '_');
-  }
-  
-  
   public String getQueryString() {
 	  return queryString;
   }
@@ -333,28 +370,6 @@ public class BrowseTerm {
   }
   
   
-  /**
-   * Reads the search results from file.
-   * 
-   * @return  searchResults, an XML string
-   */
-  public String readSearchResults() {
-    File browseCacheFile = new File(browseTermPath);
-    String searchResults = null;
-    
-    try {
-    	if (browseCacheFile.exists()) {
-            searchResults = FileUtils.readFileToString(browseCacheFile);
-    	}
-    }
-    catch (IOException e) {
-      e.printStackTrace();
-    }
-    
-    return searchResults;
-  }
-  
-  
   public void setLevel(int n) {
 	  this.level = n;
   }
@@ -363,26 +378,5 @@ public class BrowseTerm {
   public void setTermId(String id) {
 	  this.termId = id;
   }
-  
- 
-  /**
-   * Writes the search results to file.
-   * 
-   * @param searchResults      an XML string holding the search results
-   */
-  private void writeSearchResults(String searchResults) {
-    File browseCacheFile = new File(browseTermPath);
-    StringBuffer stringBuffer = new StringBuffer("");
-    
-    stringBuffer.append(searchResults);
-    
-    try {
-      FileUtils.writeStringToFile(browseCacheFile, stringBuffer.toString());
-    }
-    catch (IOException e) {
-      logger.error("IOException:\n" + e.getMessage());
-      e.printStackTrace();
-    }
-  }
 
 }
@@ -18,17 +18,23 @@
 
 package edu.lternet.pasta.portal.statistics;
 
+import edu.lternet.pasta.client.DataPackageManagerClient;
 import edu.lternet.pasta.portal.ConfigurationListener;
-import edu.lternet.pasta.portal.database.DatabaseClient;
 
-import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
-import java.sql.*;
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.Date;
 
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
 /**
  *  
  * User: servilla
@@ -39,6 +45,11 @@ import java.util.Date;
  * Package: edu.lternet.pasta.utilities.statistics
  * <p/>
  * Generate data package and site growth statistics for PASTA.
+ * <p/>
+ * The monthly upload counts are read from the growth summary maintained by
+ * the Data Package Manager (the readDataPackageStatistics web service
+ * method), so the repository is not scanned to build the chart. Periods
+ * shorter than a month receive the counts of the month starting in them.
 
  * @author Mark Servilla
  * @author Duane Costa
@@ -46,37 +57,15 @@ import java.util.Date;
 public class GrowthStats {
 
 
- /* Instance variables */
-
-  DatabaseClient databaseClient;
-  
-  final String WHERE_CLAUSE = " WHERE resource_type='dataPackage' AND" +
-                              "  date_deactivated IS NULL AND" +
-		                      "  scope != 'ecotrends' AND" +
-                              "  scope NOT LIKE 'lter-landsat%' ";
-  final String SELECT_CLAUSE_UNIQUE = 
-      "SELECT scope || '.' || identifier,date_created FROM ";
-  final String SELECT_CLAUSE_ALL = 
-	  "SELECT scope || '.' || identifier || '.' || revision,date_created FROM ";
-
  /* Class variables */
 
   private static final Logger logger = Logger.getLogger(GrowthStats.class);
-  private static final String RESOURCE_REGISTRY = "datapackagemanager.resource_registry";
 
   private static final GregorianCalendar origin = new GregorianCalendar(2013, 0, 1, 0, 0, 0);
 
  /* Constructors */
 
   public GrowthStats() {
-
-    Configuration options = ConfigurationListener.getOptions();
-
-    String dbDriver = options.getString("db.Driver");
-    String dbUrl = options.getString("db.pkg.URL");
-    String dbUser = options.getString("db.User");
-    String dbPassword = options.getString("db.Password");
-	this.databaseClient = new DatabaseClient(dbDriver, dbUrl, dbUser, dbPassword);
   }
 
   
@@ -84,63 +73,26 @@ public class GrowthStats {
 
   public String getGoogleChartJson(GregorianCalendar now, int scale) {
 
-    StringBuilder pkgSql = new StringBuilder();
-    pkgSql.append(SELECT_CLAUSE_UNIQUE);
-    pkgSql.append(RESOURCE_REGISTRY);
-    pkgSql.append(WHERE_CLAUSE);
-    pkgSql.append("ORDER BY date_created ASC;");
-
-    StringBuilder pkgSqlAll = new StringBuilder();
-    pkgSqlAll.append(SELECT_CLAUSE_ALL);
-    pkgSqlAll.append(RESOURCE_REGISTRY);
-    pkgSqlAll.append(WHERE_CLAUSE);
-    pkgSqlAll.append("ORDER BY date_created ASC;");
-
-    HashMap<String, Long> pkgMap;
-    HashMap<String, Long> pkgMapAll;
-
-    try {
-      pkgMap = buildHashMap(pkgSql.toString());
-      pkgMapAll = buildHashMap(pkgSqlAll.toString());
-    }
-    catch (SQLException e) {
-      logger.error("getGoogleChartJson: " + e.getMessage());
-      e.printStackTrace();
-      pkgMap = new HashMap<String, Long>(); // Create empty package map
-      pkgMapAll = new HashMap<String, Long>(); // Create empty package map
-    }
-
-    Long[] pkgList = buildSortedList(pkgMap);
-    Long[] pkgListAll = buildSortedList(pkgMapAll);
+    // Month start time mapped to the number of new data packages and revisions
+    TreeMap<Long, Integer> pkgMonths = new TreeMap<Long, Integer>();
+    TreeMap<Long, Integer> pkgMonthsAll = new TreeMap<Long, Integer>();
 
-    /* 
-    StringBuilder siteSql = new StringBuilder();
-    siteSql.append("SELECT scope,date_created FROM ");
-    siteSql.append(RESOURCE_REGISTRY);
-    siteSql.append(WHERE_CLAUSE);
-    siteSql.append("ORDER BY date_created ASC;");
-
-    HashMap<String, Long> siteMap = null;
     try {
-      siteMap = buildHashMap(siteSql.toString());
+      readGrowthSummary(pkgMonths, pkgMonthsAll);
     }
-    catch (SQLException e) {
+    catch (Exception e) {
       logger.error("getGoogleChartJson: " + e.getMessage());
       e.printStackTrace();
-      siteMap = new HashMap<String, Long>(); // Create empty site map
+      pkgMonths.clear();
+      pkgMonthsAll.clear();
     }
 
-    Long[] siteList = buildSortedList(siteMap);
-    */
-
     ArrayList<String> labels = buildLabels(origin, now, scale);
-    ArrayList<Integer> pkgFreq = buildFrequencies(origin, now, scale, pkgList);
-    ArrayList<Integer> pkgFreqAll = buildFrequencies(origin, now, scale, pkgListAll);
-    //ArrayList<Integer> siteFreq = buildFrequencies(origin, now, scale, siteList);
+    ArrayList<Integer> pkgFreq = buildFrequencies(origin, now, scale, pkgMonths);
+    ArrayList<Integer> pkgFreqAll = buildFrequencies(origin, now, scale, pkgMonthsAll);
 
     Integer pkgCDist = 0;
     Integer pkgAllCDist = 0;
-    //Integer siteCDist = 0;
     int i;
 
     StringBuilder json = new StringBuilder();
@@ -150,7 +102,6 @@ public class GrowthStats {
     for (i = 0; i < nLabels - 1; i++) {
       pkgCDist += pkgFreq.get(i);
       pkgAllCDist += pkgFreqAll.get(i);
-      //siteCDist += siteFreq.get(i);
       json.append(String.format("['%s',%d, %d],%n", labels.get(i), pkgCDist, pkgAllCDist));
     }
 
@@ -158,7 +109,6 @@ public class GrowthStats {
 	if (i >= 0) {
 		pkgCDist += pkgFreq.get(i);
 		pkgAllCDist += pkgFreqAll.get(i);
-		//siteCDist += siteFreq.get(i);
 		json.append(String.format("['%s',%d, %d]%n", labels.get(i), pkgCDist, pkgAllCDist));
 	}
 
@@ -166,44 +116,43 @@ public class GrowthStats {
   }
 
   
-  private HashMap<String, Long> buildHashMap(String sql) throws SQLException {
-	Connection conn = databaseClient.getConnection();
-    HashMap<String, Long> map = new HashMap<String, Long>();
-
-	if (conn != null) {
-		try {
-			Statement stmnt = conn.createStatement();
-			ResultSet rs = stmnt.executeQuery(sql);
-
-			while (rs.next()) {
-				String key = rs.getString(1);
-				Long date_created = rs.getTimestamp(2).getTime();
-				if (!map.containsKey(key)) {
-					map.put(key, date_created);
-				}
-			}
-		} finally {
-			databaseClient.closeConnection(conn);
-		}
-	}
-
-    return map;
-  }
-
-  
-  private Long[] buildSortedList(HashMap<String, Long> map) {
-
-    Long[] list = new Long[map.size()];
-
-    int i = 0;
-    for (Map.Entry<String, Long> entry: map.entrySet()) {
-      list[i++] = entry.getValue();
+  /*
+   * Reads the monthly growth of data packages contributed by sites (i.e.
+   * excluding EcoTrends and Landsat) from the Data Package Manager.
+   */
+  private void readGrowthSummary(TreeMap<Long, Integer> pkgMonths,
+                                 TreeMap<Long, Integer> pkgMonthsAll)
+      throws Exception {
+
+    DataPackageManagerClient dpmClient = new DataPackageManagerClient("public");
+    String statisticsXML = dpmClient.readDataPackageStatistics();
+    SimpleDateFormat monthFormat = new SimpleDateFormat("yyyy-MM");
+
+    InputStream inputStream = IOUtils.toInputStream(statisticsXML, "UTF-8");
+    try {
+      DocumentBuilder documentBuilder =
+          DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      Document document = documentBuilder.parse(inputStream);
+      NodeList periods = document.getElementsByTagName("period");
+
+      for (int i = 0; i < periods.getLength(); i++) {
+        Element period = (Element) periods.item(i);
+        if ("true".equals(elementText(period, "contributed"))) {
+          Long month = monthFormat.parse(elementText(period, "month")).getTime();
+          pkgMonths.put(month, new Integer(elementText(period, "dataPackages")));
+          pkgMonthsAll.put(month, new Integer(elementText(period, "revisions")));
+        }
+      }
     }
+    finally {
+      IOUtils.closeQuietly(inputStream);
+    }
+  }
 
-    Arrays.sort(list);
-
-    return list;
 
+  private String elementText(Element parent, String tagName) {
+    NodeList nodeList = parent.getElementsByTagName(tagName);
+    return (nodeList.getLength() > 0) ? nodeList.item(0).getTextContent().trim() : null;
   }
 
   
@@ -266,7 +215,8 @@ public class GrowthStats {
 
   private ArrayList<Integer> buildFrequencies(GregorianCalendar start,
                                               GregorianCalendar end,
-                                              int scale, Long[] list) {
+                                              int scale, 
+                                              TreeMap<Long, Integer> months) {
 
     ArrayList<Integer> freqs = new ArrayList<Integer>();
 
@@ -279,12 +229,8 @@ public class GrowthStats {
 
       int freq = 0;
 
-      for (int i = 0; i < list.length; i++) {
-        if (lower.getTimeInMillis() <= list[i] &&
-            list[i] < upper.getTimeInMillis()) {
-          freq++;
-          //System.out.printf("%d - %d - %d - %d%n", lower.getTimeInMillis(), list[i], upper.getTimeInMillis(), freq);
-        }
+      for (Integer count : months.subMap(lower.getTimeInMillis(), upper.getTimeInMillis()).values()) {
+        freq += count;
       }
       freqs.add(freq);
       lower.setTime(upper.getTime());
@@ -201,6 +201,8 @@ public class DataPackageManagerClientTest {
 	  testCreateDataPackage();
 	  testEvaluateDataPackage();
 	  testReadDataPackage();
+	  testReadDataPackageSummary();
+	  testReadProvenanceLineage();
 	  testReadDataEntityName();
 	  testReadDataPackageReport();
 	  testReadMetadata();
@@ -369,6 +371,51 @@ public class DataPackageManagerClientTest {
   }
 
 
+  /**
+   * Test the status and message body of the Read Data Package Summary use case
+   */
+  public void testReadDataPackageSummary() {
+    try {
+      String entityString = dpmClient.readDataPackageSummary(testScope,
+          testIdentifier, testRevisionStr);
+
+      // Check the message body
+      assertFalse(entityString == null);
+      if (entityString != null) {
+        assertTrue(entityString.contains("<dataPackageSummary>"));
+        assertTrue(entityString.contains(testEntityId));
+        assertTrue(entityString.contains("<deleted>false</deleted>"));
+      }
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
+
+  /**
+   * Test the status and message body of the Read Provenance Lineage use case
+   */
+  public void testReadProvenanceLineage() {
+    try {
+      String entityString = dpmClient.readProvenanceLineage(testScope,
+          testIdentifier, testRevisionStr, 2);
+
+      // Check the message body
+      assertFalse(entityString == null);
+      if (entityString != null) {
+        assertTrue(entityString.contains("maxDepth=\"2\""));
+        assertTrue(entityString.contains("relation=\"self\""));
+      }
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail(e.getMessage());
+    }
+  }
+
+
   /**
    * Test the status and message body of the Read Data Entity
    */
@@ -0,0 +1,138 @@
+/*
+ *
+ * $Date$
+ * $Author$
+ * $Revision$
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the shared, pooled HTTP client against a local HTTP server.
+ *
+ * @author dcosta
+ */
+public class PastaHttpClientTest {
+
+	/*
+	 * Instance variables
+	 */
+
+	private HttpServer server = null;
+	private String baseUrl = null;
+	private volatile String lastCookie = null;
+
+
+	/*
+	 * Instance methods
+	 */
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+
+		// Responds like the Gatekeeper to a successful login
+		server.createContext("/login", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().add("Set-Cookie", "auth-token=secret; Path=/");
+				respond(exchange);
+			}
+		});
+
+		// Records the Cookie header of each request
+		server.createContext("/anonymous", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				lastCookie = exchange.getRequestHeaders().getFirst("Cookie");
+				respond(exchange);
+			}
+		});
+
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		PastaHttpClient.stop();
+	}
+
+
+	private static void respond(HttpExchange exchange) throws IOException {
+		byte[] body = "OK".getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+
+	private int get(String path, String cookie) throws IOException {
+		PastaHttpClient httpClient = PastaHttpClient.newClient();
+		try {
+			HttpGet httpGet = new HttpGet(baseUrl + path);
+			if (cookie != null) {
+				httpGet.setHeader("Cookie", cookie);
+			}
+			HttpResponse httpResponse = httpClient.execute(httpGet);
+			EntityUtils.consume(httpResponse.getEntity());
+			return httpResponse.getStatusLine().getStatusCode();
+		}
+		finally {
+			httpClient.close();
+		}
+	}
+
+
+	/**
+	 * The auth-token set in the response to one user's login must not be
+	 * sent with a later anonymous request on the shared client.
+	 */
+	@Test
+	public void testLoginCookieNotShared() throws Exception {
+		assertEquals(200, get("/login", null));
+		assertEquals(200, get("/anonymous", null));
+		assertNull(lastCookie);
+
+		// An explicitly set token is still sent
+		assertEquals(200, get("/anonymous", "auth-token=mine"));
+		assertEquals("auth-token=mine", lastCookie);
+	}
+
+}
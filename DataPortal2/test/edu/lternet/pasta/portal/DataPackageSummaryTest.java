@@ -0,0 +1,74 @@
+/*
+ *
+ * $Date$
+ * $Author$
+ * $Revision$
+ *
+ * Copyright 2011-2015 the University of New Mexico.
+ *
+ * This work was supported by National Science Foundation Cooperative
+ * Agreements #DEB-0832652 and #DEB-0936498.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ */
+
+package edu.lternet.pasta.portal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import edu.lternet.pasta.common.eml.DataPackage;
+
+/**
+ * Tests the parsing of the data package summary XML, including provenance
+ * entries written by DataPackage.DataSource and DataPackage.DataDescendant.
+ *
+ * @author dcosta
+ */
+public class DataPackageSummaryTest {
+
+	/**
+	 * A source URL with a query string does not break the summary, and
+	 * PASTA package URLs become Data Portal URLs.
+	 */
+	@Test
+	public void testProvenance() throws Exception {
+		DataPackage dataPackage = new DataPackage();
+		String externalURL = "http://example.org/data?site=a&year=2015";
+		String xml =
+			"<dataPackageSummary>\n" +
+			"  <packageId>knb-lter-nin.2.1</packageId>\n" +
+			"  <dataSources>\n" +
+			dataPackage.new DataSource(null, "External data", externalURL).toXML() +
+			dataPackage.new DataSource("knb-lter-nin.1.1", "Source data",
+					"https://pasta.lternet.edu/package/metadata/eml/knb-lter-nin/1/1").toXML() +
+			"  </dataSources>\n" +
+			"  <dataDescendants>\n" +
+			dataPackage.new DataDescendant("knb-lter-nin.3.1", "Derived data",
+					"https://pasta.lternet.edu/package/metadata/eml/knb-lter-nin/3/1").toXML() +
+			"  </dataDescendants>\n" +
+			"</dataPackageSummary>\n";
+
+		DataPackageSummary summary = new DataPackageSummary(xml);
+		assertEquals("knb-lter-nin.2.1", summary.getPackageId());
+		assertEquals(2, summary.getDataSources().size());
+		assertEquals(externalURL, summary.getDataSources().get(0).getSourceURL());
+		assertEquals("mapbrowse?scope=knb-lter-nin&identifier=1&revision=1",
+				summary.getDataSources().get(1).getSourceURL());
+		assertEquals(1, summary.getDataDescendants().size());
+		assertEquals("mapbrowse?scope=knb-lter-nin&identifier=3&revision=1",
+				summary.getDataDescendants().get(0).getDerivedURL());
+	}
+
+}
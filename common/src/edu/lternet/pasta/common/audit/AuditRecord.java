@@ -28,6 +28,14 @@ public class AuditRecord {
    * Class variables 
    */
 
+  /**
+   * The header line of a CSV-formatted list of audit records, naming
+   * the fields in the order written by {@link #toCSV()}.
+   */
+  public static final String CSV_HEADER = 
+    "oid,entryTime,category,service,serviceMethod,responseStatus," +
+    "resourceId,user,userAgent,groups,authSystem,entryText\n";
+
   /* 
    * Instance variables 
    */
@@ -390,6 +398,40 @@ public class AuditRecord {
   }
   
   
+  /*
+   * Returns the contents of this audit entry as a single CSV line, with
+   * fields in the order given by CSV_HEADER.
+   */
+  public String toCSV() {
+    StringBuffer stringBuffer = new StringBuffer("");
+    
+    stringBuffer.append(String.format("%d,", oid));
+    stringBuffer.append(csvField(entryTime)).append(",");
+    stringBuffer.append(csvField(category)).append(",");
+    stringBuffer.append(csvField(service)).append(",");
+    stringBuffer.append(csvField(serviceMethod)).append(",");
+    stringBuffer.append(String.format("%d,", responseStatus));
+    stringBuffer.append(csvField(resourceId)).append(",");
+    stringBuffer.append(csvField(user)).append(",");
+    stringBuffer.append(csvField(userAgent)).append(",");
+    stringBuffer.append(csvField(groups)).append(",");
+    stringBuffer.append(csvField(authSystem)).append(",");
+    stringBuffer.append(csvField(entryText)).append("\n");
+    
+    return stringBuffer.toString();
+  }
+  
+  
+  /*
+   * Quotes a CSV field value, doubling any embedded quote characters.
+   * Null values are written as empty fields.
+   */
+  private String csvField(String value) {
+    if (value == null) { return ""; }
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+  
+  
   private String groupsSetToGroupsString(Set<String> groupsSet) {
     String groups = "";
     StringBuffer stringBuffer = new StringBuffer("");
@@ -28,6 +28,8 @@ import java.util.ArrayList;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.owasp.encoder.Encode;
+
 import edu.lternet.pasta.common.XmlUtility;
 import edu.lternet.pasta.common.eml.Entity.EntityType;
 
@@ -555,7 +557,7 @@ public class DataPackage {
 			stringBuilder.append("    <dataSource>\n");			
 			stringBuilder.append(String.format("        <packageId>%s</packageId>\n", sourceId));
 			stringBuilder.append(String.format("        <title>%s</title>\n", getSourceTitle()));
-			stringBuilder.append(String.format("        <url>%s</url>\n", sourceURL));		
+			stringBuilder.append(String.format("        <url>%s</url>\n", Encode.forXml(sourceURL)));		
 			stringBuilder.append("    </dataSource>\n");
 
 			xml = stringBuilder.toString();
@@ -613,7 +615,7 @@ public class DataPackage {
 			stringBuilder.append("    <dataDescendant>\n");			
 			stringBuilder.append(String.format("        <packageId>%s</packageId>\n", derivedId));
 			stringBuilder.append(String.format("        <title>%s</title>\n", getDerivedTitle()));
-			stringBuilder.append(String.format("        <url>%s</url>\n", derivedURL));		
+			stringBuilder.append(String.format("        <url>%s</url>\n", Encode.forXml(derivedURL)));		
 			stringBuilder.append("    </dataDescendant>\n");
 
 			xml = stringBuilder.toString();
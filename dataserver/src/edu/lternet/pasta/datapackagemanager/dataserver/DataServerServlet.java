@@ -25,10 +25,10 @@
 package edu.lternet.pasta.datapackagemanager.dataserver;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
  
 
 import javax.servlet.ServletContext;
@@ -78,77 +78,36 @@ public class DataServerServlet extends HttpServlet {
 	 */
 	protected void doHead(HttpServletRequest request, HttpServletResponse response) 
     		throws ServletException {
-    	String dataToken = request.getParameter("dataToken");
-    	String size = request.getParameter("size");
-    	String objectName= request.getParameter("objectName");
-    	
-    	if (
-    		dataToken == null || dataToken.isEmpty() ||
-    		size == null || size.isEmpty() ||
-    		objectName == null || objectName.isEmpty()
-    	   ) {
-    		response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-    	}
-    	else {
-    		/*
-    		 * Find out which directory the temporary data files are being
-    		 * placed in by the Data Package Manager
-    		 */
-    		PropertiesConfiguration options = ConfigurationListener.getOptions();
-    		String tmpDir = options.getString("datapackagemanager.tmpDir");
-    	
-    		if (tmpDir == null || tmpDir.equals("")) {
-    			throw new ServletException("datapackagemanager.tmpDir property value was not specified.");
-    		}
-    		
-    		try { 
-    			// reads input file from an absolute path
-    			String filePath = String.format("%s/%s", tmpDir, dataToken);
-    			File downloadFile = new File(filePath);
-    			if (!downloadFile.exists()) {
-    				String message = String.format("File not found: %s", filePath);
-    				throw new FileNotFoundException(message);
-    			}
-    			ServletContext context = getServletContext();
-         
-    			// gets MIME type of the file
-    			String mimeType = context.getMimeType(filePath);
-    			if (mimeType == null) {        
-    				// set to binary type if MIME mapping not found
-    				mimeType = "application/octet-stream";
-    			}
-         
-    			// modifies response
-    			response.setContentType(mimeType);
-
-        		long length = Long.parseLong(size);
-    			if (length <= Integer.MAX_VALUE) {
-    				response.setContentLength((int) length);
-        		} 
-    			else {
-        		  response.addHeader("Content-Length", Long.toString(length));
-        		}    		
-        		
-    			// forces download
-    			String headerKey = "Content-Disposition";
-    			String headerValue = String.format("attachment; filename=\"%s\"", objectName);
-    			response.setHeader(headerKey, headerValue);  
-    		}
-    		catch (FileNotFoundException e) {
-    			logger.error(e.getMessage());
-    			e.printStackTrace();
-    			response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-    		}
-    	}
+		boolean sendContent = false;
+		serveData(request, response, sendContent);
     }
 	
 
 	/**
 	 * Process a data download request using information that was generated
-	 * by the Data Package Manager service.
+	 * by the Data Package Manager service. A single byte range may be
+	 * requested with a Range header (optionally qualified by If-Range), so
+	 * that interrupted downloads can be resumed.
 	 */
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) 
     		throws ServletException {
+		boolean sendContent = true;
+		serveData(request, response, sendContent);
+    }
+	
+	
+	/*
+	 * Serves the data file (or the requested range of it) named by the data
+	 * token. If sendContent is false, only the headers are sent.
+	 * 
+	 * The temporary data file is not deleted after it is downloaded, because
+	 * the client may return for further ranges of it. It is removed by the
+	 * Data Package Manager when its time-to-live (datapackagemanager.tmpDir.ttl)
+	 * expires.
+	 */
+	private void serveData(HttpServletRequest request, HttpServletResponse response, 
+			               boolean sendContent) 
+    		throws ServletException {
     	String dataToken = request.getParameter("dataToken");
     	String size = request.getParameter("size");
     	String objectName= request.getParameter("objectName");
@@ -156,7 +115,8 @@ public class DataServerServlet extends HttpServlet {
     	if (
     		dataToken == null || dataToken.isEmpty() ||
     		size == null || size.isEmpty() ||
-    		objectName == null || objectName.isEmpty()
+    		objectName == null || objectName.isEmpty() ||
+    		dataToken.contains("/") || dataToken.contains("..")
     	   ) {
     		response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
     	}
@@ -172,14 +132,19 @@ public class DataServerServlet extends HttpServlet {
     			throw new ServletException("datapackagemanager.tmpDir property value was not specified.");
     		}
     		
-    		logger.info(String.format("Downloading: dataToken: %s; size: %s; objectName: %s", 
-    				                  dataToken, size, objectName)); 
+    		if (sendContent) {
+    			logger.info(String.format("Downloading: dataToken: %s; size: %s; objectName: %s; range: %s", 
+    				                      dataToken, size, objectName, request.getHeader("Range")));
+    		}
     	
     		try { 
     			// reads input file from an absolute path
     			String filePath = String.format("%s/%s", tmpDir, dataToken);
     			File downloadFile = new File(filePath);
-    			FileInputStream inStream = new FileInputStream(downloadFile);     
+    			if (!downloadFile.exists()) {
+    				String message = String.format("File not found: %s", filePath);
+    				throw new FileNotFoundException(message);
+    			}
     			ServletContext context = getServletContext();
          
     			// gets MIME type of the file
@@ -189,44 +154,45 @@ public class DataServerServlet extends HttpServlet {
     				mimeType = "application/octet-stream";
     			}
     			logger.debug("MIME type: " + mimeType);
+    			
+    			long length = downloadFile.length();
+    			long lastModified = downloadFile.lastModified();
+    			String eTag = String.format("\"%s-%d\"", dataToken, length);
+    			long[] range = null;
+    			
+    			if (isRangeCurrent(request, eTag, lastModified)) {
+    				range = parseRange(request.getHeader("Range"), length);
+    				if (range != null && range[0] > range[1]) {
+    					response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    					response.setHeader("Content-Range", String.format("bytes */%d", length));
+    					return;
+    				}
+    			}
          
     			// modifies response
     			response.setContentType(mimeType);
-
-        		long length = Long.parseLong(size);
-    			if (length <= Integer.MAX_VALUE) {
-    				response.setContentLength((int) length);
-        		} 
-    			else {
-        		  response.addHeader("Content-Length", Long.toString(length));
-        		}    		
+    			response.setHeader("Accept-Ranges", "bytes");
+    			response.setHeader("ETag", eTag);
+    			response.setDateHeader("Last-Modified", lastModified);
+    			
+    			long start = 0L;
+    			long contentLength = length;
+    			if (range != null) {
+    				start = range[0];
+    				contentLength = range[1] - range[0] + 1;
+    				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    				response.setHeader("Content-Range", 
+    						String.format("bytes %d-%d/%d", range[0], range[1], length));
+    			}
+    			response.setHeader("Content-Length", Long.toString(contentLength));
         		
     			// forces download
     			String headerKey = "Content-Disposition";
     			String headerValue = String.format("attachment; filename=\"%s\"", objectName);
     			response.setHeader(headerKey, headerValue);
-         
-    			// obtains response's output stream
-    			OutputStream outStream = response.getOutputStream();
-         
-    			byte[] buffer = new byte[4096];
-    			int bytesRead = -1;
-         
-    			while ((bytesRead = inStream.read(buffer)) != -1) {
-    				outStream.write(buffer, 0, bytesRead);
-    			}
-         
-    			inStream.close();
-    			outStream.close();
-        
-    			/*
-    			 * Delete the temporary data file after it was downloaded
-    			 */
-    			try {
-    				downloadFile.delete();
-    			}
-    			catch (Exception e) {
-    				logger.warn(String.format("Error deleting temporary data file: %s", e.getMessage()));
+    			
+    			if (sendContent) {
+    				copyRange(downloadFile, start, contentLength, response.getOutputStream());
     			}
     		}
     		catch (FileNotFoundException e) {
@@ -240,6 +206,105 @@ public class DataServerServlet extends HttpServlet {
     			throw new ServletException(e.getMessage());
     		}
     	}
-    }
+	}
+	
+	
+	/*
+	 * Boolean to determine whether a Range header should be honored. It is
+	 * not when an If-Range header names a different version of the file.
+	 */
+	private boolean isRangeCurrent(HttpServletRequest request, String eTag, long lastModified) {
+		String ifRange = request.getHeader("If-Range");
+		
+		if (ifRange == null || ifRange.equals(eTag)) {
+			return true;
+		}
+		
+		try {
+			long ifRangeDate = request.getDateHeader("If-Range");
+			// HTTP dates have a resolution of one second
+			return (ifRangeDate / 1000L) == (lastModified / 1000L);
+		}
+		catch (IllegalArgumentException e) {
+			return false;  // an entity tag that does not match
+		}
+	}
+	
+	
+	/*
+	 * Parses a Range header into the first and last byte positions of a
+	 * single range. Returns null if there is no usable Range header, in
+	 * which case the whole file is sent; multiple ranges are not supported
+	 * and are treated the same way. If the range cannot be satisfied, the
+	 * first position returned is greater than the last.
+	 */
+	static long[] parseRange(String rangeHeader, long length) {
+		if (rangeHeader == null || !rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+			return null;
+		}
+		
+		String spec = rangeHeader.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		
+		try {
+			String firstStr = spec.substring(0, dash).trim();
+			String lastStr = spec.substring(dash + 1).trim();
+			long first;
+			long last;
+			
+			if (firstStr.isEmpty()) {
+				// A suffix range: the final N bytes
+				long suffixLength = Long.parseLong(lastStr);
+				first = (suffixLength == 0L) ? length : Math.max(length - suffixLength, 0L);
+				last = length - 1;
+			}
+			else {
+				first = Long.parseLong(firstStr);
+				last = length - 1;
+				if (!lastStr.isEmpty()) {
+					long lastPos = Long.parseLong(lastStr);
+					if (lastPos < first) {
+						return null;  // syntactically invalid, so ignored
+					}
+					last = Math.min(lastPos, length - 1);
+				}
+			}
+			
+			return new long[] { first, last };
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	
+	/*
+	 * Copies count bytes of a file, starting at offset start, to an output stream.
+	 */
+	private void copyRange(File file, long start, long count, OutputStream outStream) 
+			throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		
+		try {
+			randomAccessFile.seek(start);
+			byte[] buffer = new byte[65536];
+			long remaining = count;
+			
+			while (remaining > 0) {
+				int bytesRead = randomAccessFile.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (bytesRead == -1) break;
+				outStream.write(buffer, 0, bytesRead);
+				remaining -= bytesRead;
+			}
+			
+			outStream.flush();
+		}
+		finally {
+			randomAccessFile.close();
+		}
+	}
 	
-}
\ No newline at end of file
+}
@@ -72,10 +72,18 @@ public class GrowthStats {
     return dbm;
   }
 
-  private HashMap<String, Long> buildHashMap(DatabaseManager dbm,
-                                             String sql) {
+  /**
+   * Runs an aggregate query returning (month, count) rows and collects the
+   * counts into a map keyed by the start of each month.
+   *
+   * @param dbm Database manager object
+   * @param sql Aggregate query
+   * @return Map of month start (milliseconds) to count
+   */
+  private TreeMap<Long, Integer> buildMonthMap(DatabaseManager dbm,
+                                               String sql) {
 
-    HashMap<String, Long> map = new HashMap<String, Long>();
+    TreeMap<Long, Integer> map = new TreeMap<Long, Integer>();
 
     ResultSet rs = null;
 
@@ -90,11 +98,9 @@ public class GrowthStats {
     try {
 
       while (rs.next()) {
-        String key = rs.getString(1);
-        Long date_created = rs.getTimestamp(2).getTime();
-        if (!map.containsKey(key)) {
-          map.put(key, date_created);
-        }
+        Long month = rs.getTimestamp(1).getTime();
+        Integer count = rs.getInt(2);
+        map.put(month, count);
       }
     }
     catch (SQLException e) {
@@ -106,18 +112,15 @@ public class GrowthStats {
 
   }
 
-  private Long[] buildSortedList(HashMap<String, Long> map) {
+  private int sumCounts(TreeMap<Long, Integer> map) {
 
-    Long[] list = new Long[map.size()];
+    int sum = 0;
 
-    int i = 0;
-    for (Map.Entry<String, Long> entry: map.entrySet()) {
-      list[i++] = entry.getValue();
+    for (Integer count: map.values()) {
+      sum += count;
     }
 
-    Arrays.sort(list);
-
-    return list;
+    return sum;
 
   }
 
@@ -185,7 +188,8 @@ public class GrowthStats {
 
   private ArrayList<Integer> buildFrequencies(GregorianCalendar start,
                                               GregorianCalendar end,
-                                              int scale, Long[] list) {
+                                              int scale,
+                                              TreeMap<Long, Integer> months) {
 
     ArrayList<Integer> freqs = new ArrayList<Integer>();
 
@@ -198,12 +202,9 @@ public class GrowthStats {
 
       int freq = 0;
 
-      for (int i = 0; i < list.length; i++) {
-        if (lower.getTimeInMillis() <= list[i] &&
-            list[i] < upper.getTimeInMillis()) {
-          freq++;
-          //System.out.printf("%d - %d - %d - %d%n", lower.getTimeInMillis(), list[i], upper.getTimeInMillis(), freq);
-        }
+      for (Integer count: months.subMap(lower.getTimeInMillis(),
+                                        upper.getTimeInMillis()).values()) {
+        freq += count;
       }
       freqs.add(freq);
       lower.setTime(upper.getTime());
@@ -216,6 +217,30 @@ public class GrowthStats {
 
  /* Class methods */
 
+  /*
+   * Composes a query that counts, by month, the number of distinct keys
+   * first uploaded in that month.
+   */
+  private static String composeMonthSql(String key) {
+
+    StringBuilder sql = new StringBuilder();
+    sql.append("SELECT date_trunc('month', first_created), COUNT(*) FROM ");
+    sql.append("(SELECT ");
+    sql.append(key);
+    sql.append(", MIN(date_created) AS first_created FROM ");
+    sql.append(RESOURCE_REGISTRY);
+    sql.append(" WHERE resource_type='dataPackage' AND ");
+    sql.append("date_deactivated IS NULL AND ");
+    sql.append("scope LIKE 'knb-lter-%' AND NOT scope='knb-lter-nwk' ");
+    sql.append("GROUP BY ");
+    sql.append(key);
+    sql.append(") AS f GROUP BY 1;");
+
+    return sql.toString();
+
+  }
+
+
   public static void main(String[] args) {
 
     String dbUrl = args[0];
@@ -227,43 +252,25 @@ public class GrowthStats {
 
     GrowthStats gs = new GrowthStats(dbUrl, dbUser, dbPassword, scale);
 
-    StringBuilder pkgSql = new StringBuilder();
-    pkgSql.append("SELECT scope || '.' || identifier,date_created FROM ");
-    pkgSql.append(RESOURCE_REGISTRY);
-    pkgSql.append(" WHERE resource_type='dataPackage' AND ");
-    pkgSql.append("date_deactivated IS NULL AND ");
-    pkgSql.append("scope LIKE 'knb-lter-%' AND NOT scope='knb-lter-nwk' ");
-    pkgSql.append("ORDER BY date_created ASC;");
-
-    HashMap<String, Long> pkgMap = gs.buildHashMap(gs.getDbm(),
-                                                      pkgSql.toString());
-    Long[] pkgList = gs.buildSortedList(pkgMap);
-
-    System.out.printf("Packages: %d%n", pkgList.length);
+    TreeMap<Long, Integer> pkgMonths =
+        gs.buildMonthMap(gs.getDbm(), composeMonthSql("scope, identifier"));
 
-    StringBuilder siteSql = new StringBuilder();
-    siteSql.append("SELECT scope,date_created FROM ");
-    siteSql.append(RESOURCE_REGISTRY);
-    siteSql.append(" WHERE resource_type='dataPackage' AND ");
-    siteSql.append("date_deactivated IS NULL AND ");
-    siteSql.append("scope LIKE 'knb-lter-%' AND NOT scope='knb-lter-nwk' ");
-    siteSql.append("ORDER BY date_created ASC;");
+    System.out.printf("Packages: %d%n", gs.sumCounts(pkgMonths));
 
-    HashMap<String, Long> siteMap = gs.buildHashMap(gs.getDbm(),
-                                                       siteSql.toString());
-    Long[] siteList = gs.buildSortedList(siteMap);
+    TreeMap<Long, Integer> siteMonths =
+        gs.buildMonthMap(gs.getDbm(), composeMonthSql("scope"));
 
-    System.out.printf("Sites: %d%n", siteList.length);
+    System.out.printf("Sites: %d%n", gs.sumCounts(siteMonths));
 
     ArrayList<String> labels = gs.buildLabels(origin, now, Calendar.MONTH);
 
     System.out.printf("Label size: %d%n", labels.size());
 
-    ArrayList<Integer> pkgFreq = gs.buildFrequencies(origin, now, Calendar.MONTH, pkgList);
+    ArrayList<Integer> pkgFreq = gs.buildFrequencies(origin, now, Calendar.MONTH, pkgMonths);
 
     System.out.printf("Pkg freq size: %d%n", pkgFreq.size());
 
-    ArrayList<Integer> siteFreq = gs.buildFrequencies(origin, now, Calendar.MONTH, siteList);
+    ArrayList<Integer> siteFreq = gs.buildFrequencies(origin, now, Calendar.MONTH, siteMonths);
 
     Integer pkgCDist = 0;
     Integer siteCDist = 0;